@@ -3,52 +3,170 @@ package ry.tech.mtc;
 import android.app.Notification;
 import android.app.NotificationChannel;
 import android.app.NotificationManager;
+import android.app.PendingIntent;
 import android.app.Service;
+import android.content.ComponentName;
+import android.content.Context;
 import android.content.Intent;
+import android.content.ServiceConnection;
 import android.os.Binder;
-import android.os.Handler;
+import android.os.Build;
 import android.os.IBinder;
 
 import androidx.core.app.NotificationCompat;
+import androidx.core.app.ServiceCompat;
+import androidx.core.content.ContextCompat;
 
+import ry.tech.mtc.startup.AppStartup;
+import ry.tech.mtc.telemetry.TelemetryEngine;
+
+// Хост единого движка телеметрии. Экраны подключаются через bindService и получают снимки.
+// Активность на переднем плане запускает сервис (start), поэтому он переживает отвязку экранов:
+// телеметрия и оповещения продолжаются в фоне под уведомлением переднего плана, пока пользователь
+// не остановит мониторинг из уведомления. После остановки сервис живет, только пока к нему привязаны экраны.
 public class IoTService extends Service {
     private static final int NOTIFICATION_ID = 1;
+    private static final String ACTION_STOP = "ry.tech.mtc.action.STOP_MONITORING";
     private final IBinder binder = new LocalBinder();
-    private Handler handler;
-    private boolean isRunning;
+    private TelemetryEngine telemetryEngine;
 
     public class LocalBinder extends Binder {
-        IoTService getService() {
+        public IoTService getService() {
             return IoTService.this;
         }
     }
 
+    // Вызывать с переднего плана (из активности): из фона Android 12+ не дает запустить такой сервис
+    public static void start(Context context) {
+        ContextCompat.startForegroundService(context, new Intent(context, IoTService.class));
+    }
+
     @Override
     public IBinder onBind(Intent intent) {
         return binder;
     }
 
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_STOP.equals(intent.getAction())) {
+            ServiceCompat.stopForeground(this, ServiceCompat.STOP_FOREGROUND_REMOVE);
+            stopSelf();
+            return START_NOT_STICKY;
+        }
+        startForeground(NOTIFICATION_ID, createNotification());
+        // Без перезапуска системой: из фона его запретили бы; мониторинг возобновится при открытии приложения
+        return START_NOT_STICKY;
+    }
+
     @Override
     public void onCreate() {
         super.onCreate();
-        handler = new Handler();
-        startForeground(NOTIFICATION_ID, createNotification());
+        // Сервисы датчиков (и контекст для оповещений) движок поднимает через AppStartup в своем потоке
+        AppStartup.install(this);
+        telemetryEngine = TelemetryEngine.getInstance();
+        telemetryEngine.start();
+    }
+
+    @Override
+    public void onDestroy() {
+        telemetryEngine.stop();
+        super.onDestroy();
+    }
+
+    public TelemetryEngine getTelemetryEngine() {
+        return telemetryEngine;
+    }
+
+    public void addTelemetryListener(TelemetryEngine.TelemetryListener listener) {
+        telemetryEngine.addListener(listener);
+    }
+
+    public void removeTelemetryListener(TelemetryEngine.TelemetryListener listener) {
+        telemetryEngine.removeListener(listener);
     }
 
     private Notification createNotification() {
-        NotificationChannel channel = new NotificationChannel(
-                "iot_service",
-                "IoT Service",
-                NotificationManager.IMPORTANCE_LOW
-        );
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O) {
+            NotificationChannel channel = new NotificationChannel(
+                    "iot_service",
+                    "IoT Service",
+                    NotificationManager.IMPORTANCE_LOW
+            );
+
+            NotificationManager notificationManager = getSystemService(NotificationManager.class);
+            notificationManager.createNotificationChannel(channel);
+        }
 
-        NotificationManager notificationManager = getSystemService(NotificationManager.class);
-        notificationManager.createNotificationChannel(channel);
+        PendingIntent stopIntent = PendingIntent.getService(this, 0,
+                new Intent(this, IoTService.class).setAction(ACTION_STOP), PendingIntent.FLAG_IMMUTABLE);
 
         return new NotificationCompat.Builder(this, "iot_service")
                 .setContentTitle("IoT Service")
                 .setContentText("Мониторинг устройств")
                 .setSmallIcon(R.drawable.ic_notification)
+                .setOngoing(true)
+                .addAction(R.drawable.ic_notification, "Остановить", stopIntent)
                 .build();
     }
-}
\ No newline at end of file
+
+    // Подключение экрана к сервису: подписывает слушателя после bind и отписывает при unbind
+    public static class TelemetryConnection implements ServiceConnection {
+        private final TelemetryEngine.TelemetryListener listener;
+        private IoTService service;
+        private boolean isBound;
+        private boolean isPaused;
+
+        public TelemetryConnection(TelemetryEngine.TelemetryListener listener) {
+            this.listener = listener;
+        }
+
+        public void bind(Context context) {
+            if (isBound) return;
+            isBound = context.bindService(new Intent(context, IoTService.class), this, Context.BIND_AUTO_CREATE);
+        }
+
+        public void unbind(Context context) {
+            if (!isBound) return;
+            if (service != null) {
+                service.removeTelemetryListener(listener);
+                service = null;
+            }
+            context.unbindService(this);
+            isBound = false;
+        }
+
+        // Экран скрыт, но связь с сервисом сохраняется: снимки просто перестают доставляться
+        public void pause() {
+            if (isPaused) return;
+            isPaused = true;
+            if (service != null) {
+                service.removeTelemetryListener(listener);
+            }
+        }
+
+        public void resume() {
+            if (!isPaused) return;
+            isPaused = false;
+            if (service != null) {
+                service.addTelemetryListener(listener);
+            }
+        }
+
+        public IoTService getService() {
+            return service;
+        }
+
+        @Override
+        public void onServiceConnected(ComponentName name, IBinder binder) {
+            service = ((LocalBinder) binder).getService();
+            if (!isPaused) {
+                service.addTelemetryListener(listener);
+            }
+        }
+
+        @Override
+        public void onServiceDisconnected(ComponentName name) {
+            service = null;
+        }
+    }
+}
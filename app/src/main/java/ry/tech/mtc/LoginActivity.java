@@ -27,13 +27,6 @@ public class LoginActivity extends AppCompatActivity {
 
         userManager = UserManager.getInstance(this);
 
-        // Проверяем, авторизован ли пользователь
-        if (userManager.getCurrentUser() != null) {
-            startMainActivity();
-            finish();
-            return;
-        }
-
         usernameInput = findViewById(R.id.usernameInput);
         passwordInput = findViewById(R.id.passwordInput);
         loginButton = findViewById(R.id.loginButton);
@@ -52,6 +45,15 @@ public class LoginActivity extends AppCompatActivity {
                 startActivity(new Intent(LoginActivity.this, RegisterActivity.class));
             }
         });
+
+        // Проверяем, авторизован ли пользователь; сессия читается в фоне, первый кадр не ждет диска
+        userManager.loadSession(result -> {
+            if (isFinishing() || isDestroyed()) return;
+            if (result.user != null) {
+                startMainActivity();
+                finish();
+            }
+        });
     }
 
     private void loginUser() {
@@ -63,13 +65,21 @@ public class LoginActivity extends AppCompatActivity {
             return;
         }
 
-        if (userManager.loginUser(username, password)) {
-            startMainActivity();
-            finish();
-        } else {
-            Toast.makeText(this, "Неверное имя пользователя или пароль",
-                    Toast.LENGTH_SHORT).show();
-        }
+        // Хеширование пароля занимает сотни миллисекунд, поэтому выполняется в фоне
+        loginButton.setEnabled(false);
+        userManager.login(username, password, result -> {
+            if (isFinishing() || isDestroyed()) return;
+            loginButton.setEnabled(true);
+            if (result.isSuccess()) {
+                startMainActivity();
+                finish();
+            } else if (result.status == UserManager.AuthStatus.ERROR) {
+                Toast.makeText(this, "Ошибка входа", Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Неверное имя пользователя или пароль",
+                        Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 
     private void startMainActivity() {
@@ -1,55 +1,65 @@
 package ry.tech.mtc;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.Choreographer;
 import android.view.View;
 import android.view.animation.Animation;
 import android.view.animation.AnimationSet;
 import android.view.animation.OvershootInterpolator;
 import android.view.animation.ScaleAnimation;
 import androidx.appcompat.app.AppCompatActivity;
-import androidx.fragment.app.Fragment;
-import androidx.fragment.app.FragmentTransaction;
 import com.google.android.material.bottomnavigation.BottomNavigationView;
 import ry.tech.mtc.fragments.*;
 import ry.tech.mtc.imitation.SensorManager;
+import ry.tech.mtc.startup.AppStartup;
+import ry.tech.mtc.telemetry.TelemetryEngine;
 
 public class MainActivity extends AppCompatActivity {
+    private static final String TAB_HOME = "tab_home";
+    private static final String TAB_MANAGEMENT = "tab_management";
+    private static final String TAB_PROFILE = "tab_profile";
     private BottomNavigationView bottomNavigationView;
+    private TabNavigator tabNavigator;
     private SensorManager sensorManager; // Менеджер сенсоров
+    // Связь с IoTService, пока активность видна; работу в фоне сервис продолжает сам (IoTService.start)
+    private final IoTService.TelemetryConnection telemetryConnection =
+            new IoTService.TelemetryConnection(new TelemetryEngine.TelemetryListener() {});
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
+        AppStartup.install(this);
         setContentView(R.layout.activity_main);
 
-        // Инициализируем менеджер сенсоров
-        sensorManager = new SensorManager(this);
-        sensorManager.addListener(sensorDataListener);
+        // Датчики и прогрев подсистем - после первого кадра, чтобы не задерживать появление экрана
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos ->
+                new Handler(Looper.getMainLooper()).post(this::onFirstFrameDrawn));
+
+        // Один экземпляр фрагмента на вкладку, переключение без пересоздания
+        tabNavigator = new TabNavigator(getSupportFragmentManager(), R.id.fragment_container)
+                .addTab(TAB_HOME, HomeFragment::new)
+                .addTab(TAB_MANAGEMENT, ManagementFragment::new)
+                .addTab(TAB_PROFILE, ProfileFragment::new);
+        tabNavigator.restoreState(savedInstanceState);
 
         bottomNavigationView = findViewById(R.id.bottom_navigation);
         bottomNavigationView.setOnItemSelectedListener(item -> {
-            Fragment selectedFragment = null;
+            String tag = null;
             int itemId = item.getItemId();
 
             if (itemId == R.id.nav_first) {
-                selectedFragment = new HomeFragment();
-                animateNavigation(itemId);
+                tag = TAB_HOME;
             } else if (itemId == R.id.nav_second) {
-                selectedFragment = new ManagementFragment();
-                animateNavigation(itemId);
+                tag = TAB_MANAGEMENT;
             } else if (itemId == R.id.nav_third) {
-                selectedFragment = new ProfileFragment();
-                animateNavigation(itemId);
+                tag = TAB_PROFILE;
             }
 
-            if (selectedFragment != null) {
-                FragmentTransaction transaction = getSupportFragmentManager().beginTransaction();
-                transaction.setCustomAnimations(
-                        android.R.anim.fade_in,
-                        android.R.anim.fade_out
-                );
-                transaction.replace(R.id.fragment_container, selectedFragment);
-                transaction.commit();
+            if (tag != null) {
+                animateNavigation(itemId);
+                tabNavigator.select(tag);
             }
 
             return true;
@@ -61,6 +71,27 @@ public class MainActivity extends AppCompatActivity {
         }
     }
 
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        tabNavigator.saveState(outState);
+    }
+
+    public TabNavigator getTabNavigator() {
+        return tabNavigator;
+    }
+
+    // Кадр, в callback которого мы попали, уже отрисован к моменту выполнения отложенного сообщения
+    private void onFirstFrameDrawn() {
+        if (isDestroyed()) return;
+
+        // Инициализируем менеджер сенсоров
+        sensorManager = new SensorManager(this);
+        sensorManager.addListener(sensorDataListener);
+
+        AppStartup.prewarm();
+    }
+
     private void animateNavigation(int itemId) {
         View view = bottomNavigationView.findViewById(itemId);
         if (view != null) {
@@ -99,9 +130,24 @@ public class MainActivity extends AppCompatActivity {
         // Вы можете передавать эти данные во фрагменты или использовать в логике приложения
     };
 
+    @Override
+    protected void onStart() {
+        super.onStart();
+        IoTService.start(this);
+        telemetryConnection.bind(this);
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        telemetryConnection.unbind(this);
+    }
+
     @Override
     protected void onDestroy() {
         super.onDestroy();
-        sensorManager.release(); // Освободить ресурсы сенсоров
+        if (sensorManager != null) {
+            sensorManager.release(); // Освободить ресурсы сенсоров
+        }
     }
 }
\ No newline at end of file
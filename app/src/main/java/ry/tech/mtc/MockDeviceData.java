@@ -1,29 +1,52 @@
 package ry.tech.mtc;
 
+import android.util.Log;
+
 import java.util.ArrayList;
+import java.util.HashSet;
 import java.util.List;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Consumer;
 
 import ry.tech.mtc.models.Device;
+import ry.tech.mtc.sensors.DeviceSymbols;
+import ry.tech.mtc.sensors.EnergyAccountingEngine;
 import ry.tech.mtc.sensors.SensorDataProcessor;
+import ry.tech.mtc.sensors.SensorPolicyStore;
 import ry.tech.mtc.sensors.SensorThresholdManager;
-import ry.tech.mtc.sensors.SensorCalibrationService;
 import ry.tech.mtc.sensors.SensorNotificationManager;
+import ry.tech.mtc.sensors.SensorType;
+import ry.tech.mtc.startup.AppStartup;
+import ry.tech.mtc.storage.HomeStorage;
+import ry.tech.mtc.telemetry.TelemetryEngine;
 
 public class MockDeviceData {
+    private static final String TAG = "MockDeviceData";
     private static final List<Device> devices = new ArrayList<>();
-    private static final Map<String, DeviceState> deviceStates = new HashMap<>();
-    private static final SensorDataProcessor dataProcessor = SensorDataProcessor.getInstance();
-    private static final SensorThresholdManager thresholdManager = SensorThresholdManager.getInstance();
-    private static final SensorCalibrationService calibrationService = SensorCalibrationService.getInstance();
-    private static final SensorNotificationManager notificationManager = SensorNotificationManager.getInstance();
+    private static final Map<String, Device> devicesById = new ConcurrentHashMap<>();
+    // Заполняется при первом обращении к устройству; сохраненное состояние дочитывается в потоке HomeStorage
+    private static final Map<String, DeviceState> deviceStates = new ConcurrentHashMap<>();
+    // Описания устройств, измененные до восстановления из базы: локальная версия новее сохраненной
+    // и записывается после восстановления (под блокировкой класса)
+    private static final Set<String> changedBeforeRestore = new HashSet<>();
+    private static boolean isRestored;
+    // Пороги, уведомления и калибровка настраиваются отдельно от списка устройств:
+    // загрузка класса не должна поднимать сервисы датчиков (см. AppStartup.DEVICE_CONFIG)
+    private static boolean isSensorsConfigured;
 
+    // Поля меняются только под монитором объекта (changeState, restoreState): HomeStorage.saveState
+    // снимает их под ним же, пока потоки движка и интерфейса продолжают менять показания
     public static class DeviceState {
         public boolean isOnline;
         public boolean isOn;
         public Map<String, Object> lastReadings;
         public long lastUpdateTime;
+        // Пока сохраненное состояние читается из базы, изменения копятся здесь и после загрузки
+        // применяются поверх него; null - состояние загружено
+        private List<Consumer<DeviceState>> pendingChanges;
 
         public DeviceState() {
             this.isOnline = true;
@@ -34,145 +57,223 @@ public class MockDeviceData {
     }
 
     static {
-        // Инициализация устройств с настройкой их параметров и пороговых значений
-        initializeDevice("1", "Умная лампа", Device.TYPE_LIGHT);
-        initializeDevice("2", "Кондиционер", Device.TYPE_AC);
-        initializeDevice("3", "Датчик температуры", Device.TYPE_TEMPERATURE_SENSOR);
-        initializeDevice("4", "Датчик влажности", Device.TYPE_HUMIDITY_SENSOR);
-        initializeDevice("5", "Датчик воды", Device.TYPE_WATER_SENSOR);
-        initializeDevice("6", "Датчик электричества", Device.TYPE_ELECTRICITY_SENSOR);
-        initializeDevice("7", "Датчик воздуха", Device.TYPE_AIR_SENSOR);
+        // Инициализация списка устройств
+        initializeDevice("1", "Умная лампа", Device.TYPE_LIGHT, "Гостиная");
+        initializeDevice("2", "Кондиционер", Device.TYPE_AC, "Гостиная");
+        initializeDevice("3", "Датчик температуры", Device.TYPE_TEMPERATURE_SENSOR, "Спальня");
+        initializeDevice("4", "Датчик влажности", Device.TYPE_HUMIDITY_SENSOR, "Ванная");
+        initializeDevice("5", "Датчик воды", Device.TYPE_WATER_SENSOR, "Ванная");
+        initializeDevice("6", "Датчик электричества", Device.TYPE_ELECTRICITY_SENSOR, "Кухня");
+        initializeDevice("7", "Датчик воздуха", Device.TYPE_AIR_SENSOR, "Кухня");
     }
 
-    private static void initializeDevice(String id, String name, String type) {
+    private static void initializeDevice(String id, String name, String type, String room) {
         Device device = new Device(id, name, type);
+        device.setRoom(room);
         devices.add(device);
-        deviceStates.put(id, new DeviceState());
-
-        // Настройка пороговых значений для датчиков
-        setupDeviceThresholds(device);
-
-        // Инициализация конфигурации уведомлений
-        setupNotificationConfig(device);
-
-        // Инициализация калибровочных данных
-        setupCalibrationData(device);
+        devicesById.put(id, device);
     }
 
-    private static void setupDeviceThresholds(Device device) {
-        Map<String, Double> thresholds = new HashMap<>();
-        switch (device.getType()) {
-            case Device.TYPE_TEMPERATURE_SENSOR:
-                thresholds.put("temperature_min", -5.0);
-                thresholds.put("temperature_max", 40.0);
-                break;
-            case Device.TYPE_HUMIDITY_SENSOR:
-                thresholds.put("humidity_min", 30.0);
-                thresholds.put("humidity_max", 80.0);
-                break;
-            case Device.TYPE_WATER_SENSOR:
-                thresholds.put("water_level_min", 0.0);
-                thresholds.put("water_level_max", 100.0);
-                break;
-            case Device.TYPE_ELECTRICITY_SENSOR:
-                thresholds.put("power_min", 0.0);
-                thresholds.put("power_max", 3500.0);
-                thresholds.put("voltage_min", 210.0);
-                thresholds.put("voltage_max", 240.0);
-                break;
-            case Device.TYPE_AIR_SENSOR:
-                thresholds.put("co2_min", 400.0);
-                thresholds.put("co2_max", 1500.0);
-                thresholds.put("gas_min", 0.0);
-                thresholds.put("gas_max", 10.0);
-                break;
+    // Сохраненные устройства поверх встроенного списка: параметры, комната и включение - из базы,
+    // состояние не читается до первого обращения. При первом запуске база заполняется встроенным списком.
+    // Вызывается из подсистемы STORAGE, не в главном потоке
+    public static synchronized void restoreDevices(HomeStorage storage) {
+        List<Device> stored = storage.loadDevices();
+        if (stored.isEmpty()) {
+            for (Device device : devices) {
+                storage.saveDevice(device);
+            }
+        }
+        for (Device saved : stored) {
+            Device device = devicesById.get(saved.getId());
+            if (device == null) {
+                devices.add(saved);
+                devicesById.put(saved.getId(), saved);
+                continue;
+            }
+            if (changedBeforeRestore.contains(saved.getId())) continue;
+            // Существующие объекты обновляются на месте: на них уже могут ссылаться экраны
+            // Устройства, сохраненные до появления комнат, остаются в комнате по умолчанию
+            if (saved.getRoom() != null) {
+                device.setRoom(saved.getRoom());
+            }
+            device.setOn(saved.isOn());
+            for (Map.Entry<String, Object> entry : saved.getAllParameters().entrySet()) {
+                device.setParameter(entry.getKey(), entry.getValue());
+            }
         }
-        thresholdManager.setThresholds(device.getId(), thresholds);
+        for (String deviceId : changedBeforeRestore) {
+            Device device = devicesById.get(deviceId);
+            if (device != null) {
+                storage.saveDevice(device);
+            }
+        }
+        changedBeforeRestore.clear();
+        isRestored = true;
     }
 
-    private static void setupNotificationConfig(Device device) {
-        SensorNotificationManager.NotificationConfig config =
-                new SensorNotificationManager.NotificationConfig();
+    // Новое устройство (диалог добавления): в список, в базу и в движок телеметрии.
+    // Если сервисы датчиков уже настроены, устройство сразу получает пороги и уведомления своего типа
+    public static void addDevice(Device device) {
+        synchronized (MockDeviceData.class) {
+            if (devicesById.containsKey(device.getId())) return;
+            devices.add(device);
+            devicesById.put(device.getId(), device);
+            if (isSensorsConfigured) {
+                applySensorPolicy(device, SensorPolicyStore.getInstance().getPolicy(device.getId()));
+                EnergyAccountingEngine.getInstance().assignRoom(device.getId(), device.getRoom());
+            }
+        }
+        persistDevice(device);
+        TelemetryEngine.getInstance().addDevice(device);
+    }
 
-        // Настройка специфических параметров уведомлений для разных типов устройств
-        switch (device.getType()) {
-            case Device.TYPE_TEMPERATURE_SENSOR:
-            case Device.TYPE_HUMIDITY_SENSOR:
-                config.priority = 2;
-                config.cooldownPeriod = 5 * 60 * 1000; // 5 минут
-                break;
-            case Device.TYPE_WATER_SENSOR:
-            case Device.TYPE_ELECTRICITY_SENSOR:
-                config.priority = 1;
-                config.cooldownPeriod = 1 * 60 * 1000; // 1 минута
-                break;
-            case Device.TYPE_AIR_SENSOR:
-                config.priority = 2;
-                config.cooldownPeriod = 10 * 60 * 1000; // 10 минут
-                break;
+    // Изменения, сделанные напрямую через Device (например, в диалоге настроек).
+    // До восстановления из базы запись откладывается, иначе восстановление затерло бы изменение
+    public static void persistDevice(Device device) {
+        synchronized (MockDeviceData.class) {
+            if (!isRestored) {
+                changedBeforeRestore.add(device.getId());
+                return;
+            }
         }
+        HomeStorage.getInstance().saveDevice(device);
+    }
 
-        notificationManager.setNotificationConfig(device.getId(), config);
+    // Настройка сервисов датчиков для всех устройств; повторные вызовы ничего не делают
+    public static synchronized void configureSensors() {
+        if (isSensorsConfigured) return;
+        // Пороги и уведомления - общие шаблоны типа с пользовательскими настройками из SensorPolicyStore,
+        // калибровка настраивается по типу в SensorCalibrationService
+        SensorPolicyStore policyStore = SensorPolicyStore.getInstance();
+        SensorPolicyStore.Snapshot policies = policyStore.snapshot();
+        EnergyAccountingEngine energy = EnergyAccountingEngine.getInstance();
+        for (Device device : devices) {
+            applySensorPolicy(device, policies.get(device.getId()));
+            // Комнаты уже восстановлены из базы (DEVICE_CONFIG идет после STORAGE)
+            energy.assignRoom(device.getId(), device.getRoom());
+        }
+        // Изменение настроек пересчитывает только изменившиеся устройства
+        policyStore.addListener((snapshot, changedDeviceIds) -> {
+            for (String deviceId : changedDeviceIds) {
+                Device device = getDevice(deviceId);
+                if (device != null) {
+                    applySensorPolicy(device, snapshot.get(deviceId));
+                }
+            }
+        });
+        isSensorsConfigured = true;
     }
 
-    private static void setupCalibrationData(Device device) {
-        SensorCalibrationService.CalibrationConfig config = null;
-        switch (device.getType()) {
-            case Device.TYPE_TEMPERATURE_SENSOR:
-                config = new SensorCalibrationService.CalibrationConfig(-5, 40, 0.1, "°C");
-                break;
-            case Device.TYPE_HUMIDITY_SENSOR:
-                config = new SensorCalibrationService.CalibrationConfig(30, 80, 1.0, "%");
-                break;
-            case Device.TYPE_WATER_SENSOR:
-                config = new SensorCalibrationService.CalibrationConfig(0, 100, 0.5, "cm");
-                break;
-            case Device.TYPE_ELECTRICITY_SENSOR:
-                config = new SensorCalibrationService.CalibrationConfig(0, 3500, 1.0, "W");
-                break;
-            case Device.TYPE_AIR_SENSOR:
-                config = new SensorCalibrationService.CalibrationConfig(0, 150, 1.0, "AQI");
-                break;
+    // Перенос устройства в другую комнату: описание в базу, дальнейший учет энергии - в новую комнату
+    public static void setDeviceRoom(Device device, String room) {
+        synchronized (MockDeviceData.class) {
+            device.setRoom(room);
+            if (isSensorsConfigured) {
+                EnergyAccountingEngine.getInstance().assignRoom(device.getId(), room);
+            }
         }
-        if (config != null) {
-            calibrationService.updateCalibrationConfig(device.getType(), config);
+        persistDevice(device);
+    }
+
+    // Пороги, уведомления и получатели устройства: шаблон типа плюс пользовательские настройки
+    public static void applySensorPolicy(Device device, SensorPolicyStore.DevicePolicy policy) {
+        int handle = DeviceSymbols.getInstance().intern(device.getId());
+        SensorType type = SensorType.fromTypeId(device.getType());
+        if (type != null) {
+            SensorThresholdManager.getInstance().applyPolicy(handle, type, policy.thresholds);
         }
+        SensorNotificationManager.getInstance().applyPolicy(handle, type, policy);
     }
 
-    public static List<Device> getAllDevices() {
+    public static synchronized List<Device> getAllDevices() {
         return new ArrayList<>(devices);
     }
 
     public static Device getDevice(String id) {
-        for (Device device : devices) {
-            if (device.getId().equals(id)) {
-                return device;
+        return devicesById.get(id);
+    }
+
+    // Без ожидания и без запросов к базе в потоке вызывающего. При первом обращении возвращается
+    // новое состояние, а сохраненное читается в потоке HomeStorage (после STORAGE) и заменяет его
+    // значения; изменения, сделанные до этого, применяются поверх сохраненных
+    public static DeviceState getDeviceState(String id) {
+        DeviceState state = deviceStates.get(id);
+        if (state != null || !devicesById.containsKey(id)) return state;
+        DeviceState created = new DeviceState();
+        created.pendingChanges = new ArrayList<>();
+        DeviceState previous = deviceStates.putIfAbsent(id, created);
+        if (previous != null) return previous;
+        HomeStorage.getInstance().readAsync(() -> restoreState(id, created));
+        return created;
+    }
+
+    private static void restoreState(String id, DeviceState state) {
+        DeviceState stored = null;
+        try {
+            AppStartup.getInstance().require(AppStartup.STORAGE);
+            stored = HomeStorage.getInstance().loadState(id);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to load state of device " + id, e);
+        }
+        boolean hasChanges;
+        synchronized (state) {
+            if (stored != null) {
+                state.isOnline = stored.isOnline;
+                state.isOn = stored.isOn;
+                state.lastReadings.clear();
+                state.lastReadings.putAll(stored.lastReadings);
+                state.lastUpdateTime = stored.lastUpdateTime;
+            }
+            hasChanges = !state.pendingChanges.isEmpty();
+            for (Consumer<DeviceState> change : state.pendingChanges) {
+                change.accept(state);
+            }
+            state.pendingChanges = null;
+        }
+        if (hasChanges) {
+            HomeStorage.getInstance().saveState(id, state);
+        }
+    }
+
+    // Изменение состояния; до загрузки сохраненного оно запоминается и не пишется в базу,
+    // иначе значения по умолчанию затерли бы сохраненные
+    private static void changeState(String id, Consumer<DeviceState> change) {
+        DeviceState state = getDeviceState(id);
+        if (state == null) return;
+        long now = System.currentTimeMillis();
+        Consumer<DeviceState> timedChange = change.andThen(changed -> changed.lastUpdateTime = now);
+        synchronized (state) {
+            timedChange.accept(state);
+            if (state.pendingChanges != null) {
+                state.pendingChanges.add(timedChange);
+                return;
             }
         }
-        return null;
+        HomeStorage.getInstance().saveState(id, state);
     }
 
-    public static DeviceState getDeviceState(String id) {
-        return deviceStates.get(id);
+    public static void setDeviceOnline(String id, boolean isOnline) {
+        Device device = devicesById.get(id);
+        if (device != null) {
+            device.setOnline(isOnline);
+        }
+        changeState(id, state -> state.isOnline = isOnline);
     }
 
     public static void updateDeviceState(Device device, boolean isOn) {
         device.setOn(isOn);
-        DeviceState state = deviceStates.get(device.getId());
-        if (state != null) {
-            state.isOn = isOn;
-            state.lastUpdateTime = System.currentTimeMillis();
-        }
+        changeState(device.getId(), state -> state.isOn = isOn);
+        persistDevice(device);
+        configureSensors();
         processDeviceStateChange(device);
     }
 
     public static void updateDeviceParameter(Device device, String parameter, Object value) {
         device.setParameter(parameter, value);
-        DeviceState state = deviceStates.get(device.getId());
-        if (state != null) {
-            state.lastReadings.put(parameter, value);
-            state.lastUpdateTime = System.currentTimeMillis();
-        }
+        changeState(device.getId(), state -> state.lastReadings.put(parameter, value));
+        persistDevice(device);
+        configureSensors();
         processParameterUpdate(device, parameter, value);
     }
 
@@ -209,10 +310,9 @@ public class MockDeviceData {
     private static void processSensorStateChange(Device device) {
         if (device.isOn()) {
             // Обработка активации датчика
-            DeviceState state = deviceStates.get(device.getId());
-            if (state != null) {
-                state.isOnline = true;
-                dataProcessor.processSensorData(device.getId(),
+            if (getDeviceState(device.getId()) != null) {
+                changeState(device.getId(), state -> state.isOnline = true);
+                SensorDataProcessor.getInstance().processSensorData(device.getId(),
                         device.getType(),
                         getLastSensorReading(device));
             }
@@ -223,8 +323,10 @@ public class MockDeviceData {
         if (value instanceof Number) {
             double numericValue = ((Number) value).doubleValue();
 
+            SensorThresholdManager thresholdManager = SensorThresholdManager.getInstance();
+
             // Обработка через процессор данных
-            dataProcessor.processSensorData(device.getId(), device.getType(), numericValue);
+            SensorDataProcessor.getInstance().processSensorData(device.getId(), device.getType(), numericValue);
 
             // Проверка пороговых значений
             SensorThresholdManager.ThresholdStatus status =
@@ -234,7 +336,7 @@ public class MockDeviceData {
             if (status != SensorThresholdManager.ThresholdStatus.NORMAL) {
                 Map<String, Double> thresholds = thresholdManager.getThresholds(device.getId());
                 if (thresholds != null) {
-                    notificationManager.sendAlert(
+                    SensorNotificationManager.getInstance().sendAlert(
                             device.getId(),
                             parameter,
                             numericValue,
@@ -48,12 +48,19 @@ public class RegisterActivity extends AppCompatActivity {
             return;
         }
 
-        if (userManager.registerUser(username, password, email)) {
-            Toast.makeText(this, "Регистрация успешна", Toast.LENGTH_SHORT).show();
-            finish();
-        } else {
-            Toast.makeText(this, "Ошибка регистрации. Возможно, пользователь уже существует",
-                    Toast.LENGTH_SHORT).show();
-        }
+        registerButton.setEnabled(false);
+        userManager.register(username, password, email, result -> {
+            if (isFinishing() || isDestroyed()) return;
+            registerButton.setEnabled(true);
+            if (result.isSuccess()) {
+                Toast.makeText(this, "Регистрация успешна", Toast.LENGTH_SHORT).show();
+                finish();
+            } else if (result.status == UserManager.AuthStatus.USER_EXISTS) {
+                Toast.makeText(this, "Пользователь с таким именем уже существует",
+                        Toast.LENGTH_SHORT).show();
+            } else {
+                Toast.makeText(this, "Ошибка регистрации", Toast.LENGTH_SHORT).show();
+            }
+        });
     }
 }
\ No newline at end of file
@@ -11,17 +11,17 @@ import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
-import java.util.List;
-
 import ry.tech.mtc.R;
+import ry.tech.mtc.controllers.PagedDeviceList;
 import ry.tech.mtc.interfaces.DeviceClickListener;
 import ry.tech.mtc.models.Device;
 
+// Список устройств поверх PagedDeviceList: пока страница грузится, строка показывается пустой
 public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceViewHolder> {
-    private List<Device> devices;
+    private PagedDeviceList devices;
     private DeviceClickListener listener;
 
-    public DeviceAdapter(List<Device> devices, DeviceClickListener listener) {
+    public DeviceAdapter(PagedDeviceList devices, DeviceClickListener listener) {
         this.devices = devices;
         this.listener = listener;
     }
@@ -37,7 +37,11 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
     @Override
     public void onBindViewHolder(@NonNull DeviceViewHolder holder, int position) {
         Device device = devices.get(position);
-        holder.bind(device);
+        if (device != null) {
+            holder.bind(device);
+        } else {
+            holder.bindPlaceholder();
+        }
     }
 
     @Override
@@ -57,22 +61,35 @@ public class DeviceAdapter extends RecyclerView.Adapter<DeviceAdapter.DeviceView
             deviceIcon = itemView.findViewById(R.id.deviceIcon);
 
             deviceSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
-                int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION) {
-                    listener.onDeviceStateChanged(devices.get(position), isChecked);
+                Device device = getDevice();
+                if (device != null && buttonView.isPressed()) {
+                    listener.onDeviceStateChanged(device, isChecked);
                 }
             });
 
             itemView.setOnClickListener(v -> {
-                int position = getAdapterPosition();
-                if (position != RecyclerView.NO_POSITION) {
-                    listener.onDeviceSettingsClick(devices.get(position));
+                Device device = getDevice();
+                if (device != null) {
+                    listener.onDeviceSettingsClick(device);
                 }
             });
         }
 
+        private Device getDevice() {
+            int position = getAdapterPosition();
+            return position != RecyclerView.NO_POSITION ? devices.get(position) : null;
+        }
+
+        public void bindPlaceholder() {
+            deviceName.setText("");
+            deviceSwitch.setChecked(false);
+            deviceSwitch.setEnabled(false);
+            deviceIcon.setImageDrawable(null);
+        }
+
         public void bind(Device device) {
             deviceName.setText(device.getName());
+            deviceSwitch.setEnabled(true);
             deviceSwitch.setChecked(device.isOn());
 
             // Установка иконки в зависимости от типа устройства
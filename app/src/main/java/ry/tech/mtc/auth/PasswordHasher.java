@@ -0,0 +1,147 @@
+package ry.tech.mtc.auth;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+
+// Хеширование паролей PBKDF2-HMAC-SHA256 (RFC 8018) с солью и настраиваемым числом итераций.
+// Реализовано поверх Mac: SecretKeyFactory "PBKDF2WithHmacSHA256" есть только с API 26, а minSdk 24.
+// Формат строки: pbkdf2-sha256$<итерации>$<соль hex>$<хеш hex> - итерации хранятся вместе с хешем,
+// поэтому число итераций можно повышать, не ломая вход со старыми хешами.
+public class PasswordHasher {
+    public static final String PREFIX = "pbkdf2-sha256";
+    public static final int MIN_ITERATIONS = 10_000;
+    public static final int MAX_ITERATIONS = 2_000_000;
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BYTES = 32;
+    private static final int CALIBRATION_ITERATIONS = 4_000;
+    private static final String HMAC = "HmacSHA256";
+
+    private final SecureRandom random = new SecureRandom();
+    private final int iterations;
+
+    public PasswordHasher(int iterations) {
+        this.iterations = Math.max(MIN_ITERATIONS, Math.min(MAX_ITERATIONS, iterations));
+    }
+
+    public int getIterations() {
+        return iterations;
+    }
+
+    public String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        random.nextBytes(salt);
+        byte[] hash = pbkdf2(password.getBytes(StandardCharsets.UTF_8), salt, iterations, HASH_BYTES);
+        return PREFIX + "$" + iterations + "$" + toHex(salt) + "$" + toHex(hash);
+    }
+
+    // false и для строк не в формате PBKDF2 (старые хеши проверяет UserManager)
+    public static boolean verify(String password, String encoded) {
+        if (!isPbkdf2(encoded)) return false;
+        String[] parts = encoded.split("\\$");
+        if (parts.length != 4) return false;
+        int storedIterations;
+        try {
+            storedIterations = Integer.parseInt(parts[1]);
+        } catch (NumberFormatException e) {
+            return false;
+        }
+        if (storedIterations < 1 || storedIterations > MAX_ITERATIONS) return false;
+        byte[] salt = fromHex(parts[2]);
+        byte[] expected = fromHex(parts[3]);
+        if (salt == null || expected == null || expected.length == 0) return false;
+        byte[] actual = pbkdf2(password.getBytes(StandardCharsets.UTF_8), salt, storedIterations, expected.length);
+        // Сравнение за постоянное время
+        return MessageDigest.isEqual(expected, actual);
+    }
+
+    public static boolean isPbkdf2(String encoded) {
+        return encoded != null && encoded.startsWith(PREFIX + "$");
+    }
+
+    // Хеш нужно пересчитать: старый формат или итераций меньше текущей настройки
+    public boolean needsRehash(String encoded) {
+        if (!isPbkdf2(encoded)) return true;
+        String[] parts = encoded.split("\\$");
+        try {
+            return parts.length != 4 || Integer.parseInt(parts[1]) < iterations;
+        } catch (NumberFormatException e) {
+            return true;
+        }
+    }
+
+    // Число итераций, при котором хеширование на этом устройстве занимает около budgetNanos
+    public static int calibrate(long budgetNanos) {
+        byte[] password = "calibration".getBytes(StandardCharsets.UTF_8);
+        byte[] salt = new byte[SALT_BYTES];
+        // Первый прогон прогревает JIT и провайдер Mac, замеряется второй
+        pbkdf2(password, salt, CALIBRATION_ITERATIONS, HASH_BYTES);
+        long start = System.nanoTime();
+        pbkdf2(password, salt, CALIBRATION_ITERATIONS, HASH_BYTES);
+        long elapsed = Math.max(1, System.nanoTime() - start);
+
+        long scaled = budgetNanos * CALIBRATION_ITERATIONS / elapsed;
+        int rounded = (int) Math.min(MAX_ITERATIONS, scaled / 1000 * 1000);
+        return Math.max(MIN_ITERATIONS, rounded);
+    }
+
+    static byte[] pbkdf2(byte[] password, byte[] salt, int iterations, int length) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            // SecretKeySpec не принимает пустой ключ; HMAC с пустым ключом равен HMAC с нулевым байтом
+            mac.init(new SecretKeySpec(password.length > 0 ? password : new byte[1], HMAC));
+            int macLength = mac.getMacLength();
+            byte[] result = new byte[length];
+            byte[] block = new byte[macLength];
+            byte[] u = new byte[macLength];
+
+            for (int blockIndex = 1, offset = 0; offset < length; blockIndex++, offset += macLength) {
+                mac.update(salt);
+                mac.update((byte) (blockIndex >>> 24));
+                mac.update((byte) (blockIndex >>> 16));
+                mac.update((byte) (blockIndex >>> 8));
+                mac.update((byte) blockIndex);
+                mac.doFinal(u, 0);
+                System.arraycopy(u, 0, block, 0, macLength);
+                for (int i = 1; i < iterations; i++) {
+                    mac.update(u);
+                    mac.doFinal(u, 0);
+                    for (int j = 0; j < macLength; j++) {
+                        block[j] ^= u[j];
+                    }
+                }
+                System.arraycopy(block, 0, result, offset, Math.min(macLength, length - offset));
+            }
+            return result;
+        } catch (GeneralSecurityException e) {
+            // HmacSHA256 обязателен для всех реализаций Java и Android
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] digits = "0123456789abcdef".toCharArray();
+        char[] result = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            result[i * 2] = digits[(bytes[i] >> 4) & 0xF];
+            result[i * 2 + 1] = digits[bytes[i] & 0xF];
+        }
+        return new String(result);
+    }
+
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0) return null;
+        byte[] result = new byte[hex.length() / 2];
+        for (int i = 0; i < result.length; i++) {
+            int high = Character.digit(hex.charAt(i * 2), 16);
+            int low = Character.digit(hex.charAt(i * 2 + 1), 16);
+            if (high < 0 || low < 0) return null;
+            result[i] = (byte) ((high << 4) | low);
+        }
+        return result;
+    }
+}
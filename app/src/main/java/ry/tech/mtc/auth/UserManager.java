@@ -2,27 +2,86 @@ package ry.tech.mtc.auth;
 
 import android.content.Context;
 import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
 import android.util.Base64;
 import android.util.Log;
 import com.google.gson.Gson;
-import com.google.gson.reflect.TypeToken;
-import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import ry.tech.mtc.codec.JsonAdapters;
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
+// Пользователи и текущая сессия.
+// Проверка пароля, хеширование и разбор JSON пользователей выполняются в отдельном потоке Auth,
+// результат приходит в главный поток через AuthCallback. Потоку Auth принадлежат разобранная карта
+// пользователей и настроенный PasswordHasher; текущая сессия кэшируется разобранным объектом.
 public class UserManager {
+    private static final String TAG = "UserManager";
     private static final String PREF_NAME = "UserData";
     private static final String KEY_USERS = "users";
     private static final String KEY_CURRENT_USER = "current_user";
+    private static final String KEY_KDF_ITERATIONS = "kdf_iterations";
+    // Целевое время хеширования пароля на устройстве: заметно для перебора, незаметно для входа
+    private static final long KDF_BUDGET_NANOS = 200_000_000L;
     private static UserManager instance;
     private final SharedPreferences preferences;
     private final Gson gson;
+    private final ExecutorService authExecutor;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LatencyHistogram authLatency = MetricsRegistry.getInstance().histogram("auth.request");
+
+    // Только в потоке Auth
+    private Map<String, User> users;
+    private PasswordHasher hasher;
+
+    // Кэш сессии; до первой загрузки isSessionLoaded == false
+    private User currentUser;
+    private boolean isSessionLoaded;
+
+    public enum AuthStatus {
+        SUCCESS,
+        INVALID_INPUT,
+        INVALID_CREDENTIALS,
+        USER_EXISTS,
+        ERROR
+    }
+
+    public static class AuthResult {
+        public final AuthStatus status;
+        public final User user;
+
+        AuthResult(AuthStatus status, User user) {
+            this.status = status;
+            this.user = user;
+        }
+
+        public boolean isSuccess() {
+            return status == AuthStatus.SUCCESS;
+        }
+    }
+
+    // Вызывается в главном потоке
+    public interface AuthCallback {
+        void onResult(AuthResult result);
+    }
 
     private UserManager(Context context) {
-        preferences = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
-        gson = new Gson();
+        // Файл настроек читается с диска асинхронно, первый get в потоке Auth дождется загрузки
+        preferences = context.getApplicationContext().getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        gson = JsonAdapters.getGson();
+        authExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Auth");
+            thread.setDaemon(true);
+            return thread;
+        });
     }
 
     public static synchronized UserManager getInstance(Context context) {
@@ -32,103 +91,168 @@ public class UserManager {
         return instance;
     }
 
-    public boolean registerUser(String username, String password, String email) {
-        username = username.trim();
-        password = password.trim();
-        email = email.trim();
+    // Загрузка сохраненной сессии без блокировки главного потока; user в результате - null, если не входили
+    public void loadSession(AuthCallback callback) {
+        synchronized (this) {
+            if (isSessionLoaded) {
+                deliver(callback, new AuthResult(AuthStatus.SUCCESS, currentUser));
+                return;
+            }
+        }
+        authExecutor.execute(() -> deliver(callback, new AuthResult(AuthStatus.SUCCESS, getCurrentUser())));
+    }
+
+    public void register(String username, String password, String email, AuthCallback callback) {
+        authExecutor.execute(() -> {
+            long start = System.nanoTime();
+            AuthResult result = registerBlocking(username.trim(), password.trim(), email.trim());
+            authLatency.recordSince(start);
+            deliver(callback, result);
+        });
+    }
+
+    public void login(String username, String password, AuthCallback callback) {
+        authExecutor.execute(() -> {
+            long start = System.nanoTime();
+            AuthResult result = loginBlocking(username.trim(), password.trim());
+            authLatency.recordSince(start);
+            deliver(callback, result);
+        });
+    }
+
+    public void logoutUser() {
+        synchronized (this) {
+            currentUser = null;
+            isSessionLoaded = true;
+        }
+        preferences.edit().remove(KEY_CURRENT_USER).apply();
+        Log.d(TAG, "User logged out");
+    }
+
+    // Из кэша; если сессия еще не загружалась, JSON разбирается в вызывающем потоке.
+    // В главном потоке до loadSession лучше не вызывать.
+    public synchronized User getCurrentUser() {
+        if (!isSessionLoaded) {
+            String userJson = preferences.getString(KEY_CURRENT_USER, null);
+            currentUser = userJson != null ? gson.fromJson(userJson, User.class) : null;
+            isSessionLoaded = true;
+        }
+        return currentUser;
+    }
 
+    private AuthResult registerBlocking(String username, String password, String email) {
         if (username.isEmpty() || password.isEmpty() || email.isEmpty()) {
-            return false;
+            return new AuthResult(AuthStatus.INVALID_INPUT, null);
         }
 
         try {
-            Map<String, User> users = getAllUsers();
-            if (users.containsKey(username)) {
-                Log.d("UserManager", "User already exists: " + username);
-                return false;
+            Map<String, User> allUsers = getAllUsers();
+            if (allUsers.containsKey(username)) {
+                Log.d(TAG, "User already exists: " + username);
+                return new AuthResult(AuthStatus.USER_EXISTS, null);
             }
 
-            String hashedPassword = hashPassword(password);
             User newUser = new User(
                     UUID.randomUUID().toString(),
                     username,
-                    hashedPassword,
+                    getHasher().hash(password),
                     email
             );
 
-            users.put(username, newUser);
-            saveUsers(users);
-            Log.d("UserManager", "User registered successfully: " + username);
-            return true;
+            allUsers.put(username, newUser);
+            saveUsers(allUsers);
+            Log.d(TAG, "User registered successfully: " + username);
+            return new AuthResult(AuthStatus.SUCCESS, newUser);
         } catch (Exception e) {
-            Log.d("UserManager", "Registration error: " + e.getMessage());
-            e.printStackTrace();
-            return false;
+            Log.e(TAG, "Registration error", e);
+            return new AuthResult(AuthStatus.ERROR, null);
         }
     }
 
-    public boolean loginUser(String username, String password) {
-        username = username.trim();
-        password = password.trim();
+    private AuthResult loginBlocking(String username, String password) {
+        if (username.isEmpty() || password.isEmpty()) {
+            return new AuthResult(AuthStatus.INVALID_INPUT, null);
+        }
 
         try {
-            Map<String, User> users = getAllUsers();
-            Log.d("UserManager", "Users loaded: " + users.keySet());
-
-            User user = users.get(username);
-            if (user != null) {
-                String inputHashedPassword = hashPassword(password);
-                Log.d("UserManager", "Comparing hashes: input=" + inputHashedPassword + ", stored=" + user.getPasswordHash());
-                if (inputHashedPassword.equals(user.getPasswordHash())) {
-                    saveCurrentUser(user);
-                    Log.d("UserManager", "Login successful for: " + username);
-                    return true;
-                }
+            Map<String, User> allUsers = getAllUsers();
+            User user = allUsers.get(username);
+            if (user == null || !verifyPassword(password, user.getPasswordHash())) {
+                Log.d(TAG, "Login failed for: " + username);
+                return new AuthResult(AuthStatus.INVALID_CREDENTIALS, null);
+            }
+
+            // Старый SHA-256 без соли или меньше итераций, чем сейчас, - пересчитываем, пока пароль известен
+            PasswordHasher currentHasher = getHasher();
+            if (currentHasher.needsRehash(user.getPasswordHash())) {
+                user = new User(user.getId(), user.getUsername(), currentHasher.hash(password), user.getEmail());
+                allUsers.put(username, user);
+                saveUsers(allUsers);
             }
-            Log.d("UserManager", "Login failed for: " + username);
+
+            saveCurrentUser(user);
+            Log.d(TAG, "Login successful for: " + username);
+            return new AuthResult(AuthStatus.SUCCESS, user);
         } catch (Exception e) {
-            Log.d("UserManager", "Login error: " + e.getMessage());
-            e.printStackTrace();
+            Log.e(TAG, "Login error", e);
+            return new AuthResult(AuthStatus.ERROR, null);
         }
-        return false;
-    }
-
-    public void logoutUser() {
-        preferences.edit().remove(KEY_CURRENT_USER).apply();
-        Log.d("UserManager", "User logged out");
     }
 
-    public User getCurrentUser() {
-        String userJson = preferences.getString(KEY_CURRENT_USER, null);
-        if (userJson != null) {
-            return gson.fromJson(userJson, User.class);
+    private static boolean verifyPassword(String password, String storedHash) throws Exception {
+        if (storedHash == null) return false;
+        if (PasswordHasher.isPbkdf2(storedHash)) {
+            return PasswordHasher.verify(password, storedHash);
         }
-        return null;
+        return MessageDigest.isEqual(legacyHash(password).getBytes(StandardCharsets.UTF_8),
+                storedHash.getBytes(StandardCharsets.UTF_8));
     }
 
-    private String hashPassword(String password) throws Exception {
+    // Формат хешей до перехода на PBKDF2
+    private static String legacyHash(String password) throws Exception {
         MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        byte[] hash = digest.digest(password.getBytes("UTF-8"));
+        byte[] hash = digest.digest(password.getBytes(StandardCharsets.UTF_8));
         return Base64.encodeToString(hash, Base64.NO_WRAP);
     }
 
+    // Калибровка выполняется один раз на устройстве, результат хранится в настройках
+    private PasswordHasher getHasher() {
+        if (hasher == null) {
+            int iterations = preferences.getInt(KEY_KDF_ITERATIONS, 0);
+            if (iterations == 0) {
+                iterations = PasswordHasher.calibrate(KDF_BUDGET_NANOS);
+                preferences.edit().putInt(KEY_KDF_ITERATIONS, iterations).apply();
+                Log.d(TAG, "KDF calibrated to " + iterations + " iterations");
+            }
+            hasher = new PasswordHasher(iterations);
+        }
+        return hasher;
+    }
+
     private Map<String, User> getAllUsers() {
-        String usersJson = preferences.getString(KEY_USERS, "{}");
-        Log.d("UserManager", "Getting all users, JSON: " + usersJson);
-        Type type = new TypeToken<Map<String, User>>() {}.getType();
-        return gson.fromJson(usersJson, type);
+        if (users == null) {
+            String usersJson = preferences.getString(KEY_USERS, "{}");
+            Map<String, User> parsed = gson.fromJson(usersJson, JsonAdapters.USER_MAP_TYPE);
+            users = parsed != null ? parsed : new HashMap<>();
+        }
+        return users;
     }
 
-    private void saveUsers(Map<String, User> users) {
-        String usersJson = gson.toJson(users);
+    private void saveUsers(Map<String, User> allUsers) {
+        String usersJson = gson.toJson(allUsers, JsonAdapters.USER_MAP_TYPE);
         preferences.edit().putString(KEY_USERS, usersJson).apply();
-        Log.d("UserManager", "Saving users, JSON: " + usersJson);
     }
 
     private void saveCurrentUser(User user) {
-        String userJson = gson.toJson(user);
-        preferences.edit().putString(KEY_CURRENT_USER, userJson).apply();
-        Log.d("UserManager", "Saving current user, JSON: " + userJson);
+        synchronized (this) {
+            currentUser = user;
+            isSessionLoaded = true;
+        }
+        preferences.edit().putString(KEY_CURRENT_USER, gson.toJson(user)).apply();
+    }
+
+    private void deliver(AuthCallback callback, AuthResult result) {
+        mainHandler.post(() -> callback.onResult(result));
     }
 
     public static class User {
@@ -150,13 +274,11 @@ public class UserManager {
         public String getEmail() { return email; }
 
         public String toJson() {
-            Gson gson = new Gson();
-            return gson.toJson(this);
+            return JsonAdapters.getGson().toJson(this);
         }
 
         public static User fromJson(String json) {
-            Gson gson = new Gson();
-            return gson.fromJson(json, User.class);
+            return JsonAdapters.getGson().fromJson(json, User.class);
         }
     }
 }
\ No newline at end of file
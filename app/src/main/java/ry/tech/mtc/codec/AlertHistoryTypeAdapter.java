@@ -0,0 +1,89 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+
+import ry.tech.mtc.sensors.SensorNotificationManager;
+
+// Время оповещения хранится строкой ISO-8601 (LocalDateTime.toString/parse)
+public class AlertHistoryTypeAdapter extends TypeAdapter<SensorNotificationManager.AlertHistory> {
+
+    @Override
+    public void write(JsonWriter out, SensorNotificationManager.AlertHistory alert) throws IOException {
+        if (alert == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("deviceId").value(alert.deviceId);
+        out.name("sensorType").value(alert.sensorType);
+        out.name("value").value(alert.value);
+        out.name("unit").value(alert.unit);
+        out.name("level").value(alert.level != null ? alert.level.name() : null);
+        out.name("timestamp").value(alert.timestamp != null ? alert.timestamp.toString() : null);
+        out.endObject();
+    }
+
+    @Override
+    public SensorNotificationManager.AlertHistory read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String deviceId = null;
+        String sensorType = null;
+        double value = Double.NaN;
+        String unit = null;
+        SensorNotificationManager.AlertLevel level = SensorNotificationManager.AlertLevel.INFO;
+        LocalDateTime timestamp = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "deviceId":
+                    deviceId = in.nextString();
+                    break;
+                case "sensorType":
+                    sensorType = in.nextString();
+                    break;
+                case "value":
+                    value = in.nextDouble();
+                    break;
+                case "unit":
+                    unit = in.nextString();
+                    break;
+                case "level":
+                    level = parseLevel(in.nextString());
+                    break;
+                case "timestamp":
+                    timestamp = LocalDateTime.parse(in.nextString());
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new SensorNotificationManager.AlertHistory(deviceId, sensorType, value, unit, level,
+                timestamp != null ? timestamp : LocalDateTime.now());
+    }
+
+    private static SensorNotificationManager.AlertLevel parseLevel(String name) {
+        try {
+            return SensorNotificationManager.AlertLevel.valueOf(name);
+        } catch (IllegalArgumentException e) {
+            return SensorNotificationManager.AlertLevel.INFO;
+        }
+    }
+}
@@ -0,0 +1,320 @@
+package ry.tech.mtc.codec;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Utf8;
+
+// Компактный двоичный формат: varint + zig-zag, известные параметры кодируются номером.
+//
+// Кадр:      MAGIC, VERSION, тип кадра
+// Команда:   deviceId, command, тег значения, значение
+// Пакет команд: число команд, далее команды без заголовка кадра
+// Телеметрия: deviceId, число записей, базовое время (мс), далее записи:
+//            varint (код параметра << 2 | вид значения), [имя, если код 0],
+//            дельта времени от предыдущей записи, значение
+// Строки: varint длины в байтах UTF-8 + байты.
+public class BinaryTelemetryCodec implements TelemetryCodec {
+    public static final MediaType MEDIA_TYPE = MediaType.get("application/x-mtc-telemetry");
+
+    private static final int MAGIC = 0xB7;
+    private static final int VERSION = 1;
+    private static final int FRAME_COMMAND = 1;
+    private static final int FRAME_TELEMETRY = 2;
+    private static final int FRAME_COMMAND_BATCH = 3;
+
+    private static final int VALUE_NULL = 0;
+    private static final int VALUE_FALSE = 1;
+    private static final int VALUE_TRUE = 2;
+    private static final int VALUE_LONG = 3;
+    private static final int VALUE_DOUBLE = 4;
+    private static final int VALUE_STRING = 5;
+
+    // Вид значения в записи телеметрии (младшие 2 бита заголовка)
+    private static final int KIND_VARINT = 0;
+    private static final int KIND_FLOAT = 1;
+    private static final int KIND_DOUBLE = 2;
+
+    private static final int MAX_STRING_BYTES = 64 * 1024;
+    private static final int MAX_RECORDS = 1 << 20;
+    private static final int MAX_COMMANDS = 64 * 1024;
+
+    // Номер параметра = индекс + 1. Список только дополняется, порядок менять нельзя.
+    private static final String[] KNOWN_PARAMETERS = {
+            "temperature",
+            "humidity",
+            "water_level",
+            "power",
+            "voltage",
+            "co2",
+            "gas",
+            "signal_strength",
+            "current",
+            "total_energy"
+    };
+
+    @Override
+    public MediaType getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public void encodeCommand(DeviceCommand command, BufferedSink sink) throws IOException {
+        writeHeader(sink, FRAME_COMMAND);
+        writeCommandBody(command, sink);
+    }
+
+    @Override
+    public DeviceCommand decodeCommand(BufferedSource source) throws IOException {
+        readHeader(source, FRAME_COMMAND);
+        return readCommandBody(source);
+    }
+
+    @Override
+    public void encodeCommands(List<DeviceCommand> commands, BufferedSink sink) throws IOException {
+        writeHeader(sink, FRAME_COMMAND_BATCH);
+        writeVarint(sink, commands.size());
+        for (DeviceCommand command : commands) {
+            writeCommandBody(command, sink);
+        }
+    }
+
+    @Override
+    public List<DeviceCommand> decodeCommands(BufferedSource source) throws IOException {
+        readHeader(source, FRAME_COMMAND_BATCH);
+        long count = readVarint(source);
+        if (count < 0 || count > MAX_COMMANDS) {
+            throw new ProtocolException("Bad command count " + count);
+        }
+        List<DeviceCommand> commands = new ArrayList<>((int) count);
+        for (int i = 0; i < count; i++) {
+            commands.add(readCommandBody(source));
+        }
+        return commands;
+    }
+
+    private static void writeCommandBody(DeviceCommand command, BufferedSink sink) throws IOException {
+        writeString(sink, command.deviceId);
+        writeString(sink, command.command);
+
+        Object value = command.value;
+        if (value == null) {
+            sink.writeByte(VALUE_NULL);
+        } else if (value instanceof Boolean) {
+            sink.writeByte((Boolean) value ? VALUE_TRUE : VALUE_FALSE);
+        } else if (value instanceof Long) {
+            sink.writeByte(VALUE_LONG);
+            writeVarint(sink, zigZag((Long) value));
+        } else if (value instanceof Double) {
+            sink.writeByte(VALUE_DOUBLE);
+            sink.writeLongLe(Double.doubleToLongBits((Double) value));
+        } else {
+            sink.writeByte(VALUE_STRING);
+            writeString(sink, value.toString());
+        }
+    }
+
+    private static DeviceCommand readCommandBody(BufferedSource source) throws IOException {
+        String deviceId = readString(source);
+        String command = readString(source);
+
+        Object value;
+        int tag = source.readByte() & 0xFF;
+        switch (tag) {
+            case VALUE_NULL:
+                value = null;
+                break;
+            case VALUE_FALSE:
+                value = Boolean.FALSE;
+                break;
+            case VALUE_TRUE:
+                value = Boolean.TRUE;
+                break;
+            case VALUE_LONG:
+                value = unZigZag(readVarint(source));
+                break;
+            case VALUE_DOUBLE:
+                value = Double.longBitsToDouble(source.readLongLe());
+                break;
+            case VALUE_STRING:
+                value = readString(source);
+                break;
+            default:
+                throw new ProtocolException("Unknown value tag " + tag);
+        }
+        return new DeviceCommand(deviceId, command, value);
+    }
+
+    @Override
+    public void encodeTelemetry(SensorRecordBatch batch, BufferedSink sink) throws IOException {
+        writeHeader(sink, FRAME_TELEMETRY);
+        writeString(sink, batch.getDeviceId() != null ? batch.getDeviceId() : "");
+
+        int count = batch.size();
+        writeVarint(sink, count);
+        long previousTimestamp = count > 0 ? batch.getTimestamp(0) : 0;
+        writeVarint(sink, zigZag(previousTimestamp));
+
+        for (int i = 0; i < count; i++) {
+            String parameter = batch.getParameter(i);
+            double value = batch.getValue(i);
+            int code = parameterCode(parameter);
+            int kind = valueKind(value);
+
+            writeVarint(sink, ((long) code << 2) | kind);
+            if (code == 0) {
+                writeString(sink, parameter);
+            }
+
+            long timestamp = batch.getTimestamp(i);
+            writeVarint(sink, zigZag(timestamp - previousTimestamp));
+            previousTimestamp = timestamp;
+
+            switch (kind) {
+                case KIND_VARINT:
+                    writeVarint(sink, zigZag((long) value));
+                    break;
+                case KIND_FLOAT:
+                    sink.writeIntLe(Float.floatToIntBits((float) value));
+                    break;
+                default:
+                    sink.writeLongLe(Double.doubleToLongBits(value));
+                    break;
+            }
+        }
+    }
+
+    @Override
+    public int decodeTelemetry(BufferedSource source, SensorRecordBatch into) throws IOException {
+        readHeader(source, FRAME_TELEMETRY);
+        String deviceId = readString(source);
+        if (into.getDeviceId() == null) {
+            into.setDeviceId(deviceId);
+        }
+
+        long count = readVarint(source);
+        if (count < 0 || count > MAX_RECORDS) {
+            throw new ProtocolException("Bad record count " + count);
+        }
+        long timestamp = unZigZag(readVarint(source));
+
+        for (int i = 0; i < count; i++) {
+            long header = readVarint(source);
+            int kind = (int) (header & 0x3);
+            long code = header >>> 2;
+
+            String parameter;
+            if (code == 0) {
+                parameter = readString(source);
+            } else if (code <= KNOWN_PARAMETERS.length) {
+                parameter = KNOWN_PARAMETERS[(int) code - 1];
+            } else {
+                throw new ProtocolException("Unknown parameter code " + code);
+            }
+
+            timestamp += unZigZag(readVarint(source));
+
+            double value;
+            switch (kind) {
+                case KIND_VARINT:
+                    value = unZigZag(readVarint(source));
+                    break;
+                case KIND_FLOAT:
+                    value = Float.intBitsToFloat(source.readIntLe());
+                    break;
+                case KIND_DOUBLE:
+                    value = Double.longBitsToDouble(source.readLongLe());
+                    break;
+                default:
+                    throw new ProtocolException("Unknown value kind " + kind);
+            }
+            into.add(parameter, timestamp, value);
+        }
+        return (int) count;
+    }
+
+    private static int parameterCode(String parameter) {
+        for (int i = 0; i < KNOWN_PARAMETERS.length; i++) {
+            if (KNOWN_PARAMETERS[i].equals(parameter)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    // Целые значения идут как varint, значения без потерь во float - 4 байтами, остальные - 8
+    private static int valueKind(double value) {
+        if (value == Math.rint(value) && Math.abs(value) < (1L << 53)
+                && !(value == 0 && Double.doubleToRawLongBits(value) != 0)) {
+            return KIND_VARINT;
+        }
+        if ((double) (float) value == value || Double.isNaN(value)) {
+            return KIND_FLOAT;
+        }
+        return KIND_DOUBLE;
+    }
+
+    private static void writeHeader(BufferedSink sink, int frameType) throws IOException {
+        sink.writeByte(MAGIC);
+        sink.writeByte(VERSION);
+        sink.writeByte(frameType);
+    }
+
+    private static void readHeader(BufferedSource source, int expectedType) throws IOException {
+        int magic = source.readByte() & 0xFF;
+        int version = source.readByte() & 0xFF;
+        int frameType = source.readByte() & 0xFF;
+        if (magic != MAGIC || version != VERSION) {
+            throw new ProtocolException("Not a telemetry frame");
+        }
+        if (frameType != expectedType) {
+            throw new ProtocolException("Unexpected frame type " + frameType);
+        }
+    }
+
+    private static void writeString(BufferedSink sink, String value) throws IOException {
+        writeVarint(sink, Utf8.size(value));
+        sink.writeUtf8(value);
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        long length = readVarint(source);
+        if (length < 0 || length > MAX_STRING_BYTES) {
+            throw new ProtocolException("Bad string length " + length);
+        }
+        return source.readUtf8(length);
+    }
+
+    static void writeVarint(BufferedSink sink, long value) throws IOException {
+        while ((value & ~0x7FL) != 0) {
+            sink.writeByte((int) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        sink.writeByte((int) value);
+    }
+
+    static long readVarint(BufferedSource source) throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            byte b = source.readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,28 @@
+package ry.tech.mtc.codec;
+
+// Команда устройству в том виде, в котором она уходит по сети.
+// value - Boolean, Long, Double или String; остальные типы передаются строкой.
+public class DeviceCommand {
+    public final String deviceId;
+    public final String command;
+    public final Object value;
+
+    public DeviceCommand(String deviceId, String command, Object value) {
+        this.deviceId = deviceId;
+        this.command = command;
+        this.value = normalizeValue(value);
+    }
+
+    private static Object normalizeValue(Object value) {
+        if (value == null || value instanceof Boolean || value instanceof String) {
+            return value;
+        }
+        if (value instanceof Double || value instanceof Float) {
+            return ((Number) value).doubleValue();
+        }
+        if (value instanceof Number) {
+            return ((Number) value).longValue();
+        }
+        return value.toString();
+    }
+}
@@ -0,0 +1,194 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+import ry.tech.mtc.models.Device;
+
+// Device <-> JSON без рефлексии. Целые параметры остаются Integer/Long, дробные - Double,
+// чтобы значения после чтения совпадали с теми, что кладет initializeDefaultParameters.
+public class DeviceTypeAdapter extends TypeAdapter<Device> {
+
+    @Override
+    public void write(JsonWriter out, Device device) throws IOException {
+        if (device == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(device.getId());
+        out.name("name").value(device.getName());
+        out.name("type").value(device.getType());
+        if (device.getRoom() != null) {
+            out.name("room").value(device.getRoom());
+        }
+        out.name("isOnline").value(device.isOnline());
+        out.name("isOn").value(device.isOn());
+        out.name("lastUpdateTime").value(device.getLastUpdateTime());
+
+        out.name("parameters");
+        writeValues(out, device.getAllParameters());
+
+        out.name("parameterUnits").beginObject();
+        for (Map.Entry<String, String> entry : device.getAllParameterUnits().entrySet()) {
+            out.name(entry.getKey()).value(entry.getValue());
+        }
+        out.endObject();
+        out.endObject();
+    }
+
+    @Override
+    public Device read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        String name = null;
+        String type = null;
+        String room = null;
+        boolean isOnline = true;
+        boolean isOn = false;
+        long lastUpdateTime = 0;
+        Map<String, Object> parameters = null;
+        Map<String, String> parameterUnits = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            switch (in.nextName()) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "name":
+                    name = in.nextString();
+                    break;
+                case "type":
+                    type = in.nextString();
+                    break;
+                case "room":
+                    if (in.peek() == JsonToken.NULL) {
+                        in.nextNull();
+                    } else {
+                        room = in.nextString();
+                    }
+                    break;
+                case "isOnline":
+                    isOnline = in.nextBoolean();
+                    break;
+                case "isOn":
+                    isOn = in.nextBoolean();
+                    break;
+                case "lastUpdateTime":
+                    lastUpdateTime = in.nextLong();
+                    break;
+                case "parameters":
+                    parameters = readValues(in);
+                    break;
+                case "parameterUnits":
+                    parameterUnits = new HashMap<>();
+                    in.beginObject();
+                    while (in.hasNext()) {
+                        String key = in.nextName();
+                        if (in.peek() == JsonToken.NULL) {
+                            in.nextNull();
+                        } else {
+                            parameterUnits.put(key, in.nextString());
+                        }
+                    }
+                    in.endObject();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+
+        if (id == null || type == null) {
+            throw new IOException("Device without id or type at " + in.getPath());
+        }
+        Device device = new Device(id, name, type, isOnline, isOn, parameters, parameterUnits, lastUpdateTime);
+        device.setRoom(room);
+        return device;
+    }
+
+    // Карта значений параметров или показаний: объект JSON с сохранением Integer/Long/Double
+    public static void writeValues(JsonWriter out, Map<String, Object> values) throws IOException {
+        out.beginObject();
+        for (Map.Entry<String, Object> entry : values.entrySet()) {
+            out.name(entry.getKey());
+            writeValue(out, entry.getValue());
+        }
+        out.endObject();
+    }
+
+    public static Map<String, Object> readValues(JsonReader in) throws IOException {
+        Map<String, Object> values = new HashMap<>();
+        in.beginObject();
+        while (in.hasNext()) {
+            String key = in.nextName();
+            values.put(key, readValue(in));
+        }
+        in.endObject();
+        return values;
+    }
+
+    static void writeValue(JsonWriter out, Object value) throws IOException {
+        if (value == null) {
+            out.nullValue();
+        } else if (value instanceof Boolean) {
+            out.value((Boolean) value);
+        } else if (value instanceof Number) {
+            out.value((Number) value);
+        } else {
+            out.value(value.toString());
+        }
+    }
+
+    static Object readValue(JsonReader in) throws IOException {
+        switch (in.peek()) {
+            case NULL:
+                in.nextNull();
+                return null;
+            case BOOLEAN:
+                return in.nextBoolean();
+            case NUMBER:
+                return parseNumber(in.nextString());
+            case STRING:
+                return in.nextString();
+            default:
+                in.skipValue();
+                return null;
+        }
+    }
+
+    private static Object parseNumber(String number) {
+        boolean integral = true;
+        for (int i = 0; i < number.length(); i++) {
+            char c = number.charAt(i);
+            if (c == '.' || c == 'e' || c == 'E' || c == 'N' || c == 'I') {
+                integral = false;
+                break;
+            }
+        }
+        if (integral) {
+            try {
+                long value = Long.parseLong(number);
+                if (value >= Integer.MIN_VALUE && value <= Integer.MAX_VALUE) {
+                    return (int) value;
+                }
+                return value;
+            } catch (NumberFormatException ignored) {
+                // Не помещается в long - читаем как double
+            }
+        }
+        return Double.parseDouble(number);
+    }
+}
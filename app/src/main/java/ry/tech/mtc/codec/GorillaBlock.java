@@ -0,0 +1,257 @@
+package ry.tech.mtc.codec;
+
+import java.util.Arrays;
+
+// Сжатый неизменяемый блок ряда (время в мс, double) в формате Gorilla (Pelkonen et al., VLDB 2015).
+//
+// Время: первая метка - 64 бита, далее delta-of-delta с префиксным кодом:
+//   '0' - ноль; '10' + 7 бит; '110' + 9 бит; '1110' + 12 бит; '1111' + 64 бита
+//   (для первой точки после начальной предыдущая дельта считается нулевой).
+// Значения: первое - 64 бита, далее XOR с предыдущим:
+//   '0' - совпадает; '10' + значащие биты в окне предыдущего XOR;
+//   '11' + 5 бит числа ведущих нулей + 6 бит (длина - 1) + значащие биты.
+// Блок собирается Builder-ом и после seal() не меняется; читается потоково через Cursor
+// без распаковки в массивы.
+public final class GorillaBlock {
+    private static final int MAX_LEADING_ZEROS = 31;
+
+    private final long[] words;
+    private final int bitLength;
+    private final int count;
+    private final long firstTime;
+    private final long lastTime;
+
+    private GorillaBlock(long[] words, int bitLength, int count, long firstTime, long lastTime) {
+        this.words = words;
+        this.bitLength = bitLength;
+        this.count = count;
+        this.firstTime = firstTime;
+        this.lastTime = lastTime;
+    }
+
+    public int getCount() {
+        return count;
+    }
+
+    public long getFirstTime() {
+        return firstTime;
+    }
+
+    public long getLastTime() {
+        return lastTime;
+    }
+
+    public int getBitLength() {
+        return bitLength;
+    }
+
+    // Занимаемая сжатыми данными память без заголовка объекта
+    public int getSizeBytes() {
+        return words.length * 8;
+    }
+
+    public Cursor cursor() {
+        return new Cursor(this);
+    }
+
+    // Накопитель открытого блока; используется одним писателем
+    public static class Builder {
+        private final int maxCount;
+        private long[] words = new long[16];
+        private int bitLength;
+        private int count;
+        private long firstTime;
+        private long lastTime;
+        private long lastDelta;
+        private long lastValueBits;
+        private int lastLeadingZeros = -1;
+        private int lastTrailingZeros;
+
+        public Builder(int maxCount) {
+            if (maxCount <= 0) {
+                throw new IllegalArgumentException("Block size must be positive: " + maxCount);
+            }
+            this.maxCount = maxCount;
+        }
+
+        // false - блок заполнен или время не возрастает; точку нужно писать в новый блок или отбросить
+        public boolean append(long timeMs, double value) {
+            if (count == maxCount || (count > 0 && timeMs <= lastTime)) {
+                return false;
+            }
+            long valueBits = Double.doubleToRawLongBits(value);
+            if (count == 0) {
+                writeBits(timeMs, 64);
+                writeBits(valueBits, 64);
+                firstTime = timeMs;
+            } else {
+                long delta = timeMs - lastTime;
+                writeTimestamp(delta - lastDelta);
+                writeValue(valueBits ^ lastValueBits);
+                lastDelta = delta;
+            }
+            lastTime = timeMs;
+            lastValueBits = valueBits;
+            count++;
+            return true;
+        }
+
+        public int getCount() {
+            return count;
+        }
+
+        public boolean isFull() {
+            return count == maxCount;
+        }
+
+        public long getLastTime() {
+            return lastTime;
+        }
+
+        public int getSizeBytes() {
+            return ((bitLength + 63) >>> 6) * 8;
+        }
+
+        // Копия накопленных данных; сам Builder можно продолжать заполнять
+        public GorillaBlock seal() {
+            long[] sealed = Arrays.copyOf(words, (bitLength + 63) >>> 6);
+            return new GorillaBlock(sealed, bitLength, count, firstTime, lastTime);
+        }
+
+        private void writeTimestamp(long deltaOfDelta) {
+            if (deltaOfDelta == 0) {
+                writeBits(0, 1);
+            } else if (deltaOfDelta >= -64 && deltaOfDelta <= 63) {
+                writeBits(0b10, 2);
+                writeBits(deltaOfDelta, 7);
+            } else if (deltaOfDelta >= -256 && deltaOfDelta <= 255) {
+                writeBits(0b110, 3);
+                writeBits(deltaOfDelta, 9);
+            } else if (deltaOfDelta >= -2048 && deltaOfDelta <= 2047) {
+                writeBits(0b1110, 4);
+                writeBits(deltaOfDelta, 12);
+            } else {
+                // Длинные разрывы (устройство было не в сети) редки, поэтому пишутся полными 64 битами
+                writeBits(0b1111, 4);
+                writeBits(deltaOfDelta, 64);
+            }
+        }
+
+        private void writeValue(long xor) {
+            if (xor == 0) {
+                writeBits(0, 1);
+                return;
+            }
+            int leadingZeros = Math.min(Long.numberOfLeadingZeros(xor), MAX_LEADING_ZEROS);
+            int trailingZeros = Long.numberOfTrailingZeros(xor);
+            if (lastLeadingZeros >= 0 && leadingZeros >= lastLeadingZeros && trailingZeros >= lastTrailingZeros) {
+                int significantBits = 64 - lastLeadingZeros - lastTrailingZeros;
+                writeBits(0b10, 2);
+                writeBits(xor >>> lastTrailingZeros, significantBits);
+            } else {
+                int significantBits = 64 - leadingZeros - trailingZeros;
+                writeBits(0b11, 2);
+                writeBits(leadingZeros, 5);
+                writeBits(significantBits - 1, 6);
+                writeBits(xor >>> trailingZeros, significantBits);
+                lastLeadingZeros = leadingZeros;
+                lastTrailingZeros = trailingZeros;
+            }
+        }
+
+        // Младшие bits бит значения, старший бит первым
+        private void writeBits(long value, int bits) {
+            if (bitLength + bits > words.length * 64) {
+                words = Arrays.copyOf(words, words.length * 2);
+            }
+            int offset = bitLength & 63;
+            int index = bitLength >>> 6;
+            long masked = bits == 64 ? value : value & ((1L << bits) - 1);
+            int free = 64 - offset;
+            if (bits <= free) {
+                words[index] |= masked << (free - bits);
+            } else {
+                words[index] |= masked >>> (bits - free);
+                words[index + 1] |= masked << (64 - (bits - free));
+            }
+            bitLength += bits;
+        }
+    }
+
+    // Последовательное чтение блока: while (cursor.next()) { cursor.getTime(); cursor.getValue(); }
+    public static class Cursor {
+        private final GorillaBlock block;
+        private int position;
+        private int index;
+        private long time;
+        private long delta;
+        private long valueBits;
+        private int leadingZeros;
+        private int trailingZeros;
+
+        Cursor(GorillaBlock block) {
+            this.block = block;
+        }
+
+        public boolean next() {
+            if (index == block.count) return false;
+            if (index == 0) {
+                time = readBits(64);
+                valueBits = readBits(64);
+            } else {
+                delta += readTimestamp();
+                time += delta;
+                readValue();
+            }
+            index++;
+            return true;
+        }
+
+        public long getTime() {
+            return time;
+        }
+
+        public double getValue() {
+            return Double.longBitsToDouble(valueBits);
+        }
+
+        private long readTimestamp() {
+            if (readBits(1) == 0) return 0;
+            if (readBits(1) == 0) return readSigned(7);
+            if (readBits(1) == 0) return readSigned(9);
+            if (readBits(1) == 0) return readSigned(12);
+            return readBits(64);
+        }
+
+        private void readValue() {
+            if (readBits(1) == 0) return;
+            if (readBits(1) == 1) {
+                leadingZeros = (int) readBits(5);
+                int significantBits = (int) readBits(6) + 1;
+                trailingZeros = 64 - leadingZeros - significantBits;
+            }
+            int significantBits = 64 - leadingZeros - trailingZeros;
+            valueBits ^= readBits(significantBits) << trailingZeros;
+        }
+
+        private long readSigned(int bits) {
+            long value = readBits(bits);
+            return (value << (64 - bits)) >> (64 - bits);
+        }
+
+        private long readBits(int bits) {
+            long[] words = block.words;
+            int offset = position & 63;
+            int wordIndex = position >>> 6;
+            int available = 64 - offset;
+            long value;
+            if (bits <= available) {
+                value = words[wordIndex] >>> (available - bits);
+            } else {
+                value = (words[wordIndex] << (bits - available)) | (words[wordIndex + 1] >>> (64 - (bits - available)));
+            }
+            position += bits;
+            return bits == 64 ? value : value & ((1L << bits) - 1);
+        }
+    }
+}
@@ -0,0 +1,64 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+
+import java.io.IOException;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.function.Consumer;
+
+import ry.tech.mtc.auth.UserManager;
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.models.SensorData;
+import ry.tech.mtc.sensors.SensorNotificationManager;
+
+// Общий на процесс Gson с ручными потоковыми адаптерами для всех сохраняемых и передаваемых моделей.
+// Gson потокобезопасен; создается один раз при первом обращении.
+public final class JsonAdapters {
+    public static final Type USER_MAP_TYPE = new TypeToken<Map<String, UserManager.User>>() {}.getType();
+
+    private static final class Holder {
+        static final Gson GSON = new GsonBuilder()
+                .registerTypeAdapter(Device.class, new DeviceTypeAdapter().nullSafe())
+                .registerTypeAdapter(UserManager.User.class, new UserTypeAdapter().nullSafe())
+                .registerTypeAdapter(SensorData.class, new SensorDataTypeAdapter().nullSafe())
+                .registerTypeAdapter(SensorNotificationManager.AlertHistory.class,
+                        new AlertHistoryTypeAdapter().nullSafe())
+                .registerTypeAdapter(SensorRecordBatch.class, SensorRecordBatchTypeAdapter.INSTANCE.nullSafe())
+                .disableHtmlEscaping()
+                .serializeSpecialFloatingPointValues()
+                .create();
+    }
+
+    private JsonAdapters() {
+    }
+
+    public static Gson getGson() {
+        return Holder.GSON;
+    }
+
+    // Большие массивы читаются по одному элементу: весь список в памяти не собирается
+    public static <T> int readArray(JsonReader reader, Class<T> type, Consumer<T> consumer) throws IOException {
+        TypeAdapter<T> adapter = getGson().getAdapter(type);
+        int count = 0;
+        if (reader.peek() == JsonToken.NULL) {
+            reader.nextNull();
+            return 0;
+        }
+        reader.beginArray();
+        while (reader.hasNext()) {
+            T item = adapter.read(reader);
+            if (item != null) {
+                consumer.accept(item);
+                count++;
+            }
+        }
+        reader.endArray();
+        return count;
+    }
+}
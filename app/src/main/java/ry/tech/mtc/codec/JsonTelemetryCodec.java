@@ -0,0 +1,127 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+// JSON-формат для серверов без поддержки двоичного протокола.
+// Команды пишутся в прежнем виде ({"deviceId", "command", "value" строкой}),
+// телеметрия и статус - через SensorRecordBatchTypeAdapter.
+// Чтение и запись потоковые, без промежуточной строки и JsonObject.
+public class JsonTelemetryCodec implements TelemetryCodec {
+    public static final MediaType MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
+
+    @Override
+    public MediaType getMediaType() {
+        return MEDIA_TYPE;
+    }
+
+    @Override
+    public void encodeCommand(DeviceCommand command, BufferedSink sink) throws IOException {
+        JsonWriter writer = newWriter(sink);
+        writeCommand(writer, command);
+        writer.flush();
+    }
+
+    @Override
+    public DeviceCommand decodeCommand(BufferedSource source) throws IOException {
+        return readCommand(newReader(source));
+    }
+
+    @Override
+    public void encodeCommands(List<DeviceCommand> commands, BufferedSink sink) throws IOException {
+        JsonWriter writer = newWriter(sink);
+        writer.beginArray();
+        for (DeviceCommand command : commands) {
+            writeCommand(writer, command);
+        }
+        writer.endArray();
+        writer.flush();
+    }
+
+    @Override
+    public List<DeviceCommand> decodeCommands(BufferedSource source) throws IOException {
+        JsonReader reader = newReader(source);
+        List<DeviceCommand> commands = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            commands.add(readCommand(reader));
+        }
+        reader.endArray();
+        return commands;
+    }
+
+    @Override
+    public void encodeTelemetry(SensorRecordBatch batch, BufferedSink sink) throws IOException {
+        JsonWriter writer = newWriter(sink);
+        SensorRecordBatchTypeAdapter.INSTANCE.write(writer, batch);
+        writer.flush();
+    }
+
+    @Override
+    public int decodeTelemetry(BufferedSource source, SensorRecordBatch into) throws IOException {
+        return SensorRecordBatchTypeAdapter.INSTANCE.readInto(newReader(source), into);
+    }
+
+    private static void writeCommand(JsonWriter writer, DeviceCommand command) throws IOException {
+        writer.beginObject();
+        writer.name("deviceId").value(command.deviceId);
+        writer.name("command").value(command.command);
+        writer.name("value").value(command.value != null ? command.value.toString() : null);
+        writer.endObject();
+    }
+
+    private static DeviceCommand readCommand(JsonReader reader) throws IOException {
+        String deviceId = null;
+        String command = null;
+        Object value = null;
+
+        reader.beginObject();
+        while (reader.hasNext()) {
+            switch (reader.nextName()) {
+                case "deviceId":
+                    deviceId = reader.nextString();
+                    break;
+                case "command":
+                    command = reader.nextString();
+                    break;
+                case "value":
+                    value = DeviceTypeAdapter.readValue(reader);
+                    break;
+                default:
+                    reader.skipValue();
+                    break;
+            }
+        }
+        reader.endObject();
+
+        if (deviceId == null || command == null) {
+            throw new ProtocolException("Command without deviceId or command");
+        }
+        return new DeviceCommand(deviceId, command, value);
+    }
+
+    private static JsonWriter newWriter(BufferedSink sink) {
+        JsonWriter writer = new JsonWriter(new OutputStreamWriter(sink.outputStream(), StandardCharsets.UTF_8));
+        writer.setLenient(true);
+        return writer;
+    }
+
+    private static JsonReader newReader(BufferedSource source) {
+        // Lenient в обе стороны: NaN допустим для отсутствующих показаний
+        JsonReader reader = new JsonReader(new InputStreamReader(source.inputStream(), StandardCharsets.UTF_8));
+        reader.setLenient(true);
+        return reader;
+    }
+}
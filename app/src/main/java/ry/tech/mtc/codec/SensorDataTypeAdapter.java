@@ -0,0 +1,73 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import ry.tech.mtc.models.SensorData;
+
+public class SensorDataTypeAdapter extends TypeAdapter<SensorData> {
+
+    @Override
+    public void write(JsonWriter out, SensorData data) throws IOException {
+        if (data == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("sensorId").value(data.getSensorId());
+        out.name("type").value(data.getType());
+        out.name("value").value(data.getValue());
+        out.name("unit").value(data.getUnit());
+        out.name("timestamp").value(data.getTimestamp());
+        out.endObject();
+    }
+
+    @Override
+    public SensorData read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String sensorId = null;
+        String type = null;
+        double value = Double.NaN;
+        String unit = null;
+        long timestamp = 0;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "sensorId":
+                    sensorId = in.nextString();
+                    break;
+                case "type":
+                    type = in.nextString();
+                    break;
+                case "value":
+                    value = in.nextDouble();
+                    break;
+                case "unit":
+                    unit = in.nextString();
+                    break;
+                case "timestamp":
+                    timestamp = in.nextLong();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new SensorData(sensorId, type, value, unit, timestamp);
+    }
+}
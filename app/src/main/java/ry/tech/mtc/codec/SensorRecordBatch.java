@@ -0,0 +1,73 @@
+package ry.tech.mtc.codec;
+
+import java.util.Arrays;
+
+// Пакет показаний одного устройства в примитивных массивах.
+// Объект переиспользуется: clear() сбрасывает размер, массивы остаются.
+public class SensorRecordBatch {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    private String deviceId;
+    private String[] parameters;
+    private long[] timestamps;
+    private double[] values;
+    private int size;
+
+    public SensorRecordBatch() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SensorRecordBatch(int capacity) {
+        int initial = Math.max(1, capacity);
+        parameters = new String[initial];
+        timestamps = new long[initial];
+        values = new double[initial];
+    }
+
+    public void clear() {
+        Arrays.fill(parameters, 0, size, null);
+        size = 0;
+        deviceId = null;
+    }
+
+    public void setDeviceId(String deviceId) {
+        this.deviceId = deviceId;
+    }
+
+    public String getDeviceId() {
+        return deviceId;
+    }
+
+    public void add(String parameter, long timestamp, double value) {
+        if (size == values.length) {
+            int newCapacity = size * 2;
+            parameters = Arrays.copyOf(parameters, newCapacity);
+            timestamps = Arrays.copyOf(timestamps, newCapacity);
+            values = Arrays.copyOf(values, newCapacity);
+        }
+        parameters[size] = parameter;
+        timestamps[size] = timestamp;
+        values[size] = value;
+        size++;
+    }
+
+    void setTimestamp(int index, long timestamp) {
+        timestamps[index] = timestamp;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getParameter(int index) {
+        return parameters[index];
+    }
+
+    public long getTimestamp(int index) {
+        return timestamps[index];
+    }
+
+    public double getValue(int index) {
+        return values[index];
+    }
+}
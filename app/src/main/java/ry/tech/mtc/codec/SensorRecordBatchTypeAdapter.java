@@ -0,0 +1,118 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+// Пакет телеметрии / статус устройства:
+//   {"deviceId": "6", "records": [{"parameter": "power", "timestamp": ..., "value": ...}, ...]}
+// Плоский объект статуса ({"temperature": 22.5, "timestamp": ...}) тоже читается:
+// каждое числовое поле становится записью с общим временем.
+public class SensorRecordBatchTypeAdapter extends TypeAdapter<SensorRecordBatch> {
+    public static final SensorRecordBatchTypeAdapter INSTANCE = new SensorRecordBatchTypeAdapter();
+
+    @Override
+    public void write(JsonWriter out, SensorRecordBatch batch) throws IOException {
+        if (batch == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("deviceId").value(batch.getDeviceId());
+        out.name("records").beginArray();
+        for (int i = 0; i < batch.size(); i++) {
+            out.beginObject();
+            out.name("parameter").value(batch.getParameter(i));
+            out.name("timestamp").value(batch.getTimestamp(i));
+            out.name("value").value(batch.getValue(i));
+            out.endObject();
+        }
+        out.endArray();
+        out.endObject();
+    }
+
+    @Override
+    public SensorRecordBatch read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+        SensorRecordBatch batch = new SensorRecordBatch();
+        readInto(in, batch);
+        return batch;
+    }
+
+    // Дописывает записи в существующий пакет; возвращает число прочитанных записей
+    public int readInto(JsonReader in, SensorRecordBatch into) throws IOException {
+        int start = into.size();
+        int flatStart = -1;
+        long flatTimestamp = System.currentTimeMillis();
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if ("deviceId".equals(name) && in.peek() == JsonToken.STRING) {
+                String deviceId = in.nextString();
+                if (into.getDeviceId() == null) {
+                    into.setDeviceId(deviceId);
+                }
+            } else if ("records".equals(name) && in.peek() == JsonToken.BEGIN_ARRAY) {
+                readRecords(in, into);
+            } else if ("timestamp".equals(name) && in.peek() == JsonToken.NUMBER) {
+                flatTimestamp = in.nextLong();
+            } else if (in.peek() == JsonToken.NUMBER) {
+                // Плоский статус: время проставляется после чтения всего объекта
+                if (flatStart < 0) {
+                    flatStart = into.size();
+                }
+                into.add(name, 0, in.nextDouble());
+            } else {
+                in.skipValue();
+            }
+        }
+        in.endObject();
+
+        if (flatStart >= 0) {
+            for (int i = flatStart; i < into.size(); i++) {
+                into.setTimestamp(i, flatTimestamp);
+            }
+        }
+        return into.size() - start;
+    }
+
+    private static void readRecords(JsonReader in, SensorRecordBatch into) throws IOException {
+        in.beginArray();
+        while (in.hasNext()) {
+            String parameter = null;
+            long timestamp = 0;
+            double value = Double.NaN;
+
+            in.beginObject();
+            while (in.hasNext()) {
+                switch (in.nextName()) {
+                    case "parameter":
+                        parameter = in.nextString();
+                        break;
+                    case "timestamp":
+                        timestamp = in.nextLong();
+                        break;
+                    case "value":
+                        value = in.nextDouble();
+                        break;
+                    default:
+                        in.skipValue();
+                        break;
+                }
+            }
+            in.endObject();
+
+            if (parameter != null) {
+                into.add(parameter, timestamp, value);
+            }
+        }
+        in.endArray();
+    }
+}
@@ -0,0 +1,28 @@
+package ry.tech.mtc.codec;
+
+import java.io.IOException;
+import java.util.List;
+
+import okhttp3.MediaType;
+import okio.BufferedSink;
+import okio.BufferedSource;
+
+// Формат сообщений между приложением и сервером устройств.
+// Кодеки пишут и читают напрямую из okio-буферов, без промежуточных строк и DOM.
+public interface TelemetryCodec {
+    MediaType getMediaType();
+
+    void encodeCommand(DeviceCommand command, BufferedSink sink) throws IOException;
+
+    DeviceCommand decodeCommand(BufferedSource source) throws IOException;
+
+    // Несколько команд одним сообщением, порядок сохраняется
+    void encodeCommands(List<DeviceCommand> commands, BufferedSink sink) throws IOException;
+
+    List<DeviceCommand> decodeCommands(BufferedSource source) throws IOException;
+
+    void encodeTelemetry(SensorRecordBatch batch, BufferedSink sink) throws IOException;
+
+    // Показания дописываются в into; возвращает число прочитанных записей
+    int decodeTelemetry(BufferedSource source, SensorRecordBatch into) throws IOException;
+}
@@ -0,0 +1,69 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+
+import ry.tech.mtc.auth.UserManager;
+
+// Имена полей совпадают с теми, что писал рефлективный Gson, - сохраненные пользователи читаются как прежде
+public class UserTypeAdapter extends TypeAdapter<UserManager.User> {
+
+    @Override
+    public void write(JsonWriter out, UserManager.User user) throws IOException {
+        if (user == null) {
+            out.nullValue();
+            return;
+        }
+        out.beginObject();
+        out.name("id").value(user.getId());
+        out.name("username").value(user.getUsername());
+        out.name("passwordHash").value(user.getPasswordHash());
+        out.name("email").value(user.getEmail());
+        out.endObject();
+    }
+
+    @Override
+    public UserManager.User read(JsonReader in) throws IOException {
+        if (in.peek() == JsonToken.NULL) {
+            in.nextNull();
+            return null;
+        }
+
+        String id = null;
+        String username = null;
+        String passwordHash = null;
+        String email = null;
+
+        in.beginObject();
+        while (in.hasNext()) {
+            String name = in.nextName();
+            if (in.peek() == JsonToken.NULL) {
+                in.nextNull();
+                continue;
+            }
+            switch (name) {
+                case "id":
+                    id = in.nextString();
+                    break;
+                case "username":
+                    username = in.nextString();
+                    break;
+                case "passwordHash":
+                    passwordHash = in.nextString();
+                    break;
+                case "email":
+                    email = in.nextString();
+                    break;
+                default:
+                    in.skipValue();
+                    break;
+            }
+        }
+        in.endObject();
+        return new UserManager.User(id, username, passwordHash, email);
+    }
+}
@@ -0,0 +1,278 @@
+package ry.tech.mtc.controllers;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.Okio;
+import ry.tech.mtc.codec.BinaryTelemetryCodec;
+import ry.tech.mtc.codec.DeviceCommand;
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
+// Очередь исходящих команд с журналом на диске.
+//  - каждая команда сначала дописывается в журнал, затем отправляется пакетом;
+//  - новая команда тому же устройству с тем же именем заменяет еще не отправленную;
+//  - порядок команд одного устройства сохраняется, пакеты уходят строго по одному;
+//  - при ошибке пакет повторяется с экспоненциальной задержкой и случайным разбросом.
+// После успешной отправки журнал переписывается только с оставшимися командами.
+// Доставка "хотя бы один раз": после сбоя между отправкой и перезаписью журнала пакет уйдет повторно.
+public class CommandOutbox {
+    private static final int MAX_BATCH_SIZE = 50;
+    private static final long DEFAULT_FLUSH_DELAY_MS = 200;
+    private static final long DEFAULT_BASE_BACKOFF_MS = 1000;
+    private static final long DEFAULT_MAX_BACKOFF_MS = 5 * 60 * 1000L;
+    private static final int MAX_RECORD_BYTES = 64 * 1024;
+
+    private final File journalFile;
+    private final Transport transport;
+    private final long flushDelayMs;
+    private final long baseBackoffMs;
+    private final long maxBackoffMs;
+    private final BinaryTelemetryCodec codec = new BinaryTelemetryCodec();
+    private final Random random = new Random();
+    private final ScheduledExecutorService executor;
+    private final Counter retriesCounter = MetricsRegistry.getInstance().counter("outbox.retries");
+
+    // Ключ - устройство + команда; порядок вставки задает порядок отправки
+    private final LinkedHashMap<String, DeviceCommand> pending = new LinkedHashMap<>();
+    private BufferedSink journal;
+    private ScheduledFuture<?> scheduledFlush;
+    private int failedAttempts;
+    private long deliveredCount;
+    private boolean isClosed;
+
+    // Отправка пакета; исключение означает, что пакет нужно повторить целиком
+    public interface Transport {
+        void send(List<DeviceCommand> batch) throws IOException;
+    }
+
+    public CommandOutbox(File journalFile, Transport transport) throws IOException {
+        this(journalFile, transport, DEFAULT_FLUSH_DELAY_MS, DEFAULT_BASE_BACKOFF_MS, DEFAULT_MAX_BACKOFF_MS);
+    }
+
+    public CommandOutbox(File journalFile, Transport transport, long flushDelayMs,
+                         long baseBackoffMs, long maxBackoffMs) throws IOException {
+        this.journalFile = journalFile;
+        this.transport = transport;
+        this.flushDelayMs = flushDelayMs;
+        this.baseBackoffMs = baseBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "CommandOutbox");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        synchronized (this) {
+            loadJournal();
+            rewriteJournal();
+            if (!pending.isEmpty()) {
+                scheduleFlush(0);
+            }
+        }
+    }
+
+    public synchronized void enqueue(DeviceCommand command) {
+        if (isClosed) {
+            throw new IllegalStateException("Outbox is closed");
+        }
+        String key = keyOf(command);
+        pending.remove(key);
+        pending.put(key, command);
+
+        try {
+            appendToJournal(command);
+        } catch (IOException e) {
+            // Команда остается в памяти и будет отправлена, но не переживет перезапуск процесса
+            e.printStackTrace();
+        }
+
+        if (scheduledFlush == null) {
+            scheduleFlush(flushDelayMs);
+        }
+    }
+
+    // Немедленная попытка, например при восстановлении сети; сбрасывает текущую задержку
+    public synchronized void flushNow() {
+        if (isClosed) return;
+        if (scheduledFlush != null) {
+            scheduledFlush.cancel(false);
+        }
+        scheduleFlush(0);
+    }
+
+    public synchronized int getPendingCount() {
+        return pending.size();
+    }
+
+    public synchronized List<DeviceCommand> getPendingCommands() {
+        return Collections.unmodifiableList(new ArrayList<>(pending.values()));
+    }
+
+    public synchronized int getFailedAttempts() {
+        return failedAttempts;
+    }
+
+    public synchronized long getDeliveredCount() {
+        return deliveredCount;
+    }
+
+    public void close() {
+        synchronized (this) {
+            if (isClosed) return;
+            isClosed = true;
+            if (scheduledFlush != null) {
+                scheduledFlush.cancel(false);
+                scheduledFlush = null;
+            }
+        }
+        executor.shutdown();
+        try {
+            executor.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (this) {
+            closeJournal();
+        }
+    }
+
+    private void scheduleFlush(long delayMs) {
+        scheduledFlush = executor.schedule(this::flush, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Выполняется в потоке очереди; сеть - вне блокировки
+    private void flush() {
+        List<DeviceCommand> batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            if (isClosed || pending.isEmpty()) return;
+            batch = new ArrayList<>(Math.min(pending.size(), MAX_BATCH_SIZE));
+            for (DeviceCommand command : pending.values()) {
+                batch.add(command);
+                if (batch.size() == MAX_BATCH_SIZE) break;
+            }
+        }
+
+        try {
+            transport.send(batch);
+        } catch (Exception e) {
+            synchronized (this) {
+                if (isClosed) return;
+                failedAttempts++;
+                retriesCounter.increment();
+                if (scheduledFlush == null) {
+                    scheduleFlush(backoffDelay(failedAttempts));
+                }
+            }
+            return;
+        }
+
+        synchronized (this) {
+            // Команды, замененные во время отправки, остаются в очереди
+            for (DeviceCommand command : batch) {
+                String key = keyOf(command);
+                if (pending.get(key) == command) {
+                    pending.remove(key);
+                }
+            }
+            deliveredCount += batch.size();
+            failedAttempts = 0;
+            try {
+                rewriteJournal();
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+            if (!isClosed && !pending.isEmpty() && scheduledFlush == null) {
+                scheduleFlush(0);
+            }
+        }
+    }
+
+    // Половина задержки фиксирована, половина случайна, чтобы клиенты не повторяли одновременно
+    private long backoffDelay(int attempt) {
+        int shift = Math.min(attempt - 1, 20);
+        long cap = Math.min(maxBackoffMs, baseBackoffMs << shift);
+        long half = Math.max(1, cap / 2);
+        return half + (long) (random.nextDouble() * half);
+    }
+
+    private static String keyOf(DeviceCommand command) {
+        return command.deviceId + '\u0000' + command.command;
+    }
+
+    // Запись журнала: длина кадра (4 байта) + кадр команды двоичного кодека
+    private void appendToJournal(DeviceCommand command) throws IOException {
+        if (journal == null) {
+            journal = Okio.buffer(Okio.appendingSink(journalFile));
+        }
+        Buffer frame = new Buffer();
+        codec.encodeCommand(command, frame);
+        journal.writeInt((int) frame.size());
+        journal.writeAll(frame);
+        journal.flush();
+    }
+
+    private void loadJournal() throws IOException {
+        if (!journalFile.exists()) return;
+        try (BufferedSource source = Okio.buffer(Okio.source(journalFile))) {
+            while (!source.exhausted()) {
+                int length = source.readInt();
+                if (length <= 0 || length > MAX_RECORD_BYTES) break;
+                Buffer frame = new Buffer();
+                source.readFully(frame, length);
+                DeviceCommand command = codec.decodeCommand(frame);
+                String key = keyOf(command);
+                pending.remove(key);
+                pending.put(key, command);
+            }
+        } catch (EOFException | ProtocolException e) {
+            // Оборванная или испорченная последняя запись (сбой во время записи) отбрасывается
+        }
+    }
+
+    // Атомарная замена: временный файл + rename
+    private void rewriteJournal() throws IOException {
+        closeJournal();
+        File tmp = new File(journalFile.getPath() + ".tmp");
+        try (BufferedSink sink = Okio.buffer(Okio.sink(tmp))) {
+            for (DeviceCommand command : pending.values()) {
+                Buffer frame = new Buffer();
+                codec.encodeCommand(command, frame);
+                sink.writeInt((int) frame.size());
+                sink.writeAll(frame);
+            }
+        }
+        if (!tmp.renameTo(journalFile)) {
+            journalFile.delete();
+            if (!tmp.renameTo(journalFile)) {
+                throw new IOException("Cannot replace " + journalFile);
+            }
+        }
+    }
+
+    private void closeJournal() {
+        if (journal != null) {
+            try {
+                journal.close();
+            } catch (IOException ignored) {
+                // Журнал будет перечитан при следующем открытии
+            }
+            journal = null;
+        }
+    }
+}
@@ -1,74 +1,269 @@
 package ry.tech.mtc.controllers;
 
+import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.stream.JsonReader;
 
 import java.io.IOException;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 import okhttp3.MediaType;
 import okhttp3.OkHttpClient;
 import okhttp3.Request;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okhttp3.ResponseBody;
+import okio.Buffer;
+import okio.BufferedSink;
+import ry.tech.mtc.codec.BinaryTelemetryCodec;
+import ry.tech.mtc.codec.DeviceCommand;
+import ry.tech.mtc.codec.JsonAdapters;
+import ry.tech.mtc.codec.JsonTelemetryCodec;
+import ry.tech.mtc.codec.SensorRecordBatch;
+import ry.tech.mtc.codec.TelemetryCodec;
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
 import ry.tech.mtc.models.Device;
 
 public class DeviceCommunicator {
     private static final String BASE_URL = "http://your-iot-server.com/api";
-    private static final MediaType JSON = MediaType.get("application/json; charset=utf-8");
+    private static final int HTTP_UNSUPPORTED_MEDIA_TYPE = 415;
     private final OkHttpClient client;
+    private final String baseUrl;
+
+    // Предпочтительный кодек и запасной JSON. Если сервер не принимает двоичный формат (415),
+    // коммуникатор переключается на JSON до конца жизни объекта.
+    private final TelemetryCodec binaryCodec = new BinaryTelemetryCodec();
+    private final TelemetryCodec jsonCodec = new JsonTelemetryCodec();
+    private volatile TelemetryCodec requestCodec;
+    private final String acceptHeader;
+    private volatile CommandOutbox outbox;
+
+    private final Counter requestsCounter = MetricsRegistry.getInstance().counter("comm.requests");
+    private final Counter failuresCounter = MetricsRegistry.getInstance().counter("comm.failures");
+    private final Counter bytesOutCounter = MetricsRegistry.getInstance().counter("comm.bytes_out");
+    private final LatencyHistogram requestLatency = MetricsRegistry.getInstance().histogram("comm.request");
 
     public DeviceCommunicator() {
-        client = new OkHttpClient.Builder()
+        this(new OkHttpClient.Builder()
                 .connectTimeout(10, TimeUnit.SECONDS)
                 .writeTimeout(10, TimeUnit.SECONDS)
                 .readTimeout(30, TimeUnit.SECONDS)
-                .build();
+                .build(), BASE_URL, true);
+    }
+
+    public DeviceCommunicator(OkHttpClient client, String baseUrl, boolean preferBinary) {
+        this.client = client;
+        this.baseUrl = baseUrl;
+        this.requestCodec = preferBinary ? binaryCodec : jsonCodec;
+        this.acceptHeader = preferBinary
+                ? BinaryTelemetryCodec.MEDIA_TYPE + ", application/json;q=0.5"
+                : "application/json";
+    }
+
+    // Тело запроса в выбранном кодеке
+    private interface BodyEncoder {
+        void encode(TelemetryCodec codec, BufferedSink sink) throws IOException;
+    }
+
+    // С подключенной очередью команды не теряются при ошибке сети: они журналируются
+    // и уходят пакетами с повторами. Без очереди - прежняя синхронная отправка.
+    public void setOutbox(CommandOutbox outbox) {
+        this.outbox = outbox;
+        if (outbox != null) {
+            MetricsRegistry.getInstance().gauge("outbox.pending", outbox::getPendingCount);
+        }
     }
 
     public void sendCommand(Device device, String command, Object value) {
+        DeviceCommand deviceCommand = new DeviceCommand(device.getId(), command, value);
+        CommandOutbox currentOutbox = outbox;
+        if (currentOutbox != null) {
+            currentOutbox.enqueue(deviceCommand);
+            return;
+        }
         try {
-            JsonObject jsonBody = new JsonObject();
-            jsonBody.addProperty("deviceId", device.getId());
-            jsonBody.addProperty("command", command);
-            jsonBody.addProperty("value", value.toString());
-
-            RequestBody body = RequestBody.create(jsonBody.toString(), JSON);
-            Request request = new Request.Builder()
-                    .url(BASE_URL + "/devices/" + device.getId() + "/command")
-                    .post(body)
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    throw new IOException("Unexpected code " + response);
-                }
-            }
+            post("/devices/" + device.getId() + "/command",
+                    (codec, sink) -> codec.encodeCommand(deviceCommand, sink));
         } catch (Exception e) {
             e.printStackTrace();
             // Обработка ошибок
         }
     }
 
+    // Пакет команд одним запросом; сервер применяет их по порядку
+    public void sendCommands(List<DeviceCommand> commands) throws IOException {
+        post("/commands/batch", (codec, sink) -> codec.encodeCommands(commands, sink));
+    }
+
+    // Отправка пакета показаний одним запросом
+    public void sendTelemetry(SensorRecordBatch batch) throws IOException {
+        post("/devices/" + batch.getDeviceId() + "/telemetry", (codec, sink) -> codec.encodeTelemetry(batch, sink));
+    }
+
+    // Чтение статуса сразу в примитивные записи; формат определяется по Content-Type ответа
+    public boolean receiveTelemetry(Device device, SensorRecordBatch into) {
+        try (Response response = execute(statusRequest(device))) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            ResponseBody body = response.body();
+            if (body == null) return false;
+            into.setDeviceId(device.getId());
+            codecFor(body.contentType()).decodeTelemetry(body.source(), into);
+            return true;
+        } catch (Exception e) {
+            e.printStackTrace();
+            return false;
+        }
+    }
+
     public JsonObject receiveData(Device device) {
-        try {
-            Request request = new Request.Builder()
-                    .url(BASE_URL + "/devices/" + device.getId() + "/status")
-                    .get()
-                    .build();
-
-            try (Response response = client.newCall(request).execute()) {
-                if (!response.isSuccessful()) {
-                    throw new IOException("Unexpected code " + response);
-                }
-
-                String responseData = response.body().string();
-                com.google.gson.JsonParser parser = new com.google.gson.JsonParser();
-                return parser.parse(responseData).getAsJsonObject();
+        try (Response response = execute(statusRequest(device))) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+
+            ResponseBody body = response.body();
+            if (body == null) {
+                return new JsonObject();
+            }
+            if (codecFor(body.contentType()) == binaryCodec) {
+                SensorRecordBatch batch = new SensorRecordBatch();
+                binaryCodec.decodeTelemetry(body.source(), batch);
+                return toStatusObject(batch);
             }
+
+            // Разбор прямо из потока ответа, без промежуточной строки
+            JsonElement element = JsonParser.parseReader(body.charStream());
+            return element.isJsonObject() ? element.getAsJsonObject() : new JsonObject();
         } catch (Exception e) {
             e.printStackTrace();
             // В случае ошибки возвращаем пустой объект
             return new JsonObject();
         }
     }
-}
\ No newline at end of file
+
+    // Полное состояние одного устройства; null, если сервер его не знает
+    public Device fetchDevice(String deviceId) throws IOException {
+        Request request = new Request.Builder()
+                .url(baseUrl + "/devices/" + deviceId)
+                .header("Accept", "application/json")
+                .get()
+                .build();
+        try (Response response = execute(request)) {
+            if (response.code() == 404) return null;
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            ResponseBody body = response.body();
+            if (body == null) return null;
+            return JsonAdapters.getGson().getAdapter(Device.class).read(new JsonReader(body.charStream()));
+        }
+    }
+
+    // Полная синхронизация списка устройств: массив читается из потока по одному устройству
+    public int receiveDevices(Consumer<Device> consumer) throws IOException {
+        Request request = new Request.Builder()
+                .url(baseUrl + "/devices")
+                .header("Accept", "application/json")
+                .get()
+                .build();
+        try (Response response = execute(request)) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+            ResponseBody body = response.body();
+            if (body == null) return 0;
+            JsonReader reader = new JsonReader(body.charStream());
+            return JsonAdapters.readArray(reader, Device.class, consumer);
+        }
+    }
+
+    public boolean isBinaryEnabled() {
+        return requestCodec == binaryCodec;
+    }
+
+    private void post(String path, BodyEncoder encoder) throws IOException {
+        TelemetryCodec codec = requestCodec;
+        try (Response response = execute(postRequest(path, codec, encoder))) {
+            if (response.isSuccessful()) return;
+            if (response.code() != HTTP_UNSUPPORTED_MEDIA_TYPE || codec == jsonCodec) {
+                throw new IOException("Unexpected code " + response);
+            }
+        }
+
+        // Сервер не знает двоичного формата: повторяем в JSON и больше не пробуем
+        requestCodec = jsonCodec;
+        try (Response response = execute(postRequest(path, jsonCodec, encoder))) {
+            if (!response.isSuccessful()) {
+                throw new IOException("Unexpected code " + response);
+            }
+        }
+    }
+
+    private Request postRequest(String path, TelemetryCodec codec, BodyEncoder encoder) throws IOException {
+        Buffer buffer = new Buffer();
+        encoder.encode(codec, buffer);
+        bytesOutCounter.add(buffer.size());
+        RequestBody body = RequestBody.create(buffer.readByteString(), codec.getMediaType());
+        return new Request.Builder()
+                .url(baseUrl + path)
+                .header("Accept", acceptHeader)
+                .post(body)
+                .build();
+    }
+
+    // Все запросы идут через этот метод: счетчики и время до получения заголовков ответа
+    private Response execute(Request request) throws IOException {
+        requestsCounter.increment();
+        long start = System.nanoTime();
+        try {
+            Response response = client.newCall(request).execute();
+            if (!response.isSuccessful()) {
+                failuresCounter.increment();
+            }
+            return response;
+        } catch (IOException e) {
+            failuresCounter.increment();
+            throw e;
+        } finally {
+            requestLatency.recordSince(start);
+        }
+    }
+
+    private Request statusRequest(Device device) {
+        return new Request.Builder()
+                .url(baseUrl + "/devices/" + device.getId() + "/status")
+                .header("Accept", acceptHeader)
+                .get()
+                .build();
+    }
+
+    private TelemetryCodec codecFor(MediaType contentType) {
+        if (contentType != null
+                && BinaryTelemetryCodec.MEDIA_TYPE.type().equals(contentType.type())
+                && BinaryTelemetryCodec.MEDIA_TYPE.subtype().equals(contentType.subtype())) {
+            return binaryCodec;
+        }
+        return jsonCodec;
+    }
+
+    // Последнее значение каждого параметра - в том же виде, что и JSON-статус
+    private static JsonObject toStatusObject(SensorRecordBatch batch) {
+        JsonObject status = new JsonObject();
+        long timestamp = 0;
+        for (int i = 0; i < batch.size(); i++) {
+            status.addProperty(batch.getParameter(i), batch.getValue(i));
+            timestamp = Math.max(timestamp, batch.getTimestamp(i));
+        }
+        if (batch.size() > 0) {
+            status.addProperty("timestamp", timestamp);
+        }
+        return status;
+    }
+}
@@ -0,0 +1,305 @@
+package ry.tech.mtc.controllers;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import ry.tech.mtc.models.Device;
+
+// Индекс устройств в памяти для списков на тысячи устройств.
+// Каждое устройство получает порядковый номер; по типу, комнате и статусу в сети хранятся BitSet,
+// по словам названия и комнаты - отсортированный словарь слово -> BitSet для поиска по префиксу.
+// Запрос - пересечение битовых множеств, без прохода по самим устройствам.
+// Удаленные номера не переиспользуются; когда их становится больше половины, индекс перестраивается.
+public class DeviceIndex {
+    private static final int MIN_COMPACT_SIZE = 64;
+
+    private final List<Device> docs = new ArrayList<>();
+    private final List<String[]> docTokens = new ArrayList<>();
+    private final List<String> docTypes = new ArrayList<>();
+    private final List<String> docRooms = new ArrayList<>();
+    private final Map<String, Integer> docIds = new HashMap<>();
+    private final BitSet alive = new BitSet();
+    private final BitSet online = new BitSet();
+    private final Map<String, BitSet> byType = new HashMap<>();
+    private final Map<String, BitSet> byRoom = new HashMap<>();
+    private final TreeMap<String, BitSet> tokens = new TreeMap<>();
+    private int removedCount;
+    private long version;
+
+    // Последний результат: соседние страницы одного запроса не пересчитывают пересечение
+    private Query cachedQuery;
+    private long cachedVersion = -1;
+    private BitSet cachedResult;
+
+    // null в любом поле - фильтр не задан; внутри множества условия объединяются через ИЛИ
+    public static class Query {
+        public static final Query ALL = new Query(null, null, null, null);
+
+        public final String text;
+        public final Set<String> types;
+        public final Set<String> rooms;
+        public final Boolean online;
+
+        public Query(String text, Set<String> types, Set<String> rooms, Boolean online) {
+            this.text = text;
+            this.types = types != null ? Collections.unmodifiableSet(new HashSet<>(types)) : null;
+            this.rooms = rooms != null ? Collections.unmodifiableSet(new HashSet<>(rooms)) : null;
+            this.online = online;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) return true;
+            if (!(o instanceof Query)) return false;
+            Query query = (Query) o;
+            return Objects.equals(text, query.text) && Objects.equals(types, query.types)
+                    && Objects.equals(rooms, query.rooms) && Objects.equals(online, query.online);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(text, types, rooms, online);
+        }
+    }
+
+    public static class Page {
+        public final int offset;
+        public final int total;
+        public final List<Device> devices;
+
+        Page(int offset, int total, List<Device> devices) {
+            this.offset = offset;
+            this.total = total;
+            this.devices = devices;
+        }
+    }
+
+    public synchronized void putAll(Collection<Device> devices) {
+        for (Device device : devices) {
+            put(device);
+        }
+    }
+
+    // Добавление или переиндексация устройства (например, после переименования или переноса в комнату)
+    public synchronized void put(Device device) {
+        Integer existing = docIds.get(device.getId());
+        if (existing != null) {
+            unindex(existing);
+            index(existing, device);
+        } else {
+            int doc = docs.size();
+            docs.add(null);
+            docTokens.add(null);
+            docTypes.add(null);
+            docRooms.add(null);
+            docIds.put(device.getId(), doc);
+            index(doc, device);
+        }
+        version++;
+    }
+
+    public synchronized boolean remove(String deviceId) {
+        Integer doc = docIds.remove(deviceId);
+        if (doc == null) return false;
+        unindex(doc);
+        docs.set(doc, null);
+        removedCount++;
+        version++;
+        if (removedCount > MIN_COMPACT_SIZE && removedCount * 2 > docs.size()) {
+            compact();
+        }
+        return true;
+    }
+
+    // Статус в сети меняется часто, поэтому обновляется без переиндексации слов
+    public synchronized void setOnline(String deviceId, boolean isOnline) {
+        Integer doc = docIds.get(deviceId);
+        if (doc == null || online.get(doc) == isOnline) return;
+        online.set(doc, isOnline);
+        version++;
+    }
+
+    public synchronized Device get(String deviceId) {
+        Integer doc = docIds.get(deviceId);
+        return doc != null ? docs.get(doc) : null;
+    }
+
+    // Первое по порядку добавления устройство типа
+    public synchronized Device findFirstByType(String type) {
+        BitSet docsOfType = byType.get(type);
+        if (docsOfType == null) return null;
+        int doc = docsOfType.nextSetBit(0);
+        return doc >= 0 ? docs.get(doc) : null;
+    }
+
+    public synchronized int size() {
+        return docIds.size();
+    }
+
+    public synchronized List<String> getRooms() {
+        return new ArrayList<>(new TreeSet<>(byRoom.keySet()));
+    }
+
+    public synchronized int count(Query query) {
+        return evaluate(query).cardinality();
+    }
+
+    public synchronized Page query(Query query, int offset, int limit) {
+        BitSet result = evaluate(query);
+        List<Device> page = new ArrayList<>(Math.max(0, Math.min(limit, result.cardinality() - offset)));
+        int skipped = 0;
+        for (int doc = result.nextSetBit(0); doc >= 0 && page.size() < limit; doc = result.nextSetBit(doc + 1)) {
+            if (skipped++ < offset) continue;
+            page.add(docs.get(doc));
+        }
+        return new Page(offset, result.cardinality(), page);
+    }
+
+    // Слова названия или комнаты в нижнем регистре; ё приравнивается к е
+    static String[] tokenize(String text) {
+        if (text == null) return new String[0];
+        String normalized = text.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        List<String> result = new ArrayList<>();
+        int start = -1;
+        for (int i = 0; i <= normalized.length(); i++) {
+            boolean isWordChar = i < normalized.length() && Character.isLetterOrDigit(normalized.charAt(i));
+            if (isWordChar && start < 0) {
+                start = i;
+            } else if (!isWordChar && start >= 0) {
+                result.add(normalized.substring(start, i));
+                start = -1;
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    private BitSet evaluate(Query query) {
+        if (query.equals(cachedQuery) && cachedVersion == version) {
+            return cachedResult;
+        }
+
+        BitSet result = (BitSet) alive.clone();
+        if (query.online != null) {
+            if (query.online) {
+                result.and(online);
+            } else {
+                result.andNot(online);
+            }
+        }
+        if (query.types != null) {
+            result.and(union(byType, query.types));
+        }
+        if (query.rooms != null) {
+            result.and(union(byRoom, query.rooms));
+        }
+        // Каждое слово запроса должно быть префиксом какого-нибудь слова устройства
+        for (String prefix : tokenize(query.text)) {
+            if (result.isEmpty()) break;
+            BitSet matches = new BitSet();
+            SortedMap<String, BitSet> range = tokens.subMap(prefix, prefix + Character.MAX_VALUE);
+            for (BitSet docsWithToken : range.values()) {
+                matches.or(docsWithToken);
+            }
+            result.and(matches);
+        }
+
+        cachedQuery = query;
+        cachedVersion = version;
+        cachedResult = result;
+        return result;
+    }
+
+    private static BitSet union(Map<String, BitSet> postings, Set<String> keys) {
+        BitSet result = new BitSet();
+        for (String key : keys) {
+            BitSet docsForKey = postings.get(key);
+            if (docsForKey != null) {
+                result.or(docsForKey);
+            }
+        }
+        return result;
+    }
+
+    private void index(int doc, Device device) {
+        docs.set(doc, device);
+        alive.set(doc);
+        online.set(doc, device.isOnline());
+
+        String type = device.getType();
+        docTypes.set(doc, type);
+        if (type != null) {
+            byType.computeIfAbsent(type, k -> new BitSet()).set(doc);
+        }
+        String room = device.getRoom();
+        docRooms.set(doc, room);
+        if (room != null) {
+            byRoom.computeIfAbsent(room, k -> new BitSet()).set(doc);
+        }
+
+        String[] nameTokens = tokenize(device.getName());
+        String[] roomTokens = tokenize(room);
+        String[] all = new String[nameTokens.length + roomTokens.length];
+        System.arraycopy(nameTokens, 0, all, 0, nameTokens.length);
+        System.arraycopy(roomTokens, 0, all, nameTokens.length, roomTokens.length);
+        docTokens.set(doc, all);
+        for (String token : all) {
+            tokens.computeIfAbsent(token, k -> new BitSet()).set(doc);
+        }
+    }
+
+    private void unindex(int doc) {
+        alive.clear(doc);
+        online.clear(doc);
+        clearPosting(byType, docTypes.get(doc), doc);
+        clearPosting(byRoom, docRooms.get(doc), doc);
+        for (String token : docTokens.get(doc)) {
+            clearPosting(tokens, token, doc);
+        }
+        docTypes.set(doc, null);
+        docRooms.set(doc, null);
+        docTokens.set(doc, new String[0]);
+    }
+
+    private static void clearPosting(Map<String, BitSet> postings, String key, int doc) {
+        if (key == null) return;
+        BitSet docsForKey = postings.get(key);
+        if (docsForKey == null) return;
+        docsForKey.clear(doc);
+        if (docsForKey.isEmpty()) {
+            postings.remove(key);
+        }
+    }
+
+    private void compact() {
+        List<Device> remaining = new ArrayList<>(docIds.size());
+        for (Device device : docs) {
+            if (device != null) remaining.add(device);
+        }
+        docs.clear();
+        docTokens.clear();
+        docTypes.clear();
+        docRooms.clear();
+        docIds.clear();
+        alive.clear();
+        online.clear();
+        byType.clear();
+        byRoom.clear();
+        tokens.clear();
+        removedCount = 0;
+        for (Device device : remaining) {
+            put(device);
+        }
+    }
+}
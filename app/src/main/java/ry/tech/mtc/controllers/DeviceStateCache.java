@@ -0,0 +1,220 @@
+package ry.tech.mtc.controllers;
+
+import android.util.Log;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.function.LongSupplier;
+
+import ry.tech.mtc.models.Device;
+
+// Кэш состояния устройств между контроллером и транспортом (read-through).
+//  - время жизни записи зависит от типа устройства;
+//  - ограниченный размер, вытесняется давно не читавшееся устройство (LRU);
+//  - устаревшая запись в пределах окна staleWindow отдается сразу, а обновляется в фоне;
+//  - одновременные чтения одного устройства ждут одну и ту же загрузку;
+//  - invalidate() после локальной записи: загрузка, начатая до нее, в кэш уже не попадет.
+public class DeviceStateCache {
+    private static final String TAG = "DeviceStateCache";
+    private static final int DEFAULT_MAX_ENTRIES = 64;
+    private static final long DEFAULT_TTL_MS = 10_000;
+    private static final long DEFAULT_STALE_WINDOW_MS = 60_000;
+
+    private final Loader loader;
+    private final Executor executor;
+    private final LongSupplier clock;
+    private final int maxEntries;
+    private final Map<String, Long> ttlByType = new HashMap<>();
+    private volatile long defaultTtlMs = DEFAULT_TTL_MS;
+    private volatile long staleWindowMs = DEFAULT_STALE_WINDOW_MS;
+
+    private final LinkedHashMap<String, CacheEntry> entries;
+    private final Map<String, Fetch> inFlight = new HashMap<>();
+    private long hits;
+    private long staleHits;
+    private long misses;
+
+    // Источник состояния: MockDeviceData, сервер и т.п. Вызывается в фоновом потоке
+    public interface Loader {
+        Device load(String deviceId) throws Exception;
+    }
+
+    private static class CacheEntry {
+        final Device device;
+        final long loadedAt;
+
+        CacheEntry(Device device, long loadedAt) {
+            this.device = device;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private static class Fetch {
+        final CompletableFuture<Device> future = new CompletableFuture<>();
+        boolean isInvalidated;
+    }
+
+    public DeviceStateCache(Loader loader) {
+        this(loader, Executors.newFixedThreadPool(2, r -> {
+            Thread thread = new Thread(r, "DeviceStateCache");
+            thread.setDaemon(true);
+            return thread;
+        }), System::currentTimeMillis, DEFAULT_MAX_ENTRIES);
+    }
+
+    public DeviceStateCache(Loader loader, Executor executor, LongSupplier clock, int maxEntries) {
+        this.loader = loader;
+        this.executor = executor;
+        this.clock = clock;
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > DeviceStateCache.this.maxEntries;
+            }
+        };
+    }
+
+    public synchronized void setTtl(String deviceType, long ttlMs) {
+        ttlByType.put(deviceType, ttlMs);
+    }
+
+    public void setDefaultTtl(long ttlMs) {
+        this.defaultTtlMs = ttlMs;
+    }
+
+    public void setStaleWindow(long staleWindowMs) {
+        this.staleWindowMs = staleWindowMs;
+    }
+
+    // Блокирующее чтение: свежая или допустимо устаревшая запись возвращается сразу,
+    // иначе ждем загрузку (общую для всех одновременных запросов)
+    public Device get(String deviceId) {
+        try {
+            return getAsync(deviceId).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return peek(deviceId);
+        } catch (ExecutionException e) {
+            Log.w(TAG, "Failed to load state of " + deviceId, e.getCause());
+            return peek(deviceId);
+        }
+    }
+
+    public CompletableFuture<Device> getAsync(String deviceId) {
+        Fetch fetch;
+        synchronized (this) {
+            CacheEntry entry = entries.get(deviceId);
+            if (entry != null) {
+                long age = clock.getAsLong() - entry.loadedAt;
+                long ttl = ttlFor(entry.device);
+                if (age < ttl) {
+                    hits++;
+                    return CompletableFuture.completedFuture(entry.device);
+                }
+                if (age < ttl + staleWindowMs) {
+                    staleHits++;
+                    startFetch(deviceId);
+                    return CompletableFuture.completedFuture(entry.device);
+                }
+            }
+            misses++;
+            fetch = startFetch(deviceId);
+        }
+        return fetch.future;
+    }
+
+    // Только кэш, без загрузки; для главного потока
+    public synchronized Device peek(String deviceId) {
+        CacheEntry entry = entries.get(deviceId);
+        return entry != null ? entry.device : null;
+    }
+
+    public synchronized void put(Device device) {
+        entries.put(device.getId(), new CacheEntry(device, clock.getAsLong()));
+    }
+
+    public synchronized void invalidate(String deviceId) {
+        entries.remove(deviceId);
+        Fetch fetch = inFlight.remove(deviceId);
+        if (fetch != null) {
+            fetch.isInvalidated = true;
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+        for (Fetch fetch : inFlight.values()) {
+            fetch.isInvalidated = true;
+        }
+        inFlight.clear();
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getStaleHitCount() {
+        return staleHits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    private long ttlFor(Device device) {
+        Long ttl = ttlByType.get(device.getType());
+        return ttl != null ? ttl : defaultTtlMs;
+    }
+
+    // Вызывается под блокировкой
+    private Fetch startFetch(String deviceId) {
+        Fetch existing = inFlight.get(deviceId);
+        if (existing != null) {
+            return existing;
+        }
+        Fetch fetch = new Fetch();
+        inFlight.put(deviceId, fetch);
+        executor.execute(() -> runFetch(deviceId, fetch));
+        return fetch;
+    }
+
+    private void runFetch(String deviceId, Fetch fetch) {
+        Device device;
+        try {
+            device = loader.load(deviceId);
+        } catch (Throwable t) {
+            synchronized (this) {
+                if (inFlight.get(deviceId) == fetch) {
+                    inFlight.remove(deviceId);
+                }
+            }
+            fetch.future.completeExceptionally(t instanceof CompletionException ? t.getCause() : t);
+            return;
+        }
+
+        synchronized (this) {
+            if (inFlight.get(deviceId) == fetch) {
+                inFlight.remove(deviceId);
+            }
+            if (!fetch.isInvalidated) {
+                if (device != null) {
+                    entries.put(deviceId, new CacheEntry(device, clock.getAsLong()));
+                } else {
+                    entries.remove(deviceId);
+                }
+            }
+        }
+        fetch.future.complete(device);
+    }
+}
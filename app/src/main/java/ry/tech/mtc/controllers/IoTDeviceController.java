@@ -1,6 +1,8 @@
 package ry.tech.mtc.controllers;
 
+import java.io.IOException;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 import ry.tech.mtc.MockDeviceData;
 import ry.tech.mtc.interfaces.DeviceController;
@@ -9,7 +11,20 @@ import ry.tech.mtc.models.Device;
 public class IoTDeviceController implements DeviceController {
     private static IoTDeviceController instance;
 
+    // Чтение состояния идет через кэш; источник - MockDeviceData или сервер через DeviceCommunicator
+    private final DeviceStateCache stateCache;
+    private volatile DeviceCommunicator communicator;
+
     private IoTDeviceController() {
+        stateCache = new DeviceStateCache(this::loadDevice);
+        // Исполнительные устройства меняются редко, показания датчиков - постоянно
+        stateCache.setTtl(Device.TYPE_LIGHT, 30_000);
+        stateCache.setTtl(Device.TYPE_AC, 30_000);
+        stateCache.setTtl(Device.TYPE_TEMPERATURE_SENSOR, 5_000);
+        stateCache.setTtl(Device.TYPE_HUMIDITY_SENSOR, 5_000);
+        stateCache.setTtl(Device.TYPE_WATER_SENSOR, 2_000);
+        stateCache.setTtl(Device.TYPE_ELECTRICITY_SENSOR, 2_000);
+        stateCache.setTtl(Device.TYPE_AIR_SENSOR, 5_000);
     }
 
     public static IoTDeviceController getInstance() {
@@ -19,12 +34,20 @@ public class IoTDeviceController implements DeviceController {
         return instance;
     }
 
+    // Подключение сервера: состояние читается через него, команды уходят через него же
+    public void setCommunicator(DeviceCommunicator communicator) {
+        this.communicator = communicator;
+        stateCache.clear();
+    }
+
     @Override
     public void turnOn(String deviceId) {
         Device device = MockDeviceData.getDevice(deviceId);
         if (device != null) {
             MockDeviceData.updateDeviceState(device, true);
+            sendRemote(device, "power", true);
         }
+        stateCache.invalidate(deviceId);
     }
 
     @Override
@@ -32,7 +55,9 @@ public class IoTDeviceController implements DeviceController {
         Device device = MockDeviceData.getDevice(deviceId);
         if (device != null) {
             MockDeviceData.updateDeviceState(device, false);
+            sendRemote(device, "power", false);
         }
+        stateCache.invalidate(deviceId);
     }
 
     @Override
@@ -40,15 +65,46 @@ public class IoTDeviceController implements DeviceController {
         Device device = MockDeviceData.getDevice(deviceId);
         if (device != null) {
             MockDeviceData.updateDeviceParameter(device, parameter, value);
+            sendRemote(device, parameter, value);
         }
+        stateCache.invalidate(deviceId);
     }
 
+    // Не ждет загрузки: запись кэша (свежая или устаревшая - тогда она обновляется в фоне).
+    // Без записи загрузка начинается в фоне, а вызывающий сразу получает локальное описание устройства
     @Override
     public Device getDeviceState(String deviceId) {
-        return MockDeviceData.getDevice(deviceId);
+        CompletableFuture<Device> state = stateCache.getAsync(deviceId);
+        if (state.isDone() && !state.isCompletedExceptionally()) {
+            Device device = state.join();
+            if (device != null) return device;
+        }
+        Device cached = stateCache.peek(deviceId);
+        return cached != null ? cached : MockDeviceData.getDevice(deviceId);
+    }
+
+    // Без ожидания загрузки: последнее известное состояние или null
+    public Device peekDeviceState(String deviceId) {
+        return stateCache.peek(deviceId);
+    }
+
+    public DeviceStateCache getStateCache() {
+        return stateCache;
     }
 
     public List<Device> getAllDevices() {
         return MockDeviceData.getAllDevices();
     }
-}
\ No newline at end of file
+
+    private Device loadDevice(String deviceId) throws IOException {
+        DeviceCommunicator remote = communicator;
+        return remote != null ? remote.fetchDevice(deviceId) : MockDeviceData.getDevice(deviceId);
+    }
+
+    private void sendRemote(Device device, String command, Object value) {
+        DeviceCommunicator remote = communicator;
+        if (remote != null) {
+            remote.sendCommand(device, command, value);
+        }
+    }
+}
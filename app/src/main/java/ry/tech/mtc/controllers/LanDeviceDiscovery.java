@@ -0,0 +1,372 @@
+package ry.tech.mtc.controllers;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.InterfaceAddress;
+import java.net.NetworkInterface;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import ry.tech.mtc.codec.JsonAdapters;
+import ry.tech.mtc.interfaces.DeviceDiscovery;
+import ry.tech.mtc.models.Device;
+
+// Поиск устройств в локальной сети по UDP.
+// Запрос уходит одновременно на широковещательные адреса, в multicast-группу и по всем адресам
+// подсети (пулом потоков ограниченного размера); ответы принимает один сокет до общего дедлайна.
+// Найденные устройства передаются слушателю по мере прихода ответов.
+// Известные устройства кэшируются: при повторном поиске их адреса опрашиваются первыми,
+// а слушатель получает только новые устройства и устройства со сменившимся адресом.
+//
+// Протокол (UTF-8):
+//   запрос     "MTC-DISCOVER 1"
+//   ответ      "MTC-HELLO 1\n" + Device в JSON (DeviceTypeAdapter)
+//   подключение "MTC-CONNECT 1\n" + id / "MTC-DISCONNECT 1\n" + id, подтверждение "MTC-ACK 1\n" + id
+public class LanDeviceDiscovery implements DeviceDiscovery {
+    private static final String PROBE = "MTC-DISCOVER 1";
+    private static final String HELLO_PREFIX = "MTC-HELLO 1\n";
+    private static final String CONNECT_PREFIX = "MTC-CONNECT 1\n";
+    private static final String DISCONNECT_PREFIX = "MTC-DISCONNECT 1\n";
+    private static final String ACK_PREFIX = "MTC-ACK 1\n";
+    private static final int MAX_PACKET_SIZE = 8 * 1024;
+    private static final int RECEIVE_POLL_MS = 50;
+    // Перебор подсети только для небольших сетей (/22 и меньше)
+    private static final int MAX_SWEEP_HOSTS = 1024;
+
+    private final DiscoveryConfig config;
+    private final ExecutorService workers;
+    private final Map<String, KnownDevice> knownDevices = new ConcurrentHashMap<>();
+    private final Set<String> connectedDevices = ConcurrentHashMap.newKeySet();
+
+    public static class DiscoveryConfig {
+        public int port;                       // порт, на котором слушают устройства
+        public String multicastGroup;          // null - без multicast
+        public boolean useBroadcast;
+        public boolean sweepSubnet;            // unicast-запрос каждому адресу локальной подсети
+        public long scanTimeoutMs;             // жесткий общий дедлайн поиска
+        public long connectTimeoutMs;
+        public int workerThreads;
+        public int probeAttempts;              // повторы запроса на случай потери пакета
+        public List<InetSocketAddress> extraTargets;
+
+        public DiscoveryConfig() {
+            this.port = 47800;
+            this.multicastGroup = "239.255.77.77";
+            this.useBroadcast = true;
+            this.sweepSubnet = true;
+            this.scanTimeoutMs = 3000;
+            this.connectTimeoutMs = 1500;
+            this.workerThreads = 8;
+            this.probeAttempts = 2;
+            this.extraTargets = new ArrayList<>();
+        }
+    }
+
+    // Вызывается в рабочем потоке поиска
+    public interface DiscoveryListener {
+        void onDeviceFound(Device device, InetSocketAddress address);
+        default void onScanFinished(List<Device> found) {}
+    }
+
+    public static class KnownDevice {
+        public final Device device;
+        public final InetSocketAddress address;
+        public final long lastSeen;
+
+        KnownDevice(Device device, InetSocketAddress address, long lastSeen) {
+            this.device = device;
+            this.address = address;
+            this.lastSeen = lastSeen;
+        }
+    }
+
+    // Текущий поиск: можно дождаться или отменить
+    public static class Scan {
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private final Map<String, Device> found = new ConcurrentHashMap<>();
+        private volatile boolean isCancelled;
+        private volatile DatagramSocket socket;
+
+        public void cancel() {
+            isCancelled = true;
+            DatagramSocket current = socket;
+            if (current != null) {
+                current.close();
+            }
+        }
+
+        public boolean await(long timeoutMs) throws InterruptedException {
+            return finished.await(timeoutMs, TimeUnit.MILLISECONDS);
+        }
+
+        public boolean isFinished() {
+            return finished.getCount() == 0;
+        }
+
+        public List<Device> getFoundDevices() {
+            return new ArrayList<>(found.values());
+        }
+    }
+
+    public LanDeviceDiscovery() {
+        this(new DiscoveryConfig());
+    }
+
+    public LanDeviceDiscovery(DiscoveryConfig config) {
+        this.config = config;
+        AtomicInteger counter = new AtomicInteger();
+        // Один поток занят приемом ответов, остальные рассылают запросы
+        this.workers = Executors.newFixedThreadPool(Math.max(2, config.workerThreads), r -> {
+            Thread thread = new Thread(r, "LanDiscovery-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Блокирующий вариант интерфейса: ждет дедлайн и возвращает все найденное
+    @Override
+    public List<Device> scanForDevices() {
+        Scan scan = startScan(null);
+        try {
+            scan.await(config.scanTimeoutMs + 1000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            scan.cancel();
+        }
+        return scan.getFoundDevices();
+    }
+
+    public Scan startScan(DiscoveryListener listener) {
+        Scan scan = new Scan();
+        long deadline = System.currentTimeMillis() + config.scanTimeoutMs;
+
+        DatagramSocket socket;
+        try {
+            socket = new DatagramSocket();
+            socket.setBroadcast(true);
+            socket.setSoTimeout(RECEIVE_POLL_MS);
+        } catch (IOException e) {
+            e.printStackTrace();
+            finishScan(scan, listener);
+            return scan;
+        }
+        scan.socket = socket;
+
+        workers.execute(() -> receiveReplies(scan, socket, deadline, listener));
+
+        // Сначала известные адреса - повторный поиск подтверждает их почти сразу
+        List<InetSocketAddress> targets = new ArrayList<>(collectTargets());
+        int chunks = Math.max(1, config.workerThreads - 1);
+        int chunkSize = (targets.size() + chunks - 1) / chunks;
+        for (int start = 0; start < targets.size(); start += chunkSize) {
+            List<InetSocketAddress> chunk = targets.subList(start, Math.min(targets.size(), start + chunkSize));
+            workers.execute(() -> sendProbes(scan, socket, chunk, deadline));
+        }
+        return scan;
+    }
+
+    @Override
+    public boolean connectDevice(Device device) {
+        KnownDevice known = knownDevices.get(device.getId());
+        if (known == null) return false;
+        boolean acknowledged = exchange(known.address, CONNECT_PREFIX + device.getId(), device.getId());
+        if (acknowledged) {
+            connectedDevices.add(device.getId());
+            device.setOnline(true);
+        }
+        return acknowledged;
+    }
+
+    @Override
+    public void disconnectDevice(Device device) {
+        KnownDevice known = knownDevices.get(device.getId());
+        connectedDevices.remove(device.getId());
+        if (known != null) {
+            exchange(known.address, DISCONNECT_PREFIX + device.getId(), device.getId());
+        }
+    }
+
+    public boolean isConnected(String deviceId) {
+        return connectedDevices.contains(deviceId);
+    }
+
+    public List<KnownDevice> getKnownDevices() {
+        return new ArrayList<>(knownDevices.values());
+    }
+
+    public void forgetDevice(String deviceId) {
+        knownDevices.remove(deviceId);
+        connectedDevices.remove(deviceId);
+    }
+
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    private void sendProbes(Scan scan, DatagramSocket socket, List<InetSocketAddress> targets, long deadline) {
+        byte[] probe = PROBE.getBytes(StandardCharsets.UTF_8);
+        for (int attempt = 0; attempt < config.probeAttempts; attempt++) {
+            for (InetSocketAddress target : targets) {
+                if (scan.isCancelled || System.currentTimeMillis() >= deadline) return;
+                try {
+                    socket.send(new DatagramPacket(probe, probe.length, target));
+                } catch (IOException e) {
+                    // Недоступный адрес или закрытый сокет - переходим к следующему
+                    if (socket.isClosed()) return;
+                }
+            }
+        }
+    }
+
+    private void receiveReplies(Scan scan, DatagramSocket socket, long deadline, DiscoveryListener listener) {
+        byte[] buffer = new byte[MAX_PACKET_SIZE];
+        try {
+            while (!scan.isCancelled && System.currentTimeMillis() < deadline) {
+                DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                try {
+                    socket.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    continue;
+                }
+                Device device = parseHello(packet);
+                if (device == null || scan.found.putIfAbsent(device.getId(), device) != null) continue;
+
+                InetSocketAddress address = new InetSocketAddress(packet.getAddress(), packet.getPort());
+                KnownDevice previous = knownDevices.put(device.getId(),
+                        new KnownDevice(device, address, System.currentTimeMillis()));
+                boolean isNew = previous == null || !previous.address.equals(address);
+                if (isNew && listener != null) {
+                    listener.onDeviceFound(device, address);
+                }
+            }
+        } catch (IOException e) {
+            // Сокет закрыт при отмене
+        } finally {
+            socket.close();
+            finishScan(scan, listener);
+        }
+    }
+
+    private void finishScan(Scan scan, DiscoveryListener listener) {
+        if (listener != null) {
+            listener.onScanFinished(scan.getFoundDevices());
+        }
+        scan.finished.countDown();
+    }
+
+    private static Device parseHello(DatagramPacket packet) {
+        String payload = new String(packet.getData(), packet.getOffset(), packet.getLength(), StandardCharsets.UTF_8);
+        if (!payload.startsWith(HELLO_PREFIX)) return null;
+        try {
+            return JsonAdapters.getGson().fromJson(payload.substring(HELLO_PREFIX.length()), Device.class);
+        } catch (RuntimeException e) {
+            // Некорректный ответ чужого устройства
+            return null;
+        }
+    }
+
+    // Запрос с ожиданием подтверждения; повторяется до истечения таймаута
+    private boolean exchange(InetSocketAddress address, String message, String deviceId) {
+        byte[] request = message.getBytes(StandardCharsets.UTF_8);
+        String expected = ACK_PREFIX + deviceId;
+        long deadline = System.currentTimeMillis() + config.connectTimeoutMs;
+        try (DatagramSocket socket = new DatagramSocket()) {
+            byte[] buffer = new byte[MAX_PACKET_SIZE];
+            while (System.currentTimeMillis() < deadline) {
+                socket.send(new DatagramPacket(request, request.length, address));
+                socket.setSoTimeout((int) Math.max(1, Math.min(250, deadline - System.currentTimeMillis())));
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    String reply = new String(packet.getData(), packet.getOffset(), packet.getLength(),
+                            StandardCharsets.UTF_8);
+                    if (expected.equals(reply)) {
+                        return true;
+                    }
+                } catch (SocketTimeoutException e) {
+                    // Повторяем запрос
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return false;
+    }
+
+    private Set<InetSocketAddress> collectTargets() {
+        Set<InetSocketAddress> targets = new LinkedHashSet<>();
+        for (KnownDevice known : knownDevices.values()) {
+            targets.add(known.address);
+        }
+        targets.addAll(config.extraTargets);
+
+        if (config.multicastGroup != null) {
+            try {
+                targets.add(new InetSocketAddress(InetAddress.getByName(config.multicastGroup), config.port));
+            } catch (IOException e) {
+                e.printStackTrace();
+            }
+        }
+        if (!config.useBroadcast && !config.sweepSubnet) {
+            return targets;
+        }
+
+        try {
+            if (config.useBroadcast) {
+                targets.add(new InetSocketAddress(InetAddress.getByName("255.255.255.255"), config.port));
+            }
+            Enumeration<NetworkInterface> interfaces = NetworkInterface.getNetworkInterfaces();
+            for (NetworkInterface networkInterface : interfaces != null
+                    ? Collections.list(interfaces) : Collections.<NetworkInterface>emptyList()) {
+                if (!networkInterface.isUp() || networkInterface.isLoopback()) continue;
+                for (InterfaceAddress address : networkInterface.getInterfaceAddresses()) {
+                    if (!(address.getAddress() instanceof Inet4Address)) continue;
+                    if (config.useBroadcast && address.getBroadcast() != null) {
+                        targets.add(new InetSocketAddress(address.getBroadcast(), config.port));
+                    }
+                    if (config.sweepSubnet) {
+                        addSubnetHosts(targets, (Inet4Address) address.getAddress(), address.getNetworkPrefixLength());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+        return targets;
+    }
+
+    private void addSubnetHosts(Set<InetSocketAddress> targets, Inet4Address address, int prefixLength) throws IOException {
+        int hostBits = 32 - prefixLength;
+        if (hostBits < 2 || (1 << hostBits) - 2 > MAX_SWEEP_HOSTS) return;
+
+        byte[] bytes = address.getAddress();
+        int ip = ((bytes[0] & 0xFF) << 24) | ((bytes[1] & 0xFF) << 16) | ((bytes[2] & 0xFF) << 8) | (bytes[3] & 0xFF);
+        int network = ip & (-1 << hostBits);
+        int hosts = (1 << hostBits) - 1;
+        for (int host = 1; host < hosts; host++) {
+            int candidate = network | host;
+            if (candidate == ip) continue;
+            byte[] candidateBytes = {
+                    (byte) (candidate >>> 24), (byte) (candidate >>> 16), (byte) (candidate >>> 8), (byte) candidate
+            };
+            targets.add(new InetSocketAddress(InetAddress.getByAddress(candidateBytes), config.port));
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package ry.tech.mtc.controllers;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+
+import ry.tech.mtc.models.Device;
+
+// Постраничное окно над DeviceIndex для RecyclerView.
+// Страницы запрашиваются в фоновом исполнителе, результат применяется в главном потоке.
+// В памяти держится не больше MAX_CACHED_PAGES страниц вокруг видимой области (LRU),
+// поэтому адаптер хранит только окно, а не весь список.
+// Все методы, кроме фоновых задач, вызываются в главном потоке.
+public class PagedDeviceList {
+    public static final int PAGE_SIZE = 40;
+    private static final int MAX_CACHED_PAGES = 4;
+    // Следующая страница подгружается заранее, когда до конца текущей осталось столько элементов
+    private static final int PREFETCH_DISTANCE = 10;
+
+    private final DeviceIndex index;
+    private final Executor backgroundExecutor;
+    private final Executor mainExecutor;
+    private final Callback callback;
+    private final Map<Integer, List<Device>> pages = new LinkedHashMap<Integer, List<Device>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<Device>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+    private final Set<Integer> loadingPages = new HashSet<>();
+    private DeviceIndex.Query query = DeviceIndex.Query.ALL;
+    private int total;
+    // Растет при каждой смене запроса или данных; ответы со старым номером отбрасываются
+    private int generation;
+
+    public interface Callback {
+        // Изменилось число элементов; адаптеру нужен полный notifyDataSetChanged
+        void onListChanged(int total);
+        void onPageLoaded(int start, int count);
+    }
+
+    public PagedDeviceList(DeviceIndex index, Executor backgroundExecutor, Executor mainExecutor, Callback callback) {
+        this.index = index;
+        this.backgroundExecutor = backgroundExecutor;
+        this.mainExecutor = mainExecutor;
+        this.callback = callback;
+    }
+
+    public void setQuery(DeviceIndex.Query query) {
+        this.query = query;
+        refresh();
+    }
+
+    public DeviceIndex.Query getQuery() {
+        return query;
+    }
+
+    // Повторное выполнение запроса после изменения индекса; первая страница приходит вместе с числом элементов
+    public void refresh() {
+        generation++;
+        pages.clear();
+        loadingPages.clear();
+        load(0, true);
+    }
+
+    public int size() {
+        return total;
+    }
+
+    // Устройство на позиции или null, если страница еще загружается
+    public Device get(int position) {
+        int page = position / PAGE_SIZE;
+        List<Device> items = pages.get(page);
+        if (items == null) {
+            load(page, false);
+            return null;
+        }
+        int offset = position - page * PAGE_SIZE;
+        if (offset >= PAGE_SIZE - PREFETCH_DISTANCE && (page + 1) * PAGE_SIZE < total) {
+            load(page + 1, false);
+        }
+        return offset < items.size() ? items.get(offset) : null;
+    }
+
+    public int getCachedPageCount() {
+        return pages.size();
+    }
+
+    private void load(int page, boolean isRefresh) {
+        if (pages.containsKey(page) || !loadingPages.add(page)) return;
+        int requestGeneration = generation;
+        DeviceIndex.Query requestQuery = query;
+
+        backgroundExecutor.execute(() -> {
+            DeviceIndex.Page result = index.query(requestQuery, page * PAGE_SIZE, PAGE_SIZE);
+            mainExecutor.execute(() -> {
+                if (requestGeneration != generation) return;
+                loadingPages.remove(page);
+                pages.put(page, result.devices);
+                if (isRefresh || result.total != total) {
+                    total = result.total;
+                    callback.onListChanged(total);
+                } else {
+                    callback.onPageLoaded(page * PAGE_SIZE, result.devices.size());
+                }
+            });
+        });
+    }
+}
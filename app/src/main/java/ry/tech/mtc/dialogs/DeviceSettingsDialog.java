@@ -2,6 +2,8 @@ package ry.tech.mtc.dialogs;
 
 import android.app.Dialog;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.widget.ArrayAdapter;
@@ -18,11 +20,13 @@ import androidx.fragment.app.DialogFragment;
 import com.google.android.material.dialog.MaterialAlertDialogBuilder;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
+import ry.tech.mtc.MockDeviceData;
 import ry.tech.mtc.R;
 import ry.tech.mtc.controllers.IoTDeviceController;
 import ry.tech.mtc.models.Device;
 
 public class DeviceSettingsDialog extends DialogFragment {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private Device device;
     private View dialogView;
     private IoTDeviceController deviceController;
@@ -40,7 +44,22 @@ public class DeviceSettingsDialog extends DialogFragment {
         super.onCreate(savedInstanceState);
         deviceController = IoTDeviceController.getInstance();
         String deviceId = getArguments().getString("device_id");
-        device = deviceController.getDeviceState(deviceId);
+        // Диалог строится сразу по известному состоянию (кэш или локальная модель),
+        // состояние из кэша или с сервера применяется в главном потоке по готовности
+        device = deviceController.peekDeviceState(deviceId);
+        if (device == null) {
+            device = MockDeviceData.getDevice(deviceId);
+        }
+        deviceController.getStateCache().getAsync(deviceId)
+                .thenAccept(loaded -> mainHandler.post(() -> applyLoadedState(loaded)));
+    }
+
+    private void applyLoadedState(Device loaded) {
+        if (loaded == null || !isAdded()) return;
+        device = loaded;
+        if (dialogView != null) {
+            initializeViews();
+        }
     }
 
     @Override
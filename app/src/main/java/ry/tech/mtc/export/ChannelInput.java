@@ -0,0 +1,86 @@
+package ry.tech.mtc.export;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Чтение из FileChannel через один буфер ChannelOutput.BUFFER_SIZE, парное ChannelOutput
+class ChannelInput implements Closeable {
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(ChannelOutput.BUFFER_SIZE);
+    private long filledBytes;
+
+    ChannelInput(FileChannel channel) {
+        this.channel = channel;
+        buffer.flip();
+    }
+
+    int readByte() throws IOException {
+        require(1);
+        return buffer.get() & 0xFF;
+    }
+
+    long readLong() throws IOException {
+        require(8);
+        return buffer.getLong();
+    }
+
+    double readDouble() throws IOException {
+        require(8);
+        return buffer.getDouble();
+    }
+
+    long readVarint() throws IOException {
+        long result = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            result |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return result;
+            }
+        }
+        throw new ProtocolException("Malformed varint");
+    }
+
+    String readString(int maxBytes) throws IOException {
+        long length = readVarint();
+        if (length < 0 || length > maxBytes) {
+            throw new ProtocolException("Bad string length " + length);
+        }
+        require((int) length);
+        byte[] bytes = new byte[(int) length];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    long getBytesRead() {
+        return filledBytes - buffer.remaining();
+    }
+
+    long getSize() throws IOException {
+        return channel.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void require(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) return;
+        buffer.compact();
+        while (buffer.position() < bytes) {
+            int read = channel.read(buffer);
+            if (read < 0) {
+                buffer.flip();
+                throw new EOFException("Truncated history file");
+            }
+            filledBytes += read;
+        }
+        buffer.flip();
+    }
+}
@@ -0,0 +1,119 @@
+package ry.tech.mtc.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+// Запись в FileChannel через один буфер BUFFER_SIZE: файл пишется блоками,
+// и память не зависит от объема выгрузки. Числа пишутся в буфер без промежуточных строк.
+class ChannelOutput implements Closeable {
+    static final int BUFFER_SIZE = 64 * 1024;
+
+    private final FileChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final byte[] digits = new byte[20];
+    private long flushedBytes;
+
+    ChannelOutput(FileChannel channel) {
+        this.channel = channel;
+    }
+
+    void writeByte(int value) throws IOException {
+        ensure(1);
+        buffer.put((byte) value);
+    }
+
+    void writeLong(long value) throws IOException {
+        ensure(8);
+        buffer.putLong(value);
+    }
+
+    void writeDouble(double value) throws IOException {
+        ensure(8);
+        buffer.putDouble(value);
+    }
+
+    void writeVarint(long value) throws IOException {
+        ensure(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    void writeBytes(byte[] bytes) throws IOException {
+        int offset = 0;
+        while (offset < bytes.length) {
+            ensure(1);
+            int length = Math.min(buffer.remaining(), bytes.length - offset);
+            buffer.put(bytes, offset, length);
+            offset += length;
+        }
+    }
+
+    // Строка с длиной в байтах UTF-8, как в BinaryTelemetryCodec
+    void writeString(String value) throws IOException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarint(bytes.length);
+        writeBytes(bytes);
+    }
+
+    // Десятичная запись числа в ASCII
+    void writeDecimal(long value) throws IOException {
+        ensure(digits.length);
+        if (value < 0) {
+            buffer.put((byte) '-');
+        }
+        // Цифры считаются на неположительном числе, чтобы не переполнить Long.MIN_VALUE
+        long rest = value < 0 ? value : -value;
+        int count = 0;
+        do {
+            digits[count++] = (byte) ('0' - rest % 10);
+            rest /= 10;
+        } while (rest != 0);
+        while (count > 0) {
+            buffer.put(digits[--count]);
+        }
+    }
+
+    // Неотрицательное число ровно в width цифр с ведущими нулями (дробная часть)
+    void writePaddedDecimal(long value, int width) throws IOException {
+        ensure(width);
+        for (int i = width - 1; i >= 0; i--) {
+            digits[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        buffer.put(digits, 0, width);
+    }
+
+    long getBytesWritten() {
+        return flushedBytes + buffer.position();
+    }
+
+    void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            flushedBytes += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensure(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flush();
+        }
+    }
+}
@@ -0,0 +1,75 @@
+package ry.tech.mtc.export;
+
+import java.io.IOException;
+
+// Колоночный двоичный файл истории:
+//   MAGIC, VERSION
+//   ряд: TAG_SERIES, deviceId, parameter, разрешение датчика (double), далее чанки
+//     чанк: varint число точек (0 - конец ряда),
+//           колонка времени - zig-zag varint дельт (первая от последней метки предыдущего чанка, в начале ряда от 0),
+//           колонка значений - double
+//   TAG_END
+// Строки - varint длины в байтах UTF-8 + байты. Порядок байт - big-endian.
+class ColumnarSeriesWriter implements SeriesWriter {
+    static final int MAGIC = 0x4D544348; // "MTCH"
+    static final int VERSION = 1;
+    static final int TAG_END = 0;
+    static final int TAG_SERIES = 1;
+
+    private final ChannelOutput output;
+    private long lastTime;
+
+    ColumnarSeriesWriter(ChannelOutput output) throws IOException {
+        this.output = output;
+        for (int shift = 24; shift >= 0; shift -= 8) {
+            output.writeByte(MAGIC >>> shift);
+        }
+        output.writeByte(VERSION);
+    }
+
+    @Override
+    public void beginSeries(String deviceId, String parameter, double resolution) throws IOException {
+        output.writeByte(TAG_SERIES);
+        output.writeString(deviceId);
+        output.writeString(parameter);
+        output.writeDouble(resolution);
+        lastTime = 0;
+    }
+
+    @Override
+    public void writeChunk(long[] times, double[] values, int count) throws IOException {
+        if (count == 0) return;
+        output.writeVarint(count);
+        for (int i = 0; i < count; i++) {
+            output.writeVarint(zigZag(times[i] - lastTime));
+            lastTime = times[i];
+        }
+        for (int i = 0; i < count; i++) {
+            output.writeDouble(values[i]);
+        }
+    }
+
+    @Override
+    public void endSeries() throws IOException {
+        output.writeVarint(0);
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return output.getBytesWritten();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.writeByte(TAG_END);
+        output.close();
+    }
+
+    static long zigZag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unZigZag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+}
@@ -0,0 +1,86 @@
+package ry.tech.mtc.export;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+// CSV с заголовком device_id,parameter,time_ms,value.
+// Если разрешение датчика - степень десяти, значение пишется с этим числом знаков после запятой
+// (история хранится квантованной, и полная запись double дала бы хвосты вида 3.4699999999999998).
+class CsvSeriesWriter implements SeriesWriter {
+    private static final int MAX_FIXED_DECIMALS = 9;
+
+    private final ChannelOutput output;
+    private byte[] rowPrefix;
+    private int decimals;
+    private long decimalScale;
+
+    CsvSeriesWriter(ChannelOutput output) throws IOException {
+        this.output = output;
+        output.writeBytes("device_id,parameter,time_ms,value\n".getBytes(StandardCharsets.US_ASCII));
+    }
+
+    @Override
+    public void beginSeries(String deviceId, String parameter, double resolution) throws IOException {
+        // Начало строки одинаково для всех точек ряда, кодируется один раз
+        rowPrefix = (escape(deviceId) + "," + escape(parameter) + ",").getBytes(StandardCharsets.UTF_8);
+        decimals = -1;
+        if (resolution > 0) {
+            int candidate = (int) Math.round(-Math.log10(resolution));
+            if (candidate >= 0 && candidate <= MAX_FIXED_DECIMALS
+                    && Math.abs(Math.pow(10, -candidate) - resolution) < resolution * 1e-9) {
+                decimals = candidate;
+                decimalScale = (long) Math.pow(10, candidate);
+            }
+        }
+    }
+
+    @Override
+    public void writeChunk(long[] times, double[] values, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            output.writeBytes(rowPrefix);
+            output.writeDecimal(times[i]);
+            output.writeByte(',');
+            writeValue(values[i]);
+            output.writeByte('\n');
+        }
+    }
+
+    @Override
+    public void endSeries() {
+        rowPrefix = null;
+    }
+
+    @Override
+    public long getBytesWritten() {
+        return output.getBytesWritten();
+    }
+
+    @Override
+    public void close() throws IOException {
+        output.close();
+    }
+
+    private void writeValue(double value) throws IOException {
+        if (decimals < 0 || Double.isInfinite(value) || Math.abs(value) * decimalScale >= Long.MAX_VALUE) {
+            output.writeBytes(Double.toString(value).getBytes(StandardCharsets.US_ASCII));
+            return;
+        }
+        long scaled = Math.round(value * decimalScale);
+        if (scaled < 0) {
+            output.writeByte('-');
+            scaled = -scaled;
+        }
+        output.writeDecimal(scaled / decimalScale);
+        if (decimals > 0) {
+            output.writeByte('.');
+            output.writePaddedDecimal(scaled % decimalScale, decimals);
+        }
+    }
+
+    private static String escape(String field) {
+        if (field.indexOf(',') < 0 && field.indexOf('"') < 0 && field.indexOf('\n') < 0) {
+            return field;
+        }
+        return '"' + field.replace("\"", "\"\"") + '"';
+    }
+}
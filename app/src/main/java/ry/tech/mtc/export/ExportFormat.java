@@ -0,0 +1,18 @@
+package ry.tech.mtc.export;
+
+// Формат выгрузки истории: CSV для таблиц и скриптов анализа,
+// COLUMNAR - компактный двоичный, его же читает HistoryImporter
+public enum ExportFormat {
+    CSV("csv"),
+    COLUMNAR("mtch");
+
+    private final String extension;
+
+    ExportFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,34 @@
+package ry.tech.mtc.export;
+
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+// Что выгружать: null в deviceIds или parameters - все устройства или все параметры.
+// resolutionMs > 0 - усреднение по интервалам этой длины, 0 - исходные точки.
+public class ExportRequest {
+    public final Set<String> deviceIds;
+    public final Set<String> parameters;
+    public final long fromMs;
+    public final long toMs;
+    public final long resolutionMs;
+
+    public ExportRequest(Set<String> deviceIds, Set<String> parameters, long fromMs, long toMs, long resolutionMs) {
+        if (toMs < fromMs) {
+            throw new IllegalArgumentException("Empty time range: " + fromMs + ".." + toMs);
+        }
+        if (resolutionMs < 0) {
+            throw new IllegalArgumentException("Negative resolution: " + resolutionMs);
+        }
+        this.deviceIds = deviceIds != null ? Collections.unmodifiableSet(new HashSet<>(deviceIds)) : null;
+        this.parameters = parameters != null ? Collections.unmodifiableSet(new HashSet<>(parameters)) : null;
+        this.fromMs = fromMs;
+        this.toMs = toMs;
+        this.resolutionMs = resolutionMs;
+    }
+
+    // Вся история всех устройств без прореживания
+    public static ExportRequest all() {
+        return new ExportRequest(null, null, Long.MIN_VALUE, Long.MAX_VALUE, 0);
+    }
+}
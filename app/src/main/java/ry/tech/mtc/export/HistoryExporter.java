@@ -0,0 +1,193 @@
+package ry.tech.mtc.export;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.telemetry.CompressedSeries;
+import ry.tech.mtc.telemetry.DeviceHistoryStore;
+
+// Выгрузка сжатой истории устройств в файл на фоновом исполнителе.
+// Ряды читаются курсором и пишутся чанками по CHUNK_POINTS точек через один буфер ChannelOutput,
+// поэтому память постоянна при любом объеме. Файл сначала пишется во временный *.part
+// и переименовывается только после успешного завершения.
+public class HistoryExporter {
+    static final int CHUNK_POINTS = 4096;
+
+    private final DeviceHistoryStore store;
+    private final ExecutorService executor;
+    private final Counter exportedPoints = MetricsRegistry.getInstance().counter("export.points");
+
+    public static class Result {
+        public final File file;
+        public final int seriesCount;
+        public final long pointCount;
+        public final long bytes;
+        public final long elapsedNanos;
+
+        Result(File file, int seriesCount, long pointCount, long bytes, long elapsedNanos) {
+            this.file = file;
+            this.seriesCount = seriesCount;
+            this.pointCount = pointCount;
+            this.bytes = bytes;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    public HistoryExporter(DeviceHistoryStore store, ExecutorService executor) {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    // Отмена через Future.cancel(true) прерывает выгрузку на границе чанка, файл не создается
+    public Future<Result> export(ExportRequest request, ExportFormat format, File target, ProgressListener listener) {
+        return executor.submit(() -> exportBlocking(request, format, target, listener));
+    }
+
+    // Синхронный вариант для вызова из собственного фонового потока
+    public Result exportBlocking(ExportRequest request, ExportFormat format, File target, ProgressListener listener)
+            throws IOException {
+        long start = System.nanoTime();
+        List<String> deviceIds = new ArrayList<>();
+        long totalPoints = 0;
+        for (String deviceId : store.getDeviceIds()) {
+            if (request.deviceIds != null && !request.deviceIds.contains(deviceId)) continue;
+            deviceIds.add(deviceId);
+            for (Map.Entry<String, CompressedSeries> entry : store.getDeviceSeries(deviceId).entrySet()) {
+                if (request.parameters == null || request.parameters.contains(entry.getKey())) {
+                    totalPoints += entry.getValue().getPointCount();
+                }
+            }
+        }
+
+        File temp = new File(target.getPath() + ".part");
+        ChannelOutput output = new ChannelOutput(new FileOutputStream(temp).getChannel());
+        boolean isComplete = false;
+        try {
+            SeriesWriter writer = format == ExportFormat.CSV
+                    ? new CsvSeriesWriter(output) : new ColumnarSeriesWriter(output);
+            ChunkSink sink = new ChunkSink(writer, listener, totalPoints);
+            for (String deviceId : deviceIds) {
+                Map<String, CompressedSeries> deviceSeries = store.getDeviceSeries(deviceId);
+                List<String> parameters = new ArrayList<>(deviceSeries.keySet());
+                Collections.sort(parameters);
+                for (String parameter : parameters) {
+                    if (request.parameters != null && !request.parameters.contains(parameter)) continue;
+                    sink.exportSeries(deviceId, parameter, deviceSeries.get(parameter), request);
+                }
+            }
+            writer.close();
+            if (listener != null) {
+                listener.onProgress(totalPoints, totalPoints);
+            }
+            if (target.exists() && !target.delete()) {
+                throw new IOException("Cannot replace " + target);
+            }
+            if (!temp.renameTo(target)) {
+                throw new IOException("Cannot rename " + temp + " to " + target);
+            }
+            isComplete = true;
+            exportedPoints.add(sink.pointCount);
+            return new Result(target, sink.seriesCount, sink.pointCount, target.length(), System.nanoTime() - start);
+        } finally {
+            if (!isComplete) {
+                try {
+                    output.close();
+                } catch (IOException ignored) {
+                    // Канал уже закрыт или поврежден; недописанный файл удаляется ниже
+                }
+                temp.delete();
+            }
+        }
+    }
+
+    // Переиспользуемый чанк и усреднение по интервалам resolutionMs
+    private static class ChunkSink {
+        private final SeriesWriter writer;
+        private final ProgressListener listener;
+        private final long totalPoints;
+        private final long[] times = new long[CHUNK_POINTS];
+        private final double[] values = new double[CHUNK_POINTS];
+        private int size;
+        private long processedPoints;
+        long pointCount;
+        int seriesCount;
+
+        ChunkSink(SeriesWriter writer, ProgressListener listener, long totalPoints) {
+            this.writer = writer;
+            this.listener = listener;
+            this.totalPoints = totalPoints;
+        }
+
+        void exportSeries(String deviceId, String parameter, CompressedSeries series, ExportRequest request)
+                throws IOException {
+            CompressedSeries.Cursor cursor = series.cursor(request.fromMs);
+            boolean isStarted = false;
+            long bucketStart = 0;
+            double bucketSum = 0;
+            int bucketCount = 0;
+
+            while (cursor.next()) {
+                long time = cursor.getTime();
+                if (time > request.toMs) break;
+                processedPoints++;
+                if (!isStarted) {
+                    writer.beginSeries(deviceId, parameter, series.getResolution());
+                    isStarted = true;
+                }
+                if (request.resolutionMs == 0) {
+                    add(time, cursor.getValue());
+                    continue;
+                }
+                // Интервалы выровнены по эпохе: минутные совпадают с границами минут
+                long bucket = Math.floorDiv(time, request.resolutionMs) * request.resolutionMs;
+                if (bucketCount > 0 && bucket != bucketStart) {
+                    add(bucketStart, bucketSum / bucketCount);
+                    bucketSum = 0;
+                    bucketCount = 0;
+                }
+                bucketStart = bucket;
+                bucketSum += cursor.getValue();
+                bucketCount++;
+            }
+            if (!isStarted) return;
+
+            if (bucketCount > 0) {
+                add(bucketStart, bucketSum / bucketCount);
+            }
+            flushChunk();
+            writer.endSeries();
+            seriesCount++;
+        }
+
+        private void add(long time, double value) throws IOException {
+            times[size] = time;
+            values[size] = value;
+            size++;
+            pointCount++;
+            if (size == CHUNK_POINTS) {
+                flushChunk();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            writer.writeChunk(times, values, size);
+            size = 0;
+            if (Thread.interrupted()) {
+                throw new InterruptedIOException("Export cancelled");
+            }
+            if (listener != null) {
+                listener.onProgress(Math.min(processedPoints, totalPoints), totalPoints);
+            }
+        }
+    }
+}
@@ -0,0 +1,117 @@
+package ry.tech.mtc.export;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.ProtocolException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.telemetry.CompressedSeries;
+import ry.tech.mtc.telemetry.DeviceHistoryStore;
+
+// Загрузка колоночного файла (ExportFormat.COLUMNAR) обратно в DeviceHistoryStore.
+// Чанки читаются в переиспользуемые массивы и добавляются в ряд одним appendAll под одной блокировкой.
+// Точки не новее уже имеющихся в ряду пропускаются: ряд принимает только возрастающее время.
+public class HistoryImporter {
+    private static final int MAX_STRING_BYTES = 1024;
+
+    private final DeviceHistoryStore store;
+    private final ExecutorService executor;
+    private final Counter importedPoints = MetricsRegistry.getInstance().counter("import.points");
+
+    public static class Result {
+        public final int seriesCount;
+        public final long pointCount;
+        public final long skippedCount;
+        public final long elapsedNanos;
+
+        Result(int seriesCount, long pointCount, long skippedCount, long elapsedNanos) {
+            this.seriesCount = seriesCount;
+            this.pointCount = pointCount;
+            this.skippedCount = skippedCount;
+            this.elapsedNanos = elapsedNanos;
+        }
+    }
+
+    public HistoryImporter(DeviceHistoryStore store, ExecutorService executor) {
+        this.store = store;
+        this.executor = executor;
+    }
+
+    public Future<Result> importFile(File file, ProgressListener listener) {
+        return executor.submit(() -> importBlocking(file, listener));
+    }
+
+    public Result importBlocking(File file, ProgressListener listener) throws IOException {
+        long start = System.nanoTime();
+        long[] times = new long[HistoryExporter.CHUNK_POINTS];
+        double[] values = new double[HistoryExporter.CHUNK_POINTS];
+        int seriesCount = 0;
+        long pointCount = 0;
+        long skippedCount = 0;
+
+        try (ChannelInput input = new ChannelInput(new FileInputStream(file).getChannel())) {
+            long size = input.getSize();
+            int magic = 0;
+            for (int i = 0; i < 4; i++) {
+                magic = (magic << 8) | input.readByte();
+            }
+            if (magic != ColumnarSeriesWriter.MAGIC) {
+                throw new ProtocolException("Not a history file");
+            }
+            int version = input.readByte();
+            if (version != ColumnarSeriesWriter.VERSION) {
+                throw new ProtocolException("Unsupported history version " + version);
+            }
+
+            while (true) {
+                int tag = input.readByte();
+                if (tag == ColumnarSeriesWriter.TAG_END) break;
+                if (tag != ColumnarSeriesWriter.TAG_SERIES) {
+                    throw new ProtocolException("Unknown tag " + tag);
+                }
+                String deviceId = input.readString(MAX_STRING_BYTES);
+                String parameter = input.readString(MAX_STRING_BYTES);
+                input.readDouble(); // разрешение источника; ряд квантует по своему
+                CompressedSeries series = store.getOrCreateSeries(deviceId, parameter);
+                seriesCount++;
+
+                long lastTime = 0;
+                while (true) {
+                    long count = input.readVarint();
+                    if (count == 0) break;
+                    if (count < 0 || count > times.length) {
+                        throw new ProtocolException("Bad chunk size " + count);
+                    }
+                    int chunkSize = (int) count;
+                    for (int i = 0; i < chunkSize; i++) {
+                        lastTime += ColumnarSeriesWriter.unZigZag(input.readVarint());
+                        times[i] = lastTime;
+                    }
+                    for (int i = 0; i < chunkSize; i++) {
+                        values[i] = input.readDouble();
+                    }
+                    int accepted = series.appendAll(times, values, chunkSize);
+                    pointCount += accepted;
+                    skippedCount += chunkSize - accepted;
+
+                    if (Thread.interrupted()) {
+                        throw new InterruptedIOException("Import cancelled");
+                    }
+                    if (listener != null) {
+                        listener.onProgress(input.getBytesRead(), size);
+                    }
+                }
+            }
+            if (listener != null) {
+                listener.onProgress(size, size);
+            }
+        }
+        importedPoints.add(pointCount);
+        return new Result(seriesCount, pointCount, skippedCount, System.nanoTime() - start);
+    }
+}
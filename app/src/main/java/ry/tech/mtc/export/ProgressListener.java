@@ -0,0 +1,7 @@
+package ry.tech.mtc.export;
+
+// Ход выгрузки или загрузки истории. Вызывается в фоновом потоке;
+// единицы done/total задает операция (точки при выгрузке, байты файла при загрузке)
+public interface ProgressListener {
+    void onProgress(long done, long total);
+}
@@ -0,0 +1,15 @@
+package ry.tech.mtc.export;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+// Запись выгрузки по рядам и чанкам; массивы чанка принадлежат вызывающему и переиспользуются
+interface SeriesWriter extends Closeable {
+    void beginSeries(String deviceId, String parameter, double resolution) throws IOException;
+
+    void writeChunk(long[] times, double[] values, int count) throws IOException;
+
+    void endSeries() throws IOException;
+
+    long getBytesWritten();
+}
@@ -1,6 +1,8 @@
 package ry.tech.mtc.fragments;
 
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,6 +15,7 @@ import ry.tech.mtc.controllers.IoTDeviceController;
 import ry.tech.mtc.models.Device;
 
 public class DeviceFragment extends Fragment {
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
     private IoTDeviceController deviceController;
     private Device device;
 
@@ -32,8 +35,21 @@ public class DeviceFragment extends Fragment {
         return view;
     }
 
+    // Команда сбрасывает запись кэша, поэтому состояние не ждется в главном потоке:
+    // сразу показывается известное, загруженное применяется по готовности
     private void updateDeviceState() {
-        device = deviceController.getDeviceState(device.getId());
+        String deviceId = device.getId();
+        Device cached = deviceController.peekDeviceState(deviceId);
+        if (cached != null) {
+            applyDeviceState(cached);
+        }
+        deviceController.getStateCache().getAsync(deviceId)
+                .thenAccept(loaded -> mainHandler.post(() -> applyDeviceState(loaded)));
+    }
+
+    private void applyDeviceState(Device loaded) {
+        if (loaded == null || !isAdded()) return;
+        device = loaded;
         // Обновление UI с новым состоянием устройства
     }
 
@@ -0,0 +1,189 @@
+package ry.tech.mtc.fragments;
+
+import android.content.Intent;
+import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.view.LayoutInflater;
+import android.view.View;
+import android.view.ViewGroup;
+import android.widget.TextView;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
+import androidx.fragment.app.Fragment;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ry.tech.mtc.R;
+import ry.tech.mtc.export.ExportFormat;
+import ry.tech.mtc.export.ExportRequest;
+import ry.tech.mtc.export.HistoryExporter;
+import ry.tech.mtc.export.HistoryImporter;
+import ry.tech.mtc.export.ProgressListener;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.startup.AppStartup;
+import ry.tech.mtc.telemetry.DeviceHistoryStore;
+import ry.tech.mtc.telemetry.TelemetryEngine;
+
+// Экран диагностики: текущие счетчики, гистограммы задержек и датчики из MetricsRegistry,
+// ниже - время готовности подсистем при старте. Отсюда же история показаний выгружается в файлы
+// приложения (exports/) для анализа на компьютере и загружается обратно.
+public class DiagnosticsFragment extends Fragment {
+    private static final int REFRESH_INTERVAL = 1000;
+    private static final String EXPORT_DIR = "exports";
+    private static final String EXPORT_NAME = "history";
+
+    private final Handler refreshHandler = new Handler(Looper.getMainLooper());
+    private final Runnable refreshRunnable = new Runnable() {
+        @Override
+        public void run() {
+            refresh();
+            refreshHandler.postDelayed(this, REFRESH_INTERVAL);
+        }
+    };
+    private TextView metricsText;
+    private TextView transferText;
+    private ExecutorService transferExecutor;
+
+    @Override
+    public void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        transferExecutor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "HistoryTransfer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        // Начатая выгрузка дописывается до конца, новые не принимаются
+        transferExecutor.shutdown();
+    }
+
+    @Override
+    public View onCreateView(LayoutInflater inflater, ViewGroup container,
+                             Bundle savedInstanceState) {
+        return inflater.inflate(R.layout.fragment_diagnostics, container, false);
+    }
+
+    @Override
+    public void onViewCreated(@NonNull View view, @Nullable Bundle savedInstanceState) {
+        super.onViewCreated(view, savedInstanceState);
+        metricsText = view.findViewById(R.id.textMetrics);
+        transferText = view.findViewById(R.id.textHistoryTransfer);
+
+        view.findViewById(R.id.buttonBack).setOnClickListener(v -> requireActivity().onBackPressed());
+
+        view.findViewById(R.id.buttonResetMetrics).setOnClickListener(v -> {
+            MetricsRegistry.getInstance().reset();
+            refresh();
+        });
+
+        view.findViewById(R.id.buttonShareMetrics).setOnClickListener(v -> shareJson());
+        view.findViewById(R.id.buttonExportHistory).setOnClickListener(v -> exportHistory());
+        view.findViewById(R.id.buttonImportHistory).setOnClickListener(v -> importHistory());
+    }
+
+    @Override
+    public void onResume() {
+        super.onResume();
+        refreshHandler.post(refreshRunnable);
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        refreshHandler.removeCallbacks(refreshRunnable);
+    }
+
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        metricsText = null;
+        transferText = null;
+    }
+
+    private void refresh() {
+        if (metricsText != null) {
+            metricsText.setText(MetricsRegistry.getInstance().dumpText()
+                    + "\n" + AppStartup.getInstance().dumpText());
+        }
+    }
+
+    // Выгрузка снимка в JSON через стандартный диалог "Поделиться"
+    private void shareJson() {
+        Intent intent = new Intent(Intent.ACTION_SEND);
+        intent.setType("application/json");
+        intent.putExtra(Intent.EXTRA_SUBJECT, "MTC metrics");
+        intent.putExtra(Intent.EXTRA_TEXT, MetricsRegistry.getInstance().dumpJson());
+        startActivity(Intent.createChooser(intent, "Экспорт метрик"));
+    }
+
+    // Вся история в CSV и в колоночный формат; второй файл потом можно загрузить обратно
+    private void exportHistory() {
+        File directory = requireContext().getExternalFilesDir(EXPORT_DIR);
+        DeviceHistoryStore history = TelemetryEngine.getInstance().getHistory();
+        HistoryExporter exporter = new HistoryExporter(history, transferExecutor);
+        showTransferStatus("Выгрузка...");
+        transferExecutor.execute(() -> {
+            try {
+                HistoryExporter.Result csv = exporter.exportBlocking(ExportRequest.all(), ExportFormat.CSV,
+                        new File(directory, EXPORT_NAME + "." + ExportFormat.CSV.getExtension()),
+                        progressListener("CSV"));
+                HistoryExporter.Result columnar = exporter.exportBlocking(ExportRequest.all(), ExportFormat.COLUMNAR,
+                        new File(directory, EXPORT_NAME + "." + ExportFormat.COLUMNAR.getExtension()),
+                        progressListener("MTCH"));
+                showTransferStatus(String.format(Locale.getDefault(),
+                        "Выгружено %d точек: CSV %d КБ, MTCH %d КБ за %d мс\n%s",
+                        csv.pointCount, csv.bytes / 1024, columnar.bytes / 1024,
+                        (csv.elapsedNanos + columnar.elapsedNanos) / 1_000_000, directory));
+            } catch (IOException e) {
+                showTransferStatus("Ошибка выгрузки: " + e.getMessage());
+            }
+        });
+    }
+
+    private void importHistory() {
+        File file = new File(requireContext().getExternalFilesDir(EXPORT_DIR),
+                EXPORT_NAME + "." + ExportFormat.COLUMNAR.getExtension());
+        HistoryImporter importer = new HistoryImporter(TelemetryEngine.getInstance().getHistory(), transferExecutor);
+        showTransferStatus("Загрузка...");
+        transferExecutor.execute(() -> {
+            try {
+                HistoryImporter.Result result = importer.importBlocking(file, progressListener("Загрузка"));
+                showTransferStatus(String.format(Locale.getDefault(),
+                        "Загружено %d точек в %d рядов, пропущено %d, %d мс",
+                        result.pointCount, result.seriesCount, result.skippedCount, result.elapsedNanos / 1_000_000));
+            } catch (IOException e) {
+                showTransferStatus("Ошибка загрузки: " + e.getMessage());
+            }
+        });
+    }
+
+    // Прогресс приходит из фонового потока часто, на экран выводится смена процента
+    private ProgressListener progressListener(String label) {
+        int[] lastPercent = {-1};
+        return (done, total) -> {
+            int percent = total > 0 ? (int) (done * 100 / total) : 100;
+            if (percent != lastPercent[0]) {
+                lastPercent[0] = percent;
+                showTransferStatus(label + ": " + percent + "%");
+            }
+        };
+    }
+
+    private void showTransferStatus(String status) {
+        refreshHandler.post(() -> {
+            if (transferText != null) {
+                transferText.setText(status);
+            }
+        });
+    }
+}
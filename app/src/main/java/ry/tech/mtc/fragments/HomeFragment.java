@@ -2,6 +2,11 @@ package ry.tech.mtc.fragments;
 
 import android.os.Bundle;
 import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
+import android.view.Choreographer;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -21,37 +26,96 @@ import androidx.recyclerview.widget.LinearLayoutManager;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.google.android.material.button.MaterialButton;
+import com.google.android.material.chip.Chip;
+import com.google.android.material.chip.ChipGroup;
 import com.google.android.material.switchmaterial.SwitchMaterial;
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
+import ry.tech.mtc.IoTService;
+import ry.tech.mtc.MockDeviceData;
 import ry.tech.mtc.R;
 import ry.tech.mtc.adapters.DeviceAdapter;
+import ry.tech.mtc.controllers.DeviceIndex;
 import ry.tech.mtc.controllers.IoTDeviceController;
-import ry.tech.mtc.imitation.EnhancedDeviceSimulator;
+import ry.tech.mtc.controllers.PagedDeviceList;
 import ry.tech.mtc.interfaces.DeviceClickListener;
+import ry.tech.mtc.metrics.ReadingTracer;
+import ry.tech.mtc.metrics.TraceContext;
+import ry.tech.mtc.metrics.TraceStage;
 import ry.tech.mtc.models.Device;
+import ry.tech.mtc.sensors.DeviceSymbols;
+import ry.tech.mtc.sensors.SensorPolicyStore;
+import ry.tech.mtc.sensors.SensorThresholdManager;
+import ry.tech.mtc.sensors.SensorType;
+import ry.tech.mtc.startup.AppStartup;
+import ry.tech.mtc.telemetry.DeviceSnapshot;
+import ry.tech.mtc.telemetry.SampleSeries;
+import ry.tech.mtc.telemetry.TelemetryEngine;
+import ry.tech.mtc.views.SensorChartView;
 
 public class HomeFragment extends Fragment {
+    private static final String TAG = "HomeFragment";
     private IoTDeviceController deviceController;
-    private List<Device> devices;
+    private DeviceIndex deviceIndex;
+    private PagedDeviceList pagedDevices;
+    private ExecutorService pageExecutor;
     private DeviceAdapter deviceAdapter;
     private Handler updateHandler;
     private static final int UPDATE_INTERVAL = 5000;
-    private EnhancedDeviceSimulator simulator;
+    private static final int SEARCH_DEBOUNCE = 150;
+    private static final List<String> CLIMATE_TYPES = Arrays.asList(Device.TYPE_AC);
+    private static final List<String> SENSOR_TYPES = Arrays.asList(Device.TYPE_TEMPERATURE_SENSOR,
+            Device.TYPE_HUMIDITY_SENSOR, Device.TYPE_WATER_SENSOR, Device.TYPE_ELECTRICITY_SENSOR,
+            Device.TYPE_AIR_SENSOR);
+    private IoTService.TelemetryConnection telemetryConnection;
+    // История температуры живет вместе с фрагментом вкладки и переживает пересоздание вида
+    private final SampleSeries temperatureHistory = new SampleSeries();
+    private SensorChartView temperatureChart;
+
+    // Состояние фильтров списка устройств
+    private String searchText = "";
+    private boolean isOnlineOnly;
+    private final Set<String> selectedTypes = new HashSet<>();
+    private final Set<String> selectedRooms = new HashSet<>();
+    private final List<Chip> roomChips = new ArrayList<>();
+    private final Runnable applyQueryTask = this::applyQuery;
 
     @Override
     public void onCreate(@Nullable Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         deviceController = IoTDeviceController.getInstance();
-        devices = new ArrayList<>();
-        updateHandler = new Handler();
-        simulator = new EnhancedDeviceSimulator();
-        simulator.setUpdateListener(new EnhancedDeviceSimulator.SimulationUpdateListener() {
+        deviceIndex = new DeviceIndex();
+        updateHandler = new Handler(Looper.getMainLooper());
+        // Страницы списка считаются в фоне, применяются в главном потоке
+        pageExecutor = Executors.newSingleThreadExecutor();
+        pagedDevices = new PagedDeviceList(deviceIndex, pageExecutor, updateHandler::post,
+                new PagedDeviceList.Callback() {
+                    @Override
+                    public void onListChanged(int total) {
+                        if (deviceAdapter != null) {
+                            deviceAdapter.notifyDataSetChanged();
+                        }
+                    }
+
+                    @Override
+                    public void onPageLoaded(int start, int count) {
+                        if (deviceAdapter != null) {
+                            deviceAdapter.notifyItemRangeChanged(start, count);
+                        }
+                    }
+                });
+        telemetryConnection = new IoTService.TelemetryConnection(new TelemetryEngine.TelemetryListener() {
             @Override
-            public void onDeviceDataUpdated(String deviceId, EnhancedDeviceSimulator.DeviceSimulationData data) {
-                updateDeviceData(deviceId, data);
+            public void onDeviceSnapshot(DeviceSnapshot snapshot) {
+                updateDeviceData(snapshot);
             }
 
             @Override
@@ -59,17 +123,67 @@ public class HomeFragment extends Fragment {
                 updateDeviceStatus(deviceId, isConnected);
             }
         });
-        initializeDevices();
+        loadDevices();
+        pagedDevices.refresh();
     }
 
-    private void initializeDevices() {
-        devices.add(new Device("1", "Умная лампа", "light"));
-        devices.add(new Device("2", "Кондиционер", "ac"));
-        devices.add(new Device("3", "Датчик температуры", "temperature_sensor"));
-        devices.add(new Device("4", "Датчик влажности", "humidity_sensor"));
-        devices.add(new Device("5", "Датчик воды", Device.TYPE_WATER_SENSOR));
-        devices.add(new Device("6", "Датчик электричества", Device.TYPE_ELECTRICITY_SENSOR));
-        devices.add(new Device("7", "Датчик воздуха", Device.TYPE_AIR_SENSOR));
+    @Override
+    public void onDestroy() {
+        super.onDestroy();
+        updateHandler.removeCallbacksAndMessages(null);
+        pageExecutor.shutdownNow();
+    }
+
+    @Override
+    public void onStart() {
+        super.onStart();
+        telemetryConnection.bind(requireContext());
+    }
+
+    @Override
+    public void onStop() {
+        super.onStop();
+        telemetryConnection.unbind(requireContext());
+    }
+
+    // Скрытая вкладка остается в STARTED: снимки не доставляются, при возврате берутся последние
+    @Override
+    public void onResume() {
+        super.onResume();
+        telemetryConnection.resume();
+        for (DeviceSnapshot snapshot : TelemetryEngine.getInstance().getLatestSnapshots()) {
+            applySnapshot(snapshot);
+        }
+        updateSensorData(getView());
+    }
+
+    @Override
+    public void onPause() {
+        super.onPause();
+        telemetryConnection.pause();
+    }
+
+    // Индекс хранит те же экземпляры, что MockDeviceData: изменения на экране сохраняются из них.
+    // Список берется после восстановления из базы (STORAGE), ожидание - в потоке страниц, не в главном
+    private void loadDevices() {
+        pageExecutor.execute(() -> {
+            try {
+                AppStartup.getInstance().require(AppStartup.STORAGE);
+            } catch (RuntimeException e) {
+                // Без базы показываем встроенный список
+                Log.w(TAG, "Device storage unavailable", e);
+            }
+            List<Device> devices = MockDeviceData.getAllDevices();
+            updateHandler.post(() -> {
+                deviceIndex.putAll(devices);
+                pagedDevices.refresh();
+                View view = getView();
+                if (view != null) {
+                    addRoomChips(view);
+                    updateSensorData(view);
+                }
+            });
+        });
     }
 
     @Override
@@ -77,7 +191,6 @@ public class HomeFragment extends Fragment {
                              Bundle savedInstanceState) {
         View view = inflater.inflate(R.layout.fragment_home, container, false);
         setupUI(view);
-        simulator.startSimulation();
         return view;
     }
 
@@ -86,7 +199,7 @@ public class HomeFragment extends Fragment {
         addDeviceButton.setOnClickListener(v -> showAddDeviceDialog());
 
         RecyclerView devicesRecyclerView = view.findViewById(R.id.devicesRecyclerView);
-        deviceAdapter = new DeviceAdapter(devices, new DeviceClickListener() {
+        deviceAdapter = new DeviceAdapter(pagedDevices, new DeviceClickListener() {
             @Override
             public void onDeviceStateChanged(Device device, boolean isOn) {
                 device.setOn(isOn);
@@ -101,10 +214,100 @@ public class HomeFragment extends Fragment {
         devicesRecyclerView.setAdapter(deviceAdapter);
         devicesRecyclerView.setLayoutManager(new LinearLayoutManager(getContext()));
 
+        temperatureChart = view.findViewById(R.id.temperatureChart);
+        temperatureChart.setLineColor(ContextCompat.getColor(requireContext(), R.color.temperatureColor));
+        temperatureChart.setSeries(temperatureHistory);
+
         setupDeviceControls(view);
+        setupDeviceFilters(view);
         updateSensorData(view);
     }
 
+    @Override
+    public void onDestroyView() {
+        super.onDestroyView();
+        roomChips.clear();
+        temperatureChart = null;
+    }
+
+    // Поиск по префиксу и чипы фильтров; запрос выполняется по индексу, а не перебором списка
+    private void setupDeviceFilters(View view) {
+        EditText searchEditText = view.findViewById(R.id.searchEditText);
+        searchEditText.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {}
+
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchText = s.toString();
+                updateHandler.removeCallbacks(applyQueryTask);
+                updateHandler.postDelayed(applyQueryTask, SEARCH_DEBOUNCE);
+            }
+        });
+
+        Chip onlineChip = view.findViewById(R.id.chipOnline);
+        onlineChip.setOnCheckedChangeListener((chip, isChecked) -> {
+            isOnlineOnly = isChecked;
+            applyQuery();
+        });
+        bindTypeChip(view.findViewById(R.id.chipLights), Arrays.asList(Device.TYPE_LIGHT));
+        bindTypeChip(view.findViewById(R.id.chipClimate), CLIMATE_TYPES);
+        bindTypeChip(view.findViewById(R.id.chipSensors), SENSOR_TYPES);
+
+        addRoomChips(view);
+    }
+
+    // Чипы комнат пересоздаются, когда индекс заполнен или пополнен
+    private void addRoomChips(View view) {
+        ChipGroup chipGroup = view.findViewById(R.id.filterChipGroup);
+        for (Chip chip : roomChips) {
+            chipGroup.removeView(chip);
+        }
+        roomChips.clear();
+        for (String room : deviceIndex.getRooms()) {
+            Chip roomChip = new Chip(requireContext());
+            roomChip.setText(room);
+            roomChip.setCheckable(true);
+            roomChip.setChecked(selectedRooms.contains(room));
+            roomChip.setOnCheckedChangeListener((chip, isChecked) -> {
+                if (isChecked) {
+                    selectedRooms.add(room);
+                } else {
+                    selectedRooms.remove(room);
+                }
+                applyQuery();
+            });
+            chipGroup.addView(roomChip);
+            roomChips.add(roomChip);
+        }
+    }
+
+    private void bindTypeChip(Chip chip, List<String> types) {
+        chip.setOnCheckedChangeListener((buttonView, isChecked) -> {
+            if (isChecked) {
+                selectedTypes.addAll(types);
+            } else {
+                selectedTypes.removeAll(types);
+            }
+            applyQuery();
+        });
+    }
+
+    private void applyQuery() {
+        updateHandler.removeCallbacks(applyQueryTask);
+        DeviceIndex.Query query = new DeviceIndex.Query(
+                searchText.trim().isEmpty() ? null : searchText,
+                selectedTypes.isEmpty() ? null : selectedTypes,
+                selectedRooms.isEmpty() ? null : selectedRooms,
+                isOnlineOnly ? Boolean.TRUE : null);
+        if (!query.equals(pagedDevices.getQuery())) {
+            pagedDevices.setQuery(query);
+        }
+    }
+
     private void setupDeviceControls(View view) {
         SwitchMaterial lampSwitch = view.findViewById(R.id.lampSwitch);
         lampSwitch.setOnCheckedChangeListener((buttonView, isChecked) -> {
@@ -144,12 +347,21 @@ public class HomeFragment extends Fragment {
         });
     }
 
-    private void updateDeviceData(String deviceId, EnhancedDeviceSimulator.DeviceSimulationData data) {
-        Device device = findDeviceById(deviceId);
+    private void updateDeviceData(DeviceSnapshot data) {
+        if (applySnapshot(data)) {
+            renderSnapshot(data.trace);
+        }
+    }
+
+    private boolean applySnapshot(DeviceSnapshot data) {
+        Device device = findDeviceById(data.deviceId);
         if (device != null) {
             switch (device.getType()) {
                 case "temperature_sensor":
                     device.setParameter("current_temp", data.temperature);
+                    if (temperatureHistory.append(data.timestamp, (float) data.temperature) && temperatureChart != null) {
+                        temperatureChart.notifyDataChanged();
+                    }
                     break;
                 case "humidity_sensor":
                     device.setParameter("humidity", data.humidity);
@@ -171,14 +383,37 @@ public class HomeFragment extends Fragment {
                     }
                     break;
             }
-            updateSensorData(getView());
+            return true;
         }
+        return false;
+    }
+
+    // Обновление экрана с трассировкой: после BIND значения выставлены во View,
+    // отрисованы они будут в ближайшем кадре Choreographer (RENDER)
+    private void renderSnapshot(TraceContext trace) {
+        ReadingTracer tracer = ReadingTracer.getInstance();
+        tracer.beginSection(trace, TraceStage.BIND);
+        updateSensorData(getView());
+        tracer.endSection(trace);
+        if (trace == null || getView() == null) return;
+
+        trace.mark(TraceStage.BIND);
+        trace.awaitRender();
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> {
+            trace.mark(TraceStage.RENDER);
+            tracer.finish(trace);
+        });
     }
 
     private void updateDeviceStatus(String deviceId, boolean isConnected) {
         Device device = findDeviceById(deviceId);
         if (device != null) {
-            device.setParameter("is_connected", isConnected);
+            device.setOnline(isConnected);
+            deviceIndex.setOnline(deviceId, isConnected);
+            // Список зависит от статуса только при включенном фильтре "В сети"
+            if (pagedDevices.getQuery().online != null) {
+                pagedDevices.refresh();
+            }
             updateSensorData(getView());
         }
     }
@@ -283,7 +518,7 @@ public class HomeFragment extends Fragment {
                     Number powerConsumption = (Number) electricitySensor.getParameter("power_consumption");
                     if (powerConsumption != null) {
                         double consumption = powerConsumption.doubleValue();
-                        electricityValue.setText(String.format("%.2f kWh", consumption));
+                        electricityValue.setText(String.format("%.0f W", consumption));
 
                         if (consumption > 800) {
                             electricityStatus.setText("❗️ Высокое потребление");
@@ -360,10 +595,11 @@ public class HomeFragment extends Fragment {
                 default: return;
             }
 
-            String newId = String.valueOf(devices.size() + 1);
-            Device newDevice = new Device(newId, deviceTypes[which], type);
-            devices.add(newDevice);
-            deviceAdapter.notifyItemInserted(devices.size() - 1);
+            // Идентификатор не выводится из размера списка: после удалений он бы повторялся
+            Device newDevice = new Device(UUID.randomUUID().toString(), deviceTypes[which], type);
+            MockDeviceData.addDevice(newDevice);
+            deviceIndex.put(newDevice);
+            pagedDevices.refresh();
         });
 
         builder.show();
@@ -378,6 +614,8 @@ public class HomeFragment extends Fragment {
         builder.setView(dialogView)
                 .setPositiveButton("Сохранить", (dialog, which) -> {
                     saveDeviceSettings(device, dialogView);
+                    addRoomChips(getView());
+                    pagedDevices.refresh();
                     updateSensorData(getView());
                     deviceAdapter.notifyDataSetChanged();
                 })
@@ -391,8 +629,11 @@ public class HomeFragment extends Fragment {
         ImageView deviceTypeIcon = dialogView.findViewById(R.id.deviceTypeIcon);
         SwitchMaterial deviceMainSwitch = dialogView.findViewById(R.id.deviceMainSwitch);
 
+        EditText roomInput = dialogView.findViewById(R.id.roomInput);
+
         deviceNameTitle.setText(device.getName());
         deviceMainSwitch.setChecked(device.isOn());
+        roomInput.setText(device.getRoom());
 
         View lightSettings = dialogView.findViewById(R.id.lightSettings);
         View acSettings = dialogView.findViewById(R.id.acSettings);
@@ -470,8 +711,22 @@ public class HomeFragment extends Fragment {
         );
         adapter.setDropDownViewResource(android.R.layout.simple_spinner_dropdown_item);
         updateIntervalSpinner.setAdapter(adapter);
+        SensorPolicyStore.DevicePolicy policy = SensorPolicyStore.getInstance().getPolicy(device.getId());
+        Object updateInterval = policy.samplingSetting != SensorPolicyStore.UNSET
+                ? Integer.valueOf(policy.samplingSetting) : device.getParameter("update_interval");
+        if (updateInterval instanceof Integer) {
+            updateIntervalSpinner.setSelection((Integer) updateInterval);
+        }
 
-        if (device.getType().equals("temperature_sensor")) {
+        // Действующие пороги: шаблон типа с пользовательскими изменениями
+        SensorType type = SensorType.fromTypeId(device.getType());
+        SensorThresholdManager.ThresholdSet thresholds = SensorThresholdManager.getInstance()
+                .getThresholdSet(DeviceSymbols.getInstance().find(device.getId()));
+        int index = thresholds != null && type != null ? thresholds.indexOf(type.getParameter(0)) : -1;
+        if (thresholds != null && thresholds.hasRange(index)) {
+            minThresholdInput.setText(String.valueOf(thresholds.getMin(index)));
+            maxThresholdInput.setText(String.valueOf(thresholds.getMax(index)));
+        } else if (device.getType().equals("temperature_sensor")) {
             minThresholdInput.setText("18");
             maxThresholdInput.setText("25");
         } else {
@@ -484,6 +739,14 @@ public class HomeFragment extends Fragment {
         SwitchMaterial deviceMainSwitch = dialogView.findViewById(R.id.deviceMainSwitch);
         device.setOn(deviceMainSwitch.isChecked());
 
+        // Перенос в другую комнату: учет энергии и фильтры по комнатам следуют за устройством
+        EditText roomInput = dialogView.findViewById(R.id.roomInput);
+        String room = roomInput.getText().toString().trim();
+        if (!room.isEmpty() && !room.equals(device.getRoom())) {
+            MockDeviceData.setDeviceRoom(device, room);
+            deviceIndex.put(device);
+        }
+
         switch (device.getType()) {
             case "light":
                 SeekBar brightnessSeekBar = dialogView.findViewById(R.id.brightnessSeekBar);
@@ -514,34 +777,36 @@ public class HomeFragment extends Fragment {
                 EditText minThresholdInput = dialogView.findViewById(R.id.minThresholdInput);
                 EditText maxThresholdInput = dialogView.findViewById(R.id.maxThresholdInput);
 
-                device.setParameter("update_interval", updateIntervalSpinner.getSelectedItemPosition());
-                device.setParameter("min_threshold", Double.parseDouble(minThresholdInput.getText().toString()));
-                device.setParameter("max_threshold", Double.parseDouble(maxThresholdInput.getText().toString()));
+                int samplingSetting = updateIntervalSpinner.getSelectedItemPosition();
+                String parameter = SensorType.fromTypeId(device.getType()).getParameter(0);
+                double[] range = parseThresholdRange(minThresholdInput, maxThresholdInput);
+                // Одна публикация: движок и сервисы датчиков пересчитают только это устройство
+                SensorPolicyStore.getInstance().update(device.getId(), policy -> {
+                    SensorPolicyStore.DevicePolicy updated = policy.withSamplingSetting(samplingSetting);
+                    return range != null ? updated.withThreshold(parameter, range[0], range[1]) : updated;
+                });
                 break;
         }
+        MockDeviceData.persistDevice(device);
     }
 
-    private Device findDeviceByType(String type) {
-        for (Device device : devices) {
-            if (device.getType().equals(type)) {
-                return device;
-            }
+    // null, если границы не числа или min не меньше max - пороги тогда не меняются
+    private static double[] parseThresholdRange(EditText minInput, EditText maxInput) {
+        try {
+            double min = Double.parseDouble(minInput.getText().toString());
+            double max = Double.parseDouble(maxInput.getText().toString());
+            return min < max ? new double[]{min, max} : null;
+        } catch (NumberFormatException e) {
+            return null;
         }
-        return null;
     }
 
-    private Device findDeviceById(String id) {
-        for (Device device : devices) {
-            if (device.getId().equals(id)) {
-                return device;
-            }
-        }
-        return null;
+    private Device findDeviceByType(String type) {
+        return deviceIndex.findFirstByType(type);
     }
 
-    @Override
-    public void onDestroy() {
-        super.onDestroy();
-        simulator.stopSimulation();
+    private Device findDeviceById(String id) {
+        return deviceIndex.get(id);
     }
+
 }
\ No newline at end of file
@@ -9,6 +9,7 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 
+import ry.tech.mtc.MainActivity;
 import ry.tech.mtc.R;
 
 public class ProfileFragment extends Fragment {
@@ -31,5 +32,10 @@ public class ProfileFragment extends Fragment {
         view.findViewById(R.id.buttonEdit).setOnClickListener(v -> {
             // Обработка нажатия кнопки редактирования
         });
+
+        view.findViewById(R.id.buttonDiagnostics).setOnClickListener(v -> {
+            // Экран метрик открывается поверх профиля, "Назад" возвращает обратно
+            ((MainActivity) requireActivity()).getTabNavigator().push(new DiagnosticsFragment());
+        });
     }
 }
\ No newline at end of file
@@ -0,0 +1,113 @@
+package ry.tech.mtc.fragments;
+
+import android.os.Bundle;
+import android.view.Choreographer;
+
+import androidx.fragment.app.Fragment;
+import androidx.fragment.app.FragmentManager;
+import androidx.fragment.app.FragmentTransaction;
+import androidx.lifecycle.Lifecycle;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
+// Навигация по вкладкам нижнего меню: на каждую вкладку один экземпляр фрагмента.
+// Переключение - show/hide вместо replace, поэтому вид, адаптеры и состояние экрана сохраняются.
+// Скрытая вкладка ограничена состоянием STARTED: получает onPause и останавливает фоновую работу,
+// видимая - RESUMED. Фрагменты ищутся по тегу, так что после пересоздания активности
+// используются восстановленные FragmentManager экземпляры.
+public class TabNavigator {
+    private static final String STATE_CURRENT_TAB = "tab_navigator_current";
+
+    private final FragmentManager fragmentManager;
+    private final int containerId;
+    private final Map<String, Supplier<Fragment>> factories = new HashMap<>();
+    // Время от нажатия до кадра с новой вкладкой: cold - вкладка создается (как при replace), warm - показывается
+    private final LatencyHistogram coldSwitchLatency = MetricsRegistry.getInstance().histogram("nav.tab_switch.cold");
+    private final LatencyHistogram warmSwitchLatency = MetricsRegistry.getInstance().histogram("nav.tab_switch.warm");
+    private String currentTag;
+
+    public TabNavigator(FragmentManager fragmentManager, int containerId) {
+        this.fragmentManager = fragmentManager;
+        this.containerId = containerId;
+    }
+
+    public TabNavigator addTab(String tag, Supplier<Fragment> factory) {
+        factories.put(tag, factory);
+        return this;
+    }
+
+    public void restoreState(Bundle savedInstanceState) {
+        if (savedInstanceState != null) {
+            currentTag = savedInstanceState.getString(STATE_CURRENT_TAB);
+        }
+    }
+
+    public void saveState(Bundle outState) {
+        outState.putString(STATE_CURRENT_TAB, currentTag);
+    }
+
+    public String getCurrentTag() {
+        return currentTag;
+    }
+
+    public void select(String tag) {
+        Supplier<Fragment> factory = factories.get(tag);
+        if (factory == null) {
+            throw new IllegalArgumentException("Unknown tab: " + tag);
+        }
+        long start = System.nanoTime();
+
+        // Экраны, открытые поверх вкладки, закрываются при переходе на любую вкладку
+        if (fragmentManager.getBackStackEntryCount() > 0) {
+            fragmentManager.popBackStackImmediate(null, FragmentManager.POP_BACK_STACK_INCLUSIVE);
+        }
+        if (tag.equals(currentTag)) return;
+
+        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        transaction.setReorderingAllowed(true);
+        transaction.setCustomAnimations(
+                android.R.anim.fade_in,
+                android.R.anim.fade_out
+        );
+
+        Fragment current = currentTag != null ? fragmentManager.findFragmentByTag(currentTag) : null;
+        if (current != null) {
+            transaction.hide(current);
+            transaction.setMaxLifecycle(current, Lifecycle.State.STARTED);
+        }
+
+        Fragment target = fragmentManager.findFragmentByTag(tag);
+        boolean isCreated = target == null;
+        if (isCreated) {
+            target = factory.get();
+            transaction.add(containerId, target, tag);
+        } else {
+            transaction.show(target);
+        }
+        transaction.setMaxLifecycle(target, Lifecycle.State.RESUMED);
+        transaction.commit();
+        currentTag = tag;
+
+        LatencyHistogram latency = isCreated ? coldSwitchLatency : warmSwitchLatency;
+        Choreographer.getInstance().postFrameCallback(frameTimeNanos -> latency.recordSince(start));
+    }
+
+    // Экран поверх текущей вкладки; "Назад" или переход на вкладку возвращает к ней
+    public void push(Fragment screen) {
+        FragmentTransaction transaction = fragmentManager.beginTransaction();
+        transaction.setReorderingAllowed(true);
+        Fragment current = currentTag != null ? fragmentManager.findFragmentByTag(currentTag) : null;
+        if (current != null) {
+            transaction.hide(current);
+            transaction.setMaxLifecycle(current, Lifecycle.State.STARTED);
+        }
+        transaction.add(containerId, screen);
+        transaction.addToBackStack(null);
+        transaction.commit();
+    }
+}
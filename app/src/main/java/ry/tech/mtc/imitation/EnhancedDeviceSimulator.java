@@ -2,22 +2,42 @@ package ry.tech.mtc.imitation;
 
 import android.os.Handler;
 import android.os.Looper;
+import android.os.SystemClock;
 import java.util.Random;
 import java.util.HashMap;
 import java.util.Map;
 
 import ry.tech.mtc.MockDeviceData;
 import ry.tech.mtc.models.Device;
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.metrics.ReadingTracer;
+import ry.tech.mtc.metrics.TraceContext;
+import ry.tech.mtc.metrics.TraceStage;
+import ry.tech.mtc.sensors.DeviceSymbols;
+import ry.tech.mtc.sensors.EnergyAccountingEngine;
+import ry.tech.mtc.sensors.SensorAnomalyDetector;
 import ry.tech.mtc.sensors.SensorDataProcessor;
 import ry.tech.mtc.sensors.SensorThresholdManager;
 import ry.tech.mtc.sensors.SensorCalibrationService;
 import ry.tech.mtc.sensors.SensorNotificationManager;
+import ry.tech.mtc.sensors.SensorPolicyStore;
+import ry.tech.mtc.sensors.SensorType;
+import ry.tech.mtc.telemetry.SamplingScheduler;
 
 public class EnhancedDeviceSimulator {
-    private final Handler handler = new Handler(Looper.getMainLooper());
+    // Модель связи задана по прежнему фиксированному шагу: за каждые LINK_STEP_MS
+    // связь меняет состояние с вероятностью LINK_FLIP_PROBABILITY
+    private static final long LINK_STEP_MS = SamplingScheduler.MIN_INTERVAL_MS;
+    private static final double LINK_FLIP_PROBABILITY = 0.01;
+
+    private final Handler handler;
     private final Random random = new Random();
     private final Map<String, DeviceSimulationData> deviceData = new HashMap<>();
-    private static final int UPDATE_INTERVAL = 200;
+    // Каждое устройство опрашивается со своим адаптивным интервалом; поток один - поток handler
+    private final SamplingScheduler scheduler = new SamplingScheduler();
+    private long scheduledWakeup = Long.MAX_VALUE;
     private boolean isRunning = false;
 
     // Сервисы для работы с датчиками
@@ -25,6 +45,11 @@ public class EnhancedDeviceSimulator {
     private final SensorThresholdManager thresholdManager;
     private final SensorCalibrationService calibrationService;
     private final SensorNotificationManager notificationManager;
+    private final EnergyAccountingEngine energyEngine;
+    private final SensorAnomalyDetector anomalyDetector;
+    private final Counter readingsCounter = MetricsRegistry.getInstance().counter("simulator.readings");
+    private final LatencyHistogram tickLatency = MetricsRegistry.getInstance().histogram("simulator.tick");
+    private final ReadingTracer tracer = ReadingTracer.getInstance();
 
     public class DeviceSimulationData {
         public double temperature;           // Температура
@@ -44,7 +69,11 @@ public class EnhancedDeviceSimulator {
         public boolean isConnected;         // Статус подключения
         public int signalStrength;          // Уровень сигнала
         public long lastUpdateTime;         // Время последнего обновления
+        public long lastLinkCheckTime;      // Время последней проверки связи (uptime), 0 - еще не было
         public Map<String, Object> additionalParams;
+        public TraceContext trace;          // Трассировка текущего показания, null если не в выборке
+        public int handle;                  // Дескриптор устройства в DeviceSymbols
+        public SensorType sensorType;       // null для устройств, которые не являются датчиками
 
         public DeviceSimulationData() {
             // Инициализация с учетом мартовских условий в Беларуси
@@ -77,10 +106,18 @@ public class EnhancedDeviceSimulator {
     private SimulationUpdateListener listener;
 
     public EnhancedDeviceSimulator() {
+        this(Looper.getMainLooper());
+    }
+
+    // Симуляция выполняется в потоке переданного Looper (TelemetryEngine использует фоновый поток)
+    public EnhancedDeviceSimulator(Looper looper) {
+        this.handler = new Handler(looper);
         this.dataProcessor = SensorDataProcessor.getInstance();
         this.thresholdManager = SensorThresholdManager.getInstance();
         this.calibrationService = SensorCalibrationService.getInstance();
         this.notificationManager = SensorNotificationManager.getInstance();
+        this.energyEngine = EnergyAccountingEngine.getInstance();
+        this.anomalyDetector = SensorAnomalyDetector.getInstance();
     }
 
     public void setUpdateListener(SimulationUpdateListener listener) {
@@ -114,84 +151,187 @@ public class EnhancedDeviceSimulator {
         data.rainIntensity = clamp(data.rainIntensity, 0, 5);
     }
 
-    private void processAndNotify(String deviceId, String sensorType, DeviceSimulationData data) {
-        SensorDataProcessor.ProcessedSensorData processedData = new SensorDataProcessor.ProcessedSensorData();
-        dataProcessor.processSensorData(deviceId, sensorType, data.temperature);
+    private void processAndNotify(Device device, DeviceSimulationData data) {
+        // Сюда передается температура, поэтому в процессор она идет только от датчиков температуры,
+        // иначе, например, счетчик энергии получил бы градусы вместо ватт
+        if (data.sensorType == SensorType.TEMPERATURE) {
+            dataProcessor.processSensorData(data.handle, data.sensorType, data.temperature);
+        }
 
-        if (calibrationService.needsCalibration(deviceId, sensorType)) {
-            double calibratedValue = calibrationService.calibrateValue(deviceId, sensorType, data.temperature);
-            data.temperature = calibratedValue;
+        if (calibrationService.needsCalibration(data.handle, data.sensorType)) {
+            data.temperature = calibrationService.calibrateValue(data.handle, data.sensorType, data.temperature);
         }
 
         SensorThresholdManager.ThresholdStatus status = thresholdManager.checkThresholdStatus(
-                deviceId, "temperature", data.temperature);
+                data.handle, "temperature", data.temperature);
 
         if (status != SensorThresholdManager.ThresholdStatus.NORMAL) {
-            Map<String, Double> thresholds = thresholdManager.getThresholds(deviceId);
-            if (thresholds != null) {
+            SensorThresholdManager.ThresholdSet thresholds = thresholdManager.getThresholdSet(data.handle);
+            int index = thresholds != null ? thresholds.indexOf("temperature") : -1;
+            if (thresholds != null && thresholds.hasRange(index)) {
                 notificationManager.sendAlert(
-                        deviceId,
-                        sensorType,
+                        data.handle,
+                        device.getType(),
                         data.temperature,
                         "°C",
-                        thresholds.get("temperature_min"),
-                        thresholds.get("temperature_max")
+                        thresholds.getMin(index),
+                        thresholds.getMax(index)
                 );
             }
         }
     }
 
+    // Интервал опроса адаптивный (до часа), поэтому вероятность смены состояния считается
+    // по времени с прошлой проверки: это вероятность нечетного числа смен за n шагов LINK_STEP_MS,
+    // и длительность обрывов не зависит от того, как часто опрашивается устройство
+    private static double linkFlipProbability(DeviceSimulationData data, long now) {
+        long elapsed = data.lastLinkCheckTime == 0 ? LINK_STEP_MS : now - data.lastLinkCheckTime;
+        data.lastLinkCheckTime = now;
+        double steps = Math.max(0, elapsed) / (double) LINK_STEP_MS;
+        return (1 - Math.pow(1 - 2 * LINK_FLIP_PROBABILITY, steps)) / 2;
+    }
+
+    private final Runnable samplingTask = new Runnable() {
+        @Override
+        public void run() {
+            scheduledWakeup = Long.MAX_VALUE;
+            if (!isRunning) return;
+            updateSimulation();
+            scheduleWakeup();
+        }
+    };
+
+    // Один отложенный вызов на ближайший срок в очереди, без задачи на каждое устройство
+    private void scheduleWakeup() {
+        if (!isRunning) return;
+        long next = scheduler.getNextDueTime();
+        if (next == Long.MAX_VALUE || next >= scheduledWakeup) return;
+        handler.removeCallbacks(samplingTask);
+        scheduledWakeup = next;
+        handler.postAtTime(samplingTask, next);
+    }
+
     private void updateSimulation() {
-        for (Map.Entry<String, DeviceSimulationData> entry : deviceData.entrySet()) {
-            String deviceId = entry.getKey();
-            DeviceSimulationData data = entry.getValue();
-            Device device = MockDeviceData.getDevice(deviceId);
+        long start = System.nanoTime();
+        long now = SystemClock.uptimeMillis();
+        SamplingScheduler.Slot slot;
+        while ((slot = scheduler.pollDue(now)) != null) {
+            sampleDevice(slot, now);
+        }
+        tickLatency.recordSince(start);
+    }
 
-            if (device != null) {
-                if (random.nextDouble() < 0.01) {
-                    data.isConnected = !data.isConnected;
-                    if (listener != null) {
-                        listener.onDeviceStatusChanged(deviceId, data.isConnected);
-                    }
-                }
-
-                if (data.isConnected) {
-                    updateAllSensorValues(data);
-                    updateDeviceSpecificParameters(device, data);
-                    processAndNotify(deviceId, device.getType(), data);
-
-                    data.signalStrength = (int) clamp(
-                            data.signalStrength + (random.nextInt(3) - 1),
-                            0, 100);
-
-                    data.lastUpdateTime = System.currentTimeMillis();
-
-                    if (listener != null) {
-                        listener.onDeviceDataUpdated(deviceId, data);
-                    }
-                }
-            }
+    private void sampleDevice(SamplingScheduler.Slot slot, long now) {
+        String deviceId = slot.deviceId;
+        DeviceSimulationData data = deviceData.get(deviceId);
+        Device device = MockDeviceData.getDevice(deviceId);
+        if (data == null || device == null) {
+            scheduler.completeWithoutValue(slot, now);
+            return;
+        }
+
+        // Имитация обрыва связи: устройство просто перестает присылать показания,
+        // статус определяет LivenessTracker по пропущенным показаниям
+        if (random.nextDouble() < linkFlipProbability(data, now)) {
+            data.isConnected = !data.isConnected;
+        }
+        if (!data.isConnected) {
+            scheduler.completeWithoutValue(slot, now);
+            return;
+        }
+
+        TraceContext trace = tracer.begin();
+        data.trace = trace;
+
+        updateAllSensorValues(data);
+        mark(trace, TraceStage.INGEST);
+
+        tracer.beginSection(trace, TraceStage.PROCESS);
+        updateDeviceSpecificParameters(device, data);
+        tracer.endSection(trace);
+        mark(trace, TraceStage.PROCESS);
+
+        tracer.beginSection(trace, TraceStage.THRESHOLD);
+        processAndNotify(device, data);
+        tracer.endSection(trace);
+        mark(trace, TraceStage.THRESHOLD);
+
+        data.signalStrength = (int) clamp(
+                data.signalStrength + (random.nextInt(3) - 1),
+                0, 100);
+
+        data.lastUpdateTime = System.currentTimeMillis();
+        readingsCounter.increment();
+        reschedule(slot, now, data);
+
+        if (listener != null) {
+            listener.onDeviceDataUpdated(deviceId, data);
+        } else {
+            tracer.finish(trace);
+        }
+        data.trace = null;
+    }
+
+    // Следующий опрос по изменчивости основного параметра и его близости к порогам
+    private void reschedule(SamplingScheduler.Slot slot, long now, DeviceSimulationData data) {
+        SensorType type = data.sensorType;
+        if (type == null) {
+            scheduler.completeWithoutValue(slot, now);
+            return;
+        }
+        double value = getPrimaryValue(type, data);
+        double range = Double.NaN;
+        boolean isNearThreshold = false;
+        SensorThresholdManager.ThresholdSet thresholds = thresholdManager.getThresholdSet(data.handle);
+        int index = thresholds != null ? thresholds.indexOf(type.getParameter(0)) : -1;
+        if (thresholds != null && thresholds.hasRange(index)) {
+            double min = thresholds.getMin(index);
+            double max = thresholds.getMax(index);
+            range = max - min;
+            // Та же зона предупреждения, что в SensorThresholdManager: 10% диапазона у каждой границы
+            double margin = range * 0.1;
+            isNearThreshold = value < min + margin || value > max - margin;
+        }
+        scheduler.complete(slot, now, value, range, isNearThreshold);
+    }
+
+    private static double getPrimaryValue(SensorType type, DeviceSimulationData data) {
+        switch (type) {
+            case TEMPERATURE:
+                return data.temperature;
+            case HUMIDITY:
+                return data.humidity;
+            case WATER:
+                return data.waterLevel;
+            case ELECTRICITY:
+                return data.powerConsumption;
+            case AIR:
+            default:
+                return data.co2Level;
         }
     }
 
     public void startSimulation() {
         if (!isRunning) {
             isRunning = true;
-            handler.postDelayed(new Runnable() {
-                @Override
-                public void run() {
-                    if (isRunning) {
-                        updateSimulation();
-                        handler.postDelayed(this, UPDATE_INTERVAL);
-                    }
-                }
-            }, UPDATE_INTERVAL);
+            scheduleWakeup();
         }
     }
 
     public void stopSimulation() {
         isRunning = false;
         handler.removeCallbacksAndMessages(null);
+        scheduledWakeup = Long.MAX_VALUE;
+    }
+
+    // Потолок интервала опроса устройства (см. getConfiguredInterval); вызывается в потоке handler
+    public void setSamplingInterval(String deviceId, long maxIntervalMs) {
+        scheduler.setMaxInterval(deviceId, maxIntervalMs, SystemClock.uptimeMillis());
+        scheduleWakeup();
+    }
+
+    public SamplingScheduler.Slot getSamplingSlot(String deviceId) {
+        return scheduler.getSlot(deviceId);
     }
 
     public DeviceSimulationData getDeviceData(String deviceId) {
@@ -200,17 +340,53 @@ public class EnhancedDeviceSimulator {
 
     public void addDevice(String deviceId, String type) {
         DeviceSimulationData data = new DeviceSimulationData();
+        // Id и тип переводятся в дескриптор и SensorType один раз, дальше показания идут по ним
+        data.handle = DeviceSymbols.getInstance().intern(deviceId);
+        data.sensorType = SensorType.fromTypeId(type);
         deviceData.put(deviceId, data);
-        thresholdManager.setDefaultThresholds(deviceId, type);
-        SensorNotificationManager.NotificationConfig notificationConfig =
-                new SensorNotificationManager.NotificationConfig();
-        notificationManager.setNotificationConfig(deviceId, notificationConfig);
+        // Пороги и уведомления - ссылки на общие шаблоны типа, копии только у устройств
+        // с собственными настройками в SensorPolicyStore
+        Device device = MockDeviceData.getDevice(deviceId);
+        SensorPolicyStore.DevicePolicy policy = SensorPolicyStore.getInstance().getPolicy(deviceId);
+        if (device != null) {
+            MockDeviceData.applySensorPolicy(device, policy);
+        } else {
+            if (data.sensorType != null) {
+                thresholdManager.setDefaultThresholds(data.handle, data.sensorType);
+            }
+            notificationManager.applyTypeTemplate(data.handle, data.sensorType);
+        }
+
+        scheduler.add(deviceId, getConfiguredInterval(deviceId, type), SystemClock.uptimeMillis());
+        scheduleWakeup();
+    }
+
+    // Потолок интервала опроса из настроек: SensorPolicyStore, иначе параметр устройства "update_interval"
+    public static long getConfiguredInterval(String deviceId, String type) {
+        SensorPolicyStore.DevicePolicy policy = SensorPolicyStore.getInstance().getPolicy(deviceId);
+        Object setting;
+        if (policy.samplingSetting != SensorPolicyStore.UNSET) {
+            setting = policy.samplingSetting;
+        } else {
+            Device device = MockDeviceData.getDevice(deviceId);
+            setting = device != null ? device.getParameter("update_interval") : null;
+        }
+        return SamplingScheduler.intervalFor(type, setting);
     }
 
     public void removeDevice(String deviceId) {
         deviceData.remove(deviceId);
+        scheduler.remove(deviceId);
+        anomalyDetector.resetDevice(deviceId);
         calibrationService.resetCalibration(deviceId);
         thresholdManager.resetThresholds(deviceId);
+        notificationManager.resetNotificationConfig(deviceId);
+    }
+
+    private static void mark(TraceContext trace, TraceStage stage) {
+        if (trace != null) {
+            trace.mark(stage);
+        }
     }
 
     private double clamp(double value, double min, double max) {
@@ -245,25 +421,25 @@ public class EnhancedDeviceSimulator {
     }
 
     private void processDeviceData(Device device, DeviceSimulationData data) {
-        String deviceId = device.getId();
-        String deviceType = device.getType();
+        SensorType type = data.sensorType;
+        if (type == null) return;
 
-        if (calibrationService.needsCalibration(deviceId, deviceType)) {
-            switch (deviceType) {
-                case Device.TYPE_TEMPERATURE_SENSOR:
-                    data.temperature = calibrationService.calibrateValue(deviceId, deviceType, data.temperature);
+        if (calibrationService.needsCalibration(data.handle, type)) {
+            switch (type) {
+                case TEMPERATURE:
+                    data.temperature = calibrationService.calibrateValue(data.handle, type, data.temperature);
                     break;
-                case Device.TYPE_HUMIDITY_SENSOR:
-                    data.humidity = calibrationService.calibrateValue(deviceId, deviceType, data.humidity);
+                case HUMIDITY:
+                    data.humidity = calibrationService.calibrateValue(data.handle, type, data.humidity);
                     break;
-                case Device.TYPE_WATER_SENSOR:
-                    data.waterLevel = calibrationService.calibrateValue(deviceId, deviceType, data.waterLevel);
+                case WATER:
+                    data.waterLevel = calibrationService.calibrateValue(data.handle, type, data.waterLevel);
                     break;
-                case Device.TYPE_ELECTRICITY_SENSOR:
-                    data.powerConsumption = calibrationService.calibrateValue(deviceId, deviceType, data.powerConsumption);
+                case ELECTRICITY:
+                    data.powerConsumption = calibrationService.calibrateValue(data.handle, type, data.powerConsumption);
                     break;
-                case Device.TYPE_AIR_SENSOR:
-                    data.co2Level = calibrationService.calibrateValue(deviceId, deviceType, data.co2Level);
+                case AIR:
+                    data.co2Level = calibrationService.calibrateValue(data.handle, type, data.co2Level);
                     break;
             }
         }
@@ -271,41 +447,50 @@ public class EnhancedDeviceSimulator {
     }
 
     private void checkThresholdsAndNotify(Device device, DeviceSimulationData data) {
-        String deviceId = device.getId();
-        Map<String, Double> thresholds = thresholdManager.getThresholds(deviceId);
+        SensorThresholdManager.ThresholdSet thresholds = thresholdManager.getThresholdSet(data.handle);
 
         if (thresholds != null) {
-            switch (device.getType()) {
-                case Device.TYPE_TEMPERATURE_SENSOR:
-                    checkSensorThreshold(deviceId, "temperature", data.temperature, "°C", thresholds);
+            String deviceId = device.getId();
+            switch (data.sensorType) {
+                case TEMPERATURE:
+                    checkSensorThreshold(deviceId, data.handle, "temperature", data.temperature, "°C", thresholds);
                     break;
-                case Device.TYPE_HUMIDITY_SENSOR:
-                    checkSensorThreshold(deviceId, "humidity", data.humidity, "%", thresholds);
+                case HUMIDITY:
+                    checkSensorThreshold(deviceId, data.handle, "humidity", data.humidity, "%", thresholds);
                     break;
-                case Device.TYPE_WATER_SENSOR:
-                    checkSensorThreshold(deviceId, "water_level", data.waterLevel, "cm", thresholds);
+                case WATER:
+                    checkSensorThreshold(deviceId, data.handle, "water_level", data.waterLevel, "cm", thresholds);
                     break;
-                case Device.TYPE_ELECTRICITY_SENSOR:
-                    checkSensorThreshold(deviceId, "power", data.powerConsumption, "W", thresholds);
-                    checkSensorThreshold(deviceId, "voltage", data.voltage, "V", thresholds);
+                case ELECTRICITY:
+                    checkSensorThreshold(deviceId, data.handle, "power", data.powerConsumption, "W", thresholds);
+                    checkSensorThreshold(deviceId, data.handle, "voltage", data.voltage, "V", thresholds);
                     break;
-                case Device.TYPE_AIR_SENSOR:
-                    checkSensorThreshold(deviceId, "co2", data.co2Level, "ppm", thresholds);
-                    checkSensorThreshold(deviceId, "gas", data.gasLevel, "ppm", thresholds);
+                case AIR:
+                    checkSensorThreshold(deviceId, data.handle, "co2", data.co2Level, "ppm", thresholds);
+                    checkSensorThreshold(deviceId, data.handle, "gas", data.gasLevel, "ppm", thresholds);
                     break;
             }
         }
     }
 
-    private void checkSensorThreshold(String deviceId, String parameter, double value, String unit, Map<String, Double> thresholds) {
-        Double minThreshold = thresholds.get(parameter + "_min");
-        Double maxThreshold = thresholds.get(parameter + "_max");
-
-        if (minThreshold != null && maxThreshold != null) {
+    private void checkSensorThreshold(String deviceId, int handle, String parameter, double value, String unit,
+                                      SensorThresholdManager.ThresholdSet thresholds) {
+        int index = thresholds.indexOf(parameter);
+        if (thresholds.hasRange(index)) {
+            double minThreshold = thresholds.getMin(index);
+            double maxThreshold = thresholds.getMax(index);
             if (value < minThreshold || value > maxThreshold) {
-                notificationManager.sendAlert(deviceId, parameter, value, unit, minThreshold, maxThreshold);
+                notificationManager.sendAlert(handle, parameter, value, unit, minThreshold, maxThreshold);
+                return;
             }
         }
+
+        // Внутри порогов проверяем поведение ряда: скачки, сдвиги уровня, нетипичные для времени суток значения
+        SensorAnomalyDetector.AnomalyType anomaly =
+                anomalyDetector.check(deviceId, parameter, value, System.currentTimeMillis());
+        if (anomaly != SensorAnomalyDetector.AnomalyType.NONE) {
+            notificationManager.sendAnomalyAlert(handle, parameter, value, unit, anomaly);
+        }
     }
 
     private void updateTemperatureSensorParams(Device device, DeviceSimulationData data) {
@@ -319,8 +504,7 @@ public class EnhancedDeviceSimulator {
 
         data.additionalParams.put("dewPoint", dewPoint);
         data.additionalParams.put("heatIndex", heatIndex);
-
-        dataProcessor.processSensorData(device.getId(), "temperature", data.temperature);
+        // Температура уходит в процессор из processAndNotify
     }
 
     private void updateHumiditySensorParams(Device device, DeviceSimulationData data) {
@@ -333,7 +517,7 @@ public class EnhancedDeviceSimulator {
         batteryLevel -= random.nextDouble() * 0.1;
         data.additionalParams.put("batteryLevel", clamp(batteryLevel, 0, 100));
 
-        dataProcessor.processSensorData(device.getId(), "humidity", data.humidity);
+        dataProcessor.processSensorData(data.handle, data.sensorType, data.humidity);
     }
 
     private void updateWaterSensorParams(Device device, DeviceSimulationData data) {
@@ -343,20 +527,19 @@ public class EnhancedDeviceSimulator {
         data.additionalParams.put("tds", 150 + random.nextDouble() * 50);
         data.additionalParams.put("turbidity", 0.5 + random.nextDouble());
 
-        dataProcessor.processSensorData(device.getId(), "water", data.waterLevel);
+        dataProcessor.processSensorData(data.handle, data.sensorType, data.waterLevel);
     }
 
     private void updateElectricitySensorParams(Device device, DeviceSimulationData data) {
         data.additionalParams.put("frequency", 49.9 + random.nextDouble() * 0.2);
         data.additionalParams.put("powerFactor", 0.95 + random.nextDouble() * 0.05);
 
-        double totalEnergy = (double) data.additionalParams.getOrDefault("totalEnergy", 0.0);
-        totalEnergy += data.powerConsumption * UPDATE_INTERVAL / 3600000.0;
-        data.additionalParams.put("totalEnergy", totalEnergy);
-
         data.additionalParams.put("harmonicDistortion", 1.5 + random.nextDouble());
 
-        dataProcessor.processSensorData(device.getId(), "electricity", data.powerConsumption);
+        dataProcessor.processSensorData(data.handle, SensorType.ELECTRICITY, data.powerConsumption);
+
+        // Накопленная энергия теперь считается EnergyAccountingEngine по реальному времени
+        data.additionalParams.put("totalEnergy", energyEngine.getTotalKwh(device.getId()));
     }
 
     private void updateAirSensorParams(Device device, DeviceSimulationData data) {
@@ -369,7 +552,7 @@ public class EnhancedDeviceSimulator {
         double aqi = calculateAirQualityIndex(data);
         data.additionalParams.put("airQualityIndex", aqi);
 
-        dataProcessor.processSensorData(device.getId(), "air", data.co2Level);
+        dataProcessor.processSensorData(data.handle, data.sensorType, data.co2Level);
     }
 
     private void updateLightParams(Device device, DeviceSimulationData data) {
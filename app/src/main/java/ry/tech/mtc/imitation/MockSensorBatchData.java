@@ -0,0 +1,114 @@
+package ry.tech.mtc.imitation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+// Аналог MockSensorData для высокочастотного режима SensorManager.
+// Не зависит от android.*, поэтому путь буфер -> пачка -> слушатель проверяется в JVM-тестах.
+public class MockSensorBatchData {
+    // Совпадают с android.hardware.Sensor.TYPE_*
+    public static final int TYPE_ACCELEROMETER = 1;
+    public static final int TYPE_MAGNETIC_FIELD = 2;
+    public static final int TYPE_GYROSCOPE = 4;
+    public static final int TYPE_PROXIMITY = 8;
+
+    private final Random random;
+    private final SensorSampleBuffer sampleBuffer;
+    private final SensorSampleBuffer.Batch batch;
+    private final float[] scratch = new float[SensorSampleBuffer.MAX_AXES];
+    private volatile SensorManager.OnSensorBatchListener[] listeners = new SensorManager.OnSensorBatchListener[0];
+
+    private ScheduledExecutorService ingestExecutor;
+    private ScheduledFuture<?> generationTask;
+    private long nextTimestampNs;
+
+    public MockSensorBatchData(int bufferCapacity, int batchSize, long seed) {
+        this.random = new Random(seed);
+        this.sampleBuffer = new SensorSampleBuffer(bufferCapacity);
+        this.batch = new SensorSampleBuffer.Batch(batchSize);
+    }
+
+    // Генерирует count событий каждого из четырех сенсоров с шагом periodNs
+    public void generateSamples(int count, long periodNs) {
+        for (int i = 0; i < count; i++) {
+            long timestamp = nextTimestampNs;
+            nextTimestampNs += periodNs;
+
+            // Имитация акселерометра
+            scratch[0] = (float) (random.nextGaussian() * 0.5);
+            scratch[1] = (float) (random.nextGaussian() * 0.5);
+            scratch[2] = (float) (9.81 + random.nextGaussian() * 0.1);
+            sampleBuffer.write(TYPE_ACCELEROMETER, timestamp, scratch, 3);
+
+            // Имитация гироскопа
+            scratch[0] = (float) (random.nextGaussian() * 0.1);
+            scratch[1] = (float) (random.nextGaussian() * 0.1);
+            scratch[2] = (float) (random.nextGaussian() * 0.1);
+            sampleBuffer.write(TYPE_GYROSCOPE, timestamp, scratch, 3);
+
+            // Имитация магнитометра
+            scratch[0] = (float) (20 + random.nextGaussian() * 2);
+            scratch[1] = (float) (40 + random.nextGaussian() * 2);
+            scratch[2] = (float) (30 + random.nextGaussian() * 2);
+            sampleBuffer.write(TYPE_MAGNETIC_FIELD, timestamp, scratch, 3);
+
+            // Имитация датчика приближения
+            scratch[0] = random.nextFloat() * 10;
+            sampleBuffer.write(TYPE_PROXIMITY, timestamp, scratch, 1);
+        }
+    }
+
+    // Доставляет накопленные сэмплы слушателям в вызывающем потоке. Возвращает число сэмплов.
+    public int flush() {
+        int delivered = 0;
+        int drained;
+        while ((drained = sampleBuffer.drainTo(batch)) > 0) {
+            delivered += drained;
+            SensorManager.OnSensorBatchListener[] current = listeners;
+            for (int i = 0; i < current.length; i++) {
+                current[i].onSensorBatch(batch);
+            }
+        }
+        return delivered;
+    }
+
+    // Фоновая генерация: samplesPerTick событий каждые tickMs в отдельном потоке, как HandlerThread у SensorManager
+    public synchronized void start(int samplesPerTick, long tickMs, long samplePeriodNs) {
+        if (ingestExecutor != null) return;
+        ingestExecutor = Executors.newSingleThreadScheduledExecutor(r -> new Thread(r, "MockSensorIngest"));
+        generationTask = ingestExecutor.scheduleAtFixedRate(() -> {
+            generateSamples(samplesPerTick, samplePeriodNs);
+            flush();
+        }, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    public synchronized void addListener(SensorManager.OnSensorBatchListener listener) {
+        SensorManager.OnSensorBatchListener[] updated = Arrays.copyOf(listeners, listeners.length + 1);
+        updated[updated.length - 1] = listener;
+        listeners = updated;
+    }
+
+    public synchronized void removeListener(SensorManager.OnSensorBatchListener listener) {
+        List<SensorManager.OnSensorBatchListener> updated = new ArrayList<>(Arrays.asList(listeners));
+        updated.remove(listener);
+        listeners = updated.toArray(new SensorManager.OnSensorBatchListener[0]);
+    }
+
+    public long getDroppedSamples() {
+        return sampleBuffer.getDroppedSamples();
+    }
+
+    public synchronized void release() {
+        if (ingestExecutor != null) {
+            generationTask.cancel(false);
+            ingestExecutor.shutdownNow();
+            ingestExecutor = null;
+        }
+    }
+}
@@ -4,10 +4,18 @@ import android.content.Context;
 import android.hardware.Sensor;
 import android.hardware.SensorEvent;
 import android.hardware.SensorEventListener;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.SystemClock;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
 public class SensorManager {
     private static final String TAG = "SensorManager";
     private android.hardware.SensorManager sensorManager;
@@ -25,10 +33,30 @@ public class SensorManager {
     private float[] magnetometerData = new float[3];
     private float proximityData;
 
+    // Высокочастотный режим: FIFO-батчинг, кольцевой буфер и доставка пачками
+    private static final int SAMPLE_BUFFER_CAPACITY = 4096;
+    private static final int BATCH_SIZE = 256;
+    private static final long FLUSH_INTERVAL_MS = 50;
+    private boolean highRateMode;
+    private HandlerThread ingestThread;
+    private Handler ingestHandler;
+    private SensorSampleBuffer sampleBuffer;
+    private SensorSampleBuffer.Batch batch;
+    private boolean drainScheduled; // используется только в потоке ingestThread
+    private volatile OnSensorBatchListener[] batchListeners = new OnSensorBatchListener[0];
+    private final Counter ingestedSamples = MetricsRegistry.getInstance().counter("sensors.samples");
+    private final LatencyHistogram drainLatency = MetricsRegistry.getInstance().histogram("sensors.drain");
+    // Время от события датчика (SensorEvent.timestamp) до передачи пачки слушателям; по старейшему сэмплу пачки
+    private final LatencyHistogram deliveryLatency = MetricsRegistry.getInstance().histogram("trace.sensor_delivery");
+
     public SensorManager(Context context) {
         this.context = context;
         sensorManager = (android.hardware.SensorManager) context.getSystemService(Context.SENSOR_SERVICE);
         initializeSensors();
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("sensors.dropped", this::getDroppedSamples);
+        metrics.gauge("sensors.queue_depth", () -> sampleBuffer != null ? sampleBuffer.size() : 0);
     }
 
     private void initializeSensors() {
@@ -47,23 +75,7 @@ public class SensorManager {
     private final SensorEventListener sensorEventListener = new SensorEventListener() {
         @Override
         public void onSensorChanged(SensorEvent event) {
-            switch (event.sensor.getType()) {
-                case Sensor.TYPE_ACCELEROMETER:
-                    System.arraycopy(event.values, 0, accelerometerData, 0, 3);
-                    break;
-
-                case Sensor.TYPE_GYROSCOPE:
-                    System.arraycopy(event.values, 0, gyroscopeData, 0, 3);
-                    break;
-
-                case Sensor.TYPE_MAGNETIC_FIELD:
-                    System.arraycopy(event.values, 0, magnetometerData, 0, 3);
-                    break;
-
-                case Sensor.TYPE_PROXIMITY:
-                    proximityData = event.values[0];
-                    break;
-            }
+            storeLatestValues(event);
 
             // Уведомляем об обновлении данных
             notifyDataChanged();
@@ -75,11 +87,79 @@ public class SensorManager {
         }
     };
 
+    // Слушатель высокочастотного режима: только запись в буфер, без выделения памяти
+    private final SensorEventListener batchEventListener = new SensorEventListener() {
+        @Override
+        public void onSensorChanged(SensorEvent event) {
+            storeLatestValues(event);
+            ingestedSamples.increment();
+
+            int axisCount = event.sensor.getType() == Sensor.TYPE_PROXIMITY ? 1 : SensorSampleBuffer.MAX_AXES;
+            sampleBuffer.write(event.sensor.getType(), event.timestamp, event.values, axisCount);
+
+            // Буфер заполнен наполовину - доставляем сразу, иначе копим до FLUSH_INTERVAL_MS
+            if (sampleBuffer.size() >= sampleBuffer.getCapacity() / 2) {
+                ingestHandler.removeCallbacks(drainTask);
+                drainTask.run();
+            } else if (!drainScheduled) {
+                drainScheduled = true;
+                ingestHandler.postDelayed(drainTask, FLUSH_INTERVAL_MS);
+            }
+        }
+
+        @Override
+        public void onAccuracyChanged(Sensor sensor, int accuracy) {
+            // Точность в высокочастотном режиме не отслеживается
+        }
+    };
+
+    private final Runnable drainTask = new Runnable() {
+        @Override
+        public void run() {
+            drainScheduled = false;
+            long start = System.nanoTime();
+            while (sampleBuffer.drainTo(batch) > 0) {
+                deliveryLatency.record(SystemClock.elapsedRealtimeNanos() - batch.getTimestamp(0));
+                OnSensorBatchListener[] current = batchListeners;
+                for (int i = 0; i < current.length; i++) {
+                    current[i].onSensorBatch(batch);
+                }
+            }
+            drainLatency.recordSince(start);
+        }
+    };
+
+    private void storeLatestValues(SensorEvent event) {
+        switch (event.sensor.getType()) {
+            case Sensor.TYPE_ACCELEROMETER:
+                System.arraycopy(event.values, 0, accelerometerData, 0, 3);
+                break;
+
+            case Sensor.TYPE_GYROSCOPE:
+                System.arraycopy(event.values, 0, gyroscopeData, 0, 3);
+                break;
+
+            case Sensor.TYPE_MAGNETIC_FIELD:
+                System.arraycopy(event.values, 0, magnetometerData, 0, 3);
+                break;
+
+            case Sensor.TYPE_PROXIMITY:
+                proximityData = event.values[0];
+                break;
+        }
+    }
+
     // Интерфейс для слушателя изменений данных сенсоров
     public interface OnSensorDataChangedListener {
         void onDataChanged(SensorData data);
     }
 
+    // Слушатель пачек высокочастотного режима. Вызывается в потоке ingestThread,
+    // объект batch переиспользуется и действителен только внутри вызова.
+    public interface OnSensorBatchListener {
+        void onSensorBatch(SensorSampleBuffer.Batch batch);
+    }
+
     private List<OnSensorDataChangedListener> listeners = new ArrayList<>();
 
     public void addListener(OnSensorDataChangedListener listener) {
@@ -90,6 +170,74 @@ public class SensorManager {
         listeners.remove(listener);
     }
 
+    public synchronized void addBatchListener(OnSensorBatchListener listener) {
+        OnSensorBatchListener[] updated = Arrays.copyOf(batchListeners, batchListeners.length + 1);
+        updated[updated.length - 1] = listener;
+        batchListeners = updated;
+    }
+
+    public synchronized void removeBatchListener(OnSensorBatchListener listener) {
+        List<OnSensorBatchListener> updated = new ArrayList<>(Arrays.asList(batchListeners));
+        updated.remove(listener);
+        batchListeners = updated.toArray(new OnSensorBatchListener[0]);
+    }
+
+    // Включает высокочастотный режим. samplingPeriodUs - период в мкс или SENSOR_DELAY_GAME/FASTEST,
+    // maxReportLatencyUs - допустимая задержка доставки, позволяющая сенсору копить события в аппаратном FIFO.
+    public void enableHighRateMode(int samplingPeriodUs, int maxReportLatencyUs) {
+        if (highRateMode) return;
+        highRateMode = true;
+
+        sampleBuffer = new SensorSampleBuffer(SAMPLE_BUFFER_CAPACITY);
+        batch = new SensorSampleBuffer.Batch(BATCH_SIZE);
+        ingestThread = new HandlerThread("SensorIngest");
+        ingestThread.start();
+        ingestHandler = new Handler(ingestThread.getLooper());
+
+        sensorManager.unregisterListener(sensorEventListener);
+        registerBatched(accelerometer, samplingPeriodUs, maxReportLatencyUs);
+        registerBatched(gyroscope, samplingPeriodUs, maxReportLatencyUs);
+        registerBatched(magnetometer, samplingPeriodUs, maxReportLatencyUs);
+        registerBatched(proximity, samplingPeriodUs, maxReportLatencyUs);
+    }
+
+    public void disableHighRateMode() {
+        if (!highRateMode) return;
+        stopHighRateIngest();
+        initializeSensors();
+    }
+
+    private void stopHighRateIngest() {
+        highRateMode = false;
+        sensorManager.unregisterListener(batchEventListener);
+        ingestHandler.removeCallbacksAndMessages(null);
+        ingestThread.quitSafely();
+        ingestThread = null;
+        ingestHandler = null;
+    }
+
+    // Принудительно выгружает аппаратный FIFO (например, перед уходом в фон)
+    public void flushBatches() {
+        if (highRateMode) {
+            sensorManager.flush(batchEventListener);
+        }
+    }
+
+    public boolean isHighRateMode() {
+        return highRateMode;
+    }
+
+    public long getDroppedSamples() {
+        return sampleBuffer != null ? sampleBuffer.getDroppedSamples() : 0;
+    }
+
+    private void registerBatched(Sensor sensor, int samplingPeriodUs, int maxReportLatencyUs) {
+        if (sensor != null) {
+            sensorManager.registerListener(batchEventListener, sensor,
+                    samplingPeriodUs, maxReportLatencyUs, ingestHandler);
+        }
+    }
+
     private void notifyDataChanged() {
         SensorData data = new SensorData(
                 accelerometerData.clone(),
@@ -137,6 +285,9 @@ public class SensorManager {
 
     // Метод для освобождения ресурсов
     public void release() {
+        if (highRateMode) {
+            stopHighRateIngest();
+        }
         sensorManager.unregisterListener(sensorEventListener);
     }
 }
\ No newline at end of file
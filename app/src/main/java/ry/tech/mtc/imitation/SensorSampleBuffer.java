@@ -0,0 +1,135 @@
+package ry.tech.mtc.imitation;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Кольцевой буфер для сэмплов сенсоров без выделения памяти на каждое событие.
+// Один писатель (поток сенсоров) и один читатель (поток доставки пачек).
+public class SensorSampleBuffer {
+    public static final int MAX_AXES = 3;
+
+    private final int capacity;
+    private final int mask;
+    private final int[] sensorTypes;
+    private final long[] timestamps;
+    private final float[] values;
+    private final byte[] axisCounts;
+
+    // Индексы растут монотонно, позиция в массиве - index & mask
+    private volatile long writeIndex;
+    private volatile long readIndex;
+    private final AtomicLong droppedSamples = new AtomicLong();
+
+    public SensorSampleBuffer(int requestedCapacity) {
+        if (requestedCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + requestedCapacity);
+        }
+        // Округляем до степени двойки, чтобы заменить деление по модулю маской
+        int size = Integer.highestOneBit(requestedCapacity);
+        if (size < requestedCapacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.sensorTypes = new int[size];
+        this.timestamps = new long[size];
+        this.values = new float[size * MAX_AXES];
+        this.axisCounts = new byte[size];
+    }
+
+    // Вызывается только из потока-писателя. При переполнении новый сэмпл отбрасывается.
+    public boolean write(int sensorType, long timestampNs, float[] source, int axisCount) {
+        long write = writeIndex;
+        if (write - readIndex >= capacity) {
+            droppedSamples.incrementAndGet();
+            return false;
+        }
+
+        int slot = (int) (write & mask);
+        int axes = Math.min(axisCount, Math.min(MAX_AXES, source.length));
+        sensorTypes[slot] = sensorType;
+        timestamps[slot] = timestampNs;
+        axisCounts[slot] = (byte) axes;
+        System.arraycopy(source, 0, values, slot * MAX_AXES, axes);
+
+        // Публикуем сэмпл читателю только после записи всех полей
+        writeIndex = write + 1;
+        return true;
+    }
+
+    // Вызывается только из потока-читателя. Возвращает число скопированных сэмплов.
+    public int drainTo(Batch batch) {
+        long read = readIndex;
+        int available = (int) Math.min(writeIndex - read, batch.capacity);
+
+        for (int i = 0; i < available; i++) {
+            int slot = (int) ((read + i) & mask);
+            batch.sensorTypes[i] = sensorTypes[slot];
+            batch.timestamps[i] = timestamps[slot];
+            batch.axisCounts[i] = axisCounts[slot];
+            System.arraycopy(values, slot * MAX_AXES, batch.values, i * MAX_AXES, MAX_AXES);
+        }
+        batch.size = available;
+
+        readIndex = read + available;
+        return available;
+    }
+
+    public int size() {
+        return (int) (writeIndex - readIndex);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDroppedSamples() {
+        return droppedSamples.get();
+    }
+
+    // Переиспользуемая пачка сэмплов. Слушатели не должны хранить ссылку после onSensorBatch.
+    public static class Batch {
+        private final int capacity;
+        private final int[] sensorTypes;
+        private final long[] timestamps;
+        private final float[] values;
+        private final byte[] axisCounts;
+        private int size;
+
+        public Batch(int capacity) {
+            this.capacity = capacity;
+            this.sensorTypes = new int[capacity];
+            this.timestamps = new long[capacity];
+            this.values = new float[capacity * MAX_AXES];
+            this.axisCounts = new byte[capacity];
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public int getCapacity() {
+            return capacity;
+        }
+
+        public int getSensorType(int index) {
+            return sensorTypes[index];
+        }
+
+        public long getTimestamp(int index) {
+            return timestamps[index];
+        }
+
+        public int getAxisCount(int index) {
+            return axisCounts[index];
+        }
+
+        public float getValue(int index, int axis) {
+            return values[index * MAX_AXES + axis];
+        }
+
+        // Копирует оси сэмпла в переданный массив без выделения памяти
+        public void copyValues(int index, float[] target) {
+            System.arraycopy(values, index * MAX_AXES, target, 0, Math.min(target.length, axisCounts[index]));
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package ry.tech.mtc.metrics;
+
+import java.util.concurrent.atomic.LongAdder;
+
+// Счетчик событий; LongAdder распределяет запись по ячейкам, потоки не конкурируют за одну переменную
+public class Counter {
+    private final String name;
+    private final LongAdder adder = new LongAdder();
+
+    Counter(String name) {
+        this.name = name;
+    }
+
+    public void increment() {
+        adder.increment();
+    }
+
+    public void add(long delta) {
+        adder.add(delta);
+    }
+
+    public long get() {
+        return adder.sum();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    void reset() {
+        adder.reset();
+    }
+}
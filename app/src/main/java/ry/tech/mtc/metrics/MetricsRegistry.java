@@ -0,0 +1,133 @@
+package ry.tech.mtc.metrics;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.LongSupplier;
+
+// Реестр метрик процесса: счетчики, гистограммы задержек и датчики (gauges).
+// Метрики создаются один раз и хранятся в полях у источника - запись не ищет по имени и не выделяет память.
+// Датчики вычисляются только при снятии снимка (экран диагностики, dump).
+public class MetricsRegistry {
+    private static MetricsRegistry instance;
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final Map<String, LongSupplier> gauges = new ConcurrentHashMap<>();
+    private final long startTime = System.currentTimeMillis();
+
+    MetricsRegistry() {
+    }
+
+    public static synchronized MetricsRegistry getInstance() {
+        if (instance == null) {
+            instance = new MetricsRegistry();
+        }
+        return instance;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, Counter::new);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, LatencyHistogram::new);
+    }
+
+    // Повторная регистрация под тем же именем заменяет источник (например, после пересоздания объекта)
+    public void gauge(String name, LongSupplier supplier) {
+        gauges.put(name, supplier);
+    }
+
+    public void removeGauge(String name) {
+        gauges.remove(name);
+    }
+
+    public void reset() {
+        for (Counter counter : counters.values()) {
+            counter.reset();
+        }
+        for (LatencyHistogram histogram : histograms.values()) {
+            histogram.reset();
+        }
+    }
+
+    public String dumpText() {
+        StringBuilder out = new StringBuilder();
+        long uptimeSec = Math.max(1, (System.currentTimeMillis() - startTime) / 1000);
+        out.append(String.format(Locale.US, "uptime %d s%n", uptimeSec));
+
+        out.append("\nCOUNTERS\n");
+        for (Counter counter : new TreeMap<>(counters).values()) {
+            long value = counter.get();
+            out.append(String.format(Locale.US, "%-32s %12d  %8.1f/s%n",
+                    counter.getName(), value, (double) value / uptimeSec));
+        }
+
+        out.append("\nGAUGES\n");
+        for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+            out.append(String.format(Locale.US, "%-32s %12d%n", entry.getKey(), readGauge(entry.getValue())));
+        }
+
+        out.append("\nLATENCY (us)            count     mean      p50      p90      p99      max\n");
+        for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+            LatencyHistogram.Snapshot s = histogram.snapshot();
+            out.append(String.format(Locale.US, "%-20s %8d %8.1f %8.1f %8.1f %8.1f %8.1f%n",
+                    s.name, s.count, s.meanNanos / 1000.0, s.p50Nanos / 1000.0, s.p90Nanos / 1000.0,
+                    s.p99Nanos / 1000.0, s.maxNanos / 1000.0));
+        }
+        return out.toString();
+    }
+
+    public String dumpJson() {
+        StringWriter buffer = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(buffer)) {
+            writer.beginObject();
+            writer.name("timestamp").value(System.currentTimeMillis());
+
+            writer.name("counters").beginObject();
+            for (Counter counter : new TreeMap<>(counters).values()) {
+                writer.name(counter.getName()).value(counter.get());
+            }
+            writer.endObject();
+
+            writer.name("gauges").beginObject();
+            for (Map.Entry<String, LongSupplier> entry : new TreeMap<>(gauges).entrySet()) {
+                writer.name(entry.getKey()).value(readGauge(entry.getValue()));
+            }
+            writer.endObject();
+
+            writer.name("histograms").beginObject();
+            for (LatencyHistogram histogram : new TreeMap<>(histograms).values()) {
+                LatencyHistogram.Snapshot s = histogram.snapshot();
+                writer.name(s.name).beginObject();
+                writer.name("count").value(s.count);
+                writer.name("meanNanos").value(s.meanNanos);
+                writer.name("p50Nanos").value(s.p50Nanos);
+                writer.name("p90Nanos").value(s.p90Nanos);
+                writer.name("p99Nanos").value(s.p99Nanos);
+                writer.name("maxNanos").value(s.maxNanos);
+                writer.endObject();
+            }
+            writer.endObject();
+            writer.endObject();
+        } catch (IOException e) {
+            // StringWriter не бросает IOException
+            throw new IllegalStateException(e);
+        }
+        return buffer.toString();
+    }
+
+    private static long readGauge(LongSupplier supplier) {
+        try {
+            return supplier.getAsLong();
+        } catch (RuntimeException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package ry.tech.mtc.metrics;
+
+import android.os.Trace;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+// Выборочная сквозная трассировка показаний: источник -> обработка -> пороги -> движок -> экран.
+// В трассировку попадает каждое N-е показание, остальные идут без контекста и без затрат.
+// По завершении задержки этапов сводятся в гистограммы trace.<этап> и trace.total реестра метрик,
+// поэтому отстающий этап виден на экране диагностики.
+// Дополнительно можно включить секции android.os.Trace для systrace/Perfetto.
+public class ReadingTracer {
+    private static final int DEFAULT_SAMPLE_INTERVAL = 16;
+    private static final String SECTION_PREFIX = "mtc:";
+    private static ReadingTracer instance;
+
+    private final LongSupplier clock;
+    private final LatencyHistogram[] stageLatency = new LatencyHistogram[TraceStage.COUNT];
+    private final LatencyHistogram totalLatency;
+    private final Counter sampledCounter;
+    private final AtomicLong sequence = new AtomicLong();
+    private volatile int sampleInterval = DEFAULT_SAMPLE_INTERVAL;
+    private volatile boolean systraceEnabled;
+
+    ReadingTracer(MetricsRegistry registry, LongSupplier clock) {
+        this.clock = clock;
+        for (TraceStage stage : TraceStage.values()) {
+            if (stage != TraceStage.START) {
+                stageLatency[stage.ordinal()] = registry.histogram("trace." + stage.getLabel());
+            }
+        }
+        this.totalLatency = registry.histogram("trace.total");
+        this.sampledCounter = registry.counter("trace.sampled");
+    }
+
+    public static synchronized ReadingTracer getInstance() {
+        if (instance == null) {
+            instance = new ReadingTracer(MetricsRegistry.getInstance(), System::nanoTime);
+        }
+        return instance;
+    }
+
+    // 1 - трассировать каждое показание, 0 - выключить
+    public void setSampleInterval(int sampleInterval) {
+        this.sampleInterval = Math.max(0, sampleInterval);
+    }
+
+    public int getSampleInterval() {
+        return sampleInterval;
+    }
+
+    public void setSystraceEnabled(boolean enabled) {
+        this.systraceEnabled = enabled;
+    }
+
+    // Контекст для нового показания или null, если показание не попало в выборку
+    public TraceContext begin() {
+        int interval = sampleInterval;
+        if (interval <= 0) return null;
+        long sequenceNumber = sequence.getAndIncrement();
+        if (sequenceNumber % interval != 0) return null;
+
+        TraceContext trace = new TraceContext(sequenceNumber, clock);
+        trace.mark(TraceStage.START);
+        return trace;
+    }
+
+    // Секции видны в systrace только для трассируемых показаний; начало и конец - в одном потоке
+    public void beginSection(TraceContext trace, TraceStage stage) {
+        if (trace != null && systraceEnabled) {
+            Trace.beginSection(SECTION_PREFIX + stage.getLabel());
+        }
+    }
+
+    public void endSection(TraceContext trace) {
+        if (trace != null && systraceEnabled) {
+            Trace.endSection();
+        }
+    }
+
+    // Сведение меток в гистограммы; повторный вызов для того же контекста ничего не делает.
+    // Неотмеченные этапы пропускаются, их время достается следующему отмеченному этапу.
+    public void finish(TraceContext trace) {
+        if (trace == null || !trace.markFinished()) return;
+
+        long start = trace.getStamp(TraceStage.START);
+        long previous = start;
+        for (TraceStage stage : TraceStage.values()) {
+            if (stage == TraceStage.START) continue;
+            long stamp = trace.getStamp(stage);
+            if (stamp == 0) continue;
+            stageLatency[stage.ordinal()].record(stamp - previous);
+            previous = stamp;
+        }
+        totalLatency.record(previous - start);
+        sampledCounter.increment();
+    }
+}
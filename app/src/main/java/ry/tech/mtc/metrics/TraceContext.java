@@ -0,0 +1,50 @@
+package ry.tech.mtc.metrics;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.LongSupplier;
+
+// Контекст одного трассируемого показания: метки времени в массиве фиксированного размера по этапам.
+// Этапы отмечаются последовательно в разных потоках; видимость меток обеспечивает передача
+// контекста через Handler (очередь сообщений синхронизирована), поэтому поля не volatile.
+public final class TraceContext {
+    private final long id;
+    private final long[] stamps = new long[TraceStage.COUNT];
+    private final LongSupplier clock;
+    private final AtomicBoolean finished = new AtomicBoolean();
+    private volatile boolean renderPending;
+
+    TraceContext(long id, LongSupplier clock) {
+        this.id = id;
+        this.clock = clock;
+    }
+
+    public long getId() {
+        return id;
+    }
+
+    public void mark(TraceStage stage) {
+        stamps[stage.ordinal()] = clock.getAsLong();
+    }
+
+    // 0 - этап не отмечен
+    public long getStamp(TraceStage stage) {
+        return stamps[stage.ordinal()];
+    }
+
+    // Потребитель берет на себя завершение трассировки после отрисовки кадра
+    public void awaitRender() {
+        renderPending = true;
+    }
+
+    public boolean isRenderPending() {
+        return renderPending;
+    }
+
+    boolean markFinished() {
+        return finished.compareAndSet(false, true);
+    }
+
+    public boolean isFinished() {
+        return finished.get();
+    }
+}
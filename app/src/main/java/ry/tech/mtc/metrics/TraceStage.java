@@ -0,0 +1,26 @@
+package ry.tech.mtc.metrics;
+
+// Границы этапов на пути показания от источника до экрана, в порядке прохождения.
+// Задержка этапа - время от предыдущей отмеченной границы до этой.
+public enum TraceStage {
+    START("start"),         // показание взято в трассировку
+    INGEST("ingest"),       // новые значения получены от источника
+    PROCESS("process"),     // параметры устройства, калибровка, пороги по типу устройства
+    THRESHOLD("threshold"), // SensorDataProcessor, проверка порогов и отправка оповещений
+    PUBLISH("publish"),     // снимок собран и передан слушателям движка
+    DELIVER("deliver"),     // главный поток начал доставку снимка
+    BIND("bind"),           // значения выставлены во View
+    RENDER("render");       // кадр, в котором значения будут отрисованы
+
+    public static final int COUNT = values().length;
+
+    private final String label;
+
+    TraceStage(String label) {
+        this.label = label;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+}
@@ -15,6 +15,7 @@ public class Device {
     private String id;
     private String name;
     private String type;
+    private String room; // null, если комната не назначена
     private boolean isOnline;
     private boolean isOn;
     private Map<String, Object> parameters;
@@ -33,6 +34,21 @@ public class Device {
         initializeDefaultParameters();
     }
 
+    // Восстановление сохраненного или полученного с сервера состояния
+    public Device(String id, String name, String type, boolean isOnline, boolean isOn,
+                  Map<String, Object> parameters, Map<String, String> parameterUnits, long lastUpdateTime) {
+        this(id, name, type);
+        if (parameters != null) {
+            this.parameters.putAll(parameters);
+        }
+        if (parameterUnits != null) {
+            this.parameterUnits.putAll(parameterUnits);
+        }
+        this.isOnline = isOnline;
+        this.isOn = isOn;
+        this.lastUpdateTime = lastUpdateTime;
+    }
+
     private void initializeDefaultParameters() {
         switch (type) {
             case TYPE_LIGHT:
@@ -138,6 +154,14 @@ public class Device {
         return type;
     }
 
+    public String getRoom() {
+        return room;
+    }
+
+    public void setRoom(String room) {
+        this.room = room;
+    }
+
     public boolean isOn() {
         return isOn;
     }
@@ -44,6 +44,18 @@ public class DeviceHealth {
         this.events = new ArrayList<>();
     }
 
+    // Копия для передачи между потоками
+    public DeviceHealth(DeviceHealth other) {
+        this.deviceId = other.deviceId;
+        this.deviceName = other.deviceName;
+        this.type = other.type;
+        this.health = other.health;
+        this.lifespan = other.lifespan;
+        this.lastUpdateTime = other.lastUpdateTime;
+        this.healthFactors = new HashMap<>(other.healthFactors);
+        this.events = new ArrayList<>(other.events);
+    }
+
     public void addEvent(String type, String description) {
         events.add(new HealthEvent(type, description));
     }
@@ -1,9 +1,18 @@
 package ry.tech.mtc.models;
 
 public class EnergyConsumptionData {
-    private double totalConsumption;
-    private double currentConsumption;
+    private double totalConsumption;   // кВт·ч
+    private double currentConsumption; // Вт
     private double cost;
 
+    public EnergyConsumptionData(double totalConsumption, double currentConsumption, double cost) {
+        this.totalConsumption = totalConsumption;
+        this.currentConsumption = currentConsumption;
+        this.cost = cost;
+    }
+
     // Геттеры и сеттеры
-}
\ No newline at end of file
+    public double getTotalConsumption() { return totalConsumption; }
+    public double getCurrentConsumption() { return currentConsumption; }
+    public double getCost() { return cost; }
+}
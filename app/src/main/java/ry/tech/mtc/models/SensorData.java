@@ -8,12 +8,34 @@ public class SensorData {
     private long timestamp;
 
     public SensorData(String sensorId, String type, double value, String unit) {
+        this(sensorId, type, value, unit, System.currentTimeMillis());
+    }
+
+    public SensorData(String sensorId, String type, double value, String unit, long timestamp) {
         this.sensorId = sensorId;
         this.type = type;
         this.value = value;
         this.unit = unit;
-        this.timestamp = System.currentTimeMillis();
+        this.timestamp = timestamp;
+    }
+
+    public String getSensorId() {
+        return sensorId;
+    }
+
+    public String getType() {
+        return type;
     }
 
-    // get/set?
+    public double getValue() {
+        return value;
+    }
+
+    public String getUnit() {
+        return unit;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,58 @@
+package ry.tech.mtc.sensors;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Таблица символов устройств: строковый id -> плотный целочисленный дескриптор.
+// Дескриптор выдается при регистрации устройства и не меняется до конца процесса,
+// поэтому сервисы датчиков хранят состояние в массивах по дескриптору (HandleTable),
+// а строка хешируется один раз - на границе строкового API.
+public class DeviceSymbols {
+    public static final int NO_HANDLE = -1;
+    private static final int INITIAL_CAPACITY = 64;
+
+    private static DeviceSymbols instance;
+    private final Map<String, Integer> handles = new ConcurrentHashMap<>();
+    private volatile String[] ids = new String[INITIAL_CAPACITY];
+    private int count;
+
+    public static synchronized DeviceSymbols getInstance() {
+        if (instance == null) {
+            instance = new DeviceSymbols();
+        }
+        return instance;
+    }
+
+    // Дескриптор устройства; новый id получает следующий свободный номер
+    public int intern(String deviceId) {
+        Integer handle = handles.get(deviceId);
+        if (handle != null) return handle;
+        synchronized (this) {
+            handle = handles.get(deviceId);
+            if (handle != null) return handle;
+            if (count == ids.length) {
+                String[] grown = new String[count * 2];
+                System.arraycopy(ids, 0, grown, 0, count);
+                ids = grown;
+            }
+            ids[count] = deviceId;
+            handles.put(deviceId, count);
+            return count++;
+        }
+    }
+
+    // NO_HANDLE, если устройство не регистрировалось
+    public int find(String deviceId) {
+        Integer handle = handles.get(deviceId);
+        return handle != null ? handle : NO_HANDLE;
+    }
+
+    public String idOf(int handle) {
+        String[] current = ids;
+        return handle >= 0 && handle < current.length ? current[handle] : null;
+    }
+
+    public int size() {
+        return handles.size();
+    }
+}
@@ -0,0 +1,346 @@
+package ry.tech.mtc.sensors;
+
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ry.tech.mtc.models.EnergyConsumptionData;
+
+// Учет электроэнергии: интегрирует мощность (Вт) по реальному времени в кВт·ч
+// по устройствам, комнатам и тарифным зонам (день/ночь). Каждое показание - O(1),
+// отчеты строятся по заранее агрегированным часовым, суточным и месячным корзинам.
+public class EnergyAccountingEngine {
+    private static final String TAG = "EnergyAccountingEngine";
+    private static EnergyAccountingEngine instance;
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final int HOURS_PER_DAY = 24;
+    private static final int HOURLY_SLOTS = 7 * HOURS_PER_DAY; // неделя почасово
+    private static final int DAILY_SLOTS = 62;                 // два месяца посуточно
+    private static final int MONTHLY_SLOTS = 24;               // два года помесячно
+    public static final long MAX_GAP_MS = 5 * 60 * 1000L;      // больший разрыв считаем отключением
+
+    private final Map<String, PowerIntegrator> integrators = new ConcurrentHashMap<>();
+    private final Map<String, EnergyCounters> deviceCounters = new ConcurrentHashMap<>();
+    private final Map<String, EnergyCounters> roomCounters = new ConcurrentHashMap<>();
+    private final Map<String, String> deviceRooms = new ConcurrentHashMap<>();
+    private final EnergyCounters totalCounters = new EnergyCounters();
+    private final TimeZone timeZone;
+    private volatile TariffPlan tariffPlan = new TariffPlan(7, 23, 0.2412, 0.1206);
+
+    // Тарифный план: дневная зона [dayStartHour, nightStartHour), остальное - ночь
+    public static class TariffPlan {
+        public final int dayStartHour;
+        public final int nightStartHour;
+        public final double dayRate;   // руб. за кВт·ч
+        public final double nightRate;
+
+        public TariffPlan(int dayStartHour, int nightStartHour, double dayRate, double nightRate) {
+            this.dayStartHour = dayStartHour;
+            this.nightStartHour = nightStartHour;
+            this.dayRate = dayRate;
+            this.nightRate = nightRate;
+        }
+
+        public boolean isDayHour(int hourOfDay) {
+            return hourOfDay >= dayStartHour && hourOfDay < nightStartHour;
+        }
+    }
+
+    public static class MonthlyReport {
+        public final int year;
+        public final int month;
+        public final double totalKwh;
+        public final double dayKwh;
+        public final double nightKwh;
+        public final double cost;
+
+        public MonthlyReport(int year, int month, double dayKwh, double nightKwh, double cost) {
+            this.year = year;
+            this.month = month;
+            this.dayKwh = dayKwh;
+            this.nightKwh = nightKwh;
+            this.totalKwh = dayKwh + nightKwh;
+            this.cost = cost;
+        }
+    }
+
+    // Состояние интегрирования одного устройства
+    private static class PowerIntegrator {
+        long lastTimestamp;
+        double lastPowerW;
+    }
+
+    // Компактные примитивные счетчики: кольцевые корзины с тегом периода
+    private static class EnergyCounters {
+        double totalKwh;
+        double dayKwh;
+        double nightKwh;
+        double cost;
+
+        final float[] hourlyKwh = new float[HOURLY_SLOTS];
+        final int[] hourlyTag = new int[HOURLY_SLOTS];
+        final float[] dailyDayKwh = new float[DAILY_SLOTS];
+        final float[] dailyNightKwh = new float[DAILY_SLOTS];
+        final int[] dailyTag = new int[DAILY_SLOTS];
+        final double[] monthlyDayKwh = new double[MONTHLY_SLOTS];
+        final double[] monthlyNightKwh = new double[MONTHLY_SLOTS];
+        final double[] monthlyCost = new double[MONTHLY_SLOTS];
+        final int[] monthlyTag = new int[MONTHLY_SLOTS];
+
+        // Кэш номера месяца для текущих суток, чтобы не пересчитывать календарь на каждом показании
+        int cachedDay = Integer.MIN_VALUE;
+        int cachedMonthKey;
+
+        EnergyCounters() {
+            Arrays.fill(hourlyTag, -1);
+            Arrays.fill(dailyTag, -1);
+            Arrays.fill(monthlyTag, -1);
+        }
+
+        synchronized void add(int localHour, double kwh, boolean isDay, double rate) {
+            double cost = kwh * rate;
+            totalKwh += kwh;
+            this.cost += cost;
+            if (isDay) {
+                dayKwh += kwh;
+            } else {
+                nightKwh += kwh;
+            }
+
+            int hourSlot = Math.floorMod(localHour, HOURLY_SLOTS);
+            if (hourlyTag[hourSlot] != localHour) {
+                hourlyTag[hourSlot] = localHour;
+                hourlyKwh[hourSlot] = 0;
+            }
+            hourlyKwh[hourSlot] += (float) kwh;
+
+            int day = Math.floorDiv(localHour, HOURS_PER_DAY);
+            int daySlot = Math.floorMod(day, DAILY_SLOTS);
+            if (dailyTag[daySlot] != day) {
+                dailyTag[daySlot] = day;
+                dailyDayKwh[daySlot] = 0;
+                dailyNightKwh[daySlot] = 0;
+            }
+            if (isDay) {
+                dailyDayKwh[daySlot] += (float) kwh;
+            } else {
+                dailyNightKwh[daySlot] += (float) kwh;
+            }
+
+            if (cachedDay != day) {
+                LocalDate date = LocalDate.ofEpochDay(day);
+                cachedDay = day;
+                cachedMonthKey = date.getYear() * 12 + (date.getMonthValue() - 1);
+            }
+            int monthSlot = Math.floorMod(cachedMonthKey, MONTHLY_SLOTS);
+            if (monthlyTag[monthSlot] != cachedMonthKey) {
+                monthlyTag[monthSlot] = cachedMonthKey;
+                monthlyDayKwh[monthSlot] = 0;
+                monthlyNightKwh[monthSlot] = 0;
+                monthlyCost[monthSlot] = 0;
+            }
+            if (isDay) {
+                monthlyDayKwh[monthSlot] += kwh;
+            } else {
+                monthlyNightKwh[monthSlot] += kwh;
+            }
+            monthlyCost[monthSlot] += cost;
+        }
+
+        // Сумма по диапазону локальных часов [fromHour, toHour): целые сутки берутся из суточных корзин
+        synchronized double sum(int fromHour, int toHour) {
+            double result = 0;
+            int hour = fromHour;
+            while (hour < toHour) {
+                if (Math.floorMod(hour, HOURS_PER_DAY) == 0 && hour + HOURS_PER_DAY <= toHour) {
+                    int day = Math.floorDiv(hour, HOURS_PER_DAY);
+                    int daySlot = Math.floorMod(day, DAILY_SLOTS);
+                    if (dailyTag[daySlot] == day) {
+                        result += dailyDayKwh[daySlot] + dailyNightKwh[daySlot];
+                    }
+                    hour += HOURS_PER_DAY;
+                } else {
+                    int hourSlot = Math.floorMod(hour, HOURLY_SLOTS);
+                    if (hourlyTag[hourSlot] == hour) {
+                        result += hourlyKwh[hourSlot];
+                    }
+                    hour++;
+                }
+            }
+            return result;
+        }
+
+        synchronized MonthlyReport monthlyReport(int year, int month) {
+            int monthKey = year * 12 + (month - 1);
+            int monthSlot = Math.floorMod(monthKey, MONTHLY_SLOTS);
+            if (monthlyTag[monthSlot] != monthKey) {
+                return new MonthlyReport(year, month, 0, 0, 0);
+            }
+            return new MonthlyReport(year, month, monthlyDayKwh[monthSlot],
+                    monthlyNightKwh[monthSlot], monthlyCost[monthSlot]);
+        }
+    }
+
+    public EnergyAccountingEngine(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public static synchronized EnergyAccountingEngine getInstance() {
+        if (instance == null) {
+            instance = new EnergyAccountingEngine(TimeZone.getDefault());
+        }
+        return instance;
+    }
+
+    public void setTariffPlan(TariffPlan plan) {
+        this.tariffPlan = plan;
+    }
+
+    public TariffPlan getTariffPlan() {
+        return tariffPlan;
+    }
+
+    // Комната, в счетчики которой идет энергия устройства с этого момента; накопленное ранее
+    // остается в прежней комнате. null - устройство вне комнат
+    public void assignRoom(String deviceId, String roomId) {
+        if (roomId == null) {
+            deviceRooms.remove(deviceId);
+        } else {
+            deviceRooms.put(deviceId, roomId);
+        }
+    }
+
+    // Учитывает показание мощности. Энергия интервала считается по методу трапеций
+    // и при пересечении границы часа делится между часовыми корзинами.
+    public void recordPower(String deviceId, double powerW, long timestamp) {
+        PowerIntegrator integrator = integrators.computeIfAbsent(deviceId, k -> new PowerIntegrator());
+        EnergyCounters device = deviceCounters.computeIfAbsent(deviceId, k -> new EnergyCounters());
+        String roomId = deviceRooms.get(deviceId);
+        EnergyCounters room = roomId != null ? roomCounters.computeIfAbsent(roomId, k -> new EnergyCounters()) : null;
+
+        synchronized (integrator) {
+            long start = integrator.lastTimestamp;
+            double startPower = integrator.lastPowerW;
+            integrator.lastTimestamp = timestamp;
+            integrator.lastPowerW = powerW;
+
+            long elapsed = timestamp - start;
+            if (start == 0 || elapsed <= 0 || elapsed > MAX_GAP_MS) return;
+
+            TariffPlan plan = tariffPlan;
+            long segmentStart = start;
+            while (segmentStart < timestamp) {
+                long offset = timeZone.getOffset(segmentStart);
+                long localTime = segmentStart + offset;
+                int localHour = (int) Math.floorDiv(localTime, HOUR_MS);
+                long hourEnd = (localHour + 1L) * HOUR_MS - offset;
+                long segmentEnd = Math.min(hourEnd, timestamp);
+
+                // Линейная интерполяция мощности на концах отрезка
+                double p0 = startPower + (powerW - startPower) * (segmentStart - start) / elapsed;
+                double p1 = startPower + (powerW - startPower) * (segmentEnd - start) / elapsed;
+                double kwh = (p0 + p1) / 2.0 * (segmentEnd - segmentStart) / HOUR_MS / 1000.0;
+
+                boolean isDay = plan.isDayHour(Math.floorMod(localHour, HOURS_PER_DAY));
+                double rate = isDay ? plan.dayRate : plan.nightRate;
+                device.add(localHour, kwh, isDay, rate);
+                if (room != null) {
+                    room.add(localHour, kwh, isDay, rate);
+                }
+                totalCounters.add(localHour, kwh, isDay, rate);
+
+                segmentStart = segmentEnd;
+            }
+        }
+    }
+
+    public EnergyConsumptionData getDeviceConsumption(String deviceId) {
+        EnergyCounters counters = deviceCounters.get(deviceId);
+        PowerIntegrator integrator = integrators.get(deviceId);
+        if (counters == null) {
+            return new EnergyConsumptionData(0, 0, 0);
+        }
+        synchronized (counters) {
+            return new EnergyConsumptionData(counters.totalKwh,
+                    integrator != null ? integrator.lastPowerW : 0, counters.cost);
+        }
+    }
+
+    public double getTotalKwh(String deviceId) {
+        EnergyCounters counters = deviceCounters.get(deviceId);
+        if (counters == null) return 0;
+        synchronized (counters) {
+            return counters.totalKwh;
+        }
+    }
+
+    public double getDayKwh(String deviceId) {
+        EnergyCounters counters = deviceCounters.get(deviceId);
+        if (counters == null) return 0;
+        synchronized (counters) {
+            return counters.dayKwh;
+        }
+    }
+
+    public double getNightKwh(String deviceId) {
+        EnergyCounters counters = deviceCounters.get(deviceId);
+        if (counters == null) return 0;
+        synchronized (counters) {
+            return counters.nightKwh;
+        }
+    }
+
+    // Потребление за период [fromMs, toMs) с точностью до часа
+    public double getDeviceKwh(String deviceId, long fromMs, long toMs) {
+        return rangeSum(deviceCounters.get(deviceId), fromMs, toMs);
+    }
+
+    public double getRoomKwh(String roomId, long fromMs, long toMs) {
+        return rangeSum(roomCounters.get(roomId), fromMs, toMs);
+    }
+
+    public double getHouseholdKwh(long fromMs, long toMs) {
+        return rangeSum(totalCounters, fromMs, toMs);
+    }
+
+    public MonthlyReport getDeviceMonthlyReport(String deviceId, int year, int month) {
+        EnergyCounters counters = deviceCounters.get(deviceId);
+        return counters != null ? counters.monthlyReport(year, month) : new MonthlyReport(year, month, 0, 0, 0);
+    }
+
+    public MonthlyReport getRoomMonthlyReport(String roomId, int year, int month) {
+        EnergyCounters counters = roomCounters.get(roomId);
+        return counters != null ? counters.monthlyReport(year, month) : new MonthlyReport(year, month, 0, 0, 0);
+    }
+
+    public MonthlyReport getHouseholdMonthlyReport(int year, int month) {
+        return totalCounters.monthlyReport(year, month);
+    }
+
+    // Отчеты по всем устройствам за месяц
+    public List<MonthlyReport> getMonthlyReports(int year, int month) {
+        List<MonthlyReport> reports = new ArrayList<>();
+        for (EnergyCounters counters : deviceCounters.values()) {
+            reports.add(counters.monthlyReport(year, month));
+        }
+        return reports;
+    }
+
+    public void resetDevice(String deviceId) {
+        integrators.remove(deviceId);
+        deviceCounters.remove(deviceId);
+        deviceRooms.remove(deviceId);
+    }
+
+    private double rangeSum(EnergyCounters counters, long fromMs, long toMs) {
+        if (counters == null || toMs <= fromMs) return 0;
+        int fromHour = (int) Math.floorDiv(fromMs + timeZone.getOffset(fromMs), HOUR_MS);
+        int toHour = (int) Math.floorDiv(toMs + timeZone.getOffset(toMs) + HOUR_MS - 1, HOUR_MS);
+        return counters.sum(fromHour, toHour);
+    }
+}
@@ -0,0 +1,64 @@
+package ry.tech.mtc.sensors;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Supplier;
+
+// Значения по дескрипторам DeviceSymbols: индекс в массиве вместо хеширования строки.
+// Чтение без блокировок; запись и рост массива под монитором таблицы.
+final class HandleTable<T> {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private volatile AtomicReferenceArray<T> slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+    T get(int handle) {
+        AtomicReferenceArray<T> current = slots;
+        return handle >= 0 && handle < current.length() ? current.get(handle) : null;
+    }
+
+    synchronized void set(int handle, T value) {
+        ensureCapacity(handle);
+        slots.set(handle, value);
+    }
+
+    synchronized T computeIfAbsent(int handle, Supplier<T> factory) {
+        ensureCapacity(handle);
+        T value = slots.get(handle);
+        if (value == null) {
+            value = factory.get();
+            slots.set(handle, value);
+        }
+        return value;
+    }
+
+    void remove(int handle) {
+        if (get(handle) != null) {
+            set(handle, null);
+        }
+    }
+
+    synchronized void clear() {
+        slots = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+    }
+
+    // Граница перебора: все занятые дескрипторы меньше capacity()
+    int capacity() {
+        return slots.length();
+    }
+
+    private void ensureCapacity(int handle) {
+        if (handle < 0) {
+            throw new IllegalArgumentException("Bad handle " + handle);
+        }
+        AtomicReferenceArray<T> current = slots;
+        if (handle < current.length()) return;
+        int capacity = current.length();
+        while (capacity <= handle) {
+            capacity *= 2;
+        }
+        AtomicReferenceArray<T> grown = new AtomicReferenceArray<>(capacity);
+        for (int i = 0; i < current.length(); i++) {
+            grown.set(i, current.get(i));
+        }
+        slots = grown;
+    }
+}
@@ -0,0 +1,179 @@
+package ry.tech.mtc.sensors;
+
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Потоковый детектор аномалий в дополнение к статическим порогам SensorThresholdManager.
+// На каждый поток (устройство + параметр) хранится постоянный объем состояния, обработка сэмпла - O(1):
+//  - EWMA среднего и дисперсии -> z-оценка для резких скачков внутри допустимого диапазона;
+//  - двусторонний CUSUM по z-оценке -> устойчивый сдвиг уровня;
+//  - базовая линия по часу суток -> отклонение от обычного для этого времени значения.
+public class SensorAnomalyDetector {
+    private static final String TAG = "SensorAnomalyDetector";
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final int HOURS_PER_DAY = 24;
+    private static SensorAnomalyDetector instance;
+
+    private final Map<String, Map<String, StreamState>> streams = new ConcurrentHashMap<>();
+    private final TimeZone timeZone;
+    private volatile DetectorConfig config = new DetectorConfig();
+
+    public enum AnomalyType {
+        NONE,
+        SPIKE,
+        LEVEL_SHIFT,
+        TIME_OF_DAY
+    }
+
+    public static class DetectorConfig {
+        public double alpha;               // вес нового значения в EWMA
+        public double baselineAlpha;       // вес для почасовой базовой линии
+        public double spikeZScore;         // порог z-оценки для скачка
+        public double cusumSlack;          // допуск k в CUSUM (в сигмах)
+        public double cusumThreshold;      // порог h в CUSUM
+        public double timeOfDayZScore;     // порог отклонения от базовой линии часа
+        public int warmupSamples;          // сэмплов до начала оценки
+        public int baselineWarmupSamples;  // сэмплов в часе до использования базовой линии
+
+        public DetectorConfig() {
+            this.alpha = 0.05;
+            this.baselineAlpha = 0.01;
+            this.spikeZScore = 4.0;
+            this.cusumSlack = 0.5;
+            this.cusumThreshold = 8.0;
+            this.timeOfDayZScore = 6.0;
+            this.warmupSamples = 30;
+            this.baselineWarmupSamples = 100;
+        }
+    }
+
+    // Состояние одного потока: только примитивы, история не хранится
+    private static class StreamState {
+        long count;
+        double mean;
+        double variance;
+        double cusumHigh;
+        double cusumLow;
+        final float[] hourMean = new float[HOURS_PER_DAY];
+        final int[] hourCount = new int[HOURS_PER_DAY];
+        double lastZScore;
+    }
+
+    public SensorAnomalyDetector(TimeZone timeZone) {
+        this.timeZone = timeZone;
+    }
+
+    public static synchronized SensorAnomalyDetector getInstance() {
+        if (instance == null) {
+            instance = new SensorAnomalyDetector(TimeZone.getDefault());
+        }
+        return instance;
+    }
+
+    public void setConfig(DetectorConfig config) {
+        this.config = config;
+    }
+
+    public DetectorConfig getConfig() {
+        return config;
+    }
+
+    public AnomalyType check(String deviceId, String parameter, double value, long timestamp) {
+        if (Double.isNaN(value) || Double.isInfinite(value)) return AnomalyType.NONE;
+
+        Map<String, StreamState> deviceStreams = streams.get(deviceId);
+        if (deviceStreams == null) {
+            deviceStreams = streams.computeIfAbsent(deviceId, k -> new ConcurrentHashMap<>());
+        }
+        StreamState state = deviceStreams.get(parameter);
+        if (state == null) {
+            state = deviceStreams.computeIfAbsent(parameter, k -> new StreamState());
+        }
+
+        synchronized (state) {
+            return update(state, value, timestamp, config);
+        }
+    }
+
+    private AnomalyType update(StreamState state, double value, long timestamp, DetectorConfig cfg) {
+        int hour = (int) Math.floorMod(Math.floorDiv(timestamp + timeZone.getOffset(timestamp), HOUR_MS), (long) HOURS_PER_DAY);
+
+        if (state.count == 0) {
+            state.mean = value;
+            state.variance = 0;
+            state.count = 1;
+            state.hourMean[hour] = (float) value;
+            state.hourCount[hour] = 1;
+            return AnomalyType.NONE;
+        }
+
+        AnomalyType result = AnomalyType.NONE;
+        double std = Math.sqrt(state.variance);
+        double z = std > 1e-9 ? (value - state.mean) / std : 0;
+        state.lastZScore = z;
+
+        if (state.count >= cfg.warmupSamples && std > 1e-9) {
+            if (Math.abs(z) > cfg.spikeZScore) {
+                result = AnomalyType.SPIKE;
+            }
+
+            // В CUSUM идет ограниченная z-оценка: одиночный скачок не должен выглядеть как сдвиг уровня
+            double limitedZ = Math.max(-cfg.spikeZScore, Math.min(cfg.spikeZScore, z));
+            state.cusumHigh = Math.max(0, state.cusumHigh + limitedZ - cfg.cusumSlack);
+            state.cusumLow = Math.max(0, state.cusumLow - limitedZ - cfg.cusumSlack);
+            if (result == AnomalyType.NONE
+                    && (state.cusumHigh > cfg.cusumThreshold || state.cusumLow > cfg.cusumThreshold)) {
+                result = AnomalyType.LEVEL_SHIFT;
+                state.cusumHigh = 0;
+                state.cusumLow = 0;
+            }
+
+            if (result == AnomalyType.NONE && state.hourCount[hour] >= cfg.baselineWarmupSamples
+                    && Math.abs(value - state.hourMean[hour]) / std > cfg.timeOfDayZScore) {
+                result = AnomalyType.TIME_OF_DAY;
+            }
+        }
+
+        // Скачки ограничиваются перед обновлением, чтобы один выброс не сдвигал базовую линию
+        double limited = value;
+        if (result == AnomalyType.SPIKE) {
+            double bound = cfg.spikeZScore * std;
+            limited = Math.max(state.mean - bound, Math.min(state.mean + bound, value));
+        }
+
+        double diff = limited - state.mean;
+        double increment = cfg.alpha * diff;
+        state.mean += increment;
+        state.variance = (1 - cfg.alpha) * (state.variance + diff * increment);
+        state.count++;
+
+        if (state.hourCount[hour] == 0) {
+            state.hourMean[hour] = (float) limited;
+        } else {
+            state.hourMean[hour] += (float) (cfg.baselineAlpha * (limited - state.hourMean[hour]));
+        }
+        if (state.hourCount[hour] < Integer.MAX_VALUE) {
+            state.hourCount[hour]++;
+        }
+
+        return result;
+    }
+
+    public double getLastZScore(String deviceId, String parameter) {
+        Map<String, StreamState> deviceStreams = streams.get(deviceId);
+        StreamState state = deviceStreams != null ? deviceStreams.get(parameter) : null;
+        if (state == null) return 0;
+        synchronized (state) {
+            return state.lastZScore;
+        }
+    }
+
+    public void resetDevice(String deviceId) {
+        streams.remove(deviceId);
+    }
+
+    public void clearAll() {
+        streams.clear();
+    }
+}
@@ -3,16 +3,21 @@ package ry.tech.mtc.sensors;
 import android.util.Log;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.ArrayList;
 import java.util.List;
 
+// Калибровка датчиков. Записи устройств хранятся по дескриптору DeviceSymbols, настройки -
+// по SensorType.ordinal(); строковые методы переводят id и тип один раз и вызывают методы с дескриптором.
 public class SensorCalibrationService {
     private static final String TAG = "SensorCalibrationService";
     private static SensorCalibrationService instance;
-    private final Map<String, CalibrationData> calibrationDataMap;
-    private final Map<String, List<Double>> calibrationHistory;
-    private final Map<String, CalibrationConfig> defaultConfigs;
+    private final DeviceSymbols symbols = DeviceSymbols.getInstance();
+    private final HandleTable<CalibrationData> calibrationDataMap;
+    private final HandleTable<List<Double>> calibrationHistory;
+    // SensorType.ordinal() -> настройки типа. Настройки неизменяемые и задаются только здесь:
+    // пользовательских настроек калибровки нет (SensorPolicyStore их не хранит), поток движка
+    // читает их без блокировок
+    private final CalibrationConfig[] defaultConfigs;
 
     public static class CalibrationData {
         public double offset;
@@ -21,6 +26,7 @@ public class SensorCalibrationService {
         public long lastCalibrationTime;
         public int calibrationCount;
         public boolean isCalibrated;
+        // Создается при первой калибровке: у некалиброванных устройств запись без лишних карт
         public Map<String, Double> additionalParams;
 
         public CalibrationData() {
@@ -30,19 +36,18 @@ public class SensorCalibrationService {
             this.lastCalibrationTime = System.currentTimeMillis();
             this.calibrationCount = 0;
             this.isCalibrated = false;
-            this.additionalParams = new HashMap<>();
         }
     }
 
     public static class CalibrationConfig {
-        public double defaultOffset;
-        public double defaultMultiplier;
-        public double minValue;
-        public double maxValue;
-        public double accuracy;
-        public int requiredSamples;
-        public long calibrationInterval;
-        public String unit;
+        public final double defaultOffset;
+        public final double defaultMultiplier;
+        public final double minValue;
+        public final double maxValue;
+        public final double accuracy;
+        public final int requiredSamples;
+        public final long calibrationInterval;
+        public final String unit;
 
         public CalibrationConfig(double minValue, double maxValue, double accuracy, String unit) {
             this.defaultOffset = 0.0;
@@ -57,10 +62,9 @@ public class SensorCalibrationService {
     }
 
     private SensorCalibrationService() {
-        calibrationDataMap = new ConcurrentHashMap<>();
-        calibrationHistory = new ConcurrentHashMap<>();
-        defaultConfigs = new HashMap<>();
-        initializeDefaultConfigs();
+        calibrationDataMap = new HandleTable<>();
+        calibrationHistory = new HandleTable<>();
+        defaultConfigs = createDefaultConfigs();
     }
 
     public static synchronized SensorCalibrationService getInstance() {
@@ -70,30 +74,37 @@ public class SensorCalibrationService {
         return instance;
     }
 
-    private void initializeDefaultConfigs() {
+    private static CalibrationConfig[] createDefaultConfigs() {
+        CalibrationConfig[] defaultConfigs = new CalibrationConfig[SensorType.count()];
         // Конфигурация для температурных датчиков
-        defaultConfigs.put("temperature_sensor",
-                new CalibrationConfig(-5, 8, 0.1, "°C"));
+        defaultConfigs[SensorType.TEMPERATURE.ordinal()] =
+                new CalibrationConfig(-5, 40, 0.1, "°C");
 
         // Конфигурация для датчиков влажности
-        defaultConfigs.put("humidity_sensor",
-                new CalibrationConfig(65, 85, 1.0, "%"));
+        defaultConfigs[SensorType.HUMIDITY.ordinal()] =
+                new CalibrationConfig(30, 80, 1.0, "%");
 
         // Конфигурация для датчиков воды
-        defaultConfigs.put("water_sensor",
-                new CalibrationConfig(0, 100, 0.5, "cm"));
+        defaultConfigs[SensorType.WATER.ordinal()] =
+                new CalibrationConfig(0, 100, 0.5, "cm");
 
         // Конфигурация для датчиков электричества
-        defaultConfigs.put("electricity_sensor",
-                new CalibrationConfig(0, 3500, 1.0, "W"));
+        defaultConfigs[SensorType.ELECTRICITY.ordinal()] =
+                new CalibrationConfig(0, 3500, 1.0, "W");
 
         // Конфигурация для датчиков воздуха
-        defaultConfigs.put("air_sensor",
-                new CalibrationConfig(0, 150, 1.0, "AQI"));
+        defaultConfigs[SensorType.AIR.ordinal()] =
+                new CalibrationConfig(0, 150, 1.0, "AQI");
+        return defaultConfigs;
     }
 
     public double calibrateValue(String deviceId, String sensorType, double rawValue) {
-        CalibrationData calibData = getCalibrationData(deviceId);
+        return calibrateValue(symbols.find(deviceId), SensorType.fromTypeId(sensorType), rawValue);
+    }
+
+    // type == null - устройство не датчик, ограничение диапазона не применяется
+    public double calibrateValue(int handle, SensorType type, double rawValue) {
+        CalibrationData calibData = calibrationDataMap.get(handle);
         if (calibData == null || !calibData.isCalibrated) {
             return rawValue;
         }
@@ -102,7 +113,7 @@ public class SensorCalibrationService {
         double calibratedValue = (rawValue + calibData.offset) * calibData.multiplier;
 
         // Проверка на выход за пределы допустимых значений
-        CalibrationConfig config = defaultConfigs.get(sensorType);
+        CalibrationConfig config = getCalibrationConfig(type);
         if (config != null) {
             calibratedValue = Math.max(config.minValue, Math.min(config.maxValue, calibratedValue));
         }
@@ -111,28 +122,30 @@ public class SensorCalibrationService {
     }
 
     public void performCalibration(String deviceId, String sensorType, double referenceValue) {
-        CalibrationData calibData = calibrationDataMap.computeIfAbsent(
-                deviceId, k -> new CalibrationData());
-        List<Double> history = calibrationHistory.computeIfAbsent(
-                deviceId, k -> new ArrayList<>());
+        performCalibration(symbols.intern(deviceId), SensorType.fromTypeId(sensorType), referenceValue);
+    }
+
+    public void performCalibration(int handle, SensorType type, double referenceValue) {
+        calibrationDataMap.computeIfAbsent(handle, CalibrationData::new);
+        List<Double> history = calibrationHistory.computeIfAbsent(handle, ArrayList::new);
 
         // Добавление значения в историю калибровки
         history.add(referenceValue);
 
         // Проверка достаточного количества измерений
-        if (history.size() >= getRequiredSamples(sensorType)) {
-            calculateCalibrationParameters(deviceId, sensorType, referenceValue);
+        if (history.size() >= getRequiredSamples(type)) {
+            calculateCalibrationParameters(handle, type, referenceValue);
         }
     }
 
-    private void calculateCalibrationParameters(String deviceId, String sensorType, double referenceValue) {
-        List<Double> history = calibrationHistory.get(deviceId);
+    private void calculateCalibrationParameters(int handle, SensorType type, double referenceValue) {
+        List<Double> history = calibrationHistory.get(handle);
         if (history == null || history.isEmpty()) return;
 
         // Расчет среднего значения измерений
         double average = history.stream().mapToDouble(Double::doubleValue).average().orElse(0.0);
 
-        CalibrationData calibData = calibrationDataMap.get(deviceId);
+        CalibrationData calibData = calibrationDataMap.get(handle);
         if (calibData != null) {
             // Расчет калибровочных коэффициентов
             calibData.offset = referenceValue - average;
@@ -143,33 +156,37 @@ public class SensorCalibrationService {
             calibData.isCalibrated = true;
 
             // Добавление дополнительных параметров в зависимости от типа датчика
-            updateAdditionalParameters(calibData, sensorType);
+            updateAdditionalParameters(calibData, type);
         }
 
         // Очистка истории после калибровки
         history.clear();
     }
 
-    private void updateAdditionalParameters(CalibrationData calibData, String sensorType) {
-        switch (sensorType) {
-            case "temperature_sensor":
+    private void updateAdditionalParameters(CalibrationData calibData, SensorType type) {
+        if (type == null) return;
+        if (calibData.additionalParams == null) {
+            calibData.additionalParams = new HashMap<>(4);
+        }
+        switch (type) {
+            case TEMPERATURE:
                 calibData.additionalParams.put("temperatureOffset", calibData.offset);
                 calibData.additionalParams.put("temperatureMultiplier", calibData.multiplier);
                 break;
-            case "humidity_sensor":
+            case HUMIDITY:
                 calibData.additionalParams.put("humidityOffset", calibData.offset);
                 calibData.additionalParams.put("humidityCompensation",
                         calculateHumidityCompensation(calibData));
                 break;
-            case "water_sensor":
+            case WATER:
                 calibData.additionalParams.put("pressureCompensation",
                         calculatePressureCompensation(calibData));
                 break;
-            case "electricity_sensor":
+            case ELECTRICITY:
                 calibData.additionalParams.put("powerFactor",
                         calculatePowerFactor(calibData));
                 break;
-            case "air_sensor":
+            case AIR:
                 calibData.additionalParams.put("particleOffset",
                         calculateParticleOffset(calibData));
                 break;
@@ -193,43 +210,54 @@ public class SensorCalibrationService {
     }
 
     public CalibrationData getCalibrationData(String deviceId) {
-        return calibrationDataMap.get(deviceId);
+        return calibrationDataMap.get(symbols.find(deviceId));
     }
 
     public void resetCalibration(String deviceId) {
-        calibrationDataMap.remove(deviceId);
-        calibrationHistory.remove(deviceId);
+        int handle = symbols.find(deviceId);
+        calibrationDataMap.remove(handle);
+        calibrationHistory.remove(handle);
     }
 
     public boolean needsCalibration(String deviceId, String sensorType) {
-        CalibrationData calibData = calibrationDataMap.get(deviceId);
+        return needsCalibration(symbols.find(deviceId), SensorType.fromTypeId(sensorType));
+    }
+
+    public boolean needsCalibration(int handle, SensorType type) {
+        CalibrationData calibData = calibrationDataMap.get(handle);
         if (calibData == null) return true;
 
-        CalibrationConfig config = defaultConfigs.get(sensorType);
+        CalibrationConfig config = getCalibrationConfig(type);
         if (config == null) return false;
         long timeSinceLastCalibration = System.currentTimeMillis() - calibData.lastCalibrationTime;
         return timeSinceLastCalibration > config.calibrationInterval;
     }
 
     public int getRequiredSamples(String sensorType) {
-        CalibrationConfig config = defaultConfigs.get(sensorType);
+        return getRequiredSamples(SensorType.fromTypeId(sensorType));
+    }
+
+    private int getRequiredSamples(SensorType type) {
+        CalibrationConfig config = getCalibrationConfig(type);
         return config != null ? config.requiredSamples : 10;
     }
 
     public double getAccuracy(String sensorType) {
-        CalibrationConfig config = defaultConfigs.get(sensorType);
+        CalibrationConfig config = getCalibrationConfig(sensorType);
         return config != null ? config.accuracy : 1.0;
     }
 
-    public void updateCalibrationConfig(String sensorType, CalibrationConfig config) {
-        defaultConfigs.put(sensorType, config);
+    // Настройки есть только у типов датчиков; для остальных строк - null
+    public CalibrationConfig getCalibrationConfig(String sensorType) {
+        return getCalibrationConfig(SensorType.fromTypeId(sensorType));
     }
 
-    public CalibrationConfig getCalibrationConfig(String sensorType) {
-        return defaultConfigs.get(sensorType);
+    public CalibrationConfig getCalibrationConfig(SensorType type) {
+        return type != null ? defaultConfigs[type.ordinal()] : null;
     }
 
     public List<Double> getCalibrationHistory(String deviceId) {
-        return calibrationHistory.getOrDefault(deviceId, new ArrayList<>());
+        List<Double> history = calibrationHistory.get(symbols.find(deviceId));
+        return history != null ? history : new ArrayList<>();
     }
-}
\ No newline at end of file
+}
@@ -4,17 +4,24 @@ import java.util.HashMap;
 import java.util.Map;
 import android.util.Log;
 
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
+// Обработка показаний датчиков. Результаты хранятся по дескриптору DeviceSymbols,
+// тип датчика - SensorType: на каждое показание ни хеширования строк, ни сравнения типов строкой.
 public class SensorDataProcessor {
     private static final String TAG = "SensorDataProcessor";
     private static SensorDataProcessor instance;
-    private final Map<String, ProcessedSensorData> processedDataMap;
-    private final SensorThresholdManager thresholdManager;
-    private final SensorNotificationManager notificationManager;
+    private final DeviceSymbols symbols = DeviceSymbols.getInstance();
+    private final HandleTable<ProcessedSensorData> processedDataMap;
+    private final EnergyAccountingEngine energyEngine;
+    private final Counter readingsCounter = MetricsRegistry.getInstance().counter("processor.readings");
+    private final LatencyHistogram processLatency = MetricsRegistry.getInstance().histogram("processor.process");
 
     private SensorDataProcessor() {
-        this.processedDataMap = new HashMap<>();
-        this.thresholdManager = SensorThresholdManager.getInstance();
-        this.notificationManager = SensorNotificationManager.getInstance();
+        this.processedDataMap = new HandleTable<>();
+        this.energyEngine = EnergyAccountingEngine.getInstance();
     }
 
     public static synchronized SensorDataProcessor getInstance() {
@@ -43,42 +50,51 @@ public class SensorDataProcessor {
     }
 
     public void processSensorData(String deviceId, String sensorType, double rawValue) {
-        ProcessedSensorData data = processedDataMap.getOrDefault(deviceId, new ProcessedSensorData());
+        processSensorData(symbols.intern(deviceId), SensorType.fromTypeId(sensorType), rawValue);
+    }
+
+    // type == null - значение без типовой обработки, обновляется только статистика
+    public void processSensorData(int handle, SensorType type, double rawValue) {
+        long start = System.nanoTime();
+        readingsCounter.increment();
+        // Объект создается только для нового устройства
+        ProcessedSensorData data = processedDataMap.get(handle);
+        if (data == null) {
+            data = processedDataMap.computeIfAbsent(handle, ProcessedSensorData::new);
+        }
 
         // Обработка данных в зависимости от типа датчика
-        switch (sensorType) {
-            case "temperature_sensor":
-                processTemperatureData(data, rawValue);
-                break;
-            case "humidity_sensor":
-                processHumidityData(data, rawValue);
-                break;
-            case "water_sensor":
-                processWaterSensorData(data, rawValue);
-                break;
-            case "electricity_sensor":
-                processElectricitySensorData(data, rawValue);
-                break;
-            case "air_sensor":
-                processAirSensorData(data, rawValue);
-                break;
+        if (type != null) {
+            data.rawValue = rawValue;
+            data.processedValue = type.calibrate(rawValue);
+            data.unit = type.unit;
+            switch (type) {
+                case TEMPERATURE:
+                    processTemperatureData(data, rawValue);
+                    break;
+                case HUMIDITY:
+                    processHumidityData(data, rawValue);
+                    break;
+                case WATER:
+                    processWaterSensorData(data, rawValue);
+                    break;
+                case ELECTRICITY:
+                    processElectricitySensorData(symbols.idOf(handle), data, rawValue);
+                    break;
+                case AIR:
+                    processAirSensorData(data, rawValue);
+                    break;
+            }
         }
 
-        // Проверка пороговых значений
-        checkThresholds(deviceId, sensorType, data);
+        // Пороги проверяют вызывающие (симулятор, MockDeviceData) по параметру показания
 
         // Обновление статистики
         updateStatistics(data, rawValue);
-
-        processedDataMap.put(deviceId, data);
+        processLatency.recordSince(start);
     }
 
     private void processTemperatureData(ProcessedSensorData data, double rawValue) {
-        // Калибровка и фильтрация данных температуры
-        data.rawValue = rawValue;
-        data.processedValue = calibrateTemperature(rawValue);
-        data.unit = "°C";
-
         // Расчет дополнительных метрик
         data.additionalMetrics.put("heatIndex", calculateHeatIndex(rawValue,
                 data.additionalMetrics.getOrDefault("humidity", 50.0)));
@@ -87,27 +103,22 @@ public class SensorDataProcessor {
     }
 
     private void processHumidityData(ProcessedSensorData data, double rawValue) {
-        data.rawValue = rawValue;
-        data.processedValue = calibrateHumidity(rawValue);
-        data.unit = "%";
-
         data.additionalMetrics.put("absoluteHumidity",
                 calculateAbsoluteHumidity(rawValue, data.additionalMetrics.getOrDefault("temperature", 20.0)));
     }
 
     private void processWaterSensorData(ProcessedSensorData data, double rawValue) {
-        data.rawValue = rawValue;
-        data.processedValue = calibrateWaterLevel(rawValue);
-        data.unit = "cm";
-
         data.additionalMetrics.put("pressure", calculateWaterPressure(rawValue));
         data.additionalMetrics.put("flow", calculateWaterFlow(rawValue));
     }
 
-    private void processElectricitySensorData(ProcessedSensorData data, double rawValue) {
-        data.rawValue = rawValue;
-        data.processedValue = calibrateElectricity(rawValue);
-        data.unit = "kWh";
+    private void processElectricitySensorData(String deviceId, ProcessedSensorData data, double rawValue) {
+        // Показание датчика - мгновенная мощность в Вт (как параметр "power" устройства);
+        // энергия в кВт·ч получается интегрированием по реальному прошедшему времени
+        energyEngine.recordPower(deviceId, data.processedValue, System.currentTimeMillis());
+        data.additionalMetrics.put("totalEnergy", energyEngine.getTotalKwh(deviceId));
+        data.additionalMetrics.put("dayEnergy", energyEngine.getDayKwh(deviceId));
+        data.additionalMetrics.put("nightEnergy", energyEngine.getNightKwh(deviceId));
 
         data.additionalMetrics.put("current", calculateCurrent(rawValue));
         data.additionalMetrics.put("voltage", calculateVoltage(rawValue));
@@ -115,29 +126,11 @@ public class SensorDataProcessor {
     }
 
     private void processAirSensorData(ProcessedSensorData data, double rawValue) {
-        data.rawValue = rawValue;
-        data.processedValue = calibrateAirQuality(rawValue);
-        data.unit = "AQI";
-
         data.additionalMetrics.put("pm25", calculatePM25(rawValue));
         data.additionalMetrics.put("pm10", calculatePM10(rawValue));
         data.additionalMetrics.put("co2", calculateCO2(rawValue));
     }
 
-    private void checkThresholds(String deviceId, String sensorType, ProcessedSensorData data) {
-        Map<String, Double> thresholds = thresholdManager.getThresholds(deviceId);
-
-        if (thresholds != null) {
-            double minThreshold = thresholds.getOrDefault("min", Double.NEGATIVE_INFINITY);
-            double maxThreshold = thresholds.getOrDefault("max", Double.POSITIVE_INFINITY);
-
-            if (data.processedValue < minThreshold || data.processedValue > maxThreshold) {
-                notificationManager.sendAlert(deviceId, sensorType, data.processedValue,
-                        data.unit, minThreshold, maxThreshold);
-            }
-        }
-    }
-
     private void updateStatistics(ProcessedSensorData data, double newValue) {
         if (data.min == 0 || newValue < data.min) data.min = newValue;
         if (data.max == 0 || newValue > data.max) data.max = newValue;
@@ -147,28 +140,6 @@ public class SensorDataProcessor {
         data.lastUpdateTime = System.currentTimeMillis();
     }
 
-    // Методы калибровки
-    private double calibrateTemperature(double rawValue) {
-        // Применение калибровочной формулы для температуры
-        return rawValue * 1.02 - 0.1; // Пример калибровки
-    }
-
-    private double calibrateHumidity(double rawValue) {
-        return Math.min(100, Math.max(0, rawValue * 1.05)); // Пример калибровки
-    }
-
-    private double calibrateWaterLevel(double rawValue) {
-        return rawValue * 1.1; // Пример калибровки
-    }
-
-    private double calibrateElectricity(double rawValue) {
-        return rawValue * 0.98; // Пример калибровки
-    }
-
-    private double calibrateAirQuality(double rawValue) {
-        return rawValue * 1.15; // Пример калибровки
-    }
-
     // Вспомогательные расчеты
     private double calculateHeatIndex(double temp, double humidity) {
         // Формула расчета индекса тепла
@@ -234,11 +205,11 @@ public class SensorDataProcessor {
     }
 
     public ProcessedSensorData getProcessedData(String deviceId) {
-        return processedDataMap.get(deviceId);
+        return processedDataMap.get(symbols.find(deviceId));
     }
 
     public void clearData(String deviceId) {
-        processedDataMap.remove(deviceId);
+        processedDataMap.remove(symbols.find(deviceId));
     }
 
     public void clearAllData() {
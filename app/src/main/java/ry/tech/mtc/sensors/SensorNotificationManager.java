@@ -10,9 +10,7 @@ import android.os.Looper;
 import androidx.core.app.NotificationCompat;
 import android.util.Log;
 
-import java.util.HashMap;
-import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.Collections;
 import java.util.ArrayList;
 import java.util.List;
 import java.time.LocalDateTime;
@@ -20,51 +18,107 @@ import java.time.format.DateTimeFormatter;
 
 import ry.tech.mtc.R;
 import ry.tech.mtc.MainActivity;
-
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.startup.AppStartup;
+import ry.tech.mtc.storage.HomeStorage;
+
+// Оповещения датчиков. Настройки уведомлений устройства по умолчанию - ссылка на общий шаблон его типа
+// (isShared == true); настройки неизменяемые, изменения приходят из SensorPolicyStore (applyPolicy)
+// и заменяют ссылку собственной копией.
+// Настройки и история хранятся по дескриптору DeviceSymbols, строковые методы - адаптеры.
 public class SensorNotificationManager {
     private static final String TAG = "SensorNotificationManager";
     private static SensorNotificationManager instance;
     private Context context;
     private NotificationManager notificationManager;
-    private final Map<String, NotificationConfig> notificationConfigs;
-    private final Map<String, List<AlertHistory>> alertHistory;
+    private final DeviceSymbols symbols = DeviceSymbols.getInstance();
+    private final HandleTable<NotificationConfig> notificationConfigs;
+    // SensorType.ordinal() -> общий шаблон
+    private final NotificationConfig[] typeTemplates;
+    private final HandleTable<DeviceHistory> alertHistory;
     private final Handler mainHandler;
     private static final String CHANNEL_ID = "sensor_alerts";
     private static final String CHANNEL_NAME = "Sensor Alerts";
+    // Последние оповещения устройства в памяти; в базе хранится больше (см. HomeStorage)
+    private static final int MAX_HISTORY_SIZE = 100;
     private int notificationId = 1000;
-
-    public static class NotificationConfig {
-        public boolean isEnabled;
-        public int priority;
-        public long cooldownPeriod;
-        public boolean vibrationEnabled;
-        public boolean soundEnabled;
-        public String customSound;
-        public List<String> notificationRecipients;
-        public Map<String, AlertThreshold> thresholds;
+    // Для типов без собственного шаблона и устройств без настроек
+    private static final NotificationConfig DEFAULT_TEMPLATE =
+            NotificationConfig.template(NotificationCompat.PRIORITY_HIGH, 5 * 60 * 1000);
+    private final Counter alertsSent = MetricsRegistry.getInstance().counter("alerts.sent");
+    private final Counter alertsSuppressed = MetricsRegistry.getInstance().counter("alerts.suppressed");
+
+    // Неизменяемые настройки уведомлений: поток движка читает опубликованный объект без блокировок.
+    // Изменение возвращает новую собственную копию устройства, она публикуется заменой ссылки в таблице
+    public static final class NotificationConfig {
+        public final boolean isEnabled;
+        public final int priority;
+        public final long cooldownPeriod;
+        public final boolean vibrationEnabled;
+        public final boolean soundEnabled;
+        public final String customSound;
+        public final List<String> notificationRecipients;
+        // Общий шаблон типа (одна ссылка у многих устройств), а не собственная копия устройства
+        public final boolean isShared;
 
         public NotificationConfig() {
-            this.isEnabled = true;
-            this.priority = NotificationCompat.PRIORITY_HIGH;
-            this.cooldownPeriod = 5 * 60 * 1000; // 5 минут
-            this.vibrationEnabled = true;
-            this.soundEnabled = true;
-            this.notificationRecipients = new ArrayList<>();
-            this.thresholds = new HashMap<>();
+            this(true, NotificationCompat.PRIORITY_HIGH, 5 * 60 * 1000, true, true, null,
+                    Collections.emptyList(), false);
+        }
+
+        private NotificationConfig(boolean isEnabled, int priority, long cooldownPeriod,
+                                   boolean vibrationEnabled, boolean soundEnabled, String customSound,
+                                   List<String> notificationRecipients, boolean isShared) {
+            this.isEnabled = isEnabled;
+            this.priority = priority;
+            this.cooldownPeriod = cooldownPeriod;
+            this.vibrationEnabled = vibrationEnabled;
+            this.soundEnabled = soundEnabled;
+            this.customSound = customSound;
+            this.notificationRecipients = notificationRecipients;
+            this.isShared = isShared;
+        }
+
+        static NotificationConfig template(int priority, long cooldownPeriod) {
+            return new NotificationConfig(true, priority, cooldownPeriod, true, true, null,
+                    Collections.emptyList(), true);
+        }
+
+        public NotificationConfig withEnabled(boolean isEnabled) {
+            return new NotificationConfig(isEnabled, priority, cooldownPeriod, vibrationEnabled, soundEnabled,
+                    customSound, notificationRecipients, false);
+        }
+
+        public NotificationConfig withCooldownPeriod(long cooldownPeriod) {
+            return new NotificationConfig(isEnabled, priority, cooldownPeriod, vibrationEnabled, soundEnabled,
+                    customSound, notificationRecipients, false);
+        }
+
+        // recipients - неизменяемый список (например, из SensorPolicyStore.DevicePolicy)
+        public NotificationConfig withRecipients(List<String> recipients) {
+            return new NotificationConfig(isEnabled, priority, cooldownPeriod, vibrationEnabled, soundEnabled,
+                    customSound, recipients, false);
         }
     }
 
-    public static class AlertThreshold {
-        public double warningLevel;
-        public double criticalLevel;
-        public String unit;
-        public boolean isEnabled;
+    // Последние оповещения устройства. Сохраненные читаются в потоке HomeStorage; до их загрузки
+    // (isLoaded == false) новые оповещения только копятся здесь и пишутся в базу после нее.
+    // Список меняется и читается под монитором объекта
+    private static final class DeviceHistory {
+        final List<AlertHistory> alerts = new ArrayList<>();
+        boolean isLoaded;
 
-        public AlertThreshold(double warning, double critical, String unit) {
-            this.warningLevel = warning;
-            this.criticalLevel = critical;
-            this.unit = unit;
-            this.isEnabled = true;
+        DeviceHistory(boolean isLoaded) {
+            this.isLoaded = isLoaded;
+        }
+
+        synchronized AlertHistory last() {
+            return alerts.isEmpty() ? null : alerts.get(alerts.size() - 1);
+        }
+
+        synchronized List<AlertHistory> copy() {
+            return new ArrayList<>(alerts);
         }
     }
 
@@ -78,15 +132,21 @@ public class SensorNotificationManager {
 
         public AlertHistory(String deviceId, String sensorType, double value,
                             String unit, AlertLevel level) {
+            this(deviceId, sensorType, value, unit, level, LocalDateTime.now());
+        }
+
+        public AlertHistory(String deviceId, String sensorType, double value,
+                            String unit, AlertLevel level, LocalDateTime timestamp) {
             this.deviceId = deviceId;
             this.sensorType = sensorType;
             this.value = value;
             this.unit = unit;
             this.level = level;
-            this.timestamp = LocalDateTime.now();
+            this.timestamp = timestamp;
         }
     }
 
+    // ordinal() хранится в базе (HomeStorage, alerts.level): новые уровни - только в конец
     public enum AlertLevel {
         INFO,
         WARNING,
@@ -94,9 +154,29 @@ public class SensorNotificationManager {
     }
 
     private SensorNotificationManager() {
-        notificationConfigs = new ConcurrentHashMap<>();
-        alertHistory = new ConcurrentHashMap<>();
+        notificationConfigs = new HandleTable<>();
+        alertHistory = new HandleTable<>();
         mainHandler = new Handler(Looper.getMainLooper());
+        typeTemplates = new NotificationConfig[SensorType.count()];
+        initializeTypeTemplates();
+    }
+
+    private void initializeTypeTemplates() {
+        // Температура и влажность меняются медленно
+        NotificationConfig climate = NotificationConfig.template(2, 5 * 60 * 1000);
+        typeTemplates[SensorType.TEMPERATURE.ordinal()] = climate;
+        typeTemplates[SensorType.HUMIDITY.ordinal()] = climate;
+
+        // Протечка и перегрузка сети требуют быстрой реакции
+        NotificationConfig urgent = NotificationConfig.template(1, 60 * 1000);
+        typeTemplates[SensorType.WATER.ordinal()] = urgent;
+        typeTemplates[SensorType.ELECTRICITY.ordinal()] = urgent;
+
+        typeTemplates[SensorType.AIR.ordinal()] = NotificationConfig.template(2, 10 * 60 * 1000);
+    }
+
+    private NotificationConfig getTypeTemplate(SensorType type) {
+        return type != null ? typeTemplates[type.ordinal()] : DEFAULT_TEMPLATE;
     }
 
     public static synchronized SensorNotificationManager getInstance() {
@@ -129,23 +209,64 @@ public class SensorNotificationManager {
 
     public void sendAlert(String deviceId, String sensorType, double value,
                           String unit, double minThreshold, double maxThreshold) {
-        NotificationConfig config = notificationConfigs.get(deviceId);
+        sendAlert(symbols.find(deviceId), sensorType, value, unit, minThreshold, maxThreshold);
+    }
+
+    public void sendAlert(int handle, String sensorType, double value,
+                          String unit, double minThreshold, double maxThreshold) {
+        NotificationConfig config = notificationConfigs.get(handle);
         if (config == null || !config.isEnabled) return;
 
         // Определение уровня важности оповещения
         AlertLevel alertLevel = determineAlertLevel(value, minThreshold, maxThreshold);
 
+        dispatchAlert(config, handle, sensorType, value, unit, alertLevel, null);
+    }
+
+    // Оповещение от SensorAnomalyDetector: значение может быть внутри порогов, но вести себя необычно
+    public void sendAnomalyAlert(String deviceId, String sensorType, double value, String unit,
+                                 SensorAnomalyDetector.AnomalyType anomalyType) {
+        sendAnomalyAlert(symbols.find(deviceId), sensorType, value, unit, anomalyType);
+    }
+
+    public void sendAnomalyAlert(int handle, String sensorType, double value, String unit,
+                                 SensorAnomalyDetector.AnomalyType anomalyType) {
+        NotificationConfig config = notificationConfigs.get(handle);
+        if (config == null || !config.isEnabled || anomalyType == SensorAnomalyDetector.AnomalyType.NONE) return;
+
+        dispatchAlert(config, handle, sensorType, value, unit, AlertLevel.WARNING, describeAnomaly(anomalyType));
+    }
+
+    private void dispatchAlert(NotificationConfig config, int handle, String sensorType, double value,
+                               String unit, AlertLevel alertLevel, String detail) {
         // Проверка периода охлаждения
-        if (shouldSendAlert(deviceId, alertLevel)) {
-            // Создание записи в истории
+        if (shouldSendAlert(config, handle, alertLevel)) {
+            // Создание записи в истории; строковый id нужен только здесь
+            String deviceId = symbols.idOf(handle);
             AlertHistory alert = new AlertHistory(deviceId, sensorType, value, unit, alertLevel);
-            addToHistory(deviceId, alert);
+            addToHistory(handle, alert);
 
             // Отправка уведомления
-            sendNotification(deviceId, sensorType, value, unit, alertLevel);
+            sendNotification(config, sensorType, value, unit, alertLevel, detail);
 
             // Отправка уведомления получателям
             notifyRecipients(config, alert);
+            alertsSent.increment();
+        } else {
+            alertsSuppressed.increment();
+        }
+    }
+
+    private String describeAnomaly(SensorAnomalyDetector.AnomalyType anomalyType) {
+        switch (anomalyType) {
+            case SPIKE:
+                return "Резкий скачок значения";
+            case LEVEL_SHIFT:
+                return "Устойчивый сдвиг уровня";
+            case TIME_OF_DAY:
+                return "Нетипично для этого времени суток";
+            default:
+                return null;
         }
     }
 
@@ -160,14 +281,12 @@ public class SensorNotificationManager {
         return AlertLevel.INFO;
     }
 
-    private boolean shouldSendAlert(String deviceId, AlertLevel level) {
-        List<AlertHistory> history = alertHistory.get(deviceId);
-        if (history == null || history.isEmpty()) return true;
-
-        AlertHistory lastAlert = history.get(history.size() - 1);
-        NotificationConfig config = notificationConfigs.get(deviceId);
-
-        if (config == null) return true;
+    private boolean shouldSendAlert(NotificationConfig config, int handle, AlertLevel level) {
+        // С историей из базы период охлаждения соблюдается и после перезапуска
+        // Пока история не загружена, охлаждение считается только по оповещениям этого запуска
+        DeviceHistory history = getOrLoadHistory(handle);
+        AlertHistory lastAlert = history != null ? history.last() : null;
+        if (lastAlert == null) return true;
 
         long timeSinceLastAlert =
                 System.currentTimeMillis() - lastAlert.timestamp.atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
@@ -175,10 +294,13 @@ public class SensorNotificationManager {
         return timeSinceLastAlert > config.cooldownPeriod || level == AlertLevel.CRITICAL;
     }
 
-    private void sendNotification(String deviceId, String sensorType,
-                                  double value, String unit, AlertLevel level) {
+    private void sendNotification(NotificationConfig config, String sensorType,
+                                  double value, String unit, AlertLevel level, String detail) {
         String title = String.format("Alert: %s Sensor", sensorType);
         String message = String.format("Value: %.2f %s - Level: %s", value, unit, level);
+        if (detail != null) {
+            message = message + " - " + detail;
+        }
 
         Intent intent = new Intent(context, MainActivity.class);
         intent.setFlags(Intent.FLAG_ACTIVITY_NEW_TASK | Intent.FLAG_ACTIVITY_CLEAR_TASK);
@@ -193,14 +315,11 @@ public class SensorNotificationManager {
                 .setAutoCancel(true)
                 .setContentIntent(pendingIntent);
 
-        NotificationConfig config = notificationConfigs.get(deviceId);
-        if (config != null) {
-            if (config.vibrationEnabled) {
-                builder.setVibrate(new long[]{0, 500, 200, 500});
-            }
-            if (config.soundEnabled) {
-                builder.setDefaults(NotificationCompat.DEFAULT_SOUND);
-            }
+        if (config.vibrationEnabled) {
+            builder.setVibrate(new long[]{0, 500, 200, 500});
+        }
+        if (config.soundEnabled) {
+            builder.setDefaults(NotificationCompat.DEFAULT_SOUND);
         }
 
         mainHandler.post(() -> notificationManager.notify(notificationId++, builder.build()));
@@ -218,58 +337,137 @@ public class SensorNotificationManager {
         }
     }
 
-    private void addToHistory(String deviceId, AlertHistory alert) {
-        List<AlertHistory> history = alertHistory.computeIfAbsent(deviceId, k -> new ArrayList<>());
-        history.add(alert);
+    private void addToHistory(int handle, AlertHistory alert) {
+        DeviceHistory history = getOrLoadHistory(handle);
+        if (history == null) return;
+        boolean isLoaded;
+        synchronized (history) {
+            history.alerts.add(alert);
+            // Ограничение размера истории
+            if (history.alerts.size() > MAX_HISTORY_SIZE) {
+                history.alerts.remove(0);
+            }
+            isLoaded = history.isLoaded;
+        }
+        if (isLoaded) {
+            HomeStorage.getInstance().appendAlert(alert);
+        }
+    }
 
-        // Ограничение размера истории
-        if (history.size() > 100) {
-            history.remove(0);
+    // История устройства читается из базы при первом обращении, а не при старте для всех устройств,
+    // и не в потоке вызывающего: он сразу получает пока пустую историю
+    private DeviceHistory getOrLoadHistory(int handle) {
+        if (handle == DeviceSymbols.NO_HANDLE) return null;
+        DeviceHistory history = alertHistory.get(handle);
+        if (history != null) return history;
+        DeviceHistory created = new DeviceHistory(false);
+        history = alertHistory.computeIfAbsent(handle, () -> created);
+        if (history == created) {
+            String deviceId = symbols.idOf(handle);
+            HomeStorage.getInstance().readAsync(() -> loadHistory(handle, deviceId, created));
+        }
+        return history;
+    }
+
+    // Поток чтения HomeStorage: сохраненные оповещения встают перед накопленными за время загрузки
+    private void loadHistory(int handle, String deviceId, DeviceHistory history) {
+        List<AlertHistory> stored = Collections.emptyList();
+        try {
+            AppStartup.getInstance().require(AppStartup.STORAGE);
+            stored = HomeStorage.getInstance().loadAlerts(deviceId, MAX_HISTORY_SIZE);
+        } catch (RuntimeException e) {
+            Log.w(TAG, "Failed to load alert history of " + deviceId, e);
+        }
+        List<AlertHistory> added;
+        synchronized (history) {
+            added = new ArrayList<>(history.alerts);
+            history.alerts.clear();
+            history.alerts.addAll(stored);
+            history.alerts.addAll(added);
+            while (history.alerts.size() > MAX_HISTORY_SIZE) {
+                history.alerts.remove(0);
+            }
+            history.isLoaded = true;
         }
+        // История, очищенная во время загрузки, уже заменена: ее оповещения не сохраняются
+        if (alertHistory.get(handle) != history) return;
+        for (AlertHistory alert : added) {
+            HomeStorage.getInstance().appendAlert(alert);
+        }
+    }
+
+    // Настройки по умолчанию для типа - только ссылка на общий шаблон
+    public void applyTypeTemplate(String deviceId, String deviceType) {
+        applyTypeTemplate(symbols.intern(deviceId), SensorType.fromTypeId(deviceType));
     }
 
-    public void setNotificationConfig(String deviceId, NotificationConfig config) {
-        notificationConfigs.put(deviceId, config);
+    public void applyTypeTemplate(int handle, SensorType type) {
+        notificationConfigs.set(handle, getTypeTemplate(type));
     }
 
+    // Настройки из SensorPolicyStore - единственный источник изменений: шаблон типа плюс настройки
+    // устройства. Новый объект заменяет ссылку целиком, опубликованный объект не изменяется
+    public void applyPolicy(int handle, SensorType type, SensorPolicyStore.DevicePolicy policy) {
+        NotificationConfig template = getTypeTemplate(type);
+        if (policy.notificationsEnabled && policy.cooldownMs == SensorPolicyStore.UNSET
+                && policy.recipients.isEmpty()) {
+            notificationConfigs.set(handle, template);
+            return;
+        }
+        notificationConfigs.set(handle, template
+                .withEnabled(policy.notificationsEnabled)
+                .withCooldownPeriod(policy.cooldownMs != SensorPolicyStore.UNSET
+                        ? policy.cooldownMs : template.cooldownPeriod)
+                .withRecipients(policy.recipients));
+    }
+
+    // Опубликованные настройки устройства; объект неизменяемый и может быть общим шаблоном типа
     public NotificationConfig getNotificationConfig(String deviceId) {
-        return notificationConfigs.getOrDefault(deviceId, new NotificationConfig());
+        NotificationConfig config = notificationConfigs.get(symbols.find(deviceId));
+        return config != null ? config : DEFAULT_TEMPLATE;
     }
 
-    public List<AlertHistory> getAlertHistory(String deviceId) {
-        return alertHistory.getOrDefault(deviceId, new ArrayList<>());
+    public void resetNotificationConfig(String deviceId) {
+        notificationConfigs.remove(symbols.find(deviceId));
     }
 
-    public void clearHistory(String deviceId) {
-        alertHistory.remove(deviceId);
+    // Число устройств с собственной копией настроек
+    public int getOverrideCount() {
+        int count = 0;
+        for (int handle = 0, capacity = notificationConfigs.capacity(); handle < capacity; handle++) {
+            NotificationConfig config = notificationConfigs.get(handle);
+            if (config != null && !config.isShared) count++;
+        }
+        return count;
     }
 
-    public void clearAllHistory() {
-        alertHistory.clear();
+    // Копия; до загрузки из базы - только оповещения этого запуска
+    public List<AlertHistory> getAlertHistory(String deviceId) {
+        DeviceHistory history = getOrLoadHistory(symbols.find(deviceId));
+        return history != null ? history.copy() : new ArrayList<>();
     }
 
-    public void addNotificationRecipient(String deviceId, String recipient) {
-        NotificationConfig config = notificationConfigs.computeIfAbsent(
-                deviceId, k -> new NotificationConfig());
-        config.notificationRecipients.add(recipient);
+    // Пустая загруженная история, а не удаление записи: иначе следующее обращение снова прочитало бы базу
+    public void clearHistory(String deviceId) {
+        alertHistory.set(symbols.intern(deviceId), new DeviceHistory(true));
+        HomeStorage.getInstance().clearAlerts(deviceId);
     }
 
-    public void removeNotificationRecipient(String deviceId, String recipient) {
-        NotificationConfig config = notificationConfigs.get(deviceId);
-        if (config != null) {
-            config.notificationRecipients.remove(recipient);
+    public void clearAllHistory() {
+        for (int handle = 0, capacity = alertHistory.capacity(); handle < capacity; handle++) {
+            if (alertHistory.get(handle) != null) {
+                alertHistory.set(handle, new DeviceHistory(true));
+            }
         }
+        HomeStorage.getInstance().clearAllAlerts();
     }
 
-    public void setAlertThreshold(String deviceId, String parameter,
-                                  AlertThreshold threshold) {
-        NotificationConfig config = notificationConfigs.computeIfAbsent(
-                deviceId, k -> new NotificationConfig());
-        config.thresholds.put(parameter, threshold);
+    // Получатели - часть настроек устройства в SensorPolicyStore: сохраняются и применяются его слушателем
+    public void addNotificationRecipient(String deviceId, String recipient) {
+        SensorPolicyStore.getInstance().update(deviceId, policy -> policy.withRecipient(recipient));
     }
 
-    public AlertThreshold getAlertThreshold(String deviceId, String parameter) {
-        NotificationConfig config = notificationConfigs.get(deviceId);
-        return config != null ? config.thresholds.get(parameter) : null;
+    public void removeNotificationRecipient(String deviceId, String recipient) {
+        SensorPolicyStore.getInstance().update(deviceId, policy -> policy.withoutRecipient(recipient));
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,355 @@
+package ry.tech.mtc.sensors;
+
+import android.util.Log;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.UnaryOperator;
+
+import okio.BufferedSink;
+import okio.BufferedSource;
+import okio.ByteString;
+import okio.Okio;
+
+// Пользовательские настройки датчиков: пороги, уведомления и их получатели, интервал опроса.
+// Единственный путь изменения этих настроек: сервисы датчиков получают их только отсюда (слушатели),
+// поэтому изменение не теряется при следующей публикации и сохраняется в файл.
+//  - настройки хранятся неизменяемым снимком с номером версии;
+//  - писатель собирает новый снимок под блокировкой и публикует его одной volatile-записью,
+//    читатель получает согласованный снимок одним volatile-чтением, без блокировок;
+//  - в снимке только устройства с собственными настройками, остальные берут шаблон типа,
+//    поэтому копирование карты при записи дешевое;
+//  - слушатели получают список изменившихся устройств и пересчитывают только их.
+// Снимок сохраняется в компактный двоичный файл в фоне, с задержкой: серия изменений пишется одним файлом.
+public class SensorPolicyStore {
+    private static final String TAG = "SensorPolicyStore";
+    // Поле настройки не задано: берется значение шаблона типа или параметров устройства
+    public static final int UNSET = -1;
+    private static final int MAGIC = 0x4D504F4C; // "MPOL"
+    private static final int FORMAT_VERSION = 2;
+    private static final long SAVE_DELAY_MS = 500;
+    private static final int MAX_DEVICES = 1 << 20;
+
+    private static SensorPolicyStore instance;
+
+    private volatile Snapshot current = Snapshot.EMPTY;
+    private final List<PolicyListener> listeners = new CopyOnWriteArrayList<>();
+    // Уведомления идут по одному и без блокировки хранилища (см. notifyListeners)
+    private final Object notifyLock = new Object();
+    private File file;
+    private ScheduledExecutorService saveExecutor;
+    private boolean isSaveScheduled;
+
+    // Вызывается в потоке писателя после публикации, уже без блокировки хранилища: обработчик может
+    // читать и менять настройки. Вызовы не пересекаются; snapshot - последний опубликованный снимок
+    public interface PolicyListener {
+        void onPoliciesChanged(Snapshot snapshot, Set<String> changedDeviceIds);
+    }
+
+    // Настройки одного устройства. Изменение возвращает новый объект
+    public static final class DevicePolicy {
+        public static final DevicePolicy DEFAULT = new DevicePolicy(
+                SensorThresholdManager.ThresholdSet.EMPTY, true, UNSET, UNSET, Collections.emptyList());
+
+        // Только пороги, измененные пользователем; остальные - из шаблона типа
+        public final SensorThresholdManager.ThresholdSet thresholds;
+        public final boolean notificationsEnabled;
+        public final long cooldownMs;       // UNSET - период шаблона типа
+        public final int samplingSetting;   // позиция настройки SamplingScheduler, UNSET - из параметров устройства
+        public final List<String> recipients; // дополнительные получатели оповещений, неизменяемый
+
+        DevicePolicy(SensorThresholdManager.ThresholdSet thresholds, boolean notificationsEnabled,
+                     long cooldownMs, int samplingSetting, List<String> recipients) {
+            this.thresholds = thresholds;
+            this.notificationsEnabled = notificationsEnabled;
+            this.cooldownMs = cooldownMs;
+            this.samplingSetting = samplingSetting;
+            this.recipients = recipients;
+        }
+
+        public DevicePolicy withThreshold(String parameter, double minValue, double maxValue) {
+            return new DevicePolicy(thresholds.with(parameter, minValue, maxValue),
+                    notificationsEnabled, cooldownMs, samplingSetting, recipients);
+        }
+
+        public DevicePolicy withNotifications(boolean isEnabled, long cooldownMs) {
+            return new DevicePolicy(thresholds, isEnabled, cooldownMs, samplingSetting, recipients);
+        }
+
+        public DevicePolicy withSamplingSetting(int setting) {
+            return new DevicePolicy(thresholds, notificationsEnabled, cooldownMs, setting, recipients);
+        }
+
+        public DevicePolicy withRecipient(String recipient) {
+            if (recipients.contains(recipient)) return this;
+            List<String> updated = new ArrayList<>(recipients);
+            updated.add(recipient);
+            return new DevicePolicy(thresholds, notificationsEnabled, cooldownMs, samplingSetting,
+                    Collections.unmodifiableList(updated));
+        }
+
+        public DevicePolicy withoutRecipient(String recipient) {
+            if (!recipients.contains(recipient)) return this;
+            List<String> updated = new ArrayList<>(recipients);
+            updated.remove(recipient);
+            return new DevicePolicy(thresholds, notificationsEnabled, cooldownMs, samplingSetting,
+                    Collections.unmodifiableList(updated));
+        }
+
+        public boolean isDefault() {
+            return thresholds.size() == 0 && notificationsEnabled
+                    && cooldownMs == UNSET && samplingSetting == UNSET && recipients.isEmpty();
+        }
+    }
+
+    public static final class Snapshot {
+        static final Snapshot EMPTY = new Snapshot(0, Collections.emptyMap());
+
+        public final long version;
+        private final Map<String, DevicePolicy> policies;
+
+        Snapshot(long version, Map<String, DevicePolicy> policies) {
+            this.version = version;
+            this.policies = policies;
+        }
+
+        // DevicePolicy.DEFAULT для устройств без собственных настроек
+        public DevicePolicy get(String deviceId) {
+            DevicePolicy policy = policies.get(deviceId);
+            return policy != null ? policy : DevicePolicy.DEFAULT;
+        }
+
+        public Set<String> getDeviceIds() {
+            return policies.keySet();
+        }
+
+        public int size() {
+            return policies.size();
+        }
+    }
+
+    SensorPolicyStore() {
+    }
+
+    public static synchronized SensorPolicyStore getInstance() {
+        if (instance == null) {
+            instance = new SensorPolicyStore();
+        }
+        return instance;
+    }
+
+    public Snapshot snapshot() {
+        return current;
+    }
+
+    public DevicePolicy getPolicy(String deviceId) {
+        return current.get(deviceId);
+    }
+
+    public void addListener(PolicyListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(PolicyListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Снимок, опубликованный этим изменением (или текущий, если настройки не изменились)
+    public Snapshot update(String deviceId, UnaryOperator<DevicePolicy> change) {
+        Snapshot published;
+        synchronized (this) {
+            Snapshot snapshot = current;
+            DevicePolicy previous = snapshot.get(deviceId);
+            DevicePolicy updated = change.apply(previous);
+            if (updated == previous) return snapshot;
+
+            Map<String, DevicePolicy> policies = new HashMap<>(snapshot.policies);
+            if (updated.isDefault()) {
+                policies.remove(deviceId);
+            } else {
+                policies.put(deviceId, updated);
+            }
+            published = publish(policies);
+        }
+        notifyListeners(Collections.singleton(deviceId));
+        return published;
+    }
+
+    public Snapshot reset(String deviceId) {
+        return update(deviceId, policy -> DevicePolicy.DEFAULT);
+    }
+
+    // Под блокировкой хранилища
+    private Snapshot publish(Map<String, DevicePolicy> policies) {
+        Snapshot snapshot = new Snapshot(current.version + 1, Collections.unmodifiableMap(policies));
+        current = snapshot;
+        scheduleSave();
+        return snapshot;
+    }
+
+    // После снятия блокировки хранилища: слушатель может сам обратиться к хранилищу, а писатели
+    // не ждут слушателей. Снимок берется под notifyLock, поэтому запоздавшее уведомление
+    // не передаст версию старше уже переданной
+    private void notifyListeners(Set<String> changedDeviceIds) {
+        synchronized (notifyLock) {
+            Snapshot snapshot = current;
+            for (PolicyListener listener : listeners) {
+                listener.onPoliciesChanged(snapshot, changedDeviceIds);
+            }
+        }
+    }
+
+    // Загрузка сохраненных настроек при старте; дальнейшие изменения сохраняются в этот файл.
+    // Поврежденный файл игнорируется - остаются шаблоны типов
+    public void attach(File policyFile) {
+        synchronized (this) {
+            file = policyFile;
+        }
+        if (!policyFile.exists()) return;
+        try (BufferedSource source = Okio.buffer(Okio.source(policyFile))) {
+            load(source);
+        } catch (IOException e) {
+            Log.w(TAG, "Policy file ignored: " + policyFile, e);
+        }
+    }
+
+    // Заменяет все настройки прочитанными; слушатели получают объединение старых и новых устройств
+    void load(BufferedSource source) throws IOException {
+        notifyListeners(read(source));
+    }
+
+    // Файлы формата 1 (без получателей) читаются с пустым списком получателей
+    private synchronized Set<String> read(BufferedSource source) throws IOException {
+        if (source.readInt() != MAGIC) throw new ProtocolException("Not a policy file");
+        int format = source.readByte();
+        if (format < 1 || format > FORMAT_VERSION) throw new ProtocolException("Unsupported policy format " + format);
+        long version = source.readLong();
+        int count = source.readInt();
+        if (count < 0 || count > MAX_DEVICES) throw new ProtocolException("Bad device count " + count);
+
+        Map<String, DevicePolicy> policies = new HashMap<>(count * 2);
+        for (int i = 0; i < count; i++) {
+            String deviceId = readString(source);
+            boolean notificationsEnabled = source.readByte() != 0;
+            long cooldownMs = source.readLong();
+            int samplingSetting = source.readByte();
+            int thresholdCount = source.readByte() & 0xFF;
+            SensorThresholdManager.ThresholdSet thresholds = SensorThresholdManager.ThresholdSet.EMPTY;
+            for (int j = 0; j < thresholdCount; j++) {
+                String parameter = readString(source);
+                double minValue = Double.longBitsToDouble(source.readLong());
+                double maxValue = Double.longBitsToDouble(source.readLong());
+                thresholds = thresholds.with(parameter, minValue, maxValue);
+            }
+            List<String> recipients = Collections.emptyList();
+            if (format >= 2) {
+                int recipientCount = source.readByte() & 0xFF;
+                if (recipientCount > 0) {
+                    recipients = new ArrayList<>(recipientCount);
+                    for (int j = 0; j < recipientCount; j++) {
+                        recipients.add(readString(source));
+                    }
+                    recipients = Collections.unmodifiableList(recipients);
+                }
+            }
+            policies.put(deviceId, new DevicePolicy(thresholds, notificationsEnabled, cooldownMs,
+                    samplingSetting, recipients));
+        }
+
+        Set<String> changed = new HashSet<>(current.policies.keySet());
+        changed.addAll(policies.keySet());
+        // Версия не уменьшается, даже если файл записан до изменений в этом процессе
+        Snapshot snapshot = new Snapshot(Math.max(version, current.version + 1), Collections.unmodifiableMap(policies));
+        current = snapshot;
+        return changed;
+    }
+
+    // Формат: MAGIC, FORMAT_VERSION, версия снимка, число устройств; для устройства - id,
+    // флаг уведомлений, период, интервал опроса, число порогов и тройки (параметр, min, max),
+    // число получателей и получатели (с формата 2)
+    static void write(Snapshot snapshot, BufferedSink sink) throws IOException {
+        sink.writeInt(MAGIC);
+        sink.writeByte(FORMAT_VERSION);
+        sink.writeLong(snapshot.version);
+        sink.writeInt(snapshot.policies.size());
+        for (Map.Entry<String, DevicePolicy> entry : snapshot.policies.entrySet()) {
+            DevicePolicy policy = entry.getValue();
+            writeString(sink, entry.getKey());
+            sink.writeByte(policy.notificationsEnabled ? 1 : 0);
+            sink.writeLong(policy.cooldownMs);
+            sink.writeByte(policy.samplingSetting);
+            SensorThresholdManager.ThresholdSet thresholds = policy.thresholds;
+            sink.writeByte(thresholds.size());
+            for (int i = 0; i < thresholds.size(); i++) {
+                writeString(sink, thresholds.getParameter(i));
+                sink.writeLong(Double.doubleToRawLongBits(thresholds.getMin(i)));
+                sink.writeLong(Double.doubleToRawLongBits(thresholds.getMax(i)));
+            }
+            sink.writeByte(policy.recipients.size());
+            for (String recipient : policy.recipients) {
+                writeString(sink, recipient);
+            }
+        }
+    }
+
+    private static void writeString(BufferedSink sink, String value) throws IOException {
+        ByteString bytes = ByteString.encodeUtf8(value);
+        sink.writeShort(bytes.size());
+        sink.write(bytes);
+    }
+
+    private static String readString(BufferedSource source) throws IOException {
+        int length = source.readShort() & 0xFFFF;
+        return source.readUtf8(length);
+    }
+
+    private synchronized void scheduleSave() {
+        if (file == null || isSaveScheduled) return;
+        if (saveExecutor == null) {
+            saveExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, TAG);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        isSaveScheduled = true;
+        saveExecutor.schedule(this::save, SAVE_DELAY_MS, TimeUnit.MILLISECONDS);
+    }
+
+    // Пишется последний опубликованный снимок; атомарная замена: временный файл + rename
+    private void save() {
+        File target;
+        synchronized (this) {
+            isSaveScheduled = false;
+            target = file;
+        }
+        Snapshot snapshot = current;
+        File temp = new File(target.getPath() + ".tmp");
+        try {
+            try (BufferedSink sink = Okio.buffer(Okio.sink(temp))) {
+                write(snapshot, sink);
+            }
+            if (!temp.renameTo(target)) {
+                target.delete();
+                if (!temp.renameTo(target)) {
+                    throw new IOException("Cannot replace " + target);
+                }
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "Failed to save policies", e);
+            temp.delete();
+        }
+    }
+}
@@ -1,13 +1,28 @@
 package ry.tech.mtc.sensors;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
-import java.util.concurrent.ConcurrentHashMap;
 
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
+// Пороги устройств. Все наборы порогов неизменяемые: устройство без собственных настроек ссылается
+// на общий шаблон своего типа, а пользовательские пороги из SensorPolicyStore (applyPolicy) заменяют
+// ссылку копией (копирование при записи).
+// Наборы хранятся в массиве по дескриптору DeviceSymbols; строковые методы - тонкие адаптеры.
 public class SensorThresholdManager {
+    private static final String MIN_SUFFIX = "_min";
+    private static final String MAX_SUFFIX = "_max";
+
     private static SensorThresholdManager instance;
-    private final Map<String, Map<String, Double>> deviceThresholds;
-    private final Map<String, Map<String, Double>> defaultThresholds;
+    private final DeviceSymbols symbols = DeviceSymbols.getInstance();
+    private final HandleTable<ThresholdSet> deviceThresholds = new HandleTable<>();
+    // SensorType.ordinal() -> общий шаблон
+    private final ThresholdSet[] defaultThresholds = new ThresholdSet[SensorType.count()];
+    private final Counter checksCounter = MetricsRegistry.getInstance().counter("thresholds.checks");
+    private final Counter warningsCounter = MetricsRegistry.getInstance().counter("thresholds.warnings");
+    private final Counter violationsCounter = MetricsRegistry.getInstance().counter("thresholds.violations");
 
     public enum ThresholdStatus {
         NORMAL,
@@ -15,9 +30,124 @@ public class SensorThresholdManager {
         CRITICAL
     }
 
+    // Неизменяемый набор порогов: параметр -> [min, max]. Параметров у устройства единицы,
+    // поэтому поиск линейный, без хеширования и без склейки строк "parameter_min".
+    // NaN - граница не задана.
+    public static final class ThresholdSet {
+        public static final ThresholdSet EMPTY = new ThresholdSet(new String[0], new double[0], new double[0]);
+
+        private final String[] parameters;
+        private final double[] min;
+        private final double[] max;
+        // Представление в старом формате "parameter_min" -> value, строится при первом запросе
+        private Map<String, Double> map;
+
+        private ThresholdSet(String[] parameters, double[] min, double[] max) {
+            this.parameters = parameters;
+            this.min = min;
+            this.max = max;
+        }
+
+        static ThresholdSet fromMap(Map<String, Double> thresholds) {
+            Map<String, double[]> limits = new HashMap<>();
+            for (Map.Entry<String, Double> entry : thresholds.entrySet()) {
+                String key = entry.getKey();
+                boolean isMin = key.endsWith(MIN_SUFFIX);
+                if (entry.getValue() == null || (!isMin && !key.endsWith(MAX_SUFFIX))) continue;
+                String parameter = key.substring(0, key.length() - MIN_SUFFIX.length());
+                double[] range = limits.computeIfAbsent(parameter, k -> new double[]{Double.NaN, Double.NaN});
+                range[isMin ? 0 : 1] = entry.getValue();
+            }
+            String[] parameters = new String[limits.size()];
+            double[] min = new double[parameters.length];
+            double[] max = new double[parameters.length];
+            int i = 0;
+            for (Map.Entry<String, double[]> entry : limits.entrySet()) {
+                // intern: параметры из строковых литералов в коде находятся сравнением ссылок
+                parameters[i] = entry.getKey().intern();
+                min[i] = entry.getValue()[0];
+                max[i] = entry.getValue()[1];
+                i++;
+            }
+            return new ThresholdSet(parameters, min, max);
+        }
+
+        public int size() {
+            return parameters.length;
+        }
+
+        public String getParameter(int index) {
+            return parameters[index];
+        }
+
+        // -1, если порогов для параметра нет
+        public int indexOf(String parameter) {
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i] == parameter) return i;
+            }
+            for (int i = 0; i < parameters.length; i++) {
+                if (parameters[i].equals(parameter)) return i;
+            }
+            return -1;
+        }
+
+        public double getMin(int index) {
+            return min[index];
+        }
+
+        public double getMax(int index) {
+            return max[index];
+        }
+
+        // Обе границы заданы
+        public boolean hasRange(int index) {
+            return index >= 0 && !Double.isNaN(min[index]) && !Double.isNaN(max[index]);
+        }
+
+        ThresholdSet with(String parameter, double minValue, double maxValue) {
+            int index = indexOf(parameter);
+            int size = index >= 0 ? parameters.length : parameters.length + 1;
+            String[] newParameters = new String[size];
+            double[] newMin = new double[size];
+            double[] newMax = new double[size];
+            System.arraycopy(parameters, 0, newParameters, 0, parameters.length);
+            System.arraycopy(min, 0, newMin, 0, min.length);
+            System.arraycopy(max, 0, newMax, 0, max.length);
+            if (index < 0) {
+                index = size - 1;
+                newParameters[index] = parameter.intern();
+            }
+            newMin[index] = minValue;
+            newMax[index] = maxValue;
+            return new ThresholdSet(newParameters, newMin, newMax);
+        }
+
+        // Пороги overrides поверх текущих; без изменений возвращается этот же набор
+        ThresholdSet withAll(ThresholdSet overrides) {
+            ThresholdSet result = this;
+            for (int i = 0; i < overrides.parameters.length; i++) {
+                result = result.with(overrides.parameters[i], overrides.min[i], overrides.max[i]);
+            }
+            return result;
+        }
+
+        public Map<String, Double> asMap() {
+            Map<String, Double> result = map;
+            if (result == null) {
+                Map<String, Double> built = new HashMap<>();
+                for (int i = 0; i < parameters.length; i++) {
+                    if (!Double.isNaN(min[i])) built.put(parameters[i] + MIN_SUFFIX, min[i]);
+                    if (!Double.isNaN(max[i])) built.put(parameters[i] + MAX_SUFFIX, max[i]);
+                }
+                // Гонка безопасна: оба потока построят одинаковые неизменяемые карты
+                result = Collections.unmodifiableMap(built);
+                map = result;
+            }
+            return result;
+        }
+    }
+
     private SensorThresholdManager() {
-        deviceThresholds = new ConcurrentHashMap<>();
-        defaultThresholds = new HashMap<>();
         initializeDefaultThresholds();
     }
 
@@ -33,19 +163,19 @@ public class SensorThresholdManager {
         Map<String, Double> temperatureThresholds = new HashMap<>();
         temperatureThresholds.put("temperature_min", -5.0);
         temperatureThresholds.put("temperature_max", 40.0);
-        defaultThresholds.put("temperature_sensor", temperatureThresholds);
+        defaultThresholds[SensorType.TEMPERATURE.ordinal()] = ThresholdSet.fromMap(temperatureThresholds);
 
         // Датчики влажности
         Map<String, Double> humidityThresholds = new HashMap<>();
         humidityThresholds.put("humidity_min", 30.0);
         humidityThresholds.put("humidity_max", 80.0);
-        defaultThresholds.put("humidity_sensor", humidityThresholds);
+        defaultThresholds[SensorType.HUMIDITY.ordinal()] = ThresholdSet.fromMap(humidityThresholds);
 
         // Водяные датчики
         Map<String, Double> waterThresholds = new HashMap<>();
         waterThresholds.put("water_level_min", 0.0);
         waterThresholds.put("water_level_max", 100.0);
-        defaultThresholds.put("water_sensor", waterThresholds);
+        defaultThresholds[SensorType.WATER.ordinal()] = ThresholdSet.fromMap(waterThresholds);
 
         // Электрические датчики
         Map<String, Double> electricityThresholds = new HashMap<>();
@@ -53,7 +183,7 @@ public class SensorThresholdManager {
         electricityThresholds.put("power_max", 3500.0);
         electricityThresholds.put("voltage_min", 210.0);
         electricityThresholds.put("voltage_max", 240.0);
-        defaultThresholds.put("electricity_sensor", electricityThresholds);
+        defaultThresholds[SensorType.ELECTRICITY.ordinal()] = ThresholdSet.fromMap(electricityThresholds);
 
         // Датчики воздуха
         Map<String, Double> airThresholds = new HashMap<>();
@@ -61,46 +191,85 @@ public class SensorThresholdManager {
         airThresholds.put("co2_max", 1500.0);
         airThresholds.put("gas_min", 0.0);
         airThresholds.put("gas_max", 10.0);
-        defaultThresholds.put("air_sensor", airThresholds);
+        defaultThresholds[SensorType.AIR.ordinal()] = ThresholdSet.fromMap(airThresholds);
     }
 
     public void setDefaultThresholds(String deviceId, String deviceType) {
-        Map<String, Double> defaults = defaultThresholds.get(deviceType);
-        if (defaults != null) {
-            deviceThresholds.put(deviceId, new HashMap<>(defaults));
+        SensorType type = SensorType.fromTypeId(deviceType);
+        if (type != null) {
+            setDefaultThresholds(symbols.intern(deviceId), type);
         }
     }
 
-    public void setThresholds(String deviceId, Map<String, Double> thresholds) {
-        deviceThresholds.put(deviceId, new HashMap<>(thresholds));
+    public void setDefaultThresholds(int handle, SensorType type) {
+        // Только ссылка на шаблон, без копии
+        deviceThresholds.set(handle, defaultThresholds[type.ordinal()]);
     }
 
+    // Неизменяемая карта "parameter_min"/"parameter_max"; пороги меняются через SensorPolicyStore
     public Map<String, Double> getThresholds(String deviceId) {
-        return deviceThresholds.get(deviceId);
+        ThresholdSet thresholds = getThresholdSet(symbols.find(deviceId));
+        return thresholds != null ? thresholds.asMap() : null;
+    }
+
+    public ThresholdSet getThresholdSet(int handle) {
+        return deviceThresholds.get(handle);
+    }
+
+    // Шаблон типа с пользовательскими порогами из SensorPolicyStore. Без переопределений
+    // устройство снова ссылается на общий шаблон
+    public void applyPolicy(int handle, SensorType type, ThresholdSet overrides) {
+        deviceThresholds.set(handle, defaultThresholds[type.ordinal()].withAll(overrides));
     }
 
-    public void updateThreshold(String deviceId, String parameter, double minValue, double maxValue) {
-        Map<String, Double> thresholds = deviceThresholds.computeIfAbsent(deviceId, k -> new HashMap<>());
-        thresholds.put(parameter + "_min", minValue);
-        thresholds.put(parameter + "_max", maxValue);
+    // Устройство использует общий шаблон типа без собственных изменений
+    public boolean isUsingTemplate(String deviceId, String deviceType) {
+        SensorType type = SensorType.fromTypeId(deviceType);
+        ThresholdSet thresholds = getThresholdSet(symbols.find(deviceId));
+        return type != null && thresholds != null && thresholds == defaultThresholds[type.ordinal()];
+    }
+
+    // Число устройств с собственной копией порогов
+    public int getOverrideCount() {
+        int count = 0;
+        for (int handle = 0, capacity = deviceThresholds.capacity(); handle < capacity; handle++) {
+            ThresholdSet thresholds = deviceThresholds.get(handle);
+            if (thresholds != null && !isTemplate(thresholds)) count++;
+        }
+        return count;
+    }
+
+    // Сравнение по ссылке: копия с теми же значениями - все равно собственная копия
+    private boolean isTemplate(ThresholdSet thresholds) {
+        for (ThresholdSet template : defaultThresholds) {
+            if (template == thresholds) return true;
+        }
+        return false;
     }
 
     public ThresholdStatus checkThresholdStatus(String deviceId, String parameter, double value) {
-        Map<String, Double> thresholds = deviceThresholds.get(deviceId);
-        if (thresholds == null) return ThresholdStatus.NORMAL;
+        return checkThresholdStatus(symbols.find(deviceId), parameter, value);
+    }
 
-        Double minThreshold = thresholds.get(parameter + "_min");
-        Double maxThreshold = thresholds.get(parameter + "_max");
+    public ThresholdStatus checkThresholdStatus(int handle, String parameter, double value) {
+        checksCounter.increment();
+        ThresholdSet thresholds = deviceThresholds.get(handle);
+        if (thresholds == null) return ThresholdStatus.NORMAL;
 
-        if (minThreshold == null || maxThreshold == null) return ThresholdStatus.NORMAL;
+        int index = thresholds.indexOf(parameter);
+        if (!thresholds.hasRange(index)) return ThresholdStatus.NORMAL;
+        double minThreshold = thresholds.getMin(index);
+        double maxThreshold = thresholds.getMax(index);
 
         // Вычисление диапазона предупреждения (10% от полного диапазона)
         double range = maxThreshold - minThreshold;
         double warningMargin = range * 0.1;
 
         if (value < minThreshold || value > maxThreshold) {
+            violationsCounter.increment();
             return ThresholdStatus.CRITICAL;
         } else if (value < minThreshold + warningMargin || value > maxThreshold - warningMargin) {
+            warningsCounter.increment();
             return ThresholdStatus.WARNING;
         }
 
@@ -108,7 +277,7 @@ public class SensorThresholdManager {
     }
 
     public void resetThresholds(String deviceId) {
-        deviceThresholds.remove(deviceId);
+        deviceThresholds.remove(symbols.find(deviceId));
     }
 
     public void clearAllThresholds() {
@@ -116,10 +285,17 @@ public class SensorThresholdManager {
     }
 
     public boolean hasThresholds(String deviceId) {
-        return deviceThresholds.containsKey(deviceId);
+        return getThresholdSet(symbols.find(deviceId)) != null;
     }
 
     public Map<String, Map<String, Double>> getAllDeviceThresholds() {
-        return new HashMap<>(deviceThresholds);
+        Map<String, Map<String, Double>> result = new HashMap<>();
+        for (int handle = 0, capacity = deviceThresholds.capacity(); handle < capacity; handle++) {
+            ThresholdSet thresholds = deviceThresholds.get(handle);
+            if (thresholds != null) {
+                result.put(symbols.idOf(handle), thresholds.asMap());
+            }
+        }
+        return result;
     }
-}
\ No newline at end of file
+}
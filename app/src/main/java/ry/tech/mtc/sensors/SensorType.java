@@ -0,0 +1,81 @@
+package ry.tech.mtc.sensors;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import ry.tech.mtc.models.Device;
+
+// Типы датчиков с их поведением: параметры, которые тип измеряет, единица обработанного значения
+// и первичная калибровка. Сервисы датчиков переходят от строки типа к enum один раз - на границе
+// строкового API, дальше работают switch по ordinal и массивы по ordinal().
+public enum SensorType {
+    TEMPERATURE(Device.TYPE_TEMPERATURE_SENSOR, "°C", "temperature") {
+        @Override
+        public double calibrate(double rawValue) {
+            return rawValue * 1.02 - 0.1; // Пример калибровки
+        }
+    },
+    HUMIDITY(Device.TYPE_HUMIDITY_SENSOR, "%", "humidity") {
+        @Override
+        public double calibrate(double rawValue) {
+            return Math.min(100, Math.max(0, rawValue * 1.05)); // Пример калибровки
+        }
+    },
+    WATER(Device.TYPE_WATER_SENSOR, "cm", "water_level") {
+        @Override
+        public double calibrate(double rawValue) {
+            return rawValue * 1.1; // Пример калибровки
+        }
+    },
+    ELECTRICITY(Device.TYPE_ELECTRICITY_SENSOR, "W", "power", "voltage") {
+        @Override
+        public double calibrate(double rawValue) {
+            return rawValue * 0.98; // Пример калибровки
+        }
+    },
+    AIR(Device.TYPE_AIR_SENSOR, "AQI", "co2", "gas") {
+        @Override
+        public double calibrate(double rawValue) {
+            return rawValue * 1.15; // Пример калибровки
+        }
+    };
+
+    private static final SensorType[] VALUES = values();
+    private static final Map<String, SensorType> BY_TYPE_ID = new HashMap<>();
+
+    static {
+        for (SensorType type : VALUES) {
+            BY_TYPE_ID.put(type.typeId, type);
+        }
+    }
+
+    public final String typeId;
+    public final String unit;
+    private final String[] parameters;
+
+    SensorType(String typeId, String unit, String... parameters) {
+        this.typeId = typeId;
+        this.unit = unit;
+        this.parameters = parameters;
+    }
+
+    // Первичная калибровка сырого значения датчика
+    public abstract double calibrate(double rawValue);
+
+    public int getParameterCount() {
+        return parameters.length;
+    }
+
+    public String getParameter(int index) {
+        return parameters[index];
+    }
+
+    // null для устройств, которые не являются датчиками (свет, кондиционер) и неизвестных строк
+    public static SensorType fromTypeId(String typeId) {
+        return typeId != null ? BY_TYPE_ID.get(typeId) : null;
+    }
+
+    public static int count() {
+        return VALUES.length;
+    }
+}
@@ -0,0 +1,121 @@
+package ry.tech.mtc.startup;
+
+import android.content.Context;
+
+import java.io.File;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+
+import ry.tech.mtc.MockDeviceData;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.sensors.EnergyAccountingEngine;
+import ry.tech.mtc.sensors.SensorAnomalyDetector;
+import ry.tech.mtc.sensors.SensorCalibrationService;
+import ry.tech.mtc.sensors.SensorDataProcessor;
+import ry.tech.mtc.sensors.SensorNotificationManager;
+import ry.tech.mtc.sensors.SensorPolicyStore;
+import ry.tech.mtc.sensors.SensorThresholdManager;
+import ry.tech.mtc.storage.HomeStorage;
+
+// Граф подсистем приложения. Регистрация ничего не создает: подсистемы поднимаются
+// при первом require() или фоновым прогревом после первого кадра.
+public final class AppStartup {
+    public static final String METRICS = "metrics";
+    public static final String DEVICES = "devices";
+    public static final String THRESHOLDS = "thresholds";
+    public static final String CALIBRATION = "calibration";
+    public static final String ENERGY = "energy";
+    public static final String ANOMALY = "anomaly";
+    public static final String NOTIFICATIONS = "notifications";
+    public static final String PROCESSOR = "processor";
+    public static final String POLICIES = "policies";
+    public static final String STORAGE = "storage";
+    public static final String DEVICE_CONFIG = "device_config";
+    // Все, что нужно симулятору движка телеметрии
+    public static final String SIMULATION = "simulation";
+
+    private static final String POLICY_FILE = "sensor_policies.bin";
+
+    private static Bootstrap instance;
+    private static Context appContext;
+    private static Executor prewarmExecutor;
+
+    private AppStartup() {
+    }
+
+    // Вызывается из MainActivity.onCreate и IoTService.onCreate (кто запустится первым);
+    // повторный вызов безопасен, запоминается только контекст приложения
+    public static synchronized void install(Context context) {
+        appContext = context.getApplicationContext();
+    }
+
+    public static synchronized Bootstrap getInstance() {
+        if (instance == null) {
+            instance = new Bootstrap();
+            registerCore(instance);
+            registerPlatform(instance);
+        }
+        return instance;
+    }
+
+    // Подсистемы без зависимостей от Android - их же запускает бенчмарк старта на JVM
+    public static void registerCore(Bootstrap bootstrap) {
+        bootstrap.register(METRICS, MetricsRegistry::getInstance);
+        bootstrap.register(DEVICES, MockDeviceData::getAllDevices);
+        bootstrap.register(THRESHOLDS, SensorThresholdManager::getInstance, METRICS);
+        bootstrap.register(CALIBRATION, SensorCalibrationService::getInstance);
+        bootstrap.register(ENERGY, EnergyAccountingEngine::getInstance);
+        bootstrap.register(ANOMALY, SensorAnomalyDetector::getInstance);
+    }
+
+    private static void registerPlatform(Bootstrap bootstrap) {
+        bootstrap.register(NOTIFICATIONS, () -> {
+            SensorNotificationManager notificationManager = SensorNotificationManager.getInstance();
+            Context context = getAppContext();
+            if (context != null) {
+                notificationManager.initialize(context);
+            }
+        }, METRICS);
+        bootstrap.register(PROCESSOR, SensorDataProcessor::getInstance, METRICS, ENERGY);
+        // Сохраненные пользовательские настройки датчиков читаются до настройки устройств
+        bootstrap.register(POLICIES, () -> {
+            Context context = getAppContext();
+            if (context != null) {
+                SensorPolicyStore.getInstance().attach(new File(context.getFilesDir(), POLICY_FILE));
+            }
+        });
+        // База открывается здесь, в потоке прогрева или движка; читается только список устройств
+        bootstrap.register(STORAGE, () -> {
+            Context context = getAppContext();
+            if (context != null) {
+                HomeStorage storage = HomeStorage.getInstance();
+                storage.initialize(context);
+                MockDeviceData.restoreDevices(storage);
+            }
+        }, DEVICES, METRICS);
+        bootstrap.register(DEVICE_CONFIG, MockDeviceData::configureSensors,
+                DEVICES, THRESHOLDS, CALIBRATION, NOTIFICATIONS, ENERGY, POLICIES, STORAGE);
+        bootstrap.register(SIMULATION, () -> {}, DEVICE_CONFIG, PROCESSOR, ANOMALY);
+    }
+
+    // После первого кадра: остальное поднимается в фоне, чтобы первое обращение не ждало
+    public static void prewarm() {
+        getInstance().prewarm(getPrewarmExecutor());
+    }
+
+    private static synchronized Context getAppContext() {
+        return appContext;
+    }
+
+    private static synchronized Executor getPrewarmExecutor() {
+        if (prewarmExecutor == null) {
+            prewarmExecutor = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "StartupPrewarm");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        return prewarmExecutor;
+    }
+}
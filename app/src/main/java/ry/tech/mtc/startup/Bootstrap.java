@@ -0,0 +1,173 @@
+package ry.tech.mtc.startup;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.function.LongSupplier;
+
+// Ленивый запуск подсистем с учетом зависимостей.
+//  - подсистема регистрируется с именем, инициализатором и списком зависимостей;
+//  - зависимости должны быть зарегистрированы раньше, поэтому порядок регистрации - топологический и циклов нет;
+//  - require() инициализирует подсистему и ее зависимости один раз, при первом обращении, в вызывающем потоке;
+//  - prewarm() в фоне доводит до готовности все, к чему еще не обращались.
+// Для каждой подсистемы запоминается собственное время инициализации и момент готовности от старта.
+public class Bootstrap {
+    private final LongSupplier clock;
+    private final long originNanos;
+    // Порядок вставки - порядок регистрации
+    private final Map<String, Subsystem> subsystems = new LinkedHashMap<>();
+
+    public interface Initializer {
+        void initialize() throws Exception;
+    }
+
+    public static class SubsystemReport {
+        public final String name;
+        public final long initNanos;      // собственное время инициализатора, без зависимостей
+        public final long readyAtNanos;   // момент готовности относительно создания Bootstrap
+        public final String threadName;
+
+        SubsystemReport(String name, long initNanos, long readyAtNanos, String threadName) {
+            this.name = name;
+            this.initNanos = initNanos;
+            this.readyAtNanos = readyAtNanos;
+            this.threadName = threadName;
+        }
+    }
+
+    private static class Subsystem {
+        final String name;
+        final Initializer initializer;
+        final Subsystem[] dependencies;
+        volatile boolean isReady;
+        long initNanos;
+        long readyAtNanos;
+        String threadName;
+
+        Subsystem(String name, Initializer initializer, Subsystem[] dependencies) {
+            this.name = name;
+            this.initializer = initializer;
+            this.dependencies = dependencies;
+        }
+    }
+
+    public Bootstrap() {
+        this(System::nanoTime);
+    }
+
+    public Bootstrap(LongSupplier clock) {
+        this.clock = clock;
+        this.originNanos = clock.getAsLong();
+    }
+
+    public synchronized Bootstrap register(String name, Initializer initializer, String... dependsOn) {
+        if (subsystems.containsKey(name)) {
+            throw new IllegalArgumentException("Subsystem already registered: " + name);
+        }
+        Subsystem[] dependencies = new Subsystem[dependsOn.length];
+        for (int i = 0; i < dependsOn.length; i++) {
+            Subsystem dependency = subsystems.get(dependsOn[i]);
+            if (dependency == null) {
+                throw new IllegalArgumentException(name + " depends on unknown subsystem " + dependsOn[i]);
+            }
+            dependencies[i] = dependency;
+        }
+        subsystems.put(name, new Subsystem(name, initializer, dependencies));
+        return this;
+    }
+
+    public boolean isReady(String name) {
+        Subsystem subsystem = find(name);
+        return subsystem != null && subsystem.isReady;
+    }
+
+    // Блокирует до готовности подсистемы; ошибка инициализации пробрасывается, следующий вызов повторит попытку
+    public void require(String name) {
+        Subsystem subsystem = find(name);
+        if (subsystem == null) {
+            throw new IllegalArgumentException("Unknown subsystem: " + name);
+        }
+        initialize(subsystem);
+    }
+
+    // Фоновый прогрев: все подсистемы по порядку регистрации, ошибки не мешают остальным
+    public void prewarm(Executor executor) {
+        List<Subsystem> pending = new ArrayList<>();
+        synchronized (this) {
+            for (Subsystem subsystem : subsystems.values()) {
+                if (!subsystem.isReady) pending.add(subsystem);
+            }
+        }
+        if (pending.isEmpty()) return;
+
+        executor.execute(() -> {
+            for (Subsystem subsystem : pending) {
+                try {
+                    initialize(subsystem);
+                } catch (RuntimeException e) {
+                    e.printStackTrace();
+                }
+            }
+        });
+    }
+
+    // Готовые подсистемы в порядке готовности
+    public List<SubsystemReport> getReport() {
+        List<SubsystemReport> report = new ArrayList<>();
+        synchronized (this) {
+            for (Subsystem subsystem : subsystems.values()) {
+                synchronized (subsystem) {
+                    if (subsystem.isReady) {
+                        report.add(new SubsystemReport(subsystem.name, subsystem.initNanos,
+                                subsystem.readyAtNanos, subsystem.threadName));
+                    }
+                }
+            }
+        }
+        Collections.sort(report, (a, b) -> Long.compare(a.readyAtNanos, b.readyAtNanos));
+        return report;
+    }
+
+    public String dumpText() {
+        StringBuilder out = new StringBuilder();
+        out.append(String.format(Locale.US, "%-16s %10s %10s  %s%n", "subsystem", "init ms", "ready ms", "thread"));
+        for (SubsystemReport entry : getReport()) {
+            out.append(String.format(Locale.US, "%-16s %10.2f %10.2f  %s%n",
+                    entry.name, entry.initNanos / 1e6, entry.readyAtNanos / 1e6, entry.threadName));
+        }
+        return out.toString();
+    }
+
+    private synchronized Subsystem find(String name) {
+        return subsystems.get(name);
+    }
+
+    // Блокировка берется только на время собственного инициализатора: зависимости уже готовы,
+    // а граф ацикличен, поэтому встречные require из разных потоков не взаимоблокируются
+    private void initialize(Subsystem subsystem) {
+        if (subsystem.isReady) return;
+        for (Subsystem dependency : subsystem.dependencies) {
+            initialize(dependency);
+        }
+        synchronized (subsystem) {
+            if (subsystem.isReady) return;
+            long start = clock.getAsLong();
+            try {
+                subsystem.initializer.initialize();
+            } catch (RuntimeException e) {
+                throw e;
+            } catch (Exception e) {
+                throw new IllegalStateException("Failed to initialize " + subsystem.name, e);
+            }
+            long end = clock.getAsLong();
+            subsystem.initNanos = end - start;
+            subsystem.readyAtNanos = end - originNanos;
+            subsystem.threadName = Thread.currentThread().getName();
+            subsystem.isReady = true;
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package ry.tech.mtc.storage;
+
+import android.content.Context;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteOpenHelper;
+
+// Схема базы устройств, их состояния и истории оповещений.
+// WAL: чтения с экранов не ждут пакетную запись StorageWriter и наоборот.
+// Индексы - ровно под запросы HomeStorage: устройства по типу и комнате,
+// оповещения по устройству и по уровню в порядке времени.
+public class HomeDatabase extends SQLiteOpenHelper {
+    static final String NAME = "home.db";
+    private static final int VERSION = 1;
+
+    static final String TABLE_DEVICES = "devices";
+    static final String TABLE_STATE = "device_state";
+    static final String TABLE_ALERTS = "alerts";
+
+    // Описание устройства целиком - JSON DeviceTypeAdapter, отдельные столбцы только для поиска
+    private static final String CREATE_DEVICES = "CREATE TABLE devices ("
+            + "id TEXT PRIMARY KEY NOT NULL, "
+            + "name TEXT, "
+            + "type TEXT NOT NULL, "
+            + "room TEXT, "
+            + "body TEXT NOT NULL)";
+    private static final String CREATE_DEVICES_BY_TYPE = "CREATE INDEX devices_by_type ON devices(type)";
+    // Частичный индекс: устройства без комнаты в нем не хранятся
+    private static final String CREATE_DEVICES_BY_ROOM =
+            "CREATE INDEX devices_by_room ON devices(room) WHERE room IS NOT NULL";
+
+    // Показания - JSON-объект значений; WITHOUT ROWID: строка хранится прямо в B-дереве ключа
+    private static final String CREATE_STATE = "CREATE TABLE device_state ("
+            + "device_id TEXT PRIMARY KEY NOT NULL, "
+            + "is_online INTEGER NOT NULL, "
+            + "is_on INTEGER NOT NULL, "
+            + "readings TEXT, "
+            + "updated_at INTEGER NOT NULL) WITHOUT ROWID";
+
+    // level - AlertLevel.ordinal(), timestamp - миллисекунды эпохи
+    private static final String CREATE_ALERTS = "CREATE TABLE alerts ("
+            + "id INTEGER PRIMARY KEY, "
+            + "device_id TEXT NOT NULL, "
+            + "sensor_type TEXT, "
+            + "value REAL NOT NULL, "
+            + "unit TEXT, "
+            + "level INTEGER NOT NULL, "
+            + "timestamp INTEGER NOT NULL)";
+    private static final String CREATE_ALERTS_BY_DEVICE =
+            "CREATE INDEX alerts_by_device_time ON alerts(device_id, timestamp)";
+    private static final String CREATE_ALERTS_BY_LEVEL =
+            "CREATE INDEX alerts_by_level_time ON alerts(level, timestamp)";
+
+    public HomeDatabase(Context context) {
+        this(context, NAME);
+    }
+
+    // name == null - база в памяти
+    public HomeDatabase(Context context, String name) {
+        super(context, name, null, VERSION);
+        setWriteAheadLoggingEnabled(true);
+    }
+
+    @Override
+    public void onCreate(SQLiteDatabase db) {
+        db.execSQL(CREATE_DEVICES);
+        db.execSQL(CREATE_DEVICES_BY_TYPE);
+        db.execSQL(CREATE_DEVICES_BY_ROOM);
+        db.execSQL(CREATE_STATE);
+        db.execSQL(CREATE_ALERTS);
+        db.execSQL(CREATE_ALERTS_BY_DEVICE);
+        db.execSQL(CREATE_ALERTS_BY_LEVEL);
+    }
+
+    @Override
+    public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
+        // Первая версия схемы: переходов пока нет
+    }
+}
@@ -0,0 +1,242 @@
+package ry.tech.mtc.storage;
+
+import android.content.Context;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.util.Log;
+
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonWriter;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import ry.tech.mtc.MockDeviceData;
+import ry.tech.mtc.codec.DeviceTypeAdapter;
+import ry.tech.mtc.codec.JsonAdapters;
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.sensors.SensorNotificationManager;
+
+// Сохранение устройств, их состояния и истории оповещений в SQLite.
+// Запись не блокирует вызывающего: строки уходят в StorageWriter и пишутся пакетами в его потоке.
+// Чтение - по требованию: при старте загружается только список устройств, состояние и история
+// устройства читаются при первом обращении к нему, в потоке чтения (readAsync), а не у вызывающего.
+// До initialize() запись ничего не делает, чтение возвращает пустые результаты.
+public class HomeStorage {
+    private static final String TAG = "HomeStorage";
+    private static HomeStorage instance;
+
+    private volatile SQLiteDatabase db;
+    private volatile StorageWriter writer;
+    private final ExecutorService reader = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "HomeStorageReader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private HomeStorage() {
+    }
+
+    // Отдельный экземпляр поверх готовой базы (тесты)
+    HomeStorage(SQLiteDatabase database) {
+        writer = new StorageWriter(new SqliteBatchSink(database));
+        db = database;
+    }
+
+    public static synchronized HomeStorage getInstance() {
+        if (instance == null) {
+            instance = new HomeStorage();
+        }
+        return instance;
+    }
+
+    // Открывает базу (диск): вызывать не в главном потоке
+    public synchronized void initialize(Context context) {
+        if (db != null) return;
+        SQLiteDatabase database = new HomeDatabase(context).getWritableDatabase();
+        writer = new StorageWriter(new SqliteBatchSink(database));
+        db = database;
+    }
+
+    public boolean isAvailable() {
+        return db != null;
+    }
+
+    // Чтение по требованию вне потока вызывающего (в том числе главного); задачи выполняются по очереди
+    public void readAsync(Runnable task) {
+        reader.execute(task);
+    }
+
+    public void saveDevice(Device device) {
+        StorageWriter currentWriter = writer;
+        if (currentWriter == null) return;
+        currentWriter.saveDevice(new StorageWriter.DeviceRow(device.getId(), device.getName(), device.getType(),
+                device.getRoom(), JsonAdapters.getGson().toJson(device, Device.class)));
+    }
+
+    public void saveState(String deviceId, MockDeviceData.DeviceState state) {
+        StorageWriter currentWriter = writer;
+        if (currentWriter == null) return;
+        // Снимок - в потоке вызывающего и под монитором состояния, под которым его меняет
+        // MockDeviceData: писатель получает готовую строку и изменяемую карту показаний не читает
+        StorageWriter.StateRow row;
+        synchronized (state) {
+            row = new StorageWriter.StateRow(deviceId, state.isOnline, state.isOn,
+                    encodeValues(state.lastReadings), state.lastUpdateTime);
+        }
+        currentWriter.saveState(row);
+    }
+
+    public void appendAlert(SensorNotificationManager.AlertHistory alert) {
+        StorageWriter currentWriter = writer;
+        if (currentWriter == null) return;
+        currentWriter.appendAlert(new StorageWriter.AlertRow(alert.deviceId, alert.sensorType, alert.value,
+                alert.unit, alert.level.ordinal(), toMillis(alert.timestamp)));
+    }
+
+    public void clearAlerts(String deviceId) {
+        StorageWriter currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.clearAlerts(deviceId);
+        }
+    }
+
+    public void clearAllAlerts() {
+        StorageWriter currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.clearAllAlerts();
+        }
+    }
+
+    // Описания устройств без состояния; порядок - порядок первого сохранения
+    public List<Device> loadDevices() {
+        return queryDevices("SELECT body FROM devices ORDER BY rowid", null);
+    }
+
+    public List<Device> findDevicesByType(String type) {
+        return queryDevices("SELECT body FROM devices WHERE type = ?", new String[]{type});
+    }
+
+    public List<Device> findDevicesByRoom(String room) {
+        return queryDevices("SELECT body FROM devices WHERE room = ?", new String[]{room});
+    }
+
+    private List<Device> queryDevices(String sql, String[] args) {
+        SQLiteDatabase database = db;
+        if (database == null) return Collections.emptyList();
+        List<Device> devices = new ArrayList<>();
+        try (Cursor cursor = database.rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                try {
+                    Device device = JsonAdapters.getGson().fromJson(cursor.getString(0), Device.class);
+                    if (device != null) devices.add(device);
+                } catch (JsonParseException e) {
+                    Log.w(TAG, "Skipping unreadable device row", e);
+                }
+            }
+        }
+        return devices;
+    }
+
+    // null, если состояние устройства еще не сохранялось
+    public MockDeviceData.DeviceState loadState(String deviceId) {
+        SQLiteDatabase database = db;
+        if (database == null) return null;
+        try (Cursor cursor = database.rawQuery(
+                "SELECT is_online, is_on, readings, updated_at FROM device_state WHERE device_id = ?",
+                new String[]{deviceId})) {
+            if (!cursor.moveToFirst()) return null;
+            MockDeviceData.DeviceState state = new MockDeviceData.DeviceState();
+            state.isOnline = cursor.getInt(0) != 0;
+            state.isOn = cursor.getInt(1) != 0;
+            if (!cursor.isNull(2)) {
+                state.lastReadings.putAll(decodeValues(cursor.getString(2)));
+            }
+            state.lastUpdateTime = cursor.getLong(3);
+            return state;
+        }
+    }
+
+    // Последние limit оповещений устройства, от старых к новым
+    public List<SensorNotificationManager.AlertHistory> loadAlerts(String deviceId, int limit) {
+        List<SensorNotificationManager.AlertHistory> alerts = queryAlerts(
+                "SELECT device_id, sensor_type, value, unit, level, timestamp FROM alerts "
+                        + "WHERE device_id = ? ORDER BY timestamp DESC LIMIT " + limit,
+                new String[]{deviceId});
+        Collections.reverse(alerts);
+        return alerts;
+    }
+
+    // Оповещения уровня level начиная с sinceMillis, от новых к старым
+    public List<SensorNotificationManager.AlertHistory> loadAlertsByLevel(
+            SensorNotificationManager.AlertLevel level, long sinceMillis, int limit) {
+        return queryAlerts(
+                "SELECT device_id, sensor_type, value, unit, level, timestamp FROM alerts "
+                        + "WHERE level = ? AND timestamp >= ? ORDER BY timestamp DESC LIMIT " + limit,
+                new String[]{String.valueOf(level.ordinal()), String.valueOf(sinceMillis)});
+    }
+
+    private List<SensorNotificationManager.AlertHistory> queryAlerts(String sql, String[] args) {
+        SQLiteDatabase database = db;
+        List<SensorNotificationManager.AlertHistory> alerts = new ArrayList<>();
+        if (database == null) return alerts;
+        SensorNotificationManager.AlertLevel[] levels = SensorNotificationManager.AlertLevel.values();
+        try (Cursor cursor = database.rawQuery(sql, args)) {
+            while (cursor.moveToNext()) {
+                int level = cursor.getInt(4);
+                if (level < 0 || level >= levels.length) continue;
+                alerts.add(new SensorNotificationManager.AlertHistory(
+                        cursor.getString(0),
+                        cursor.isNull(1) ? null : cursor.getString(1),
+                        cursor.getDouble(2),
+                        cursor.isNull(3) ? null : cursor.getString(3),
+                        levels[level],
+                        LocalDateTime.ofInstant(Instant.ofEpochMilli(cursor.getLong(5)), ZoneId.systemDefault())));
+            }
+        }
+        return alerts;
+    }
+
+    // Записывает накопленные изменения и ждет завершения
+    public void flush() throws InterruptedException {
+        StorageWriter currentWriter = writer;
+        if (currentWriter != null) {
+            currentWriter.flush();
+        }
+    }
+
+    private static long toMillis(LocalDateTime timestamp) {
+        return timestamp.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    static String encodeValues(Map<String, Object> values) {
+        StringWriter out = new StringWriter();
+        try (JsonWriter writer = new JsonWriter(out)) {
+            DeviceTypeAdapter.writeValues(writer, values);
+        } catch (IOException e) {
+            // StringWriter не бросает IOException
+            throw new IllegalStateException(e);
+        }
+        return out.toString();
+    }
+
+    static Map<String, Object> decodeValues(String json) {
+        try (JsonReader reader = new JsonReader(new StringReader(json))) {
+            return DeviceTypeAdapter.readValues(reader);
+        } catch (IOException | IllegalStateException e) {
+            Log.w(TAG, "Skipping unreadable readings", e);
+            return Collections.emptyMap();
+        }
+    }
+}
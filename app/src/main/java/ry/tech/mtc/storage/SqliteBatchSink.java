@@ -0,0 +1,122 @@
+package ry.tech.mtc.storage;
+
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+
+import java.util.HashSet;
+import java.util.Set;
+
+// Запись пакета StorageWriter одной транзакцией. Запросы компилируются один раз при первом пакете
+// и переиспользуются: строка пакета - только привязка параметров и executeInsert/executeUpdateDelete.
+// Используется только из потока писателя, поэтому SQLiteStatement не синхронизируются.
+class SqliteBatchSink implements StorageWriter.BatchSink {
+    // Сколько последних оповещений каждого устройства хранится в базе
+    static final int MAX_ALERTS_PER_DEVICE = 1000;
+
+    private final SQLiteDatabase db;
+    private SQLiteStatement updateDevice;
+    private SQLiteStatement insertDevice;
+    private SQLiteStatement upsertState;
+    private SQLiteStatement insertAlert;
+    private SQLiteStatement deleteDeviceAlerts;
+    private SQLiteStatement deleteAllAlerts;
+    private SQLiteStatement trimDeviceAlerts;
+
+    SqliteBatchSink(SQLiteDatabase db) {
+        this.db = db;
+    }
+
+    private void compileStatements() {
+        if (updateDevice != null) return;
+        // Не INSERT OR REPLACE: замена удаляет строку и меняет rowid, а порядок устройств - порядок rowid.
+        // UPSERT (ON CONFLICT DO UPDATE) недоступен в SQLite старых версий Android
+        updateDevice = db.compileStatement(
+                "UPDATE devices SET name = ?2, type = ?3, room = ?4, body = ?5 WHERE id = ?1");
+        insertDevice = db.compileStatement(
+                "INSERT INTO devices (id, name, type, room, body) VALUES (?1, ?2, ?3, ?4, ?5)");
+        upsertState = db.compileStatement(
+                "INSERT OR REPLACE INTO device_state (device_id, is_online, is_on, readings, updated_at) "
+                        + "VALUES (?, ?, ?, ?, ?)");
+        insertAlert = db.compileStatement(
+                "INSERT INTO alerts (device_id, sensor_type, value, unit, level, timestamp) "
+                        + "VALUES (?, ?, ?, ?, ?, ?)");
+        deleteDeviceAlerts = db.compileStatement("DELETE FROM alerts WHERE device_id = ?");
+        deleteAllAlerts = db.compileStatement("DELETE FROM alerts");
+        // Граница - время N-го с конца оповещения, оба запроса идут по alerts_by_device_time
+        trimDeviceAlerts = db.compileStatement(
+                "DELETE FROM alerts WHERE device_id = ?1 AND timestamp < ("
+                        + "SELECT timestamp FROM alerts WHERE device_id = ?1 "
+                        + "ORDER BY timestamp DESC LIMIT 1 OFFSET " + (MAX_ALERTS_PER_DEVICE - 1) + ")");
+    }
+
+    @Override
+    public void write(StorageWriter.Batch batch) {
+        compileStatements();
+        db.beginTransactionNonExclusive();
+        try {
+            for (StorageWriter.DeviceRow row : batch.devices) {
+                bindDevice(updateDevice, row);
+                if (updateDevice.executeUpdateDelete() == 0) {
+                    bindDevice(insertDevice, row);
+                    insertDevice.executeInsert();
+                }
+            }
+
+            for (StorageWriter.StateRow row : batch.states) {
+                upsertState.clearBindings();
+                upsertState.bindString(1, row.deviceId);
+                upsertState.bindLong(2, row.isOnline ? 1 : 0);
+                upsertState.bindLong(3, row.isOn ? 1 : 0);
+                bindNullable(upsertState, 4, row.readings);
+                upsertState.bindLong(5, row.updatedAt);
+                upsertState.executeInsert();
+            }
+
+            if (batch.clearAllAlerts) {
+                deleteAllAlerts.executeUpdateDelete();
+            }
+            for (String deviceId : batch.alertClears) {
+                deleteDeviceAlerts.bindString(1, deviceId);
+                deleteDeviceAlerts.executeUpdateDelete();
+            }
+
+            Set<String> alertDevices = new HashSet<>();
+            for (StorageWriter.AlertRow row : batch.alerts) {
+                insertAlert.clearBindings();
+                insertAlert.bindString(1, row.deviceId);
+                bindNullable(insertAlert, 2, row.sensorType);
+                insertAlert.bindDouble(3, row.value);
+                bindNullable(insertAlert, 4, row.unit);
+                insertAlert.bindLong(5, row.level);
+                insertAlert.bindLong(6, row.timestamp);
+                insertAlert.executeInsert();
+                alertDevices.add(row.deviceId);
+            }
+            for (String deviceId : alertDevices) {
+                trimDeviceAlerts.bindString(1, deviceId);
+                trimDeviceAlerts.executeUpdateDelete();
+            }
+
+            db.setTransactionSuccessful();
+        } finally {
+            db.endTransaction();
+        }
+    }
+
+    private static void bindDevice(SQLiteStatement statement, StorageWriter.DeviceRow row) {
+        statement.clearBindings();
+        statement.bindString(1, row.id);
+        bindNullable(statement, 2, row.name);
+        statement.bindString(3, row.type);
+        bindNullable(statement, 4, row.room);
+        statement.bindString(5, row.body);
+    }
+
+    private static void bindNullable(SQLiteStatement statement, int index, String value) {
+        if (value != null) {
+            statement.bindString(index, value);
+        } else {
+            statement.bindNull(index);
+        }
+    }
+}
@@ -0,0 +1,293 @@
+package ry.tech.mtc.storage;
+
+import android.util.Log;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import ry.tech.mtc.metrics.Counter;
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+
+// Очередь записи в базу с единственным потоком-писателем.
+//  - изменения копятся в памяти и уходят пакетом, одной транзакцией BatchSink;
+//  - новая запись того же устройства или состояния заменяет еще не записанную;
+//  - пакет уходит через flushDelayMs после первого изменения или сразу при MAX_BATCH_SIZE строк;
+//  - при ошибке строки пакета возвращаются в очередь (если их не заменили более новые) и
+//    запись повторяется через RETRY_DELAY_MS; при повторных ошибках задержка удваивается
+//    до MAX_RETRY_DELAY_MS, и до успешной записи полный пакет не торопит повтор.
+// Строки неизменяемые и собираются в потоке вызывающего: писатель не читает изменяемые модели.
+public class StorageWriter {
+    private static final String TAG = "StorageWriter";
+    private static final long DEFAULT_FLUSH_DELAY_MS = 500;
+    private static final long RETRY_DELAY_MS = 5000;
+    static final long MAX_RETRY_DELAY_MS = 5 * 60_000;
+    static final int MAX_BATCH_SIZE = 256;
+
+    private final BatchSink sink;
+    private final long flushDelayMs;
+    private final ScheduledExecutorService executor;
+    private final Counter batchesCounter = MetricsRegistry.getInstance().counter("storage.batches");
+    private final Counter failuresCounter = MetricsRegistry.getInstance().counter("storage.failures");
+    private final LatencyHistogram batchLatency = MetricsRegistry.getInstance().histogram("storage.batch");
+
+    // Порядок вставки - порядок записи
+    private final LinkedHashMap<String, DeviceRow> pendingDevices = new LinkedHashMap<>();
+    private final LinkedHashMap<String, StateRow> pendingStates = new LinkedHashMap<>();
+    private final Set<String> pendingAlertClears = new HashSet<>();
+    private boolean isClearAllAlertsPending;
+    private List<AlertRow> pendingAlerts = new ArrayList<>();
+    private ScheduledFuture<?> scheduledFlush;
+    // Ошибки записи подряд; сбрасывается первой успешной записью
+    private int consecutiveFailures;
+
+    // Записывает пакет одной транзакцией; исключение означает, что пакет не записан
+    public interface BatchSink {
+        void write(Batch batch) throws Exception;
+    }
+
+    public static final class DeviceRow {
+        public final String id;
+        public final String name;
+        public final String type;
+        public final String room;
+        public final String body;
+
+        public DeviceRow(String id, String name, String type, String room, String body) {
+            this.id = id;
+            this.name = name;
+            this.type = type;
+            this.room = room;
+            this.body = body;
+        }
+    }
+
+    public static final class StateRow {
+        public final String deviceId;
+        public final boolean isOnline;
+        public final boolean isOn;
+        public final String readings;
+        public final long updatedAt;
+
+        public StateRow(String deviceId, boolean isOnline, boolean isOn, String readings, long updatedAt) {
+            this.deviceId = deviceId;
+            this.isOnline = isOnline;
+            this.isOn = isOn;
+            this.readings = readings;
+            this.updatedAt = updatedAt;
+        }
+    }
+
+    public static final class AlertRow {
+        public final String deviceId;
+        public final String sensorType;
+        public final double value;
+        public final String unit;
+        public final int level;
+        public final long timestamp;
+
+        public AlertRow(String deviceId, String sensorType, double value, String unit, int level, long timestamp) {
+            this.deviceId = deviceId;
+            this.sensorType = sensorType;
+            this.value = value;
+            this.unit = unit;
+            this.level = level;
+            this.timestamp = timestamp;
+        }
+    }
+
+    // Порядок применения: устройства, состояния, очистка истории, новые оповещения.
+    // Оповещения, поставленные до очистки, в пакет не попадают
+    public static final class Batch {
+        public final List<DeviceRow> devices;
+        public final List<StateRow> states;
+        public final boolean clearAllAlerts;
+        public final Set<String> alertClears;
+        public final List<AlertRow> alerts;
+
+        Batch(List<DeviceRow> devices, List<StateRow> states, boolean clearAllAlerts,
+              Set<String> alertClears, List<AlertRow> alerts) {
+            this.devices = devices;
+            this.states = states;
+            this.clearAllAlerts = clearAllAlerts;
+            this.alertClears = alertClears;
+            this.alerts = alerts;
+        }
+
+        public int size() {
+            return devices.size() + states.size() + alertClears.size() + alerts.size()
+                    + (clearAllAlerts ? 1 : 0);
+        }
+    }
+
+    public StorageWriter(BatchSink sink) {
+        this(sink, DEFAULT_FLUSH_DELAY_MS);
+    }
+
+    public StorageWriter(BatchSink sink, long flushDelayMs) {
+        this.sink = sink;
+        this.flushDelayMs = flushDelayMs;
+        this.executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, TAG);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Замена остается на месте первой записи: порядок вставки в базу - порядок устройств в списке
+    public synchronized void saveDevice(DeviceRow row) {
+        pendingDevices.put(row.id, row);
+        onEnqueued();
+    }
+
+    public synchronized void saveState(StateRow row) {
+        pendingStates.remove(row.deviceId);
+        pendingStates.put(row.deviceId, row);
+        onEnqueued();
+    }
+
+    public synchronized void appendAlert(AlertRow row) {
+        pendingAlerts.add(row);
+        onEnqueued();
+    }
+
+    public synchronized void clearAlerts(String deviceId) {
+        if (!isClearAllAlertsPending) {
+            pendingAlertClears.add(deviceId);
+        }
+        removePendingAlerts(deviceId);
+        onEnqueued();
+    }
+
+    public synchronized void clearAllAlerts() {
+        isClearAllAlertsPending = true;
+        pendingAlertClears.clear();
+        pendingAlerts.clear();
+        onEnqueued();
+    }
+
+    public synchronized int getPendingCount() {
+        return pendingDevices.size() + pendingStates.size() + pendingAlertClears.size()
+                + pendingAlerts.size() + (isClearAllAlertsPending ? 1 : 0);
+    }
+
+    // Записывает все накопленное и ждет завершения (тесты, остановка приложения)
+    public void flush() throws InterruptedException {
+        try {
+            executor.submit(this::writePending).get();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    private void onEnqueued() {
+        if (getPendingCount() >= MAX_BATCH_SIZE && consecutiveFailures == 0) {
+            scheduleFlush(0);
+        } else if (scheduledFlush == null) {
+            scheduleFlush(flushDelayMs);
+        }
+    }
+
+    private void scheduleFlush(long delayMs) {
+        if (scheduledFlush != null) {
+            // Отложенную запись заменяет немедленная; уже начатую не трогаем
+            if (scheduledFlush.getDelay(TimeUnit.MILLISECONDS) <= delayMs) return;
+            scheduledFlush.cancel(false);
+        }
+        scheduledFlush = executor.schedule(this::writePending, delayMs, TimeUnit.MILLISECONDS);
+    }
+
+    // Только в потоке писателя
+    private void writePending() {
+        Batch batch;
+        synchronized (this) {
+            scheduledFlush = null;
+            batch = takePending();
+        }
+        if (batch.size() == 0) return;
+
+        long start = System.nanoTime();
+        try {
+            sink.write(batch);
+            batchLatency.recordSince(start);
+            batchesCounter.increment();
+            synchronized (this) {
+                consecutiveFailures = 0;
+            }
+        } catch (Exception e) {
+            failuresCounter.increment();
+            long retryDelayMs;
+            synchronized (this) {
+                consecutiveFailures++;
+                retryDelayMs = retryDelayMs(consecutiveFailures);
+                requeue(batch);
+                scheduleFlush(retryDelayMs);
+            }
+            Log.e(TAG, "Failed to write batch of " + batch.size() + " rows, retry in " + retryDelayMs + " ms", e);
+        }
+    }
+
+    static long retryDelayMs(int failures) {
+        int doublings = Math.min(failures - 1, 16);
+        return Math.min(MAX_RETRY_DELAY_MS, RETRY_DELAY_MS << doublings);
+    }
+
+    private Batch takePending() {
+        Batch batch = new Batch(new ArrayList<>(pendingDevices.values()), new ArrayList<>(pendingStates.values()),
+                isClearAllAlertsPending, new HashSet<>(pendingAlertClears), pendingAlerts);
+        pendingDevices.clear();
+        pendingStates.clear();
+        pendingAlertClears.clear();
+        isClearAllAlertsPending = false;
+        pendingAlerts = new ArrayList<>();
+        return batch;
+    }
+
+    // Строки незаписанного пакета старше всего, что поставлено после него
+    private void requeue(Batch batch) {
+        LinkedHashMap<String, DeviceRow> devices = new LinkedHashMap<>();
+        for (DeviceRow row : batch.devices) devices.put(row.id, row);
+        devices.putAll(pendingDevices);
+        pendingDevices.clear();
+        pendingDevices.putAll(devices);
+
+        LinkedHashMap<String, StateRow> states = new LinkedHashMap<>();
+        for (StateRow row : batch.states) states.put(row.deviceId, row);
+        states.putAll(pendingStates);
+        pendingStates.clear();
+        pendingStates.putAll(states);
+
+        // Очистка, поставленная после пакета, отменяет его оповещения
+        List<AlertRow> alerts = new ArrayList<>();
+        if (!isClearAllAlertsPending) {
+            for (AlertRow row : batch.alerts) {
+                if (!pendingAlertClears.contains(row.deviceId)) alerts.add(row);
+            }
+        }
+        alerts.addAll(pendingAlerts);
+        pendingAlerts = alerts;
+
+        if (batch.clearAllAlerts) {
+            isClearAllAlertsPending = true;
+            pendingAlertClears.clear();
+        } else if (!isClearAllAlertsPending) {
+            pendingAlertClears.addAll(batch.alertClears);
+        }
+    }
+
+    private void removePendingAlerts(String deviceId) {
+        Iterator<AlertRow> iterator = pendingAlerts.iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().deviceId.equals(deviceId)) iterator.remove();
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import ry.tech.mtc.codec.GorillaBlock;
+
+// История одного параметра устройства в сжатых блоках GorillaBlock.
+// Открытый блок дописывается, заполненный запечатывается; блоки старше retentionMs отбрасываются целиком.
+// Значения квантуются до шага resolution (разрешение датчика) и хранятся как целое число шагов:
+// у соседних целых в double совпадает почти вся мантисса, и XOR занимает несколько бит.
+// Шум симулятора в полных 52 битах мантиссы так не сжимается. resolution 0 - хранить как есть.
+public class CompressedSeries {
+    // ~13 минут при шаге 200 мс
+    public static final int BLOCK_SIZE = 4096;
+
+    private final double resolution;
+    private final long retentionMs;
+    private final ArrayDeque<GorillaBlock> sealedBlocks = new ArrayDeque<>();
+    private GorillaBlock.Builder openBlock = new GorillaBlock.Builder(BLOCK_SIZE);
+    private long sealedPoints;
+    private long sealedBytes;
+
+    public CompressedSeries(double resolution, long retentionMs) {
+        this.resolution = resolution;
+        this.retentionMs = retentionMs;
+    }
+
+    public synchronized boolean append(long timeMs, double value) {
+        return appendLocked(timeMs, value);
+    }
+
+    // Пакетная загрузка (импорт) под одной блокировкой; возвращает число принятых точек
+    public synchronized int appendAll(long[] times, double[] values, int count) {
+        int accepted = 0;
+        for (int i = 0; i < count; i++) {
+            if (appendLocked(times[i], values[i])) {
+                accepted++;
+            }
+        }
+        return accepted;
+    }
+
+    public double getResolution() {
+        return resolution;
+    }
+
+    private boolean appendLocked(long timeMs, double value) {
+        if (Double.isNaN(value)) return false;
+        if (openBlock.getCount() > 0 && timeMs <= openBlock.getLastTime()) return false;
+        double stored = resolution > 0 ? Math.rint(value / resolution) : value;
+        if (openBlock.append(timeMs, stored)) return true;
+
+        GorillaBlock sealed = openBlock.seal();
+        sealedBlocks.addLast(sealed);
+        sealedPoints += sealed.getCount();
+        sealedBytes += sealed.getSizeBytes();
+        openBlock = new GorillaBlock.Builder(BLOCK_SIZE);
+        evictExpired(timeMs);
+        return openBlock.append(timeMs, stored);
+    }
+
+    public synchronized long getPointCount() {
+        return sealedPoints + openBlock.getCount();
+    }
+
+    public synchronized long getSizeBytes() {
+        return sealedBytes + openBlock.getSizeBytes();
+    }
+
+    public synchronized int getBlockCount() {
+        return sealedBlocks.size() + (openBlock.getCount() > 0 ? 1 : 0);
+    }
+
+    // Курсор по точкам начиная с fromTimeMs. Видит ряд на момент вызова:
+    // запечатанные блоки неизменяемы, открытый копируется (не больше BLOCK_SIZE точек)
+    public synchronized Cursor cursor(long fromTimeMs) {
+        List<GorillaBlock> blocks = new ArrayList<>(sealedBlocks.size() + 1);
+        for (GorillaBlock block : sealedBlocks) {
+            if (block.getLastTime() >= fromTimeMs) {
+                blocks.add(block);
+            }
+        }
+        if (openBlock.getCount() > 0 && openBlock.getLastTime() >= fromTimeMs) {
+            blocks.add(openBlock.seal());
+        }
+        return new Cursor(blocks, fromTimeMs, resolution);
+    }
+
+    private void evictExpired(long nowMs) {
+        while (!sealedBlocks.isEmpty() && sealedBlocks.peekFirst().getLastTime() < nowMs - retentionMs) {
+            GorillaBlock expired = sealedBlocks.removeFirst();
+            sealedPoints -= expired.getCount();
+            sealedBytes -= expired.getSizeBytes();
+        }
+    }
+
+    // Потоковое чтение по блокам, без распаковки ряда в массивы
+    public static class Cursor {
+        private final List<GorillaBlock> blocks;
+        private final long fromTimeMs;
+        private final double resolution;
+        private int blockIndex;
+        private GorillaBlock.Cursor current;
+
+        Cursor(List<GorillaBlock> blocks, long fromTimeMs, double resolution) {
+            this.blocks = blocks;
+            this.fromTimeMs = fromTimeMs;
+            this.resolution = resolution;
+        }
+
+        public boolean next() {
+            while (true) {
+                if (current == null) {
+                    if (blockIndex == blocks.size()) return false;
+                    current = blocks.get(blockIndex++).cursor();
+                }
+                if (!current.next()) {
+                    current = null;
+                } else if (current.getTime() >= fromTimeMs) {
+                    return true;
+                }
+            }
+        }
+
+        public long getTime() {
+            return current.getTime();
+        }
+
+        public double getValue() {
+            double stored = current.getValue();
+            return resolution > 0 ? stored * resolution : stored;
+        }
+    }
+}
@@ -0,0 +1,166 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.models.DeviceHealth;
+
+// Модель износа устройств. Раньше жила в ManagementFragment и сбрасывалась при каждом открытии экрана.
+public class DeviceHealthMonitor {
+    private final Random random = new Random();
+    private final Map<String, DeviceHealth> deviceHealthMap = new LinkedHashMap<>();
+
+    public void addDevice(Device device) {
+        if (deviceHealthMap.containsKey(device.getId())) return;
+
+        DeviceHealth health = new DeviceHealth(
+                device.getId(),
+                device.getName(),
+                device.getType(),
+                100, // начальное здоровье
+                calculateInitialLifespan(device.getType()),
+                System.currentTimeMillis(),
+                new HashMap<>()
+        );
+        deviceHealthMap.put(device.getId(), health);
+    }
+
+    public void removeDevice(String deviceId) {
+        deviceHealthMap.remove(deviceId);
+    }
+
+    // Обновляет состояние и возвращает копии для передачи в UI
+    public List<DeviceHealth> updateDevicesHealth() {
+        for (DeviceHealth health : deviceHealthMap.values()) {
+            updateDeviceHealthStatus(health);
+        }
+        return snapshot();
+    }
+
+    public List<DeviceHealth> snapshot() {
+        List<DeviceHealth> copies = new ArrayList<>(deviceHealthMap.size());
+        for (DeviceHealth health : deviceHealthMap.values()) {
+            copies.add(new DeviceHealth(health));
+        }
+        return copies;
+    }
+
+    private int calculateInitialLifespan(String deviceType) {
+        // Расчёт предполагаемого срока службы в днях
+        switch (deviceType) {
+            case Device.TYPE_TEMPERATURE_SENSOR:
+            case Device.TYPE_HUMIDITY_SENSOR:
+                return 365 * 2; // 2 года
+            case Device.TYPE_WATER_SENSOR:
+                return 365 * 3; // 3 года
+            case Device.TYPE_ELECTRICITY_SENSOR:
+                return 365 * 5; // 5 лет
+            case Device.TYPE_AIR_SENSOR:
+                return 365 * 2; // 2 года
+            case Device.TYPE_LIGHT:
+                return 365 * 3; // 3 года
+            case Device.TYPE_AC:
+                return 365 * 5; // 5 лет
+            default:
+                return 365 * 2; // По умолчанию 2 года
+        }
+    }
+
+    private void updateDeviceHealthStatus(DeviceHealth health) {
+        // Базовое снижение здоровья
+        double baseDecay = calculateBaseHealthDecay(health);
+
+        // Факторы влияния на здоровье
+        Map<String, Double> healthFactors = calculateHealthFactors(health);
+
+        // Применяем все факторы
+        double totalDecay = baseDecay;
+        for (Double factor : healthFactors.values()) {
+            totalDecay *= factor;
+        }
+
+        // Обновляем здоровье
+        health.setHealth(Math.max(0, health.getHealth() - totalDecay));
+        health.setLastUpdateTime(System.currentTimeMillis());
+        health.setHealthFactors(healthFactors);
+
+        // Генерируем случайные события
+        generateRandomEvents(health);
+    }
+
+    private double calculateBaseHealthDecay(DeviceHealth health) {
+        long timeInUse = (System.currentTimeMillis() - health.getLastUpdateTime()) / 1000; // в секундах
+        double baseDecay = 0.01; // базовое снижение за период
+
+        // Увеличиваем скорость деградации для старых устройств
+        double ageFactorInDays = timeInUse / (24.0 * 60 * 60);
+        double ageFactor = Math.pow(1.001, ageFactorInDays);
+
+        return baseDecay * ageFactor;
+    }
+
+    private Map<String, Double> calculateHealthFactors(DeviceHealth health) {
+        Map<String, Double> factors = new HashMap<>();
+
+        // Фактор возраста
+        double ageInDays = (System.currentTimeMillis() - health.getLastUpdateTime())
+                / (1000.0 * 60 * 60 * 24);
+        factors.put("age_factor", 1.0 + (ageInDays / health.getLifespan()) * 0.5);
+
+        // Фактор использования (симуляция)
+        factors.put("usage_factor", 1.0 + random.nextDouble() * 0.2);
+
+        // Фактор окружающей среды (симуляция)
+        factors.put("environment_factor", 1.0 + random.nextDouble() * 0.3);
+
+        // Специфичные факторы для разных типов устройств
+        switch (health.getType()) {
+            case Device.TYPE_TEMPERATURE_SENSOR:
+                factors.put("temperature_stress", 1.0 + random.nextDouble() * 0.4);
+                break;
+            case Device.TYPE_HUMIDITY_SENSOR:
+                factors.put("moisture_exposure", 1.0 + random.nextDouble() * 0.3);
+                break;
+            case Device.TYPE_WATER_SENSOR:
+                factors.put("water_exposure", 1.0 + random.nextDouble() * 0.5);
+                break;
+            case Device.TYPE_ELECTRICITY_SENSOR:
+                factors.put("power_fluctuation", 1.0 + random.nextDouble() * 0.2);
+                break;
+            case Device.TYPE_AIR_SENSOR:
+                factors.put("air_quality", 1.0 + random.nextDouble() * 0.3);
+                break;
+        }
+
+        return factors;
+    }
+
+    private void generateRandomEvents(DeviceHealth health) {
+        // Вероятность случайного события зависит от текущего здоровья
+        double eventProbability = (100 - health.getHealth()) / 1000.0; // 0.1% при здоровье 0
+
+        if (random.nextDouble() < eventProbability) {
+            // Генерируем случайное событие
+            switch (random.nextInt(3)) {
+                case 0: // Временный сбой
+                    health.addEvent("temporary_failure",
+                            "Обнаружен временный сбой в работе устройства");
+                    break;
+                case 1: // Проблема с калибровкой
+                    health.addEvent("calibration_issue",
+                            "Требуется калибровка устройства");
+                    break;
+                case 2: // Критическая ошибка
+                    health.addEvent("critical_error",
+                            "Обнаружена критическая ошибка в работе устройства");
+                    health.setHealth(Math.max(0, health.getHealth() - 20));
+                    break;
+            }
+        }
+    }
+}
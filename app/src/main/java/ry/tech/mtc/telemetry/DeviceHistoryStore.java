@@ -0,0 +1,110 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import ry.tech.mtc.models.Device;
+
+// Сжатая история показаний устройств за последние RETENTION_MS, целиком в памяти.
+// Для каждого типа устройства пишутся только его собственные параметры с разрешением датчика.
+// Пишет поток движка телеметрии, читать можно из любого потока через CompressedSeries.cursor.
+public class DeviceHistoryStore {
+    public static final long RETENTION_MS = 3 * 24 * 60 * 60 * 1000L;
+
+    // Параметр снимка -> шаг квантования
+    private static final Map<String, Double> RESOLUTIONS = new HashMap<>();
+    // Тип устройства -> параметры, которые у него имеют смысл
+    private static final Map<String, String[]> TYPE_PARAMETERS = new HashMap<>();
+
+    static {
+        RESOLUTIONS.put("temperature", 0.01);
+        RESOLUTIONS.put("humidity", 0.1);
+        RESOLUTIONS.put("water_level", 0.1);
+        RESOLUTIONS.put("power", 0.1);
+        RESOLUTIONS.put("voltage", 0.1);
+        RESOLUTIONS.put("co2", 1.0);
+        RESOLUTIONS.put("gas", 0.01);
+
+        TYPE_PARAMETERS.put(Device.TYPE_TEMPERATURE_SENSOR, new String[]{"temperature"});
+        TYPE_PARAMETERS.put(Device.TYPE_HUMIDITY_SENSOR, new String[]{"humidity"});
+        TYPE_PARAMETERS.put(Device.TYPE_WATER_SENSOR, new String[]{"water_level"});
+        TYPE_PARAMETERS.put(Device.TYPE_ELECTRICITY_SENSOR, new String[]{"power", "voltage"});
+        TYPE_PARAMETERS.put(Device.TYPE_AIR_SENSOR, new String[]{"co2", "gas"});
+        TYPE_PARAMETERS.put(Device.TYPE_AC, new String[]{"temperature"});
+    }
+
+    private final Map<String, String[]> deviceParameters = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, CompressedSeries>> series = new ConcurrentHashMap<>();
+
+    public void trackDevice(String deviceId, String deviceType) {
+        String[] parameters = TYPE_PARAMETERS.get(deviceType);
+        if (parameters == null) return;
+        deviceParameters.put(deviceId, parameters);
+        for (String parameter : parameters) {
+            getOrCreateSeries(deviceId, parameter);
+        }
+    }
+
+    // Ряд для импорта истории; устройство может быть еще не зарегистрировано в движке
+    public CompressedSeries getOrCreateSeries(String deviceId, String parameter) {
+        return series.computeIfAbsent(deviceId, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(parameter,
+                        k -> new CompressedSeries(RESOLUTIONS.getOrDefault(parameter, 0.0), RETENTION_MS));
+    }
+
+    public List<String> getDeviceIds() {
+        List<String> deviceIds = new ArrayList<>(series.keySet());
+        Collections.sort(deviceIds);
+        return deviceIds;
+    }
+
+    public void removeDevice(String deviceId) {
+        deviceParameters.remove(deviceId);
+        series.remove(deviceId);
+    }
+
+    public void record(DeviceSnapshot snapshot) {
+        String[] parameters = deviceParameters.get(snapshot.deviceId);
+        Map<String, CompressedSeries> deviceSeries = series.get(snapshot.deviceId);
+        if (parameters == null || deviceSeries == null) return;
+        // Ряды создаются в trackDevice, поэтому get не возвращает null
+        for (String parameter : parameters) {
+            deviceSeries.get(parameter).append(snapshot.timestamp, snapshot.getReading(parameter));
+        }
+    }
+
+    // null, если параметр устройства не записывается
+    public CompressedSeries getSeries(String deviceId, String parameter) {
+        Map<String, CompressedSeries> deviceSeries = series.get(deviceId);
+        return deviceSeries != null ? deviceSeries.get(parameter) : null;
+    }
+
+    public Map<String, CompressedSeries> getDeviceSeries(String deviceId) {
+        Map<String, CompressedSeries> deviceSeries = series.get(deviceId);
+        return deviceSeries != null ? Collections.unmodifiableMap(deviceSeries) : Collections.emptyMap();
+    }
+
+    public long getPointCount() {
+        long points = 0;
+        for (Map<String, CompressedSeries> deviceSeries : series.values()) {
+            for (CompressedSeries parameterSeries : deviceSeries.values()) {
+                points += parameterSeries.getPointCount();
+            }
+        }
+        return points;
+    }
+
+    public long getSizeBytes() {
+        long bytes = 0;
+        for (Map<String, CompressedSeries> deviceSeries : series.values()) {
+            for (CompressedSeries parameterSeries : deviceSeries.values()) {
+                bytes += parameterSeries.getSizeBytes();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,69 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import ry.tech.mtc.imitation.EnhancedDeviceSimulator;
+import ry.tech.mtc.metrics.TraceContext;
+
+// Неизменяемый снимок показаний устройства, безопасно передается между потоками.
+// version растет на единицу с каждым новым снимком устройства.
+public final class DeviceSnapshot {
+    public final String deviceId;
+    public final long version;
+    public final double temperature;
+    public final double humidity;
+    public final double waterLevel;
+    public final double powerConsumption;
+    public final double voltage;
+    public final double co2Level;
+    public final double gasLevel;
+    public final boolean isConnected;
+    public final int signalStrength;
+    public final long timestamp;
+    public final Map<String, Object> additionalParams;
+    public final TraceContext trace; // null, если показание не попало в выборку трассировки
+
+    public DeviceSnapshot(String deviceId, long version, EnhancedDeviceSimulator.DeviceSimulationData data) {
+        this.deviceId = deviceId;
+        this.version = version;
+        this.temperature = data.temperature;
+        this.humidity = data.humidity;
+        this.waterLevel = data.waterLevel;
+        this.powerConsumption = data.powerConsumption;
+        this.voltage = data.voltage;
+        this.co2Level = data.co2Level;
+        this.gasLevel = data.gasLevel;
+        this.isConnected = data.isConnected;
+        this.signalStrength = data.signalStrength;
+        this.timestamp = data.lastUpdateTime;
+        this.additionalParams = Collections.unmodifiableMap(new HashMap<>(data.additionalParams));
+        this.trace = data.trace;
+    }
+
+    // Значение параметра по имени, NaN если снимок его не содержит
+    public double getReading(String parameter) {
+        switch (parameter) {
+            case "temperature":
+                return temperature;
+            case "humidity":
+                return humidity;
+            case "water_level":
+                return waterLevel;
+            case "power":
+                return powerConsumption;
+            case "voltage":
+                return voltage;
+            case "co2":
+                return co2Level;
+            case "gas":
+                return gasLevel;
+            case "signal_strength":
+                return signalStrength;
+            default:
+                Object value = additionalParams.get(parameter);
+                return value instanceof Number ? ((Number) value).doubleValue() : Double.NaN;
+        }
+    }
+}
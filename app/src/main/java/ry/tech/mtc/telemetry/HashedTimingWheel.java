@@ -0,0 +1,186 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.LongSupplier;
+
+// Хешированное колесо таймеров: постановка и отмена за O(1), один поток на все таймеры.
+// Время делится на тики по tickMs; таймер попадает в ячейку (тик срабатывания & mask)
+// и хранит число оборотов колеса, которые нужно пропустить.
+// Точность - один тик: таймер срабатывает не раньше срока и не позже чем через tickMs после него.
+public class HashedTimingWheel {
+    private final long tickMs;
+    private final Bucket[] wheel;
+    private final int mask;
+    private final LongSupplier clock;
+    private final long startTime;
+    private final Object lock = new Object();
+    private long currentTick;
+    private int pendingCount;
+    private Thread worker;
+    private volatile boolean isRunning;
+
+    public static final class Timeout {
+        private final Runnable task;
+        private long remainingRounds;
+        private Bucket bucket;
+        private Timeout prev;
+        private Timeout next;
+        private final HashedTimingWheel owner;
+
+        private Timeout(HashedTimingWheel owner, Runnable task) {
+            this.owner = owner;
+            this.task = task;
+        }
+
+        // false, если таймер уже сработал или был отменен
+        public boolean cancel() {
+            return owner.cancel(this);
+        }
+    }
+
+    // Двусвязный список таймеров одной ячейки
+    private static final class Bucket {
+        Timeout head;
+        Timeout tail;
+
+        void add(Timeout timeout) {
+            timeout.bucket = this;
+            timeout.prev = tail;
+            timeout.next = null;
+            if (tail == null) {
+                head = timeout;
+            } else {
+                tail.next = timeout;
+            }
+            tail = timeout;
+        }
+
+        void remove(Timeout timeout) {
+            if (timeout.prev != null) {
+                timeout.prev.next = timeout.next;
+            } else {
+                head = timeout.next;
+            }
+            if (timeout.next != null) {
+                timeout.next.prev = timeout.prev;
+            } else {
+                tail = timeout.prev;
+            }
+            timeout.prev = null;
+            timeout.next = null;
+            timeout.bucket = null;
+        }
+    }
+
+    public HashedTimingWheel(long tickMs, int ticksPerWheel) {
+        this(tickMs, ticksPerWheel, System::currentTimeMillis);
+    }
+
+    public HashedTimingWheel(long tickMs, int ticksPerWheel, LongSupplier clock) {
+        int size = Integer.highestOneBit(Math.max(2, ticksPerWheel - 1)) << 1;
+        this.tickMs = tickMs;
+        this.wheel = new Bucket[size];
+        for (int i = 0; i < size; i++) {
+            wheel[i] = new Bucket();
+        }
+        this.mask = size - 1;
+        this.clock = clock;
+        this.startTime = clock.getAsLong();
+    }
+
+    public Timeout schedule(Runnable task, long delayMs) {
+        Timeout timeout = new Timeout(this, task);
+        synchronized (lock) {
+            long elapsed = clock.getAsLong() + Math.max(0, delayMs) - startTime;
+            long targetTick = Math.max(currentTick + 1, (elapsed + tickMs - 1) / tickMs);
+            timeout.remainingRounds = (targetTick - currentTick - 1) / wheel.length;
+            wheel[(int) (targetTick & mask)].add(timeout);
+            pendingCount++;
+        }
+        return timeout;
+    }
+
+    private boolean cancel(Timeout timeout) {
+        synchronized (lock) {
+            if (timeout.bucket == null) return false;
+            timeout.bucket.remove(timeout);
+            pendingCount--;
+            return true;
+        }
+    }
+
+    public int getPendingCount() {
+        synchronized (lock) {
+            return pendingCount;
+        }
+    }
+
+    // Обработка всех тиков до текущего времени; задачи выполняются в вызывающем потоке вне блокировки
+    public int advance() {
+        List<Timeout> expired = new ArrayList<>();
+        synchronized (lock) {
+            long targetTick = (clock.getAsLong() - startTime) / tickMs;
+            while (currentTick < targetTick) {
+                currentTick++;
+                Bucket bucket = wheel[(int) (currentTick & mask)];
+                Timeout timeout = bucket.head;
+                while (timeout != null) {
+                    Timeout next = timeout.next;
+                    if (timeout.remainingRounds <= 0) {
+                        bucket.remove(timeout);
+                        pendingCount--;
+                        expired.add(timeout);
+                    } else {
+                        timeout.remainingRounds--;
+                    }
+                    timeout = next;
+                }
+            }
+        }
+        for (Timeout timeout : expired) {
+            try {
+                timeout.task.run();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+            }
+        }
+        return expired.size();
+    }
+
+    public synchronized void start(String threadName) {
+        if (isRunning) return;
+        isRunning = true;
+        worker = new Thread(() -> {
+            while (isRunning) {
+                long now = clock.getAsLong();
+                long nextTickTime = startTime + (currentTickSnapshot() + 1) * tickMs;
+                long sleep = nextTickTime - now;
+                if (sleep > 0) {
+                    try {
+                        Thread.sleep(sleep);
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+                advance();
+            }
+        }, threadName);
+        worker.setDaemon(true);
+        worker.start();
+    }
+
+    public synchronized void stop() {
+        isRunning = false;
+        if (worker != null) {
+            worker.interrupt();
+            worker = null;
+        }
+    }
+
+    private long currentTickSnapshot() {
+        synchronized (lock) {
+            return currentTick;
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.LongSupplier;
+
+// Отслеживание доступности устройств по времени последнего показания.
+// На каждое устройство не больше одного таймера в колесе. Показание только обновляет lastSeen;
+// при срабатывании таймер проверяет, сколько устройство молчит, и либо переводит его в offline,
+// либо переставляет себя на оставшееся время. Поэтому горячий путь не трогает колесо вовсе.
+public class LivenessTracker {
+    private final HashedTimingWheel wheel;
+    private final LongSupplier clock;
+    private final Map<String, DeviceLiveness> devices = new ConcurrentHashMap<>();
+    private final List<LivenessListener> listeners = new CopyOnWriteArrayList<>();
+    private volatile long defaultTimeoutMs;
+
+    // Вызывается в потоке, передавшем показание (подключение) или в потоке колеса (отключение)
+    public interface LivenessListener {
+        void onDeviceConnected(String deviceId);
+        void onDeviceDisconnected(String deviceId, long lastSeen);
+    }
+
+    private final class DeviceLiveness {
+        final String deviceId;
+        volatile long lastSeen;
+        long timeoutMs;
+        boolean isOnline;
+        HashedTimingWheel.Timeout timeout;
+
+        DeviceLiveness(String deviceId, long timeoutMs) {
+            this.deviceId = deviceId;
+            this.timeoutMs = timeoutMs;
+        }
+    }
+
+    public LivenessTracker(HashedTimingWheel wheel, long defaultTimeoutMs) {
+        this(wheel, defaultTimeoutMs, System::currentTimeMillis);
+    }
+
+    public LivenessTracker(HashedTimingWheel wheel, long defaultTimeoutMs, LongSupplier clock) {
+        this.wheel = wheel;
+        this.defaultTimeoutMs = defaultTimeoutMs;
+        this.clock = clock;
+    }
+
+    public void addListener(LivenessListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(LivenessListener listener) {
+        listeners.remove(listener);
+    }
+
+    public void setDefaultTimeout(long timeoutMs) {
+        this.defaultTimeoutMs = timeoutMs;
+    }
+
+    // Свой таймаут для устройств с редкими показаниями
+    public void setTimeout(String deviceId, long timeoutMs) {
+        DeviceLiveness state = devices.computeIfAbsent(deviceId, id -> new DeviceLiveness(id, timeoutMs));
+        synchronized (state) {
+            state.timeoutMs = timeoutMs;
+        }
+    }
+
+    public void recordSeen(String deviceId) {
+        recordSeen(deviceId, clock.getAsLong());
+    }
+
+    public void recordSeen(String deviceId, long timestamp) {
+        DeviceLiveness state = devices.get(deviceId);
+        if (state == null) {
+            state = devices.computeIfAbsent(deviceId, id -> new DeviceLiveness(id, defaultTimeoutMs));
+        }
+
+        boolean connected = false;
+        synchronized (state) {
+            if (timestamp > state.lastSeen) {
+                state.lastSeen = timestamp;
+            }
+            if (!state.isOnline) {
+                state.isOnline = true;
+                connected = true;
+            }
+            if (state.timeout == null) {
+                DeviceLiveness target = state;
+                state.timeout = wheel.schedule(() -> checkExpired(target), state.timeoutMs);
+            }
+        }
+
+        if (connected) {
+            for (LivenessListener listener : listeners) {
+                listener.onDeviceConnected(deviceId);
+            }
+        }
+    }
+
+    public boolean isOnline(String deviceId) {
+        DeviceLiveness state = devices.get(deviceId);
+        if (state == null) return false;
+        synchronized (state) {
+            return state.isOnline;
+        }
+    }
+
+    public long getLastSeen(String deviceId) {
+        DeviceLiveness state = devices.get(deviceId);
+        return state != null ? state.lastSeen : 0;
+    }
+
+    public List<String> getOnlineDevices() {
+        List<String> online = new ArrayList<>();
+        for (DeviceLiveness state : devices.values()) {
+            synchronized (state) {
+                if (state.isOnline) online.add(state.deviceId);
+            }
+        }
+        return online;
+    }
+
+    public void removeDevice(String deviceId) {
+        DeviceLiveness state = devices.remove(deviceId);
+        if (state != null) {
+            synchronized (state) {
+                if (state.timeout != null) {
+                    state.timeout.cancel();
+                    state.timeout = null;
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        for (String deviceId : new ArrayList<>(devices.keySet())) {
+            removeDevice(deviceId);
+        }
+    }
+
+    private void checkExpired(DeviceLiveness state) {
+        long lastSeen;
+        synchronized (state) {
+            state.timeout = null;
+            if (devices.get(state.deviceId) != state) return;
+
+            long silentFor = clock.getAsLong() - state.lastSeen;
+            if (silentFor < state.timeoutMs) {
+                state.timeout = wheel.schedule(() -> checkExpired(state), state.timeoutMs - silentFor);
+                return;
+            }
+            if (!state.isOnline) return;
+            state.isOnline = false;
+            lastSeen = state.lastSeen;
+        }
+
+        for (LivenessListener listener : listeners) {
+            listener.onDeviceDisconnected(state.deviceId, lastSeen);
+        }
+    }
+}
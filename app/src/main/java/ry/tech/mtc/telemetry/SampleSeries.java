@@ -0,0 +1,90 @@
+package ry.tech.mtc.telemetry;
+
+// История одного параметра в примитивных массивах: время в мс и значение.
+// Кольцевой буфер на степень двойки; при заполнении перезаписываются самые старые точки.
+// Один писатель (append) и любое число читателей: читатель берет границы через getEnd/getStart,
+// читает точки и проверяет isValid - не перезаписал ли писатель прочитанное за это время.
+public class SampleSeries {
+    // Около 58 часов истории при шаге 200 мс, 12 байт на точку
+    public static final int DEFAULT_CAPACITY = 1 << 20;
+
+    private final int capacity;
+    private final int mask;
+    private final long[] times;
+    private final float[] values;
+
+    // Число точек, записанных за все время; позиция в массиве - index & mask
+    private volatile long end;
+
+    public SampleSeries() {
+        this(DEFAULT_CAPACITY);
+    }
+
+    public SampleSeries(int requestedCapacity) {
+        if (requestedCapacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + requestedCapacity);
+        }
+        int size = Integer.highestOneBit(requestedCapacity);
+        if (size < requestedCapacity) {
+            size <<= 1;
+        }
+        this.capacity = size;
+        this.mask = size - 1;
+        this.times = new long[size];
+        this.values = new float[size];
+    }
+
+    // Повторы и точки из прошлого отбрасываются: поиск по времени рассчитывает на строгую монотонность
+    public boolean append(long timeMs, float value) {
+        long write = end;
+        if (write > 0 && timeMs <= times[(int) ((write - 1) & mask)]) {
+            return false;
+        }
+        int slot = (int) (write & mask);
+        times[slot] = timeMs;
+        values[slot] = value;
+        end = write + 1;
+        return true;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    // Самый старый индекс, который еще не перезаписан
+    public long getStart() {
+        return Math.max(0, end - capacity);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getTime(long index) {
+        return times[(int) (index & mask)];
+    }
+
+    public float getValue(long index) {
+        return values[(int) (index & mask)];
+    }
+
+    // Индекс, начиная с которого точки уже были прочитаны, не перезаписан писателем
+    public boolean isValid(long fromIndex) {
+        return fromIndex >= end - capacity;
+    }
+
+    // Первый индекс в [from, to) со временем не меньше timeMs, или to
+    public long lowerBound(long from, long to, long timeMs) {
+        long low = from;
+        long high = to;
+        while (low < high) {
+            long mid = (low + high) >>> 1;
+            if (getTime(mid) < timeMs) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+}
@@ -0,0 +1,164 @@
+package ry.tech.mtc.telemetry;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.sensors.EnergyAccountingEngine;
+
+// Расписание опроса устройств: одна очередь с приоритетом по времени следующего опроса
+// вместо задачи на каждое устройство. Интервал каждого устройства подстраивается между
+// MIN_INTERVAL_MS и заданным потолком: при быстрых изменениях или близости к порогу он сокращается,
+// при стабильных значениях - удваивается до потолка (настройка "update_interval").
+// Не потокобезопасен: используется только в потоке движка телеметрии.
+public class SamplingScheduler {
+    // Прежний фиксированный такт симулятора - самый частый опрос
+    public static final long MIN_INTERVAL_MS = 200;
+    // Позиции списка "1 минута", "5 минут", "15 минут", "30 минут", "1 час" в настройках датчика
+    private static final long[] SETTING_INTERVALS_MS = {60_000, 300_000, 900_000, 1_800_000, 3_600_000};
+    // Исполнительные устройства (свет, кондиционер) меняются по командам пользователя
+    public static final long ACTUATOR_INTERVAL_MS = 1_000;
+    // Счетчик энергии интегрирует мощность между показаниями, а разрыв длиннее
+    // EnergyAccountingEngine.MAX_GAP_MS считается отключением: потолок ниже него при любой настройке
+    public static final long METERING_INTERVAL_MS = EnergyAccountingEngine.MAX_GAP_MS / 5;
+    // Изменение за опрос относительно диапазона порогов
+    static final double VOLATILE_CHANGE = 0.05;
+    static final double STABLE_CHANGE = 0.01;
+
+    public static final class Slot {
+        public final String deviceId;
+        long maxIntervalMs;
+        long intervalMs;
+        long dueTime;
+        double lastValue = Double.NaN;
+        boolean isQueued;
+
+        Slot(String deviceId, long maxIntervalMs) {
+            this.deviceId = deviceId;
+            this.maxIntervalMs = maxIntervalMs;
+            this.intervalMs = MIN_INTERVAL_MS;
+        }
+
+        public long getIntervalMs() {
+            return intervalMs;
+        }
+
+        public long getMaxIntervalMs() {
+            return maxIntervalMs;
+        }
+    }
+
+    private final PriorityQueue<Slot> queue = new PriorityQueue<>(
+            (a, b) -> Long.compare(a.dueTime, b.dueTime));
+    private final Map<String, Slot> slots = new HashMap<>();
+
+    // Потолок интервала по настройке устройства; позиция списка - из SensorPolicyStore или параметра "update_interval"
+    public static long intervalFor(String deviceType, Object updateIntervalSetting) {
+        if (Device.TYPE_LIGHT.equals(deviceType) || Device.TYPE_AC.equals(deviceType)) {
+            return ACTUATOR_INTERVAL_MS;
+        }
+        long interval = intervalForSetting(updateIntervalSetting);
+        if (Device.TYPE_ELECTRICITY_SENSOR.equals(deviceType)) {
+            return Math.min(interval, METERING_INTERVAL_MS);
+        }
+        return interval;
+    }
+
+    public static long intervalForSetting(Object updateIntervalSetting) {
+        int position = updateIntervalSetting instanceof Number ? ((Number) updateIntervalSetting).intValue() : 0;
+        return SETTING_INTERVALS_MS[Math.max(0, Math.min(SETTING_INTERVALS_MS.length - 1, position))];
+    }
+
+    // Первый опрос сразу: новое устройство должно появиться в интерфейсе без ожидания
+    public Slot add(String deviceId, long maxIntervalMs, long now) {
+        Slot slot = slots.get(deviceId);
+        if (slot != null) {
+            setMaxInterval(deviceId, maxIntervalMs, now);
+            return slot;
+        }
+        slot = new Slot(deviceId, Math.max(MIN_INTERVAL_MS, maxIntervalMs));
+        slots.put(deviceId, slot);
+        enqueue(slot, now);
+        return slot;
+    }
+
+    public void remove(String deviceId) {
+        Slot slot = slots.remove(deviceId);
+        if (slot != null && slot.isQueued) {
+            // Линейное удаление из очереди; устройства удаляются редко
+            queue.remove(slot);
+            slot.isQueued = false;
+        }
+    }
+
+    public void setMaxInterval(String deviceId, long maxIntervalMs, long now) {
+        Slot slot = slots.get(deviceId);
+        if (slot == null) return;
+        slot.maxIntervalMs = Math.max(MIN_INTERVAL_MS, maxIntervalMs);
+        if (slot.intervalMs > slot.maxIntervalMs) {
+            slot.intervalMs = slot.maxIntervalMs;
+        }
+        // Уже запланированный опрос не должен ждать дольше нового потолка
+        if (slot.isQueued && slot.dueTime > now + slot.intervalMs) {
+            queue.remove(slot);
+            enqueue(slot, now + slot.intervalMs);
+        }
+    }
+
+    // Long.MAX_VALUE, если опрашивать нечего
+    public long getNextDueTime() {
+        Slot head = queue.peek();
+        return head != null ? head.dueTime : Long.MAX_VALUE;
+    }
+
+    // Следующее устройство, время опроса которого наступило, или null.
+    // После опроса вызывающий обязан вернуть его в очередь через complete или completeWithoutValue.
+    public Slot pollDue(long now) {
+        Slot head = queue.peek();
+        if (head == null || head.dueTime > now) return null;
+        queue.poll();
+        head.isQueued = false;
+        return head;
+    }
+
+    // value - основной параметр показания, range - ширина диапазона порогов (NaN, если порогов нет),
+    // isNearThreshold - значение в зоне предупреждения или за порогом
+    public void complete(Slot slot, long now, double value, double range, boolean isNearThreshold) {
+        if (!slots.containsKey(slot.deviceId)) return; // удалено во время опроса
+        double scale = range > 0 ? range : Math.max(1.0, Math.abs(value));
+        double change = Double.isNaN(slot.lastValue) ? 0 : Math.abs(value - slot.lastValue) / scale;
+        slot.lastValue = value;
+
+        if (isNearThreshold || change > VOLATILE_CHANGE) {
+            // Быстрая реакция: интервал сокращается в четыре раза
+            slot.intervalMs = Math.max(MIN_INTERVAL_MS, slot.intervalMs / 4);
+        } else if (change < STABLE_CHANGE) {
+            // Медленный откат: удвоение до потолка
+            slot.intervalMs = Math.min(slot.maxIntervalMs, slot.intervalMs * 2);
+        }
+        // От now, а не от прошлого dueTime: после задержки потока опросы не догоняют пачкой
+        enqueue(slot, now + slot.intervalMs);
+    }
+
+    // Устройство не прислало показание (нет связи, не датчик) - интервал стремится к потолку
+    public void completeWithoutValue(Slot slot, long now) {
+        if (!slots.containsKey(slot.deviceId)) return;
+        slot.intervalMs = Math.min(slot.maxIntervalMs, slot.intervalMs * 2);
+        enqueue(slot, now + slot.intervalMs);
+    }
+
+    public Slot getSlot(String deviceId) {
+        return slots.get(deviceId);
+    }
+
+    public int size() {
+        return slots.size();
+    }
+
+    private void enqueue(Slot slot, long dueTime) {
+        slot.dueTime = dueTime;
+        slot.isQueued = true;
+        queue.add(slot);
+    }
+}
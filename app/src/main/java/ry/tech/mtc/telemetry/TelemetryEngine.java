@@ -0,0 +1,290 @@
+package ry.tech.mtc.telemetry;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import ry.tech.mtc.MockDeviceData;
+import ry.tech.mtc.imitation.EnhancedDeviceSimulator;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.metrics.ReadingTracer;
+import ry.tech.mtc.metrics.TraceContext;
+import ry.tech.mtc.metrics.TraceStage;
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.models.DeviceHealth;
+import ry.tech.mtc.sensors.SensorPolicyStore;
+import ry.tech.mtc.startup.AppStartup;
+
+// Единый на процесс движок телеметрии: симуляция, обработка, оповещения и мониторинг здоровья.
+// Работает в собственном фоновом потоке, экраны получают снимки в главном потоке через IoTService.
+public class TelemetryEngine {
+    private static final String TAG = "TelemetryEngine";
+    private static final int HEALTH_UPDATE_INTERVAL = 5000; // 5 секунд
+    private static final long HEARTBEAT_TIMEOUT = 3000; // запас сверх интервала опроса устройства
+    private static final long LIVENESS_TICK = 100;
+    private static final int LIVENESS_WHEEL_SIZE = 512;
+    private static TelemetryEngine instance;
+
+    private final HandlerThread engineThread;
+    private final Handler engineHandler;
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    // Создается в потоке движка при первом обращении: сервисы датчиков не поднимаются в главном потоке
+    private EnhancedDeviceSimulator simulator;
+    private final DeviceHealthMonitor healthMonitor = new DeviceHealthMonitor();
+    private final HashedTimingWheel livenessWheel = new HashedTimingWheel(LIVENESS_TICK, LIVENESS_WHEEL_SIZE);
+    private final LivenessTracker livenessTracker = new LivenessTracker(livenessWheel, HEARTBEAT_TIMEOUT);
+    private final Map<String, DeviceSnapshot> latestSnapshots = new ConcurrentHashMap<>();
+    private final DeviceHistoryStore history = new DeviceHistoryStore();
+    private final List<TelemetryListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<TelemetryListener> backgroundListeners = new CopyOnWriteArrayList<>();
+    private final ReadingTracer tracer = ReadingTracer.getInstance();
+    private volatile List<DeviceHealth> latestHealth = Collections.emptyList();
+    private boolean isRunning = false;
+
+    // Методы вызываются в главном потоке, для addBackgroundListener - в потоке движка
+    public interface TelemetryListener {
+        default void onDeviceSnapshot(DeviceSnapshot snapshot) {}
+        default void onDeviceStatusChanged(String deviceId, boolean isConnected) {}
+        default void onDeviceHealthUpdated(List<DeviceHealth> healthList) {}
+    }
+
+    private TelemetryEngine() {
+        engineThread = new HandlerThread(TAG);
+        engineThread.start();
+        engineHandler = new Handler(engineThread.getLooper());
+
+        // Статус подключения определяется по пропущенным показаниям, события приходят в поток движка
+        livenessTracker.addListener(new LivenessTracker.LivenessListener() {
+            @Override
+            public void onDeviceConnected(String deviceId) {
+                applyLiveness(deviceId, true);
+            }
+
+            @Override
+            public void onDeviceDisconnected(String deviceId, long lastSeen) {
+                engineHandler.post(() -> applyLiveness(deviceId, false));
+            }
+        });
+        livenessWheel.start("LivenessWheel");
+
+        SensorPolicyStore.getInstance().addListener((snapshot, changedDeviceIds) ->
+                engineHandler.post(() -> applySamplingPolicy(changedDeviceIds)));
+
+        MetricsRegistry metrics = MetricsRegistry.getInstance();
+        metrics.gauge("telemetry.devices", latestSnapshots::size);
+        metrics.gauge("liveness.timers", livenessWheel::getPendingCount);
+        metrics.gauge("liveness.online", () -> livenessTracker.getOnlineDevices().size());
+        metrics.gauge("history.points", history::getPointCount);
+        metrics.gauge("history.bytes", history::getSizeBytes);
+    }
+
+    public static synchronized TelemetryEngine getInstance() {
+        if (instance == null) {
+            instance = new TelemetryEngine();
+        }
+        return instance;
+    }
+
+    public void start() {
+        engineHandler.post(() -> {
+            if (isRunning) return;
+            isRunning = true;
+            for (Device device : MockDeviceData.getAllDevices()) {
+                registerDevice(device);
+            }
+            getSimulator().startSimulation();
+            engineHandler.postDelayed(healthTask, HEALTH_UPDATE_INTERVAL);
+        });
+    }
+
+    public void stop() {
+        engineHandler.post(() -> {
+            isRunning = false;
+            if (simulator != null) {
+                simulator.stopSimulation();
+            }
+            livenessTracker.clear();
+            engineHandler.removeCallbacks(healthTask);
+        });
+    }
+
+    public void addDevice(Device device) {
+        engineHandler.post(() -> registerDevice(device));
+    }
+
+    // Новый потолок интервала опроса для изменившихся настроек; адаптивный интервал не превысит его.
+    // Вызывается в потоке движка и читает актуальный снимок SensorPolicyStore
+    private void applySamplingPolicy(Set<String> changedDeviceIds) {
+        if (simulator == null) return;
+        for (String deviceId : changedDeviceIds) {
+            Device device = MockDeviceData.getDevice(deviceId);
+            if (device == null || simulator.getSamplingSlot(deviceId) == null) continue;
+            long maxIntervalMs = EnhancedDeviceSimulator.getConfiguredInterval(deviceId, device.getType());
+            simulator.setSamplingInterval(deviceId, maxIntervalMs);
+            livenessTracker.setTimeout(deviceId, livenessTimeoutFor(maxIntervalMs));
+        }
+    }
+
+    public void removeDevice(String deviceId) {
+        engineHandler.post(() -> {
+            getSimulator().removeDevice(deviceId);
+            healthMonitor.removeDevice(deviceId);
+            livenessTracker.removeDevice(deviceId);
+            latestSnapshots.remove(deviceId);
+            history.removeDevice(deviceId);
+        });
+    }
+
+    public void addListener(TelemetryListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TelemetryListener listener) {
+        listeners.remove(listener);
+    }
+
+    // Слушатель вызывается прямо в потоке движка, без пересылки в главный поток.
+    // Подходит для потребителей, которые сами решают, что и когда публиковать (например, через postValue).
+    public void addBackgroundListener(TelemetryListener listener) {
+        backgroundListeners.add(listener);
+    }
+
+    public void removeBackgroundListener(TelemetryListener listener) {
+        backgroundListeners.remove(listener);
+    }
+
+    public DeviceSnapshot getLatestSnapshot(String deviceId) {
+        return latestSnapshots.get(deviceId);
+    }
+
+    public List<DeviceSnapshot> getLatestSnapshots() {
+        return new ArrayList<>(latestSnapshots.values());
+    }
+
+    // Сжатая история показаний за DeviceHistoryStore.RETENTION_MS; читать можно из любого потока
+    public DeviceHistoryStore getHistory() {
+        return history;
+    }
+
+    public List<DeviceHealth> getLatestHealth() {
+        return latestHealth;
+    }
+
+    private void registerDevice(Device device) {
+        EnhancedDeviceSimulator deviceSimulator = getSimulator();
+        if (deviceSimulator.getDeviceData(device.getId()) == null) {
+            deviceSimulator.addDevice(device.getId(), device.getType());
+        }
+        // Редко опрашиваемый датчик не должен считаться отключенным между показаниями
+        SamplingScheduler.Slot slot = deviceSimulator.getSamplingSlot(device.getId());
+        if (slot != null) {
+            livenessTracker.setTimeout(device.getId(), livenessTimeoutFor(slot.getMaxIntervalMs()));
+        }
+        healthMonitor.addDevice(device);
+        history.trackDevice(device.getId(), device.getType());
+        // Устройство, не приславшее ни одного показания, тоже будет переведено в offline
+        livenessTracker.recordSeen(device.getId());
+    }
+
+    // Два пропущенных опроса с максимальным интервалом плюс запас
+    private static long livenessTimeoutFor(long maxIntervalMs) {
+        return maxIntervalMs * 2 + HEARTBEAT_TIMEOUT;
+    }
+
+    // Вызывается в потоке движка
+    private EnhancedDeviceSimulator getSimulator() {
+        if (simulator == null) {
+            AppStartup.getInstance().require(AppStartup.SIMULATION);
+            simulator = new EnhancedDeviceSimulator(engineThread.getLooper());
+            simulator.setUpdateListener(new EnhancedDeviceSimulator.SimulationUpdateListener() {
+                @Override
+                public void onDeviceDataUpdated(String deviceId, EnhancedDeviceSimulator.DeviceSimulationData data) {
+                    livenessTracker.recordSeen(deviceId);
+                    DeviceSnapshot previous = latestSnapshots.get(deviceId);
+                    long version = previous != null ? previous.version + 1 : 1;
+                    publishSnapshot(new DeviceSnapshot(deviceId, version, data));
+                }
+
+                @Override
+                public void onDeviceStatusChanged(String deviceId, boolean isConnected) {
+                    publishStatus(deviceId, isConnected);
+                }
+            });
+        }
+        return simulator;
+    }
+
+    public LivenessTracker getLivenessTracker() {
+        return livenessTracker;
+    }
+
+    // Вызывается в потоке движка
+    private void applyLiveness(String deviceId, boolean isOnline) {
+        // Устройство могло снова прислать показание, пока событие шло в очередь
+        if (livenessTracker.isOnline(deviceId) != isOnline) return;
+        MockDeviceData.setDeviceOnline(deviceId, isOnline);
+        publishStatus(deviceId, isOnline);
+    }
+
+    private final Runnable healthTask = new Runnable() {
+        @Override
+        public void run() {
+            if (!isRunning) return;
+            List<DeviceHealth> healthList = healthMonitor.updateDevicesHealth();
+            latestHealth = Collections.unmodifiableList(healthList);
+            mainHandler.post(() -> {
+                for (TelemetryListener listener : listeners) {
+                    listener.onDeviceHealthUpdated(healthList);
+                }
+            });
+            engineHandler.postDelayed(this, HEALTH_UPDATE_INTERVAL);
+        }
+    };
+
+    private void publishSnapshot(DeviceSnapshot snapshot) {
+        TraceContext trace = snapshot.trace;
+        latestSnapshots.put(snapshot.deviceId, snapshot);
+        history.record(snapshot);
+        for (TelemetryListener listener : backgroundListeners) {
+            listener.onDeviceSnapshot(snapshot);
+        }
+        if (trace != null) {
+            trace.mark(TraceStage.PUBLISH);
+        }
+        if (listeners.isEmpty()) {
+            tracer.finish(trace);
+            return;
+        }
+        mainHandler.post(() -> {
+            if (trace != null) {
+                trace.mark(TraceStage.DELIVER);
+            }
+            for (TelemetryListener listener : listeners) {
+                listener.onDeviceSnapshot(snapshot);
+            }
+            // Если ни один экран не взялся отрисовать снимок, трассировка заканчивается доставкой
+            if (trace != null && !trace.isRenderPending()) {
+                tracer.finish(trace);
+            }
+        });
+    }
+
+    private void publishStatus(String deviceId, boolean isConnected) {
+        for (TelemetryListener listener : backgroundListeners) {
+            listener.onDeviceStatusChanged(deviceId, isConnected);
+        }
+        mainHandler.post(() -> {
+            for (TelemetryListener listener : listeners) {
+                listener.onDeviceStatusChanged(deviceId, isConnected);
+            }
+        });
+    }
+}
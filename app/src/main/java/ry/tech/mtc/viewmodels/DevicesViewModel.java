@@ -5,60 +5,150 @@ import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.ViewModel;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import ry.tech.mtc.imitation.EnhancedDeviceSimulator;
 import ry.tech.mtc.models.Device;
+import ry.tech.mtc.telemetry.DeviceSnapshot;
+import ry.tech.mtc.telemetry.TelemetryEngine;
 
 public class DevicesViewModel extends ViewModel {
-    private final MutableLiveData<List<Device>> devices = new MutableLiveData<>(new ArrayList<>());
-    private final EnhancedDeviceSimulator simulator;
+    // Список меняется только при добавлении/удалении устройств и публикуется неизменяемой копией
+    private final MutableLiveData<List<Device>> devices = new MutableLiveData<>(Collections.emptyList());
+    private final List<Device> deviceList = new ArrayList<>();
+    // Общий движок процесса вместо собственного симулятора
+    private final TelemetryEngine telemetryEngine;
+
+    // Потоки по устройствам и параметрам создаются лениво, только для тех, на кого подписан UI.
+    // postValue в LiveData схлопывает промежуточные значения: медленный наблюдатель видит только последнее.
+    private final Map<String, MutableLiveData<DeviceSnapshot>> deviceStreams = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, ParameterLiveData>> parameterStreams = new ConcurrentHashMap<>();
+    private final Map<String, MutableLiveData<Boolean>> connectionStreams = new ConcurrentHashMap<>();
+
+    private final TelemetryEngine.TelemetryListener engineListener = new TelemetryEngine.TelemetryListener() {
+        @Override
+        public void onDeviceSnapshot(DeviceSnapshot snapshot) {
+            publishSnapshot(snapshot);
+        }
+
+        @Override
+        public void onDeviceStatusChanged(String deviceId, boolean isConnected) {
+            MutableLiveData<Boolean> stream = connectionStreams.get(deviceId);
+            if (stream != null) {
+                stream.postValue(isConnected);
+            }
+        }
+    };
+
+    // Поток значения одного параметра; публикует только реально изменившиеся значения
+    private static class ParameterLiveData extends MutableLiveData<Double> {
+        private volatile double lastPosted = Double.NaN;
+
+        ParameterLiveData(double initial) {
+            super(Double.isNaN(initial) ? null : initial);
+            lastPosted = initial;
+        }
+
+        void offer(double value) {
+            if (Double.isNaN(value) || Double.compare(value, lastPosted) == 0) return;
+            lastPosted = value;
+            postValue(value);
+        }
+    }
 
     public DevicesViewModel() {
-        simulator = new EnhancedDeviceSimulator();
+        telemetryEngine = TelemetryEngine.getInstance();
+        telemetryEngine.addBackgroundListener(engineListener);
         initializeDevices();
     }
 
     private void initializeDevices() {
-        List<Device> initialDevices = new ArrayList<>();
-        initialDevices.add(new Device("1", "Умная лампа", "light"));
-        initialDevices.add(new Device("2", "Кондиционер", "ac"));
-        initialDevices.add(new Device("3", "Датчик температуры", "temperature_sensor"));
-        initialDevices.add(new Device("4", "Датчик влажности", "humidity_sensor"));
-        initialDevices.add(new Device("5", "Датчик воды", Device.TYPE_WATER_SENSOR));
-        initialDevices.add(new Device("6", "Датчик электричества", Device.TYPE_ELECTRICITY_SENSOR));
-        initialDevices.add(new Device("7", "Датчик воздуха", Device.TYPE_AIR_SENSOR));
-
-        for (Device device : initialDevices) {
-            simulator.addDevice(device.getId(), device.getType());
+        deviceList.add(new Device("1", "Умная лампа", "light"));
+        deviceList.add(new Device("2", "Кондиционер", "ac"));
+        deviceList.add(new Device("3", "Датчик температуры", "temperature_sensor"));
+        deviceList.add(new Device("4", "Датчик влажности", "humidity_sensor"));
+        deviceList.add(new Device("5", "Датчик воды", Device.TYPE_WATER_SENSOR));
+        deviceList.add(new Device("6", "Датчик электричества", Device.TYPE_ELECTRICITY_SENSOR));
+        deviceList.add(new Device("7", "Датчик воздуха", Device.TYPE_AIR_SENSOR));
+
+        for (Device device : deviceList) {
+            telemetryEngine.addDevice(device);
         }
 
-        devices.setValue(initialDevices);
+        publishDeviceList();
     }
 
     public LiveData<List<Device>> getDevices() {
         return devices;
     }
 
+    // Последний снимок устройства с номером версии
+    public LiveData<DeviceSnapshot> getDeviceState(String deviceId) {
+        return deviceStreams.computeIfAbsent(deviceId,
+                id -> new MutableLiveData<>(telemetryEngine.getLatestSnapshot(id)));
+    }
+
+    // Значение одного параметра устройства ("temperature", "humidity", "power", ...)
+    public LiveData<Double> getParameter(String deviceId, String parameter) {
+        Map<String, ParameterLiveData> streams =
+                parameterStreams.computeIfAbsent(deviceId, id -> new ConcurrentHashMap<>());
+        return streams.computeIfAbsent(parameter, name -> {
+            DeviceSnapshot latest = telemetryEngine.getLatestSnapshot(deviceId);
+            return new ParameterLiveData(latest != null ? latest.getReading(name) : Double.NaN);
+        });
+    }
+
+    public LiveData<Boolean> getConnectionState(String deviceId) {
+        return connectionStreams.computeIfAbsent(deviceId, id -> {
+            DeviceSnapshot latest = telemetryEngine.getLatestSnapshot(id);
+            return new MutableLiveData<>(latest == null || latest.isConnected);
+        });
+    }
+
     public void addDevice(Device device) {
-        List<Device> currentDevices = devices.getValue();
-        if (currentDevices != null) {
-            currentDevices.add(device);
-            simulator.addDevice(device.getId(), device.getType());
-            devices.setValue(currentDevices);
-        }
+        deviceList.add(device);
+        telemetryEngine.addDevice(device);
+        publishDeviceList();
     }
 
     public void removeDevice(Device device) {
-        List<Device> currentDevices = devices.getValue();
-        if (currentDevices != null) {
-            currentDevices.remove(device);
-            simulator.removeDevice(device.getId());
-            devices.setValue(currentDevices);
+        if (deviceList.remove(device)) {
+            telemetryEngine.removeDevice(device.getId());
+            deviceStreams.remove(device.getId());
+            parameterStreams.remove(device.getId());
+            connectionStreams.remove(device.getId());
+            publishDeviceList();
+        }
+    }
+
+    public TelemetryEngine getTelemetryEngine() {
+        return telemetryEngine;
+    }
+
+    // Вызывается в потоке движка
+    private void publishSnapshot(DeviceSnapshot snapshot) {
+        MutableLiveData<DeviceSnapshot> deviceStream = deviceStreams.get(snapshot.deviceId);
+        if (deviceStream != null) {
+            deviceStream.postValue(snapshot);
         }
+
+        Map<String, ParameterLiveData> streams = parameterStreams.get(snapshot.deviceId);
+        if (streams != null) {
+            for (Map.Entry<String, ParameterLiveData> entry : streams.entrySet()) {
+                entry.getValue().offer(snapshot.getReading(entry.getKey()));
+            }
+        }
+    }
+
+    private void publishDeviceList() {
+        devices.setValue(Collections.unmodifiableList(new ArrayList<>(deviceList)));
     }
 
-    public EnhancedDeviceSimulator getSimulator() {
-        return simulator;
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        telemetryEngine.removeBackgroundListener(engineListener);
     }
-}
\ No newline at end of file
+}
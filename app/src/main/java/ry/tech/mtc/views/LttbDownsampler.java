@@ -0,0 +1,84 @@
+package ry.tech.mtc.views;
+
+import ry.tech.mtc.telemetry.SampleSeries;
+
+// Прореживание ряда алгоритмом Largest-Triangle-Three-Buckets (Steinarsson, 2013).
+// Точки делятся на threshold - 2 корзины; из каждой берется точка, образующая наибольший треугольник
+// с уже выбранной точкой слева и средним следующей корзины. В отличие от усреднения сохраняет пики.
+// Первая и последняя точки сохраняются всегда. Работает за один проход без выделения памяти.
+public final class LttbDownsampler {
+
+    private LttbDownsampler() {
+    }
+
+    // Прореживает точки [from, to) в outTimes/outValues, возвращает число выбранных точек.
+    // Если точек не больше threshold, они копируются как есть.
+    public static int downsample(SampleSeries series, long from, long to, int threshold,
+                                 long[] outTimes, float[] outValues) {
+        long count = to - from;
+        if (count <= 0) return 0;
+        if (count <= threshold) {
+            for (int i = 0; i < count; i++) {
+                copy(series, from + i, i, outTimes, outValues);
+            }
+            return (int) count;
+        }
+        if (threshold < 3) {
+            // Корзин не остается: только концы ряда
+            if (threshold <= 0) return 0;
+            copy(series, from, 0, outTimes, outValues);
+            if (threshold == 1) return 1;
+            copy(series, to - 1, 1, outTimes, outValues);
+            return 2;
+        }
+
+        // Время отсчитывается от первой точки, чтобы double не терял точность на эпохальных мс
+        long baseTime = series.getTime(from);
+        double bucketSize = (double) (count - 2) / (threshold - 2);
+        long selected = from;
+        int size = 0;
+        copy(series, from, size++, outTimes, outValues);
+
+        for (int bucket = 0; bucket < threshold - 2; bucket++) {
+            long rangeStart = from + (long) (bucket * bucketSize) + 1;
+            long rangeEnd = from + (long) ((bucket + 1) * bucketSize) + 1;
+
+            // Среднее следующей корзины; для последней корзины - последняя точка
+            long nextStart = rangeEnd;
+            long nextEnd = Math.min(from + (long) ((bucket + 2) * bucketSize) + 1, to);
+            double averageTime = 0;
+            double averageValue = 0;
+            for (long i = nextStart; i < nextEnd; i++) {
+                averageTime += series.getTime(i) - baseTime;
+                averageValue += series.getValue(i);
+            }
+            long nextCount = nextEnd - nextStart;
+            averageTime /= nextCount;
+            averageValue /= nextCount;
+
+            double selectedTime = series.getTime(selected) - baseTime;
+            double selectedValue = series.getValue(selected);
+            double maxArea = -1;
+            long best = rangeStart;
+            for (long i = rangeStart; i < rangeEnd; i++) {
+                // Удвоенная площадь треугольника; множитель 1/2 на выбор не влияет
+                double area = Math.abs((selectedTime - averageTime) * (series.getValue(i) - selectedValue)
+                        - (selectedTime - (series.getTime(i) - baseTime)) * (averageValue - selectedValue));
+                if (area > maxArea) {
+                    maxArea = area;
+                    best = i;
+                }
+            }
+            copy(series, best, size++, outTimes, outValues);
+            selected = best;
+        }
+
+        copy(series, to - 1, size++, outTimes, outValues);
+        return size;
+    }
+
+    private static void copy(SampleSeries series, long index, int position, long[] outTimes, float[] outValues) {
+        outTimes[position] = series.getTime(index);
+        outValues[position] = series.getValue(index);
+    }
+}
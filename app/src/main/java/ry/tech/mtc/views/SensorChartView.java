@@ -0,0 +1,292 @@
+package ry.tech.mtc.views;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Color;
+import android.graphics.Paint;
+import android.graphics.Path;
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Looper;
+import android.os.Process;
+import android.util.AttributeSet;
+import android.util.TypedValue;
+import android.view.View;
+
+import java.util.Locale;
+
+import ry.tech.mtc.metrics.LatencyHistogram;
+import ry.tech.mtc.metrics.MetricsRegistry;
+import ry.tech.mtc.telemetry.SampleSeries;
+
+// График истории параметра из SampleSeries.
+// Прореживание до ширины в пикселях (LTTB) выполняется в фоновом потоке в один из двух кадров,
+// готовый кадр подменяется в главном потоке. Новые точки после последнего прореживания дорисовываются
+// как есть, пока их немного, поэтому каждое показание не требует пересчета всей истории.
+// onDraw не выделяет память: Path, Paint и подписи готовятся заранее.
+public class SensorChartView extends View {
+    // Сколько сырых точек дорисовывается поверх кадра до нового прореживания
+    private static final int MIN_TAIL_POINTS = 16;
+    private static final int MAX_TAIL_POINTS = 512;
+    private static final int MAX_LAPPED_RETRIES = 3;
+    private static final float VALUE_PADDING = 0.1f;
+
+    private static Handler decimationHandler;
+
+    private final Paint linePaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Paint gridPaint = new Paint();
+    private final Paint labelPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+    private final Path linePath = new Path();
+    private final Handler mainHandler = new Handler(Looper.getMainLooper());
+    private final LatencyHistogram decimateLatency = MetricsRegistry.getInstance().histogram("chart.decimate");
+    private final LatencyHistogram drawLatency = MetricsRegistry.getInstance().histogram("chart.draw");
+
+    // Передний кадр читает onDraw, задний заполняет фоновый поток; меняются местами в swapTask
+    private final Frame[] frames = {new Frame(), new Frame()};
+    private int frontFrame;
+    private boolean isDecimating;
+
+    private SampleSeries series;
+    private long windowMs = 24 * 60 * 60 * 1000L;
+    private int pointBudget;
+
+    private final Runnable decimateTask = this::decimate;
+    private final Runnable swapTask = this::swapFrames;
+
+    // Результат прореживания: точки, индекс следующей необработанной точки ряда, диапазон значений
+    private static class Frame {
+        SampleSeries source;
+        long[] times = new long[0];
+        float[] values = new float[0];
+        int size;
+        long endIndex;
+        float min;
+        float max;
+        String minLabel = "";
+        String maxLabel = "";
+
+        // Параметры запроса, выставляются в главном потоке перед отправкой в фон
+        long windowMs;
+        int threshold;
+
+        void ensureCapacity(int capacity) {
+            if (times.length < capacity) {
+                times = new long[capacity];
+                values = new float[capacity];
+            }
+        }
+    }
+
+    public SensorChartView(Context context) {
+        this(context, null);
+    }
+
+    public SensorChartView(Context context, AttributeSet attrs) {
+        super(context, attrs);
+        float density = getResources().getDisplayMetrics().density;
+        linePaint.setStyle(Paint.Style.STROKE);
+        linePaint.setStrokeWidth(2 * density);
+        linePaint.setStrokeJoin(Paint.Join.ROUND);
+        linePaint.setColor(Color.WHITE);
+        gridPaint.setColor(0x33FFFFFF);
+        gridPaint.setStrokeWidth(density);
+        labelPaint.setColor(0xFF808080);
+        labelPaint.setTextSize(TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_SP, 10,
+                getResources().getDisplayMetrics()));
+    }
+
+    private static synchronized Handler getDecimationHandler() {
+        if (decimationHandler == null) {
+            HandlerThread thread = new HandlerThread("ChartDecimation", Process.THREAD_PRIORITY_BACKGROUND);
+            thread.start();
+            decimationHandler = new Handler(thread.getLooper());
+        }
+        return decimationHandler;
+    }
+
+    public void setSeries(SampleSeries series) {
+        this.series = series;
+        frames[frontFrame].size = 0;
+        frames[frontFrame].endIndex = 0;
+        requestDecimation();
+        invalidate();
+    }
+
+    // Ширина окна по времени; по умолчанию последние сутки
+    public void setWindow(long windowMs) {
+        this.windowMs = windowMs;
+        requestDecimation();
+    }
+
+    public void setLineColor(int color) {
+        linePaint.setColor(color);
+        invalidate();
+    }
+
+    // Вызывается в главном потоке после добавления точек в ряд
+    public void notifyDataChanged() {
+        if (series == null) return;
+        Frame frame = frames[frontFrame];
+        if (frame.source != series) {
+            requestDecimation();
+            return;
+        }
+        long end = series.getEnd();
+        long tail = end - frame.endIndex;
+        if (tail <= 0) return;
+
+        float last = series.getValue(end - 1);
+        long columnMs = pointBudget > 0 ? windowMs / pointBudget : windowMs;
+        boolean isTailLong = tail >= Math.max(MIN_TAIL_POINTS, Math.min(MAX_TAIL_POINTS, pointBudget / 8));
+        // Окно сдвинулось больше чем на столбец - прореженные точки слева устарели
+        boolean isWindowShifted = frame.size > 0 && series.getTime(end - 1) - frame.times[frame.size - 1] > columnMs;
+        boolean isOutOfRange = frame.size == 0 || last < frame.min || last > frame.max;
+        if (isTailLong || isWindowShifted || isOutOfRange) {
+            requestDecimation();
+        }
+        postInvalidateOnAnimation();
+    }
+
+    @Override
+    protected void onSizeChanged(int width, int height, int oldWidth, int oldHeight) {
+        super.onSizeChanged(width, height, oldWidth, oldHeight);
+        // Одна точка на столбец пикселей: больше на экране не различить
+        pointBudget = Math.max(3, width - getPaddingLeft() - getPaddingRight());
+        requestDecimation();
+    }
+
+    private void requestDecimation() {
+        if (series == null || pointBudget == 0 || isDecimating) return;
+        Frame back = frames[1 - frontFrame];
+        back.source = series;
+        back.windowMs = windowMs;
+        back.threshold = pointBudget;
+        isDecimating = true;
+        getDecimationHandler().post(decimateTask);
+    }
+
+    // Фоновый поток: заполняет задний кадр
+    private void decimate() {
+        long start = System.nanoTime();
+        Frame back = frames[1 - frontFrame];
+        SampleSeries source = back.source;
+        back.ensureCapacity(back.threshold);
+
+        for (int attempt = 0; attempt < MAX_LAPPED_RETRIES; attempt++) {
+            long end = source.getEnd();
+            long first = source.getStart();
+            if (end == first) {
+                back.size = 0;
+                back.endIndex = end;
+                break;
+            }
+            long lastTime = source.getTime(end - 1);
+            long from = source.lowerBound(first, end, lastTime - back.windowMs);
+            back.size = LttbDownsampler.downsample(source, from, end, back.threshold, back.times, back.values);
+            back.endIndex = end;
+            // Писатель мог перезаписать начало окна, пока мы читали, - тогда считаем заново
+            if (source.isValid(from)) break;
+        }
+
+        float min = Float.MAX_VALUE;
+        float max = -Float.MAX_VALUE;
+        for (int i = 0; i < back.size; i++) {
+            min = Math.min(min, back.values[i]);
+            max = Math.max(max, back.values[i]);
+        }
+        back.min = min;
+        back.max = max;
+        if (back.size > 0) {
+            back.minLabel = String.format(Locale.ROOT, "%.1f", min);
+            back.maxLabel = String.format(Locale.ROOT, "%.1f", max);
+        }
+        decimateLatency.recordSince(start);
+        mainHandler.post(swapTask);
+    }
+
+    private void swapFrames() {
+        isDecimating = false;
+        Frame ready = frames[1 - frontFrame];
+        if (ready.source == series) {
+            frontFrame = 1 - frontFrame;
+        }
+        invalidate();
+        if (ready.source != series || ready.windowMs != windowMs || ready.threshold != pointBudget) {
+            // Ряд, окно или размер поменялись во время пересчета
+            requestDecimation();
+        } else {
+            // Пока шел пересчет, могли прийти точки, требующие следующего
+            notifyDataChanged();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        long start = System.nanoTime();
+        float left = getPaddingLeft();
+        float top = getPaddingTop();
+        float right = getWidth() - getPaddingRight();
+        float bottom = getHeight() - getPaddingBottom();
+        for (int i = 0; i < 3; i++) {
+            float y = top + (bottom - top) * i / 2f;
+            canvas.drawLine(left, y, right, y, gridPaint);
+        }
+
+        Frame frame = frames[frontFrame];
+        if (series == null || frame.source != series) return;
+        long end = series.getEnd();
+        long tailFrom = Math.max(Math.max(frame.endIndex, end - MAX_TAIL_POINTS), series.getStart());
+        if (frame.size == 0 && tailFrom >= end) return;
+
+        // Диапазон оси: кадр плюс еще не прореженный хвост
+        long endTime = tailFrom < end ? series.getTime(end - 1) : frame.times[frame.size - 1];
+        long firstTime = frame.size > 0 ? frame.times[0] : series.getTime(tailFrom);
+        long startTime = Math.max(endTime - windowMs, firstTime);
+        float min = frame.size > 0 ? frame.min : Float.MAX_VALUE;
+        float max = frame.size > 0 ? frame.max : -Float.MAX_VALUE;
+        for (long i = tailFrom; i < end; i++) {
+            float value = series.getValue(i);
+            min = Math.min(min, value);
+            max = Math.max(max, value);
+        }
+        float span = Math.max(max - min, 1e-3f);
+        float valueLow = min - span * VALUE_PADDING;
+        float valueHigh = max + span * VALUE_PADDING;
+        float xScale = (right - left) / Math.max(1, endTime - startTime);
+        float yScale = (bottom - top) / (valueHigh - valueLow);
+
+        linePath.rewind();
+        boolean isFirst = true;
+        for (int i = 0; i < frame.size; i++) {
+            if (frame.times[i] < startTime) continue;
+            float x = left + (frame.times[i] - startTime) * xScale;
+            float y = bottom - (frame.values[i] - valueLow) * yScale;
+            if (isFirst) {
+                linePath.moveTo(x, y);
+                isFirst = false;
+            } else {
+                linePath.lineTo(x, y);
+            }
+        }
+        for (long i = tailFrom; i < end; i++) {
+            float x = left + (series.getTime(i) - startTime) * xScale;
+            float y = bottom - (series.getValue(i) - valueLow) * yScale;
+            if (isFirst) {
+                linePath.moveTo(x, y);
+                isFirst = false;
+            } else {
+                linePath.lineTo(x, y);
+            }
+        }
+        canvas.drawPath(linePath, linePaint);
+
+        // Подписи - границы прореженного кадра, на их фактической высоте
+        if (frame.size > 0) {
+            float textOffset = labelPaint.getTextSize();
+            canvas.drawText(frame.maxLabel, left, bottom - (frame.max - valueLow) * yScale - textOffset / 3, labelPaint);
+            canvas.drawText(frame.minLabel, left, bottom - (frame.min - valueLow) * yScale + textOffset, labelPaint);
+        }
+        drawLatency.recordSince(start);
+    }
+}
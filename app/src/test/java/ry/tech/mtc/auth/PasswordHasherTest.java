@@ -0,0 +1,64 @@
+package ry.tech.mtc.auth;
+
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+import static org.junit.Assert.*;
+
+public class PasswordHasherTest {
+
+    @Test
+    public void pbkdf2_matchesJdkImplementation() throws Exception {
+        byte[] salt = "0123456789abcdef".getBytes(StandardCharsets.UTF_8);
+        // 40 байт - два блока HMAC, второй обрезается
+        PBEKeySpec spec = new PBEKeySpec("пароль".toCharArray(), salt, 1000, 40 * 8);
+        byte[] expected = SecretKeyFactory.getInstance("PBKDF2WithHmacSHA256").generateSecret(spec).getEncoded();
+
+        byte[] actual = PasswordHasher.pbkdf2("пароль".getBytes(StandardCharsets.UTF_8), salt, 1000, 40);
+        assertArrayEquals(expected, actual);
+    }
+
+    @Test
+    public void verify_acceptsOnlyOriginalPassword() {
+        PasswordHasher hasher = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+        String encoded = hasher.hash("secret");
+
+        assertTrue(encoded.startsWith(PasswordHasher.PREFIX + "$10000$"));
+        assertTrue(PasswordHasher.verify("secret", encoded));
+        assertFalse(PasswordHasher.verify("Secret", encoded));
+        // Соль случайная: одинаковые пароли дают разные строки
+        assertNotEquals(encoded, hasher.hash("secret"));
+    }
+
+    @Test
+    public void verify_rejectsMalformedStrings() {
+        assertFalse(PasswordHasher.verify("x", "K7gNU3sdo+OL0wNhqoVWhr3g6s1xYv72ol/pe/Unols="));
+        assertFalse(PasswordHasher.verify("x", "pbkdf2-sha256$abc$00$00"));
+        assertFalse(PasswordHasher.verify("x", "pbkdf2-sha256$1000$0g$00"));
+        assertFalse(PasswordHasher.verify("x", "pbkdf2-sha256$1000$00"));
+    }
+
+    @Test
+    public void needsRehash_forLegacyAndWeakerHashes() {
+        PasswordHasher weak = new PasswordHasher(PasswordHasher.MIN_ITERATIONS);
+        PasswordHasher strong = new PasswordHasher(20_000);
+        String weakHash = weak.hash("secret");
+
+        assertTrue(strong.needsRehash("K7gNU3sdo+OL0wNhqoVWhr3g6s1xYv72ol/pe/Unols="));
+        assertTrue(strong.needsRehash(weakHash));
+        assertFalse(weak.needsRehash(weakHash));
+        assertFalse(strong.needsRehash(strong.hash("secret")));
+    }
+
+    @Test
+    public void calibrate_staysWithinBounds() {
+        int iterations = PasswordHasher.calibrate(20_000_000L);
+        assertTrue(iterations >= PasswordHasher.MIN_ITERATIONS);
+        assertTrue(iterations <= PasswordHasher.MAX_ITERATIONS);
+        assertEquals(PasswordHasher.MIN_ITERATIONS, PasswordHasher.calibrate(1));
+    }
+}
@@ -0,0 +1,110 @@
+package ry.tech.mtc.codec;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import ry.tech.mtc.telemetry.CompressedSeries;
+
+import static org.junit.Assert.*;
+
+public class GorillaBlockTest {
+
+    private static final long DAY_MS = 24 * 60 * 60 * 1000L;
+
+    // Ряд как у EnhancedDeviceSimulator: случайное блуждание температуры с шагом до ±0.1
+    // в пределах [-5, 8], обновление раз в 200 мс с дрожанием Handler.postDelayed в несколько мс
+    private static class SimulatedSensor {
+        private final Random random = new Random(42);
+        long time = 1_700_000_000_000L;
+        double value = 2 + random.nextDouble() * 6;
+
+        void step() {
+            time += 200 + random.nextInt(4);
+            value = Math.max(-5, Math.min(8, value + (random.nextDouble() - 0.5) * 0.2));
+        }
+    }
+
+    @Test
+    public void block_roundTripsExactly() {
+        GorillaBlock.Builder builder = new GorillaBlock.Builder(1000);
+        long[] times = {0, 200, 400, 401, 5000, 5000 + DAY_MS, 5200 + DAY_MS};
+        double[] values = {21.5, 21.5, -0.0, Double.MAX_VALUE, 1e-300, Double.NaN, 22};
+        for (int i = 0; i < times.length; i++) {
+            assertTrue(builder.append(times[i], values[i]));
+        }
+        assertFalse(builder.append(5200 + DAY_MS, 1));
+
+        GorillaBlock block = builder.seal();
+        GorillaBlock.Cursor cursor = block.cursor();
+        for (int i = 0; i < times.length; i++) {
+            assertTrue(cursor.next());
+            assertEquals(times[i], cursor.getTime());
+            assertEquals(Double.doubleToRawLongBits(values[i]), Double.doubleToRawLongBits(cursor.getValue()));
+        }
+        assertFalse(cursor.next());
+        assertEquals(7, block.getCount());
+    }
+
+    @Test
+    public void builder_rejectsWhenFull() {
+        GorillaBlock.Builder builder = new GorillaBlock.Builder(2);
+        assertTrue(builder.append(1, 1));
+        assertTrue(builder.append(2, 1));
+        assertFalse(builder.append(3, 1));
+        assertTrue(builder.isFull());
+    }
+
+    @Test
+    public void series_reportsBytesPerPointOnSimulatedDay() {
+        int points = (int) (DAY_MS / 200);
+        CompressedSeries raw = new CompressedSeries(0, 3 * DAY_MS);
+        CompressedSeries quantized = new CompressedSeries(0.01, 3 * DAY_MS);
+        SimulatedSensor sensor = new SimulatedSensor();
+        long firstTime = sensor.time;
+        for (int i = 0; i < points; i++) {
+            assertTrue(raw.append(sensor.time, sensor.value));
+            assertTrue(quantized.append(sensor.time, sensor.value));
+            sensor.step();
+        }
+
+        double rawBytes = (double) raw.getSizeBytes() / points;
+        double quantizedBytes = (double) quantized.getSizeBytes() / points;
+        // Для сравнения: long + double в массивах - 16 байт, объект SensorData на точку - десятки байт
+        System.out.printf("Gorilla, %d points: raw %.2f bytes/point, 0.01 resolution %.2f bytes/point%n",
+                points, rawBytes, quantizedBytes);
+        assertTrue(rawBytes < 10);
+        assertTrue(quantizedBytes < 3);
+
+        SimulatedSensor replay = new SimulatedSensor();
+        CompressedSeries.Cursor cursor = quantized.cursor(firstTime);
+        int read = 0;
+        while (cursor.next()) {
+            assertEquals(replay.time, cursor.getTime());
+            assertEquals(replay.value, cursor.getValue(), 0.005 + 1e-9);
+            replay.step();
+            read++;
+        }
+        assertEquals(points, read);
+    }
+
+    @Test
+    public void series_evictsExpiredBlocksAndSeeksByTime() {
+        CompressedSeries series = new CompressedSeries(0.1, 60_000);
+        for (int i = 0; i < CompressedSeries.BLOCK_SIZE * 3; i++) {
+            assertTrue(series.append(i * 200L, i % 50));
+        }
+        assertFalse(series.append(0, 1));
+
+        // Блоки целиком старше минуты от последней точки отброшены
+        assertEquals(CompressedSeries.BLOCK_SIZE * 2, series.getPointCount());
+        long seekTime = (CompressedSeries.BLOCK_SIZE * 3 - 10) * 200L;
+        CompressedSeries.Cursor cursor = series.cursor(seekTime);
+        int read = 0;
+        while (cursor.next()) {
+            assertTrue(cursor.getTime() >= seekTime);
+            read++;
+        }
+        assertEquals(10, read);
+    }
+}
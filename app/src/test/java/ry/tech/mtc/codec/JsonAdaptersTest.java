@@ -0,0 +1,94 @@
+package ry.tech.mtc.codec;
+
+import com.google.gson.Gson;
+import com.google.gson.stream.JsonReader;
+
+import org.junit.Test;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import ry.tech.mtc.auth.UserManager;
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.models.SensorData;
+import ry.tech.mtc.sensors.SensorNotificationManager;
+
+import static org.junit.Assert.*;
+
+public class JsonAdaptersTest {
+
+    @Test
+    public void device_roundTripKeepsParameterTypes() {
+        Device device = new Device("1", "Умная лампа", Device.TYPE_LIGHT);
+        device.setOn(true);
+        device.setParameter("brightness", 55);
+        device.setParameter("scene", "evening");
+
+        Gson gson = JsonAdapters.getGson();
+        Device restored = gson.fromJson(gson.toJson(device), Device.class);
+
+        assertEquals("1", restored.getId());
+        assertEquals("Умная лампа", restored.getName());
+        assertTrue(restored.isOn());
+        assertEquals(device.getLastUpdateTime(), restored.getLastUpdateTime());
+        assertEquals(55, restored.getParameter("brightness"));
+        assertEquals(0.0, restored.getParameter("power"));
+        assertEquals("evening", restored.getParameter("scene"));
+        assertEquals("K", restored.getParameterUnit("color_temp"));
+    }
+
+    @Test
+    public void userMap_readsDataWrittenByReflectiveGson() {
+        Map<String, UserManager.User> users = new HashMap<>();
+        users.put("anna", new UserManager.User("u1", "anna", "hash==", "anna@example.com"));
+        String legacyJson = new Gson().toJson(users);
+
+        Map<String, UserManager.User> restored =
+                JsonAdapters.getGson().fromJson(legacyJson, JsonAdapters.USER_MAP_TYPE);
+        UserManager.User user = restored.get("anna");
+        assertEquals("u1", user.getId());
+        assertEquals("hash==", user.getPasswordHash());
+        assertEquals("anna@example.com", user.getEmail());
+        // Обратно пишутся те же поля (без HTML-экранирования), старый Gson читает их как прежде
+        String json = JsonAdapters.getGson().toJson(users, JsonAdapters.USER_MAP_TYPE);
+        assertEquals(legacyJson.replace("\\u003d", "="), json);
+    }
+
+    @Test
+    public void sensorDataAndAlerts_roundTrip() {
+        Gson gson = JsonAdapters.getGson();
+        SensorData data = new SensorData("3", "temperature", 22.5, "°C", 1000L);
+        SensorData restoredData = gson.fromJson(gson.toJson(data), SensorData.class);
+        assertEquals(22.5, restoredData.getValue(), 0.0);
+        assertEquals(1000L, restoredData.getTimestamp());
+
+        LocalDateTime time = LocalDateTime.of(2025, 3, 10, 12, 30, 15);
+        SensorNotificationManager.AlertHistory alert = new SensorNotificationManager.AlertHistory(
+                "3", "temperature", 31.0, "°C", SensorNotificationManager.AlertLevel.CRITICAL, time);
+        SensorNotificationManager.AlertHistory restoredAlert =
+                gson.fromJson(gson.toJson(alert), SensorNotificationManager.AlertHistory.class);
+        assertEquals(SensorNotificationManager.AlertLevel.CRITICAL, restoredAlert.level);
+        assertEquals(time, restoredAlert.timestamp);
+    }
+
+    @Test
+    public void readArray_streamsDevicesOneByOne() throws Exception {
+        Gson gson = JsonAdapters.getGson();
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < 50; i++) {
+            if (i > 0) json.append(',');
+            json.append(gson.toJson(new Device(String.valueOf(i), "Датчик " + i, Device.TYPE_AIR_SENSOR)));
+        }
+        json.append(']');
+
+        List<String> ids = new ArrayList<>();
+        int count = JsonAdapters.readArray(new JsonReader(new StringReader(json.toString())),
+                Device.class, device -> ids.add(device.getId()));
+        assertEquals(50, count);
+        assertEquals("49", ids.get(49));
+    }
+}
@@ -0,0 +1,90 @@
+package ry.tech.mtc.codec;
+
+import org.junit.Test;
+
+import java.io.IOException;
+
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class TelemetryCodecTest {
+    private static SensorRecordBatch sampleBatch() {
+        SensorRecordBatch batch = new SensorRecordBatch(4);
+        batch.setDeviceId("6");
+        long start = 1_741_600_000_000L;
+        for (int i = 0; i < 100; i++) {
+            long timestamp = start + i * 2000L;
+            batch.add("power", timestamp, 1000 + i);
+            batch.add("voltage", timestamp, 220.5f);
+            batch.add("current", timestamp, 4.5454545454);
+            batch.add("frequency", timestamp, 50);
+        }
+        return batch;
+    }
+
+    @Test
+    public void binaryTelemetry_roundTripsExactly() throws IOException {
+        BinaryTelemetryCodec codec = new BinaryTelemetryCodec();
+        SensorRecordBatch batch = sampleBatch();
+        Buffer buffer = new Buffer();
+        codec.encodeTelemetry(batch, buffer);
+
+        SensorRecordBatch decoded = new SensorRecordBatch();
+        assertEquals(batch.size(), codec.decodeTelemetry(buffer, decoded));
+        assertEquals(0, buffer.size());
+        assertEquals("6", decoded.getDeviceId());
+        for (int i = 0; i < batch.size(); i++) {
+            assertEquals(batch.getParameter(i), decoded.getParameter(i));
+            assertEquals(batch.getTimestamp(i), decoded.getTimestamp(i));
+            assertEquals(Double.doubleToLongBits(batch.getValue(i)), Double.doubleToLongBits(decoded.getValue(i)));
+        }
+    }
+
+    @Test
+    public void binaryTelemetry_isMuchSmallerThanJson() throws IOException {
+        SensorRecordBatch batch = sampleBatch();
+        Buffer binary = new Buffer();
+        new BinaryTelemetryCodec().encodeTelemetry(batch, binary);
+        Buffer json = new Buffer();
+        new JsonTelemetryCodec().encodeTelemetry(batch, json);
+
+        assertTrue("binary " + binary.size() + " json " + json.size(), binary.size() * 4 < json.size());
+    }
+
+    @Test
+    public void commands_roundTripWithTypedValues() throws IOException {
+        BinaryTelemetryCodec codec = new BinaryTelemetryCodec();
+        Object[] values = {true, 24, -3L, 21.5, "cool", null};
+        for (Object value : values) {
+            Buffer buffer = new Buffer();
+            codec.encodeCommand(new DeviceCommand("2", "set", value), buffer);
+            DeviceCommand decoded = codec.decodeCommand(buffer);
+            assertEquals("2", decoded.deviceId);
+            assertEquals("set", decoded.command);
+            assertEquals(new DeviceCommand("2", "set", value).value, decoded.value);
+        }
+    }
+
+    @Test
+    public void jsonCodec_readsRecordsAndLegacyFlatStatus() throws IOException {
+        JsonTelemetryCodec codec = new JsonTelemetryCodec();
+        SensorRecordBatch batch = sampleBatch();
+        Buffer buffer = new Buffer();
+        codec.encodeTelemetry(batch, buffer);
+        SensorRecordBatch decoded = new SensorRecordBatch();
+        assertEquals(batch.size(), codec.decodeTelemetry(buffer, decoded));
+        assertEquals(batch.getValue(2), decoded.getValue(2), 0.0);
+
+        Buffer flat = new Buffer().writeUtf8("{\"temperature\":22.5,\"status\":\"ok\",\"humidity\":40,\"timestamp\":1000}");
+        SensorRecordBatch status = new SensorRecordBatch();
+        assertEquals(2, codec.decodeTelemetry(flat, status));
+        assertEquals("humidity", status.getParameter(1));
+        assertEquals(1000L, status.getTimestamp(0));
+    }
+
+    @Test(expected = IOException.class)
+    public void binaryDecode_rejectsForeignFrames() throws IOException {
+        new BinaryTelemetryCodec().decodeTelemetry(new Buffer().writeUtf8("{\"a\":1}"), new SensorRecordBatch());
+    }
+}
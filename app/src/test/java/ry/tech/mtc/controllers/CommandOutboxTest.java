@@ -0,0 +1,197 @@
+package ry.tech.mtc.controllers;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import okhttp3.OkHttpClient;
+import okio.Buffer;
+import ry.tech.mtc.codec.BinaryTelemetryCodec;
+import ry.tech.mtc.codec.DeviceCommand;
+
+import static org.junit.Assert.*;
+
+public class CommandOutboxTest {
+    private File dir;
+    private FlakyServer server;
+
+    @Before
+    public void setUp() throws IOException {
+        dir = Files.createTempDirectory("outbox").toFile();
+        server = new FlakyServer();
+    }
+
+    @After
+    public void tearDown() throws IOException {
+        server.close();
+        for (File file : dir.listFiles()) {
+            file.delete();
+        }
+        dir.delete();
+    }
+
+    private DeviceCommunicator communicator() {
+        OkHttpClient client = new OkHttpClient.Builder()
+                .connectTimeout(2, TimeUnit.SECONDS)
+                .readTimeout(2, TimeUnit.SECONDS)
+                .build();
+        return new DeviceCommunicator(client, server.baseUrl(), true);
+    }
+
+    private static void awaitDelivered(CommandOutbox outbox, long count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (outbox.getDeliveredCount() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, outbox.getDeliveredCount());
+    }
+
+    @Test
+    public void failedBatches_areRetriedCollapsedAndOrdered() throws Exception {
+        server.failFirst(2);
+        DeviceCommunicator communicator = communicator();
+        CommandOutbox outbox = new CommandOutbox(new File(dir, "outbox.log"), communicator::sendCommands, 20, 10, 50);
+
+        outbox.enqueue(new DeviceCommand("1", "turn_on", true));
+        outbox.enqueue(new DeviceCommand("2", "temperature", 22));
+        outbox.enqueue(new DeviceCommand("1", "brightness", 40));
+        outbox.enqueue(new DeviceCommand("1", "brightness", 70));
+        outbox.enqueue(new DeviceCommand("2", "mode", "cool"));
+
+        awaitDelivered(outbox, 4);
+        outbox.close();
+
+        assertEquals(3, server.requests.get());
+        List<DeviceCommand> received = server.received();
+        assertEquals(4, received.size());
+        assertEquals("turn_on", received.get(0).command);
+        assertEquals("temperature", received.get(1).command);
+        assertEquals("brightness", received.get(2).command);
+        assertEquals(70L, received.get(2).value);
+        assertEquals("mode", received.get(3).command);
+        assertEquals(0, outbox.getPendingCount());
+    }
+
+    @Test
+    public void pendingCommands_surviveRestart() throws Exception {
+        File journal = new File(dir, "outbox.log");
+        CommandOutbox offline = new CommandOutbox(journal, batch -> {
+            throw new IOException("offline");
+        }, 10, 10_000, 10_000);
+        offline.enqueue(new DeviceCommand("5", "valve", false));
+        offline.enqueue(new DeviceCommand("6", "relay", true));
+        Thread.sleep(50);
+        assertTrue(offline.getFailedAttempts() >= 1);
+        offline.close();
+
+        CommandOutbox outbox = new CommandOutbox(journal, communicator()::sendCommands, 10, 10, 50);
+        awaitDelivered(outbox, 2);
+        outbox.close();
+
+        List<DeviceCommand> received = server.received();
+        assertEquals("valve", received.get(0).command);
+        assertEquals("relay", received.get(1).command);
+        assertEquals(0, Files.size(journal.toPath()));
+    }
+
+    // Локальный HTTP-сервер: отвечает 503 на первые N запросов, остальные пакеты команд декодирует
+    private static class FlakyServer implements AutoCloseable {
+        private final ServerSocket socket;
+        private final Thread thread;
+        private final List<DeviceCommand> received = Collections.synchronizedList(new ArrayList<>());
+        final AtomicInteger requests = new AtomicInteger();
+        private volatile int failures;
+
+        FlakyServer() throws IOException {
+            socket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            thread = new Thread(this::serve, "FlakyServer");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        void failFirst(int count) {
+            failures = count;
+        }
+
+        String baseUrl() {
+            return "http://127.0.0.1:" + socket.getLocalPort() + "/api";
+        }
+
+        List<DeviceCommand> received() {
+            synchronized (received) {
+                return new ArrayList<>(received);
+            }
+        }
+
+        private void serve() {
+            while (!socket.isClosed()) {
+                try (Socket client = socket.accept()) {
+                    handle(client);
+                } catch (IOException ignored) {
+                    // Сокет закрыт или клиент оборвал соединение
+                }
+            }
+        }
+
+        private void handle(Socket client) throws IOException {
+            InputStream in = new BufferedInputStream(client.getInputStream());
+            int contentLength = 0;
+            String line;
+            while (!(line = readLine(in)).isEmpty()) {
+                if (line.toLowerCase().startsWith("content-length:")) {
+                    contentLength = Integer.parseInt(line.substring(15).trim());
+                }
+            }
+            byte[] body = new byte[contentLength];
+            int read = 0;
+            while (read < contentLength) {
+                int n = in.read(body, read, contentLength - read);
+                if (n < 0) break;
+                read += n;
+            }
+
+            int attempt = requests.incrementAndGet();
+            String status;
+            if (attempt <= failures) {
+                status = "503 Service Unavailable";
+            } else {
+                received.addAll(new BinaryTelemetryCodec().decodeCommands(new Buffer().write(body)));
+                status = "200 OK";
+            }
+            OutputStream out = client.getOutputStream();
+            out.write(("HTTP/1.1 " + status + "\r\nContent-Length: 0\r\nConnection: close\r\n\r\n")
+                    .getBytes(StandardCharsets.US_ASCII));
+            out.flush();
+        }
+
+        private static String readLine(InputStream in) throws IOException {
+            StringBuilder line = new StringBuilder();
+            int c;
+            while ((c = in.read()) != -1 && c != '\n') {
+                if (c != '\r') line.append((char) c);
+            }
+            return line.toString();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+}
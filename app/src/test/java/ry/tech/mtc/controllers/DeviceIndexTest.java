@@ -0,0 +1,166 @@
+package ry.tech.mtc.controllers;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import ry.tech.mtc.models.Device;
+
+import static org.junit.Assert.*;
+
+public class DeviceIndexTest {
+
+    private static Device device(String id, String name, String type, String room, boolean isOnline) {
+        Device device = new Device(id, name, type);
+        device.setRoom(room);
+        device.setOnline(isOnline);
+        return device;
+    }
+
+    private static DeviceIndex demoIndex() {
+        DeviceIndex index = new DeviceIndex();
+        index.put(device("1", "Умная лампа", Device.TYPE_LIGHT, "Гостиная", true));
+        index.put(device("2", "Кондиционер", Device.TYPE_AC, "Гостиная", false));
+        index.put(device("3", "Датчик температуры", Device.TYPE_TEMPERATURE_SENSOR, "Спальня", true));
+        index.put(device("4", "Датчик влажности", Device.TYPE_HUMIDITY_SENSOR, "Ванная", false));
+        index.put(device("5", "Ночник", Device.TYPE_LIGHT, "Спальня", true));
+        return index;
+    }
+
+    private static List<String> ids(DeviceIndex.Page page) {
+        List<String> result = new ArrayList<>();
+        for (Device device : page.devices) {
+            result.add(device.getId());
+        }
+        return result;
+    }
+
+    @Test
+    public void query_matchesWordPrefixesOfNameAndRoom() {
+        DeviceIndex index = demoIndex();
+
+        assertEquals(List.of("3", "4"), ids(index.query(new DeviceIndex.Query("дат", null, null, null), 0, 10)));
+        assertEquals(List.of("3"), ids(index.query(new DeviceIndex.Query("Датчик темп", null, null, null), 0, 10)));
+        assertEquals(List.of("3", "5"), ids(index.query(new DeviceIndex.Query("спаль", null, null, null), 0, 10)));
+        assertEquals(0, index.count(new DeviceIndex.Query("чайник", null, null, null)));
+    }
+
+    @Test
+    public void query_intersectsTypeRoomAndOnlineFilters() {
+        DeviceIndex index = demoIndex();
+
+        DeviceIndex.Query lights = new DeviceIndex.Query(null, Set.of(Device.TYPE_LIGHT), null, null);
+        assertEquals(List.of("1", "5"), ids(index.query(lights, 0, 10)));
+
+        DeviceIndex.Query bedroomLights = new DeviceIndex.Query(null, Set.of(Device.TYPE_LIGHT), Set.of("Спальня"), null);
+        assertEquals(List.of("5"), ids(index.query(bedroomLights, 0, 10)));
+
+        DeviceIndex.Query offline = new DeviceIndex.Query(null, null, null, Boolean.FALSE);
+        assertEquals(List.of("2", "4"), ids(index.query(offline, 0, 10)));
+
+        index.setOnline("2", true);
+        assertEquals(List.of("4"), ids(index.query(offline, 0, 10)));
+        assertEquals(List.of("Ванная", "Гостиная", "Спальня"), index.getRooms());
+    }
+
+    @Test
+    public void query_pagesWithStableTotal() {
+        DeviceIndex index = new DeviceIndex();
+        for (int i = 0; i < 95; i++) {
+            index.put(device(String.valueOf(i), "Лампа " + i, Device.TYPE_LIGHT, "Зал", false));
+        }
+
+        DeviceIndex.Page last = index.query(DeviceIndex.Query.ALL, 80, 40);
+        assertEquals(95, last.total);
+        assertEquals(15, last.devices.size());
+        assertEquals("80", last.devices.get(0).getId());
+        assertTrue(index.query(DeviceIndex.Query.ALL, 120, 40).devices.isEmpty());
+    }
+
+    @Test
+    public void remove_andReindex_updatePostings() {
+        DeviceIndex index = demoIndex();
+
+        assertTrue(index.remove("1"));
+        assertFalse(index.remove("1"));
+        assertNull(index.get("1"));
+        assertEquals("5", index.findFirstByType(Device.TYPE_LIGHT).getId());
+
+        // Перенос в другую комнату переиндексирует слова и комнату
+        index.put(device("5", "Ночник", Device.TYPE_LIGHT, "Кухня", true));
+        assertEquals(0, index.count(new DeviceIndex.Query("спаль ночник", null, null, null)));
+        assertEquals(List.of("5"), ids(index.query(new DeviceIndex.Query("кух", null, null, null), 0, 10)));
+        assertEquals(4, index.size());
+    }
+
+    @Test
+    public void remove_compactsWhenMostDocumentsAreGone() {
+        DeviceIndex index = new DeviceIndex();
+        for (int i = 0; i < 200; i++) {
+            index.put(device(String.valueOf(i), "Датчик " + i, Device.TYPE_WATER_SENSOR, null, i % 2 == 0));
+        }
+        for (int i = 0; i < 190; i++) {
+            index.remove(String.valueOf(i));
+        }
+
+        assertEquals(10, index.size());
+        assertEquals(List.of("190", "192", "194", "196", "198"),
+                ids(index.query(new DeviceIndex.Query(null, null, null, Boolean.TRUE), 0, 10)));
+        assertEquals("199", index.get("199").getId());
+    }
+
+    @Test
+    public void pagedList_keepsBoundedWindowOfPages() {
+        DeviceIndex index = new DeviceIndex();
+        for (int i = 0; i < 1000; i++) {
+            index.put(device(String.valueOf(i), "Лампа " + i, Device.TYPE_LIGHT, "Зал", false));
+        }
+        int[] changes = new int[1];
+        PagedDeviceList list = new PagedDeviceList(index, Runnable::run, Runnable::run, new PagedDeviceList.Callback() {
+            @Override
+            public void onListChanged(int total) {
+                changes[0]++;
+            }
+
+            @Override
+            public void onPageLoaded(int start, int count) {}
+        });
+
+        list.refresh();
+        assertEquals(1000, list.size());
+        assertEquals(1, changes[0]);
+        for (int position = 0; position < 1000; position++) {
+            // Исполнители синхронные, поэтому после промаха страница уже загружена
+            Device device = list.get(position);
+            if (device == null) device = list.get(position);
+            assertEquals(String.valueOf(position), device.getId());
+            assertTrue(list.getCachedPageCount() <= 4);
+        }
+    }
+
+    @Test
+    public void pagedList_discardsPagesOfStaleQuery() {
+        DeviceIndex index = demoIndex();
+        List<Runnable> pending = new ArrayList<>();
+        PagedDeviceList list = new PagedDeviceList(index, pending::add, Runnable::run, new PagedDeviceList.Callback() {
+            @Override
+            public void onListChanged(int total) {}
+
+            @Override
+            public void onPageLoaded(int start, int count) {}
+        });
+
+        list.refresh();
+        list.setQuery(new DeviceIndex.Query(null, Set.of(Device.TYPE_LIGHT), null, null));
+        assertNull(list.get(0));
+        assertEquals(2, pending.size());
+
+        // Ответ на запрос "все устройства" приходит последним и должен быть проигнорирован
+        pending.get(1).run();
+        pending.get(0).run();
+        assertEquals(2, list.size());
+        assertEquals("1", list.get(0).getId());
+    }
+}
@@ -0,0 +1,97 @@
+package ry.tech.mtc.controllers;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import ry.tech.mtc.models.Device;
+
+import static org.junit.Assert.*;
+
+public class DeviceStateCacheTest {
+    private final AtomicLong now = new AtomicLong(1_000_000);
+    private final AtomicInteger loads = new AtomicInteger();
+    private final Queue<Runnable> tasks = new ArrayDeque<>();
+    private final Executor manualExecutor = tasks::add;
+
+    private DeviceStateCache newCache(int maxEntries) {
+        DeviceStateCache cache = new DeviceStateCache(id -> {
+            loads.incrementAndGet();
+            return new Device(id, "Устройство " + id, Device.TYPE_LIGHT);
+        }, manualExecutor, now::get, maxEntries);
+        cache.setTtl(Device.TYPE_LIGHT, 1000);
+        cache.setStaleWindow(5000);
+        return cache;
+    }
+
+    private void runTasks() {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void concurrentReads_shareOneLoad() throws Exception {
+        DeviceStateCache cache = newCache(8);
+        CompletableFuture<Device> first = cache.getAsync("1");
+        CompletableFuture<Device> second = cache.getAsync("1");
+        assertFalse(first.isDone());
+        runTasks();
+        assertEquals(1, loads.get());
+        assertSame(first.get(), second.get());
+    }
+
+    @Test
+    public void staleEntry_isServedWhileRefreshing() throws Exception {
+        DeviceStateCache cache = newCache(8);
+        cache.getAsync("1");
+        runTasks();
+        Device original = cache.peek("1");
+
+        now.addAndGet(500);
+        assertSame(original, cache.getAsync("1").get());
+        assertTrue(tasks.isEmpty());
+
+        now.addAndGet(1000);
+        CompletableFuture<Device> stale = cache.getAsync("1");
+        assertTrue(stale.isDone());
+        assertSame(original, stale.get());
+        runTasks();
+        assertEquals(2, loads.get());
+        assertNotSame(original, cache.peek("1"));
+
+        now.addAndGet(10_000);
+        assertFalse(cache.getAsync("1").isDone());
+        // Последнее известное состояние остается доступным без ожидания, пока идет загрузка
+        assertNotNull(cache.peek("1"));
+        assertEquals(1, cache.getStaleHitCount());
+    }
+
+    @Test
+    public void invalidate_discardsLoadStartedBeforeWrite() throws Exception {
+        DeviceStateCache cache = newCache(8);
+        CompletableFuture<Device> pending = cache.getAsync("1");
+        cache.invalidate("1");
+        runTasks();
+        assertNotNull(pending.get());
+        assertNull(cache.peek("1"));
+    }
+
+    @Test
+    public void leastRecentlyUsed_isEvicted() {
+        DeviceStateCache cache = newCache(2);
+        cache.put(new Device("1", "a", Device.TYPE_LIGHT));
+        cache.put(new Device("2", "b", Device.TYPE_LIGHT));
+        cache.getAsync("1");
+        cache.put(new Device("3", "c", Device.TYPE_LIGHT));
+        assertNotNull(cache.peek("1"));
+        assertNull(cache.peek("2"));
+        assertEquals(2, cache.size());
+    }
+}
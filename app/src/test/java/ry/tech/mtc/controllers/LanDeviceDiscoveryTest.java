@@ -0,0 +1,148 @@
+package ry.tech.mtc.controllers;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import ry.tech.mtc.codec.JsonAdapters;
+import ry.tech.mtc.models.Device;
+
+import static org.junit.Assert.*;
+
+public class LanDeviceDiscoveryTest {
+    private final List<Responder> responders = new ArrayList<>();
+    private LanDeviceDiscovery discovery;
+
+    @After
+    public void tearDown() {
+        for (Responder responder : responders) {
+            responder.close();
+        }
+        if (discovery != null) {
+            discovery.shutdown();
+        }
+    }
+
+    private Responder responder(String id, String type, long delayMs) throws IOException {
+        Responder responder = new Responder(new Device(id, "Устройство " + id, type), delayMs);
+        responders.add(responder);
+        return responder;
+    }
+
+    private LanDeviceDiscovery newDiscovery(long timeoutMs) {
+        LanDeviceDiscovery.DiscoveryConfig config = new LanDeviceDiscovery.DiscoveryConfig();
+        config.multicastGroup = null;
+        config.useBroadcast = false;
+        config.sweepSubnet = false;
+        config.scanTimeoutMs = timeoutMs;
+        for (Responder responder : responders) {
+            config.extraTargets.add(responder.address());
+        }
+        return new LanDeviceDiscovery(config);
+    }
+
+    @Test
+    public void scan_streamsRepliesAndHonoursDeadline() throws Exception {
+        responder("1", Device.TYPE_LIGHT, 0);
+        responder("5", Device.TYPE_WATER_SENSOR, 0);
+        responder("9", Device.TYPE_AC, 2000);
+        discovery = newDiscovery(500);
+
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        long start = System.currentTimeMillis();
+        LanDeviceDiscovery.Scan scan = discovery.startScan((device, address) -> streamed.add(device.getId()));
+        assertTrue(scan.await(2000));
+        long elapsed = System.currentTimeMillis() - start;
+
+        assertTrue("elapsed " + elapsed, elapsed < 1500);
+        assertEquals(2, streamed.size());
+        assertTrue(streamed.contains("1"));
+        assertTrue(streamed.contains("5"));
+        assertEquals(Device.TYPE_WATER_SENSOR,
+                discovery.getKnownDevices().stream().filter(k -> k.device.getId().equals("5"))
+                        .findFirst().get().device.getType());
+    }
+
+    @Test
+    public void rescan_reportsOnlyNewDevices() throws Exception {
+        responder("1", Device.TYPE_LIGHT, 0);
+        discovery = newDiscovery(300);
+        assertEquals(1, discovery.scanForDevices().size());
+
+        List<String> streamed = Collections.synchronizedList(new ArrayList<>());
+        LanDeviceDiscovery.Scan scan = discovery.startScan((device, address) -> streamed.add(device.getId()));
+        assertTrue(scan.await(2000));
+        assertEquals(1, scan.getFoundDevices().size());
+        assertTrue(streamed.isEmpty());
+    }
+
+    @Test
+    public void connect_waitsForAcknowledgement() throws Exception {
+        responder("2", Device.TYPE_AC, 0);
+        discovery = newDiscovery(300);
+        Device device = discovery.scanForDevices().get(0);
+
+        assertTrue(discovery.connectDevice(device));
+        assertTrue(discovery.isConnected("2"));
+        discovery.disconnectDevice(device);
+        assertFalse(discovery.isConnected("2"));
+        assertFalse(discovery.connectDevice(new Device("unknown", "x", Device.TYPE_LIGHT)));
+    }
+
+    // Устройство-заглушка на loopback: отвечает на поиск и подтверждает подключение
+    private static class Responder {
+        private final DatagramSocket socket;
+        private final Device device;
+        private final long delayMs;
+
+        Responder(Device device, long delayMs) throws IOException {
+            this.device = device;
+            this.delayMs = delayMs;
+            this.socket = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+            Thread thread = new Thread(this::serve, "Responder-" + device.getId());
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        InetSocketAddress address() {
+            return new InetSocketAddress(InetAddress.getLoopbackAddress(), socket.getLocalPort());
+        }
+
+        private void serve() {
+            byte[] buffer = new byte[2048];
+            while (!socket.isClosed()) {
+                try {
+                    DatagramPacket packet = new DatagramPacket(buffer, buffer.length);
+                    socket.receive(packet);
+                    String request = new String(packet.getData(), 0, packet.getLength(), StandardCharsets.UTF_8);
+                    String reply;
+                    if (request.equals("MTC-DISCOVER 1")) {
+                        if (delayMs > 0) Thread.sleep(delayMs);
+                        reply = "MTC-HELLO 1\n" + JsonAdapters.getGson().toJson(device);
+                    } else if (request.startsWith("MTC-CONNECT 1\n") || request.startsWith("MTC-DISCONNECT 1\n")) {
+                        reply = "MTC-ACK 1\n" + device.getId();
+                    } else {
+                        continue;
+                    }
+                    byte[] bytes = reply.getBytes(StandardCharsets.UTF_8);
+                    socket.send(new DatagramPacket(bytes, bytes.length, packet.getSocketAddress()));
+                } catch (IOException | InterruptedException e) {
+                    return;
+                }
+            }
+        }
+
+        void close() {
+            socket.close();
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package ry.tech.mtc.export;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.telemetry.CompressedSeries;
+import ry.tech.mtc.telemetry.DeviceHistoryStore;
+
+import static org.junit.Assert.*;
+
+public class HistoryTransferTest {
+
+    private static final long BASE_TIME = 1_700_000_000_000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    // Два устройства, у датчика электричества два параметра; 20 000 точек на ряд - несколько чанков
+    private static DeviceHistoryStore filledStore() {
+        DeviceHistoryStore store = new DeviceHistoryStore();
+        store.trackDevice("t1", Device.TYPE_TEMPERATURE_SENSOR);
+        store.trackDevice("e1", Device.TYPE_ELECTRICITY_SENSOR);
+        for (int i = 0; i < 20_000; i++) {
+            long time = BASE_TIME + i * 200L;
+            store.getSeries("t1", "temperature").append(time, 20 + (i % 100) * 0.01);
+            store.getSeries("e1", "power").append(time, 900 + (i % 7));
+            store.getSeries("e1", "voltage").append(time, 220.5);
+        }
+        return store;
+    }
+
+    @Test
+    public void columnar_roundTripsIntoEmptyStore() throws Exception {
+        DeviceHistoryStore source = filledStore();
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        File file = folder.newFile("history.mtch");
+        long[] lastProgress = new long[2];
+
+        HistoryExporter.Result exported = new HistoryExporter(source, executor)
+                .export(ExportRequest.all(), ExportFormat.COLUMNAR, file, (done, total) -> {
+                    lastProgress[0] = done;
+                    lastProgress[1] = total;
+                }).get(10, TimeUnit.SECONDS);
+        assertEquals(3, exported.seriesCount);
+        assertEquals(60_000, exported.pointCount);
+        assertEquals(lastProgress[1], lastProgress[0]);
+        assertFalse(new File(file.getPath() + ".part").exists());
+
+        DeviceHistoryStore target = new DeviceHistoryStore();
+        HistoryImporter.Result imported = new HistoryImporter(target, executor)
+                .importFile(file, null).get(10, TimeUnit.SECONDS);
+        executor.shutdown();
+        assertEquals(3, imported.seriesCount);
+        assertEquals(60_000, imported.pointCount);
+        assertEquals(List.of("e1", "t1"), target.getDeviceIds());
+
+        CompressedSeries.Cursor expected = source.getSeries("t1", "temperature").cursor(0);
+        CompressedSeries.Cursor actual = target.getSeries("t1", "temperature").cursor(0);
+        while (expected.next()) {
+            assertTrue(actual.next());
+            assertEquals(expected.getTime(), actual.getTime());
+            assertEquals(expected.getValue(), actual.getValue(), 1e-9);
+        }
+        assertFalse(actual.next());
+
+        // Повторная загрузка того же файла ничего не добавляет
+        HistoryImporter.Result again = new HistoryImporter(target, executor).importBlocking(file, null);
+        assertEquals(0, again.pointCount);
+        assertEquals(60_000, again.skippedCount);
+    }
+
+    @Test
+    public void csv_filtersRangeAndAveragesByResolution() throws IOException {
+        DeviceHistoryStore store = filledStore();
+        File file = folder.newFile("history.csv");
+        // Первые 2 секунды датчика температуры, усреднение по секунде: 5 точек в интервале
+        ExportRequest request = new ExportRequest(Set.of("t1"), null, BASE_TIME, BASE_TIME + 1999, 1000);
+
+        HistoryExporter.Result result = new HistoryExporter(store, null)
+                .exportBlocking(request, ExportFormat.CSV, file, null);
+
+        List<String> lines = Files.readAllLines(file.toPath(), StandardCharsets.UTF_8);
+        assertEquals(List.of(
+                "device_id,parameter,time_ms,value",
+                "t1,temperature," + BASE_TIME + ",20.02",
+                "t1,temperature," + (BASE_TIME + 1000) + ",20.07"), lines);
+        assertEquals(2, result.pointCount);
+        assertEquals(file.length(), result.bytes);
+    }
+
+    @Test(expected = ProtocolException.class)
+    public void import_rejectsForeignFile() throws IOException {
+        File file = folder.newFile("history.csv");
+        Files.write(file.toPath(), "device_id,parameter\n".getBytes(StandardCharsets.UTF_8));
+        new HistoryImporter(new DeviceHistoryStore(), null).importBlocking(file, null);
+    }
+}
@@ -0,0 +1,70 @@
+package ry.tech.mtc.imitation;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class SensorSampleBufferTest {
+    @Test
+    public void capacity_isRoundedToPowerOfTwo() {
+        assertEquals(8, new SensorSampleBuffer(5).getCapacity());
+        assertEquals(16, new SensorSampleBuffer(16).getCapacity());
+    }
+
+    @Test
+    public void drain_preservesOrderAndValues() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(8);
+        float[] values = new float[3];
+        for (int i = 0; i < 5; i++) {
+            values[0] = i;
+            values[1] = i * 10;
+            values[2] = i * 100;
+            assertTrue(buffer.write(1, 1000L + i, values, 3));
+        }
+
+        SensorSampleBuffer.Batch batch = new SensorSampleBuffer.Batch(3);
+        assertEquals(3, buffer.drainTo(batch));
+        assertEquals(1000L, batch.getTimestamp(0));
+        assertEquals(20f, batch.getValue(2, 1), 0f);
+
+        assertEquals(2, buffer.drainTo(batch));
+        assertEquals(1004L, batch.getTimestamp(1));
+        assertEquals(400f, batch.getValue(1, 2), 0f);
+        assertEquals(0, buffer.drainTo(batch));
+    }
+
+    @Test
+    public void overflow_dropsNewSamples() {
+        SensorSampleBuffer buffer = new SensorSampleBuffer(4);
+        float[] values = {1f, 2f, 3f};
+        for (int i = 0; i < 6; i++) {
+            buffer.write(1, i, values, 3);
+        }
+        assertEquals(4, buffer.size());
+        assertEquals(2, buffer.getDroppedSamples());
+    }
+
+    @Test
+    public void mockSource_deliversReusedBatches() {
+        MockSensorBatchData mock = new MockSensorBatchData(1024, 64, 42L);
+        final SensorSampleBuffer.Batch[] seen = new SensorSampleBuffer.Batch[1];
+        final int[] proximityCount = new int[1];
+        mock.addListener(batch -> {
+            if (seen[0] != null) {
+                assertSame(seen[0], batch);
+            }
+            seen[0] = batch;
+            for (int i = 0; i < batch.size(); i++) {
+                if (batch.getSensorType(i) == MockSensorBatchData.TYPE_PROXIMITY) {
+                    assertEquals(1, batch.getAxisCount(i));
+                    proximityCount[0]++;
+                }
+            }
+        });
+
+        mock.generateSamples(100, 5_000_000L);
+        assertEquals(400, mock.flush());
+        assertEquals(100, proximityCount[0]);
+        assertEquals(0, mock.getDroppedSamples());
+    }
+}
@@ -0,0 +1,92 @@
+package ry.tech.mtc.metrics;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketBounds_coverEveryValue() {
+        Random random = new Random(7);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (random.nextLong() >>> 1) >>> random.nextInt(63);
+            int index = LatencyHistogram.bucketIndex(value);
+            assertTrue(value <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                assertTrue(value > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+        }
+        assertEquals(Long.MAX_VALUE, LatencyHistogram.bucketUpperBound(LatencyHistogram.bucketIndex(Long.MAX_VALUE)));
+    }
+
+    @Test
+    public void percentiles_areWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram("test");
+        // Равномерно 1..10000 мкс
+        for (long micros = 1; micros <= 10_000; micros++) {
+            histogram.record(micros * 1000);
+        }
+
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.count);
+        assertEquals(5_000_500.0, snapshot.meanNanos, 1.0);
+        assertEquals(10_000_000, snapshot.maxNanos);
+        assertWithin(5_000_000, snapshot.p50Nanos);
+        assertWithin(9_000_000, snapshot.p90Nanos);
+        assertWithin(9_900_000, snapshot.p99Nanos);
+    }
+
+    @Test
+    public void concurrentRecording_losesNothing() throws InterruptedException {
+        MetricsRegistry registry = new MetricsRegistry();
+        Counter counter = registry.counter("concurrent");
+        LatencyHistogram histogram = registry.histogram("concurrent");
+
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 50_000; i++) {
+                    counter.increment();
+                    histogram.record(i);
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertEquals(200_000, counter.get());
+        assertEquals(200_000, histogram.snapshot().count);
+        assertEquals(49_999, histogram.snapshot().maxNanos);
+
+        registry.reset();
+        assertEquals(0, counter.get());
+        assertEquals(0, histogram.snapshot().count);
+    }
+
+    @Test
+    public void dump_containsRegisteredMetrics() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("comm.requests").add(3);
+        registry.histogram("comm.request").record(2_000_000);
+        registry.gauge("outbox.pending", () -> 5);
+
+        String text = registry.dumpText();
+        assertTrue(text.contains("comm.requests"));
+        assertTrue(text.contains("comm.request"));
+        assertTrue(text.contains("outbox.pending"));
+
+        String json = registry.dumpJson();
+        assertTrue(json.contains("\"comm.requests\""));
+        assertTrue(json.contains("\"outbox.pending\":5"));
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+                Math.abs(actual - expected) <= expected / 8);
+    }
+}
@@ -0,0 +1,64 @@
+package ry.tech.mtc.metrics;
+
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class ReadingTracerTest {
+    private static final long MS = 1_000_000L;
+
+    @Test
+    public void sampling_tracesEveryNthReading() {
+        ReadingTracer tracer = new ReadingTracer(new MetricsRegistry(), System::nanoTime);
+        tracer.setSampleInterval(4);
+
+        int sampled = 0;
+        for (int i = 0; i < 100; i++) {
+            if (tracer.begin() != null) sampled++;
+        }
+        assertEquals(25, sampled);
+
+        tracer.setSampleInterval(0);
+        assertNull(tracer.begin());
+    }
+
+    @Test
+    public void finish_recordsStageDeltas() {
+        MetricsRegistry registry = new MetricsRegistry();
+        AtomicLong clock = new AtomicLong(1);
+        ReadingTracer tracer = new ReadingTracer(registry, clock::get);
+        tracer.setSampleInterval(1);
+
+        TraceContext trace = tracer.begin();
+        clock.addAndGet(2 * MS);
+        trace.mark(TraceStage.INGEST);
+        clock.addAndGet(3 * MS);
+        trace.mark(TraceStage.THRESHOLD);   // PROCESS пропущен - его время уходит в THRESHOLD
+        clock.addAndGet(40 * MS);
+        trace.mark(TraceStage.DELIVER);
+        tracer.finish(trace);
+        tracer.finish(trace);
+
+        assertTrue(trace.isFinished());
+        assertEquals(1, registry.counter("trace.sampled").get());
+        assertEquals(2 * MS, registry.histogram("trace.ingest").snapshot().maxNanos);
+        assertEquals(0, registry.histogram("trace.process").snapshot().count);
+        assertEquals(3 * MS, registry.histogram("trace.threshold").snapshot().maxNanos);
+        assertEquals(40 * MS, registry.histogram("trace.deliver").snapshot().maxNanos);
+        assertEquals(1, registry.histogram("trace.total").snapshot().count);
+        assertEquals(45 * MS, registry.histogram("trace.total").snapshot().maxNanos);
+    }
+
+    @Test
+    public void renderPending_isVisibleToEngine() {
+        ReadingTracer tracer = new ReadingTracer(new MetricsRegistry(), System::nanoTime);
+        tracer.setSampleInterval(1);
+        TraceContext trace = tracer.begin();
+        assertFalse(trace.isRenderPending());
+        trace.awaitRender();
+        assertTrue(trace.isRenderPending());
+        assertFalse(trace.isFinished());
+    }
+}
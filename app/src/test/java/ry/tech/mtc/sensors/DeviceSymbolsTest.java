@@ -0,0 +1,68 @@
+package ry.tech.mtc.sensors;
+
+import org.junit.Test;
+
+import ry.tech.mtc.models.Device;
+
+import static org.junit.Assert.*;
+
+public class DeviceSymbolsTest {
+
+    @Test
+    public void intern_assignsStableDenseHandles() {
+        DeviceSymbols symbols = DeviceSymbols.getInstance();
+        int first = symbols.intern("symbols-a");
+        int second = symbols.intern("symbols-b");
+
+        assertEquals(first + 1, second);
+        assertEquals(first, symbols.intern("symbols-a"));
+        assertEquals(first, symbols.find(new String("symbols-a")));
+        assertEquals("symbols-b", symbols.idOf(second));
+        assertEquals(DeviceSymbols.NO_HANDLE, symbols.find("symbols-missing"));
+    }
+
+    @Test
+    public void handleTable_growsPastInitialCapacity() {
+        HandleTable<String> table = new HandleTable<>();
+        table.set(1000, "far");
+        table.computeIfAbsent(3, () -> "near");
+
+        assertEquals("far", table.get(1000));
+        assertEquals("near", table.get(3));
+        assertNull(table.get(DeviceSymbols.NO_HANDLE));
+        assertNull(table.get(5000));
+        assertTrue(table.capacity() > 1000);
+
+        table.remove(1000);
+        assertNull(table.get(1000));
+    }
+
+    @Test
+    public void sensorType_resolvesDeviceTypes() {
+        assertSame(SensorType.ELECTRICITY, SensorType.fromTypeId(Device.TYPE_ELECTRICITY_SENSOR));
+        assertEquals("voltage", SensorType.ELECTRICITY.getParameter(1));
+        assertNull(SensorType.fromTypeId(Device.TYPE_LIGHT));
+        assertNull(SensorType.fromTypeId(null));
+    }
+
+    @Test
+    public void thresholdSet_updatesWithoutTouchingTemplate() {
+        SensorThresholdManager manager = SensorThresholdManager.getInstance();
+        int handle = DeviceSymbols.getInstance().intern("symbols-thresholds");
+        manager.setDefaultThresholds(handle, SensorType.AIR);
+        SensorThresholdManager.ThresholdSet template = manager.getThresholdSet(handle);
+
+        manager.applyPolicy(handle, SensorType.AIR,
+                SensorPolicyStore.DevicePolicy.DEFAULT.withThreshold("noise", 20.0, 80.0).thresholds);
+        SensorThresholdManager.ThresholdSet updated = manager.getThresholdSet(handle);
+        int noise = updated.indexOf("noise");
+        assertTrue(updated.hasRange(noise));
+        assertEquals(80.0, updated.getMax(noise), 0);
+        assertEquals(-1, template.indexOf("noise"));
+        assertEquals(SensorThresholdManager.ThresholdStatus.CRITICAL,
+                manager.checkThresholdStatus(handle, "co2", 2000.0));
+        assertEquals(Double.valueOf(20.0), manager.getThresholds("symbols-thresholds").get("noise_min"));
+
+        manager.resetThresholds("symbols-thresholds");
+    }
+}
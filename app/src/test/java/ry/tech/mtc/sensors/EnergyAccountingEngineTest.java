@@ -0,0 +1,101 @@
+package ry.tech.mtc.sensors;
+
+import org.junit.Test;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class EnergyAccountingEngineTest {
+    private static final long MINUTE = 60 * 1000L;
+
+    private static long utc(int year, int month, int day, int hour) {
+        return LocalDateTime.of(year, month, day, hour, 0).toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    @Test
+    public void constantPower_integratesToKwh() {
+        EnergyAccountingEngine engine = new EnergyAccountingEngine(TimeZone.getTimeZone("UTC"));
+        long start = utc(2025, 3, 10, 12);
+        for (int i = 0; i <= 60; i++) {
+            engine.recordPower("6", 1000.0, start + i * MINUTE);
+        }
+        assertEquals(1.0, engine.getTotalKwh("6"), 1e-9);
+        assertEquals(1.0, engine.getDayKwh("6"), 1e-9);
+        assertEquals(1.0, engine.getDeviceKwh("6", start, start + 60 * MINUTE), 1e-6);
+    }
+
+    @Test
+    public void interval_isSplitAcrossTariffBoundary() {
+        EnergyAccountingEngine engine = new EnergyAccountingEngine(TimeZone.getTimeZone("UTC"));
+        // 22:30 - 23:30: половина в дневной зоне, половина в ночной
+        long start = utc(2025, 3, 10, 22) + 30 * MINUTE;
+        for (int i = 0; i <= 20; i++) {
+            engine.recordPower("6", 2000.0, start + i * 3 * MINUTE);
+        }
+        assertEquals(1.0, engine.getDayKwh("6"), 1e-9);
+        assertEquals(1.0, engine.getNightKwh("6"), 1e-9);
+    }
+
+    @Test
+    public void monthlyReport_comesFromRollupsAndRooms() {
+        EnergyAccountingEngine engine = new EnergyAccountingEngine(TimeZone.getTimeZone("UTC"));
+        engine.assignRoom("6", "kitchen");
+        long start = utc(2025, 3, 1, 0);
+        // Двое суток по 500 Вт с показаниями раз в 5 минут
+        for (int i = 0; i <= 2 * 24 * 12; i++) {
+            engine.recordPower("6", 500.0, start + i * 5 * MINUTE);
+        }
+
+        EnergyAccountingEngine.MonthlyReport report = engine.getDeviceMonthlyReport("6", 2025, 3);
+        assertEquals(24.0, report.totalKwh, 1e-6);
+        assertEquals(16.0, report.dayKwh, 1e-6);
+        assertEquals(8.0, report.nightKwh, 1e-6);
+        assertEquals(24.0, engine.getRoomMonthlyReport("kitchen", 2025, 3).totalKwh, 1e-6);
+        assertEquals(0.0, engine.getDeviceMonthlyReport("6", 2025, 4).totalKwh, 0.0);
+        assertEquals(12.0, engine.getRoomKwh("kitchen", start, start + 24 * 60 * MINUTE), 1e-3);
+    }
+
+    @Test
+    public void roomRollup_sumsDevicesAndFollowsRoomChange() {
+        EnergyAccountingEngine engine = new EnergyAccountingEngine(TimeZone.getTimeZone("UTC"));
+        engine.assignRoom("6", "Кухня");
+        engine.assignRoom("8", "Кухня");
+        long start = utc(2025, 3, 10, 12);
+        // Час: 1000 Вт и 500 Вт в кухне
+        for (int i = 0; i <= 12; i++) {
+            engine.recordPower("6", 1000.0, start + i * 5 * MINUTE);
+            engine.recordPower("8", 500.0, start + i * 5 * MINUTE);
+        }
+        assertEquals(1.5, engine.getRoomKwh("Кухня", start, start + 60 * MINUTE), 1e-6);
+        assertEquals(1.5, engine.getRoomMonthlyReport("Кухня", 2025, 3).totalKwh, 1e-6);
+
+        // Второй час: устройство 8 перенесено в гостиную, накопленное остается в кухне
+        engine.assignRoom("8", "Гостиная");
+        for (int i = 13; i <= 24; i++) {
+            engine.recordPower("6", 1000.0, start + i * 5 * MINUTE);
+            engine.recordPower("8", 500.0, start + i * 5 * MINUTE);
+        }
+        assertEquals(2.5, engine.getRoomMonthlyReport("Кухня", 2025, 3).totalKwh, 1e-6);
+        assertEquals(0.5, engine.getRoomMonthlyReport("Гостиная", 2025, 3).totalKwh, 1e-6);
+        assertEquals(engine.getTotalKwh("6") + engine.getTotalKwh("8"),
+                engine.getRoomMonthlyReport("Кухня", 2025, 3).totalKwh
+                        + engine.getRoomMonthlyReport("Гостиная", 2025, 3).totalKwh, 1e-6);
+
+        // Без комнаты энергия устройства в комнаты не попадает
+        engine.assignRoom("8", null);
+        engine.recordPower("8", 500.0, start + 25 * 5 * MINUTE);
+        assertEquals(0.5, engine.getRoomMonthlyReport("Гостиная", 2025, 3).totalKwh, 1e-6);
+    }
+
+    @Test
+    public void longGap_isNotIntegrated() {
+        EnergyAccountingEngine engine = new EnergyAccountingEngine(TimeZone.getTimeZone("UTC"));
+        long start = utc(2025, 3, 10, 12);
+        engine.recordPower("6", 1000.0, start);
+        engine.recordPower("6", 1000.0, start + 60 * MINUTE);
+        assertEquals(0.0, engine.getTotalKwh("6"), 0.0);
+    }
+}
@@ -0,0 +1,46 @@
+package ry.tech.mtc.sensors;
+
+import org.junit.Test;
+
+import java.util.Collections;
+
+import static org.junit.Assert.*;
+
+public class NotificationConfigTest {
+
+    @Test
+    public void changes_returnOwnCopyAndKeepTemplate() {
+        SensorNotificationManager.NotificationConfig template =
+                SensorNotificationManager.NotificationConfig.template(1, 60 * 1000);
+
+        SensorNotificationManager.NotificationConfig changed = template
+                .withCooldownPeriod(5000)
+                .withRecipients(Collections.singletonList("owner@example.com"));
+
+        assertTrue(template.isShared);
+        assertFalse(changed.isShared);
+        assertEquals(60 * 1000, template.cooldownPeriod);
+        assertTrue(template.notificationRecipients.isEmpty());
+        assertEquals(5000, changed.cooldownPeriod);
+        assertEquals(1, changed.priority);
+        assertEquals("owner@example.com", changed.notificationRecipients.get(0));
+        assertFalse(changed.withEnabled(false).isEnabled);
+        assertTrue(changed.isEnabled);
+    }
+
+    @Test
+    public void recipients_comeFromPolicyAndAreReadOnly() {
+        SensorPolicyStore.DevicePolicy policy = SensorPolicyStore.DevicePolicy.DEFAULT
+                .withRecipient("owner@example.com")
+                .withRecipient("owner@example.com");
+        assertEquals(1, policy.recipients.size());
+        assertFalse(policy.isDefault());
+        assertTrue(policy.withoutRecipient("owner@example.com").isDefault());
+        try {
+            policy.recipients.add("other@example.com");
+            fail();
+        } catch (UnsupportedOperationException expected) {
+            // ожидаемо
+        }
+    }
+}
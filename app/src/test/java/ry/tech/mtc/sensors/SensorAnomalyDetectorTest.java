@@ -0,0 +1,73 @@
+package ry.tech.mtc.sensors;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class SensorAnomalyDetectorTest {
+    private static final long STEP = 2000L;
+
+    @Test
+    public void steadyNoise_raisesNoAnomalies() {
+        SensorAnomalyDetector detector = new SensorAnomalyDetector(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(42);
+        int anomalies = 0;
+        for (int i = 0; i < 5000; i++) {
+            double value = 22.0 + random.nextGaussian() * 0.3;
+            if (detector.check("3", "temperature", value, i * STEP) != SensorAnomalyDetector.AnomalyType.NONE) {
+                anomalies++;
+            }
+        }
+        // Допускаются единичные срабатывания на хвостах распределения
+        assertTrue("anomalies: " + anomalies, anomalies <= 5);
+    }
+
+    @Test
+    public void spikeInsideThresholds_isDetected() {
+        SensorAnomalyDetector detector = new SensorAnomalyDetector(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(7);
+        for (int i = 0; i < 500; i++) {
+            detector.check("3", "temperature", 22.0 + random.nextGaussian() * 0.3, i * STEP);
+        }
+        // 25 градусов в пределах статического порога, но это +10 сигм
+        assertEquals(SensorAnomalyDetector.AnomalyType.SPIKE,
+                detector.check("3", "temperature", 25.0, 500 * STEP));
+        // Выброс ограничивается и не сдвигает среднее
+        assertEquals(SensorAnomalyDetector.AnomalyType.NONE,
+                detector.check("3", "temperature", 22.0, 501 * STEP));
+    }
+
+    @Test
+    public void gradualLevelShift_isDetectedByCusum() {
+        SensorAnomalyDetector detector = new SensorAnomalyDetector(TimeZone.getTimeZone("UTC"));
+        Random random = new Random(11);
+        int i = 0;
+        for (; i < 500; i++) {
+            detector.check("4", "humidity", 45.0 + random.nextGaussian(), i * STEP);
+        }
+        // Сдвиг на полторы сигмы: отдельные значения не похожи на скачки
+        boolean detected = false;
+        for (int j = 0; j < 50 && !detected; j++, i++) {
+            SensorAnomalyDetector.AnomalyType type =
+                    detector.check("4", "humidity", 46.5 + random.nextGaussian(), i * STEP);
+            detected = type == SensorAnomalyDetector.AnomalyType.LEVEL_SHIFT;
+        }
+        assertTrue(detected);
+    }
+
+    @Test
+    public void resetDevice_dropsState() {
+        SensorAnomalyDetector detector = new SensorAnomalyDetector(TimeZone.getTimeZone("UTC"));
+        for (int i = 0; i < 100; i++) {
+            detector.check("3", "temperature", 22.0 + (i % 2) * 0.5, i * STEP);
+        }
+        detector.resetDevice("3");
+        // После сброса снова идет прогрев, оценок нет
+        assertEquals(SensorAnomalyDetector.AnomalyType.NONE,
+                detector.check("3", "temperature", 40.0, 100 * STEP));
+        assertEquals(0.0, detector.getLastZScore("3", "temperature"), 0.0);
+    }
+}
@@ -0,0 +1,162 @@
+package ry.tech.mtc.sensors;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.ProtocolException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import okio.Buffer;
+
+import static org.junit.Assert.*;
+
+public class SensorPolicyStoreTest {
+
+    @Test
+    public void update_publishesNewVersionAndKeepsOldSnapshot() {
+        SensorPolicyStore store = new SensorPolicyStore();
+        List<Set<String>> changes = new ArrayList<>();
+        store.addListener((snapshot, changedDeviceIds) -> changes.add(changedDeviceIds));
+
+        SensorPolicyStore.Snapshot before = store.snapshot();
+        SensorPolicyStore.Snapshot after = store.update("t1",
+                policy -> policy.withThreshold("temperature", 18.0, 25.0));
+
+        assertEquals(before.version + 1, after.version);
+        assertSame(after, store.snapshot());
+        assertSame(SensorPolicyStore.DevicePolicy.DEFAULT, before.get("t1"));
+        assertEquals(18.0, after.get("t1").thresholds.getMin(0), 0);
+        assertEquals(1, changes.size());
+        assertTrue(changes.get(0).contains("t1"));
+
+        // Без изменений новая версия не публикуется
+        assertSame(after, store.update("t1", policy -> policy));
+        assertEquals(1, changes.size());
+
+        // Настройки по умолчанию не хранятся
+        store.reset("t1");
+        assertEquals(0, store.snapshot().size());
+        assertEquals(2, changes.size());
+    }
+
+    @Test
+    public void snapshot_survivesWriteAndLoad() throws IOException {
+        SensorPolicyStore store = new SensorPolicyStore();
+        store.update("t1", policy -> policy.withThreshold("temperature", 18.5, 24.0).withSamplingSetting(2));
+        store.update("h1", policy -> policy.withNotifications(false, 60_000).withRecipient("owner@example.com"));
+        Buffer buffer = new Buffer();
+        SensorPolicyStore.write(store.snapshot(), buffer);
+
+        SensorPolicyStore restored = new SensorPolicyStore();
+        List<Set<String>> changes = new ArrayList<>();
+        restored.addListener((snapshot, changedDeviceIds) -> changes.add(changedDeviceIds));
+        restored.load(buffer);
+
+        SensorPolicyStore.DevicePolicy temperature = restored.getPolicy("t1");
+        int index = temperature.thresholds.indexOf("temperature");
+        assertEquals(18.5, temperature.thresholds.getMin(index), 0);
+        assertEquals(24.0, temperature.thresholds.getMax(index), 0);
+        assertEquals(2, temperature.samplingSetting);
+        assertFalse(restored.getPolicy("h1").notificationsEnabled);
+        assertEquals(60_000, restored.getPolicy("h1").cooldownMs);
+        assertEquals(Collections.singletonList("owner@example.com"), restored.getPolicy("h1").recipients);
+        assertEquals(store.snapshot().version, restored.snapshot().version);
+        assertEquals(2, changes.get(0).size());
+    }
+
+    @Test
+    public void formatOneFile_loadsWithoutRecipients() throws IOException {
+        // Файл формата 1: одно устройство с выключенными уведомлениями, без порогов и получателей
+        Buffer buffer = new Buffer()
+                .writeInt(0x4D504F4C).writeByte(1).writeLong(7).writeInt(1)
+                .writeShort(2).writeUtf8("h1")
+                .writeByte(0).writeLong(60_000).writeByte(SensorPolicyStore.UNSET).writeByte(0);
+
+        SensorPolicyStore store = new SensorPolicyStore();
+        store.load(buffer);
+
+        SensorPolicyStore.DevicePolicy policy = store.getPolicy("h1");
+        assertFalse(policy.notificationsEnabled);
+        assertEquals(60_000, policy.cooldownMs);
+        assertTrue(policy.recipients.isEmpty());
+        assertEquals(7, store.snapshot().version);
+    }
+
+    @Test
+    public void listener_runsOutsideStoreLockAndSeesLatestSnapshot() throws InterruptedException {
+        SensorPolicyStore store = new SensorPolicyStore();
+        List<Long> versions = Collections.synchronizedList(new ArrayList<>());
+        Thread writer = new Thread(() -> store.update("other", policy -> policy.withSamplingSetting(1)));
+        store.addListener((snapshot, changedDeviceIds) -> {
+            versions.add(snapshot.version);
+            if (versions.size() > 1) return;
+            // Пока слушатель работает, другой поток публикует: блокировка хранилища уже снята
+            writer.start();
+            long deadline = System.currentTimeMillis() + 2000;
+            while (store.snapshot().version < 2 && System.currentTimeMillis() < deadline) {
+                try {
+                    Thread.sleep(1);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+            assertEquals(2, store.snapshot().version);
+        });
+
+        store.update("t1", policy -> policy.withSamplingSetting(2));
+        writer.join(2000);
+
+        // Уведомление писателя пришло после текущего, по одному, с последним снимком
+        assertEquals(Arrays.asList(1L, 2L), versions);
+    }
+
+    @Test
+    public void corruptFile_isRejectedWithoutChangingPolicies() throws IOException {
+        SensorPolicyStore store = new SensorPolicyStore();
+        store.update("t1", policy -> policy.withSamplingSetting(1));
+        SensorPolicyStore.Snapshot before = store.snapshot();
+
+        Buffer buffer = new Buffer();
+        SensorPolicyStore.write(before, buffer);
+        Buffer truncated = new Buffer();
+        truncated.write(buffer, buffer.size() - 3);
+        try {
+            store.load(truncated);
+            fail();
+        } catch (IOException expected) {
+            // ожидаемо
+        }
+        try {
+            store.load(new Buffer().writeUtf8("garbage!"));
+            fail();
+        } catch (ProtocolException expected) {
+            // ожидаемо
+        }
+        assertSame(before, store.snapshot());
+    }
+
+    @Test
+    public void thresholdPolicy_isAppliedOnTopOfTypeTemplate() {
+        SensorThresholdManager manager = SensorThresholdManager.getInstance();
+        int handle = DeviceSymbols.getInstance().intern("policy-store-e1");
+        manager.setDefaultThresholds(handle, SensorType.ELECTRICITY);
+        SensorThresholdManager.ThresholdSet template = manager.getThresholdSet(handle);
+
+        SensorPolicyStore.DevicePolicy policy = SensorPolicyStore.DevicePolicy.DEFAULT
+                .withThreshold("voltage", 200.0, 250.0);
+        manager.applyPolicy(handle, SensorType.ELECTRICITY, policy.thresholds);
+        SensorThresholdManager.ThresholdSet applied = manager.getThresholdSet(handle);
+        assertEquals(200.0, applied.getMin(applied.indexOf("voltage")), 0);
+        assertEquals(3500.0, applied.getMax(applied.indexOf("power")), 0);
+
+        // Без переопределений устройство возвращается к общему шаблону
+        manager.applyPolicy(handle, SensorType.ELECTRICITY, SensorPolicyStore.DevicePolicy.DEFAULT.thresholds);
+        assertSame(template, manager.getThresholdSet(handle));
+        manager.resetThresholds("policy-store-e1");
+    }
+}
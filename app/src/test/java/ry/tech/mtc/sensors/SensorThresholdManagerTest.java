@@ -0,0 +1,47 @@
+package ry.tech.mtc.sensors;
+
+import org.junit.Test;
+
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class SensorThresholdManagerTest {
+
+    @Test
+    public void devicesOfOneType_shareTemplateUntilModified() {
+        SensorThresholdManager manager = SensorThresholdManager.getInstance();
+        manager.setDefaultThresholds("policy-a", "electricity_sensor");
+        manager.setDefaultThresholds("policy-b", "electricity_sensor");
+        int overrides = manager.getOverrideCount();
+
+        assertSame(manager.getThresholds("policy-a"), manager.getThresholds("policy-b"));
+        assertTrue(manager.isUsingTemplate("policy-a", "electricity_sensor"));
+
+        manager.applyPolicy(DeviceSymbols.getInstance().find("policy-a"), SensorType.ELECTRICITY,
+                SensorPolicyStore.DevicePolicy.DEFAULT.withThreshold("voltage", 200.0, 250.0).thresholds);
+        Map<String, Double> modified = manager.getThresholds("policy-a");
+        assertEquals(200.0, modified.get("voltage_min"), 0);
+        assertEquals(3500.0, modified.get("power_max"), 0);
+        assertFalse(manager.isUsingTemplate("policy-a", "electricity_sensor"));
+        assertEquals(overrides + 1, manager.getOverrideCount());
+
+        // Шаблон и соседнее устройство не изменились
+        assertEquals(210.0, manager.getThresholds("policy-b").get("voltage_min"), 0);
+        assertTrue(manager.isUsingTemplate("policy-b", "electricity_sensor"));
+
+        manager.resetThresholds("policy-a");
+        manager.resetThresholds("policy-b");
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void sharedTemplate_isReadOnly() {
+        SensorThresholdManager manager = SensorThresholdManager.getInstance();
+        manager.setDefaultThresholds("policy-c", "temperature_sensor");
+        try {
+            manager.getThresholds("policy-c").put("temperature_max", 100.0);
+        } finally {
+            manager.resetThresholds("policy-c");
+        }
+    }
+}
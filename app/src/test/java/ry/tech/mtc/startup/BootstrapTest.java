@@ -0,0 +1,99 @@
+package ry.tech.mtc.startup;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BootstrapTest {
+
+    @Test
+    public void require_initializesDependenciesFirstAndOnce() {
+        List<String> order = new ArrayList<>();
+        Bootstrap bootstrap = new Bootstrap()
+                .register("a", () -> order.add("a"))
+                .register("b", () -> order.add("b"), "a")
+                .register("c", () -> order.add("c"), "a", "b")
+                .register("unused", () -> order.add("unused"));
+
+        bootstrap.require("c");
+        bootstrap.require("b");
+        bootstrap.require("c");
+
+        assertEquals(List.of("a", "b", "c"), order);
+        assertTrue(bootstrap.isReady("a"));
+        assertFalse(bootstrap.isReady("unused"));
+        assertEquals(3, bootstrap.getReport().size());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void register_rejectsUnknownDependency() {
+        new Bootstrap().register("b", () -> {}, "a");
+    }
+
+    @Test
+    public void failedInitializer_isRetried() {
+        AtomicInteger attempts = new AtomicInteger();
+        Bootstrap bootstrap = new Bootstrap().register("flaky", () -> {
+            if (attempts.incrementAndGet() == 1) throw new java.io.IOException("first");
+        });
+
+        try {
+            bootstrap.require("flaky");
+            fail();
+        } catch (IllegalStateException expected) {
+            assertFalse(bootstrap.isReady("flaky"));
+        }
+        bootstrap.require("flaky");
+        assertTrue(bootstrap.isReady("flaky"));
+        assertEquals(2, attempts.get());
+    }
+
+    @Test
+    public void concurrentRequire_andPrewarm_runInitializerOnce() throws InterruptedException {
+        AtomicInteger runs = new AtomicInteger();
+        Bootstrap bootstrap = new Bootstrap()
+                .register("slow", () -> {
+                    runs.incrementAndGet();
+                    Thread.sleep(50);
+                })
+                .register("top", () -> {}, "slow");
+
+        CountDownLatch done = new CountDownLatch(1);
+        bootstrap.prewarm(task -> new Thread(() -> {
+            task.run();
+            done.countDown();
+        }).start());
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            Thread thread = new Thread(() -> bootstrap.require("top"));
+            threads.add(thread);
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        done.await();
+
+        assertEquals(1, runs.get());
+        assertTrue(bootstrap.isReady("top"));
+    }
+
+    @Test
+    public void benchmark_bringsUpCoreSubsystems() {
+        List<Bootstrap.SubsystemReport> report = StartupBenchmark.run();
+        List<String> names = new ArrayList<>();
+        for (Bootstrap.SubsystemReport entry : report) {
+            assertTrue(entry.initNanos >= 0);
+            names.add(entry.name);
+        }
+        Collections.sort(names);
+        assertEquals(List.of(AppStartup.ANOMALY, AppStartup.CALIBRATION, AppStartup.DEVICES,
+                AppStartup.ENERGY, AppStartup.METRICS, AppStartup.THRESHOLDS), names);
+    }
+}
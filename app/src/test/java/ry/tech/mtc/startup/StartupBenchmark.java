@@ -0,0 +1,33 @@
+package ry.tech.mtc.startup;
+
+import java.util.List;
+
+// Бенчмарк холодного старта подсистем, не зависящих от Android.
+// Имеет смысл только в свежей JVM - классы и синглтоны не должны быть загружены заранее:
+//   java -cp <test-classes>:<classes>:<deps> ry.tech.mtc.startup.StartupBenchmark
+public class StartupBenchmark {
+
+    public static List<Bootstrap.SubsystemReport> run() {
+        Bootstrap bootstrap = new Bootstrap();
+        AppStartup.registerCore(bootstrap);
+        bootstrap.require(AppStartup.METRICS);
+        bootstrap.require(AppStartup.DEVICES);
+        bootstrap.require(AppStartup.THRESHOLDS);
+        bootstrap.require(AppStartup.CALIBRATION);
+        bootstrap.require(AppStartup.ENERGY);
+        bootstrap.require(AppStartup.ANOMALY);
+        return bootstrap.getReport();
+    }
+
+    public static void main(String[] args) {
+        long start = System.nanoTime();
+        List<Bootstrap.SubsystemReport> report = run();
+        long total = System.nanoTime() - start;
+
+        System.out.printf("%-16s %10s %10s%n", "subsystem", "init ms", "ready ms");
+        for (Bootstrap.SubsystemReport entry : report) {
+            System.out.printf("%-16s %10.2f %10.2f%n", entry.name, entry.initNanos / 1e6, entry.readyAtNanos / 1e6);
+        }
+        System.out.printf("%-16s %10.2f%n", "total", total / 1e6);
+    }
+}
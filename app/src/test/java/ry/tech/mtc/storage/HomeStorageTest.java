@@ -0,0 +1,108 @@
+package ry.tech.mtc.storage;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import ry.tech.mtc.MockDeviceData;
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.sensors.SensorNotificationManager;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class HomeStorageTest {
+    private HomeDatabase helper;
+    private HomeStorage storage;
+
+    @Before
+    public void setUp() {
+        helper = new HomeDatabase(RuntimeEnvironment.getApplication(), null);
+        storage = new HomeStorage(helper.getWritableDatabase());
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    @Test
+    public void devices_surviveSaveAndLoad() throws InterruptedException {
+        Device lamp = new Device("1", "Лампа", Device.TYPE_LIGHT);
+        lamp.setRoom("Кухня");
+        lamp.setParameter("brightness", 40);
+        storage.saveDevice(lamp);
+        storage.saveDevice(new Device("2", "Датчик", Device.TYPE_TEMPERATURE_SENSOR));
+        lamp.setParameter("brightness", 70);
+        storage.saveDevice(lamp);
+        storage.flush();
+
+        List<Device> devices = storage.loadDevices();
+        assertEquals(2, devices.size());
+        // Порядок - порядок первого сохранения, повторное сохранение заменяет строку
+        assertEquals("1", devices.get(0).getId());
+        assertEquals("Кухня", devices.get(0).getRoom());
+        assertEquals(70, ((Number) devices.get(0).getParameter("brightness")).intValue());
+
+        assertEquals(1, storage.findDevicesByRoom("Кухня").size());
+        assertEquals("2", storage.findDevicesByType(Device.TYPE_TEMPERATURE_SENSOR).get(0).getId());
+    }
+
+    @Test
+    public void state_survivesSaveAndLoad() throws InterruptedException {
+        assertNull(storage.loadState("1"));
+
+        MockDeviceData.DeviceState state = new MockDeviceData.DeviceState();
+        state.isOnline = false;
+        state.isOn = true;
+        state.lastReadings.put("temperature", 21.5);
+        state.lastReadings.put("mode", "cool");
+        state.lastUpdateTime = 1234;
+        storage.saveState("1", state);
+        storage.flush();
+
+        MockDeviceData.DeviceState loaded = storage.loadState("1");
+        assertFalse(loaded.isOnline);
+        assertTrue(loaded.isOn);
+        assertEquals(21.5, ((Number) loaded.lastReadings.get("temperature")).doubleValue(), 0);
+        assertEquals("cool", loaded.lastReadings.get("mode"));
+        assertEquals(1234, loaded.lastUpdateTime);
+    }
+
+    @Test
+    public void alerts_areLoadedOldestFirstAndByLevel() throws InterruptedException {
+        LocalDateTime base = LocalDateTime.of(2026, 3, 1, 12, 0);
+        for (int i = 0; i < 5; i++) {
+            SensorNotificationManager.AlertLevel level = i % 2 == 0
+                    ? SensorNotificationManager.AlertLevel.CRITICAL : SensorNotificationManager.AlertLevel.WARNING;
+            storage.appendAlert(new SensorNotificationManager.AlertHistory(
+                    "1", "temperature", 30 + i, "°C", level, base.plusMinutes(i)));
+        }
+        storage.appendAlert(new SensorNotificationManager.AlertHistory(
+                "2", "humidity", 90, "%", SensorNotificationManager.AlertLevel.CRITICAL, base));
+        storage.flush();
+
+        List<SensorNotificationManager.AlertHistory> last = storage.loadAlerts("1", 3);
+        assertEquals(3, last.size());
+        assertEquals(32, last.get(0).value, 0);
+        assertEquals(34, last.get(2).value, 0);
+        assertEquals(base.plusMinutes(4), last.get(2).timestamp);
+
+        long since = base.plusMinutes(1).atZone(java.time.ZoneId.systemDefault()).toInstant().toEpochMilli();
+        List<SensorNotificationManager.AlertHistory> critical = storage.loadAlertsByLevel(
+                SensorNotificationManager.AlertLevel.CRITICAL, since, 10);
+        assertEquals(2, critical.size());
+        assertEquals(34, critical.get(0).value, 0);
+
+        storage.clearAlerts("1");
+        storage.flush();
+        assertTrue(storage.loadAlerts("1", 10).isEmpty());
+        assertEquals(1, storage.loadAlerts("2", 10).size());
+    }
+}
@@ -0,0 +1,145 @@
+package ry.tech.mtc.storage;
+
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+@RunWith(RobolectricTestRunner.class)
+public class SqliteBatchSinkTest {
+    private HomeDatabase helper;
+    private SQLiteDatabase db;
+    private SqliteBatchSink sink;
+
+    @Before
+    public void setUp() {
+        // База в памяти с реальной схемой HomeDatabase
+        helper = new HomeDatabase(RuntimeEnvironment.getApplication(), null);
+        db = helper.getWritableDatabase();
+        sink = new SqliteBatchSink(db);
+    }
+
+    @After
+    public void tearDown() {
+        helper.close();
+    }
+
+    private static StorageWriter.Batch batch(List<StorageWriter.DeviceRow> devices, List<StorageWriter.StateRow> states,
+                                             boolean clearAllAlerts, Set<String> alertClears,
+                                             List<StorageWriter.AlertRow> alerts) {
+        return new StorageWriter.Batch(devices, states, clearAllAlerts, alertClears, alerts);
+    }
+
+    private static StorageWriter.AlertRow alert(String deviceId, long timestamp) {
+        return new StorageWriter.AlertRow(deviceId, "temperature", 42.0, "°C", 2, timestamp);
+    }
+
+    private long count(String sql, String... args) {
+        try (Cursor cursor = db.rawQuery(sql, args)) {
+            assertTrue(cursor.moveToFirst());
+            return cursor.getLong(0);
+        }
+    }
+
+    @Test
+    public void schema_hasIndexesUsedByQueries() {
+        Set<String> indexes = new HashSet<>();
+        try (Cursor cursor = db.rawQuery("SELECT name FROM sqlite_master WHERE type = 'index'", null)) {
+            while (cursor.moveToNext()) indexes.add(cursor.getString(0));
+        }
+        assertTrue(indexes.contains("devices_by_type"));
+        assertTrue(indexes.contains("devices_by_room"));
+        assertTrue(indexes.contains("alerts_by_device_time"));
+        assertTrue(indexes.contains("alerts_by_level_time"));
+
+        // Выборка истории устройства идет по индексу, а не полным просмотром
+        StringBuilder plan = new StringBuilder();
+        try (Cursor cursor = db.rawQuery("EXPLAIN QUERY PLAN SELECT * FROM alerts WHERE device_id = ? "
+                + "ORDER BY timestamp DESC LIMIT 10", new String[]{"1"})) {
+            while (cursor.moveToNext()) plan.append(cursor.getString(cursor.getColumnCount() - 1));
+        }
+        assertTrue(plan.toString(), plan.toString().contains("alerts_by_device_time"));
+    }
+
+    @Test
+    public void rows_areUpsertedByKey() {
+        sink.write(batch(
+                Collections.singletonList(new StorageWriter.DeviceRow("1", "Лампа", "light", null, "{}")),
+                Collections.singletonList(new StorageWriter.StateRow("1", true, false, null, 1)),
+                false, Collections.emptySet(), Collections.emptyList()));
+        sink.write(batch(
+                Collections.singletonList(new StorageWriter.DeviceRow("1", "Лампа", "light", "Кухня", "{}")),
+                Collections.singletonList(new StorageWriter.StateRow("1", true, true, "{\"brightness\":50}", 2)),
+                false, Collections.emptySet(), Collections.emptyList()));
+
+        assertEquals(1, count("SELECT COUNT(*) FROM devices"));
+        assertEquals(1, count("SELECT COUNT(*) FROM devices WHERE room = ?", "Кухня"));
+        assertEquals(1, count("SELECT COUNT(*) FROM device_state"));
+        assertEquals(1, count("SELECT is_on FROM device_state WHERE device_id = ?", "1"));
+        assertEquals(2, count("SELECT updated_at FROM device_state WHERE device_id = ?", "1"));
+    }
+
+    @Test
+    public void history_isTrimmedPerDevice() {
+        List<StorageWriter.AlertRow> alerts = new ArrayList<>();
+        int extra = 5;
+        for (int i = 0; i < SqliteBatchSink.MAX_ALERTS_PER_DEVICE + extra; i++) {
+            alerts.add(alert("1", i));
+        }
+        alerts.add(alert("2", 0));
+        alerts.add(alert("2", 1));
+        sink.write(batch(Collections.emptyList(), Collections.emptyList(), false, Collections.emptySet(), alerts));
+
+        assertEquals(SqliteBatchSink.MAX_ALERTS_PER_DEVICE, count("SELECT COUNT(*) FROM alerts WHERE device_id = ?", "1"));
+        // Удаляются самые старые
+        assertEquals(extra, count("SELECT MIN(timestamp) FROM alerts WHERE device_id = ?", "1"));
+        assertEquals(2, count("SELECT COUNT(*) FROM alerts WHERE device_id = ?", "2"));
+    }
+
+    @Test
+    public void clears_runBeforeNewAlertsOfBatch() {
+        sink.write(batch(Collections.emptyList(), Collections.emptyList(), false, Collections.emptySet(),
+                Arrays.asList(alert("1", 1), alert("2", 2))));
+        sink.write(batch(Collections.emptyList(), Collections.emptyList(), false, Collections.singleton("1"),
+                Arrays.asList(alert("1", 3))));
+        assertEquals(1, count("SELECT COUNT(*) FROM alerts WHERE device_id = ?", "1"));
+        assertEquals(3, count("SELECT timestamp FROM alerts WHERE device_id = ?", "1"));
+
+        sink.write(batch(Collections.emptyList(), Collections.emptyList(), true, Collections.emptySet(),
+                Collections.emptyList()));
+        assertEquals(0, count("SELECT COUNT(*) FROM alerts"));
+    }
+
+    @Test
+    public void failedBatch_leavesNoPartialRows() {
+        // Последняя строка пакета не записывается: откатываются и строки перед ней
+        List<StorageWriter.AlertRow> alerts = Arrays.asList(alert("1", 1), alert(null, 2));
+        try {
+            sink.write(batch(
+                    Collections.singletonList(new StorageWriter.DeviceRow("1", "Лампа", "light", null, "{}")),
+                    Collections.singletonList(new StorageWriter.StateRow("1", true, true, null, 1)),
+                    false, Collections.emptySet(), alerts));
+            fail("Batch with a null device id must fail");
+        } catch (RuntimeException expected) {
+        }
+
+        assertEquals(0, count("SELECT COUNT(*) FROM devices"));
+        assertEquals(0, count("SELECT COUNT(*) FROM device_state"));
+        assertEquals(0, count("SELECT COUNT(*) FROM alerts"));
+        assertFalse(db.inTransaction());
+    }
+}
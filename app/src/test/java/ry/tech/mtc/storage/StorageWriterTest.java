@@ -0,0 +1,138 @@
+package ry.tech.mtc.storage;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+// Robolectric: путь ошибки записи пишет в android.util.Log
+@RunWith(RobolectricTestRunner.class)
+public class StorageWriterTest {
+    // Большая задержка: пакеты уходят только по flush() или по размеру
+    private static final long NO_AUTO_FLUSH = 60_000;
+
+    private static class RecordingSink implements StorageWriter.BatchSink {
+        final List<StorageWriter.Batch> batches = Collections.synchronizedList(new ArrayList<>());
+        volatile int failuresLeft;
+
+        @Override
+        public void write(StorageWriter.Batch batch) throws Exception {
+            if (failuresLeft > 0) {
+                failuresLeft--;
+                throw new IllegalStateException("disk full");
+            }
+            batches.add(batch);
+        }
+    }
+
+    private static StorageWriter.StateRow state(String deviceId, boolean isOn, long updatedAt) {
+        return new StorageWriter.StateRow(deviceId, true, isOn, null, updatedAt);
+    }
+
+    private static StorageWriter.AlertRow alert(String deviceId, long timestamp) {
+        return new StorageWriter.AlertRow(deviceId, "temperature", 42.0, "°C", 2, timestamp);
+    }
+
+    @Test
+    public void repeatedWrites_areCoalescedIntoOneRowPerDevice() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        StorageWriter writer = new StorageWriter(sink, NO_AUTO_FLUSH);
+        writer.saveState(state("1", false, 1));
+        writer.saveState(state("2", false, 2));
+        writer.saveState(state("1", true, 3));
+        writer.appendAlert(alert("1", 10));
+        writer.appendAlert(alert("1", 11));
+        writer.flush();
+
+        assertEquals(1, sink.batches.size());
+        StorageWriter.Batch batch = sink.batches.get(0);
+        assertEquals(2, batch.states.size());
+        // Последняя запись устройства заменяет предыдущую и идет в конце
+        assertEquals("2", batch.states.get(0).deviceId);
+        assertTrue(batch.states.get(1).isOn);
+        // Оповещения не схлопываются
+        assertEquals(2, batch.alerts.size());
+        assertEquals(0, writer.getPendingCount());
+    }
+
+    @Test
+    public void clearAlerts_dropsAlertsQueuedBeforeIt() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        StorageWriter writer = new StorageWriter(sink, NO_AUTO_FLUSH);
+        writer.appendAlert(alert("1", 10));
+        writer.appendAlert(alert("2", 11));
+        writer.clearAlerts("1");
+        writer.appendAlert(alert("1", 12));
+        writer.flush();
+
+        StorageWriter.Batch batch = sink.batches.get(0);
+        assertEquals(Collections.singleton("1"), batch.alertClears);
+        assertEquals(2, batch.alerts.size());
+        assertEquals(11, batch.alerts.get(0).timestamp);
+        assertEquals(12, batch.alerts.get(1).timestamp);
+
+        writer.appendAlert(alert("2", 13));
+        writer.clearAllAlerts();
+        writer.flush();
+        batch = sink.batches.get(1);
+        assertTrue(batch.clearAllAlerts);
+        assertTrue(batch.alerts.isEmpty());
+    }
+
+    @Test
+    public void fullBatch_isWrittenWithoutWaitingForDelay() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        StorageWriter writer = new StorageWriter(sink, NO_AUTO_FLUSH);
+        for (int i = 0; i < StorageWriter.MAX_BATCH_SIZE; i++) {
+            writer.appendAlert(alert("1", i));
+        }
+        long deadline = System.currentTimeMillis() + 5000;
+        while (sink.batches.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, sink.batches.size());
+        assertEquals(StorageWriter.MAX_BATCH_SIZE, sink.batches.get(0).alerts.size());
+    }
+
+    @Test
+    public void failedBatch_isRequeuedBehindNewerWrites() throws InterruptedException {
+        RecordingSink sink = new RecordingSink();
+        StorageWriter writer = new StorageWriter(sink, NO_AUTO_FLUSH);
+        sink.failuresLeft = 1;
+        writer.saveState(state("1", false, 1));
+        writer.saveState(state("2", false, 2));
+        writer.appendAlert(alert("1", 10));
+        writer.flush();
+        assertTrue(sink.batches.isEmpty());
+
+        // Новое состояние устройства 1 важнее незаписанного
+        writer.saveState(state("1", true, 3));
+        writer.appendAlert(alert("1", 20));
+        writer.flush();
+
+        assertEquals(1, sink.batches.size());
+        StorageWriter.Batch batch = sink.batches.get(0);
+        Map<String, StorageWriter.StateRow> states = new HashMap<>();
+        for (StorageWriter.StateRow row : batch.states) states.put(row.deviceId, row);
+        assertEquals(2, states.size());
+        assertEquals(3, states.get("1").updatedAt);
+        assertEquals(10, batch.alerts.get(0).timestamp);
+        assertEquals(20, batch.alerts.get(1).timestamp);
+    }
+
+    @Test
+    public void retryDelay_doublesUpToCap() {
+        assertEquals(5000, StorageWriter.retryDelayMs(1));
+        assertEquals(10000, StorageWriter.retryDelayMs(2));
+        assertEquals(40000, StorageWriter.retryDelayMs(4));
+        assertEquals(StorageWriter.MAX_RETRY_DELAY_MS, StorageWriter.retryDelayMs(7));
+        assertEquals(StorageWriter.MAX_RETRY_DELAY_MS, StorageWriter.retryDelayMs(1000));
+    }
+}
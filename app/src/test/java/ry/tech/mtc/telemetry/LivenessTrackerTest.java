@@ -0,0 +1,111 @@
+package ry.tech.mtc.telemetry;
+
+import org.junit.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.Assert.*;
+
+public class LivenessTrackerTest {
+    private final AtomicLong now = new AtomicLong(0);
+
+    private void advance(HashedTimingWheel wheel, long ms, long stepMs) {
+        for (long t = 0; t < ms; t += stepMs) {
+            now.addAndGet(stepMs);
+            wheel.advance();
+        }
+    }
+
+    @Test
+    public void wheel_firesAfterDelayAndSupportsCancel() {
+        HashedTimingWheel wheel = new HashedTimingWheel(10, 8, now::get);
+        AtomicInteger fired = new AtomicInteger();
+        wheel.schedule(fired::incrementAndGet, 25);
+        // Больше одного оборота колеса (8 тиков по 10 мс)
+        wheel.schedule(fired::incrementAndGet, 200);
+        HashedTimingWheel.Timeout cancelled = wheel.schedule(fired::incrementAndGet, 50);
+
+        assertTrue(cancelled.cancel());
+        assertFalse(cancelled.cancel());
+
+        advance(wheel, 20, 10);
+        assertEquals(0, fired.get());
+        advance(wheel, 10, 10);
+        assertEquals(1, fired.get());
+        advance(wheel, 160, 10);
+        assertEquals(1, fired.get());
+        advance(wheel, 20, 10);
+        assertEquals(2, fired.get());
+        assertEquals(0, wheel.getPendingCount());
+    }
+
+    @Test
+    public void silentDevices_goOfflineAndComeBack() {
+        HashedTimingWheel wheel = new HashedTimingWheel(100, 512, now::get);
+        LivenessTracker tracker = new LivenessTracker(wheel, 3000, now::get);
+        Set<String> disconnected = ConcurrentHashMap.newKeySet();
+        AtomicInteger connected = new AtomicInteger();
+        tracker.addListener(new LivenessTracker.LivenessListener() {
+            @Override
+            public void onDeviceConnected(String deviceId) {
+                connected.incrementAndGet();
+            }
+
+            @Override
+            public void onDeviceDisconnected(String deviceId, long lastSeen) {
+                disconnected.add(deviceId);
+            }
+        });
+
+        int fleet = 20_000;
+        for (int i = 0; i < fleet; i++) {
+            tracker.recordSeen("d" + i);
+        }
+        assertEquals(fleet, connected.get());
+        // Один таймер на устройство, сколько бы показаний ни пришло
+        assertEquals(fleet, wheel.getPendingCount());
+
+        // Четные устройства продолжают присылать показания каждую секунду, нечетные молчат
+        for (int second = 0; second < 10; second++) {
+            advance(wheel, 1000, 100);
+            for (int i = 0; i < fleet; i += 2) {
+                tracker.recordSeen("d" + i);
+            }
+        }
+        assertEquals(fleet / 2, disconnected.size());
+        assertTrue(disconnected.contains("d1"));
+        assertFalse(disconnected.contains("d0"));
+        assertTrue(tracker.isOnline("d0"));
+        assertFalse(tracker.isOnline("d1"));
+        assertTrue(wheel.getPendingCount() <= fleet / 2);
+
+        tracker.recordSeen("d1");
+        assertTrue(tracker.isOnline("d1"));
+        assertEquals(fleet + 1, connected.get());
+    }
+
+    @Test
+    public void removedDevice_cancelsItsTimer() {
+        HashedTimingWheel wheel = new HashedTimingWheel(100, 64, now::get);
+        LivenessTracker tracker = new LivenessTracker(wheel, 1000, now::get);
+        AtomicInteger disconnects = new AtomicInteger();
+        tracker.addListener(new LivenessTracker.LivenessListener() {
+            @Override
+            public void onDeviceConnected(String deviceId) {
+            }
+
+            @Override
+            public void onDeviceDisconnected(String deviceId, long lastSeen) {
+                disconnects.incrementAndGet();
+            }
+        });
+        tracker.recordSeen("7");
+        tracker.removeDevice("7");
+        advance(wheel, 5000, 100);
+        assertEquals(0, disconnects.get());
+        assertEquals(0, wheel.getPendingCount());
+    }
+}
@@ -0,0 +1,106 @@
+package ry.tech.mtc.telemetry;
+
+import org.junit.Test;
+
+import ry.tech.mtc.models.Device;
+import ry.tech.mtc.sensors.EnergyAccountingEngine;
+
+import static org.junit.Assert.*;
+
+public class SamplingSchedulerTest {
+
+    // Опрашивает все наступившие устройства, как поток симулятора; возвращает число опросов
+    private static int runUntil(SamplingScheduler scheduler, long from, long to, double value) {
+        int samples = 0;
+        for (long now = from; now <= to; now = Math.min(to + 1, Math.max(now + 1, scheduler.getNextDueTime()))) {
+            SamplingScheduler.Slot slot;
+            while ((slot = scheduler.pollDue(now)) != null) {
+                scheduler.complete(slot, now, value, 45.0, false);
+                samples++;
+            }
+        }
+        return samples;
+    }
+
+    @Test
+    public void stableSensor_backsOffToConfiguredInterval() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        scheduler.add("t1", 60_000, 0);
+
+        // Старый фиксированный такт дал бы 18 000 опросов за час
+        int samples = runUntil(scheduler, 0, 3_600_000, 21.5);
+        assertTrue("samples: " + samples, samples < 80);
+        assertEquals(60_000, scheduler.getSlot("t1").getIntervalMs());
+    }
+
+    @Test
+    public void volatileOrNearThreshold_speedsUp() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        scheduler.add("t1", 60_000, 0);
+        runUntil(scheduler, 0, 600_000, 21.5);
+        SamplingScheduler.Slot slot = scheduler.getSlot("t1");
+        long now = scheduler.getNextDueTime();
+
+        // Скачок на 10% диапазона порогов
+        assertSame(slot, scheduler.pollDue(now));
+        scheduler.complete(slot, now, 26.0, 45.0, false);
+        assertEquals(15_000, slot.getIntervalMs());
+        assertEquals(now + 15_000, scheduler.getNextDueTime());
+
+        now = scheduler.getNextDueTime();
+        assertSame(slot, scheduler.pollDue(now));
+        scheduler.complete(slot, now, 26.0, 45.0, true);
+        assertEquals(3_750, slot.getIntervalMs());
+    }
+
+    @Test
+    public void queue_ordersDevicesByDueTime() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        scheduler.add("slow", 60_000, 0);
+        scheduler.add("fast", 60_000, 100);
+        assertNull(scheduler.pollDue(-1));
+
+        SamplingScheduler.Slot first = scheduler.pollDue(100);
+        SamplingScheduler.Slot second = scheduler.pollDue(100);
+        assertEquals("slow", first.deviceId);
+        assertEquals("fast", second.deviceId);
+        assertNull(scheduler.pollDue(100));
+
+        scheduler.complete(first, 100, 1.0, Double.NaN, false);
+        scheduler.completeWithoutValue(second, 100);
+        scheduler.remove("slow");
+        assertEquals(1, scheduler.size());
+        assertEquals("fast", scheduler.pollDue(Long.MAX_VALUE - 1).deviceId);
+        assertEquals(Long.MAX_VALUE, scheduler.getNextDueTime());
+    }
+
+    @Test
+    public void lowerCeiling_pullsPendingSampleForward() {
+        SamplingScheduler scheduler = new SamplingScheduler();
+        scheduler.add("t1", 3_600_000, 0);
+        runUntil(scheduler, 0, 20_000_000, 21.5);
+        long now = 20_000_000;
+        assertTrue(scheduler.getNextDueTime() > now + 60_000);
+
+        scheduler.setMaxInterval("t1", 60_000, now);
+        assertEquals(now + 60_000, scheduler.getNextDueTime());
+    }
+
+    @Test
+    public void intervals_followSettingsAndDeviceKind() {
+        assertEquals(60_000, SamplingScheduler.intervalFor(Device.TYPE_TEMPERATURE_SENSOR, null));
+        assertEquals(900_000, SamplingScheduler.intervalFor(Device.TYPE_HUMIDITY_SENSOR, 2));
+        assertEquals(3_600_000, SamplingScheduler.intervalForSetting(99));
+        assertEquals(SamplingScheduler.ACTUATOR_INTERVAL_MS, SamplingScheduler.intervalFor(Device.TYPE_LIGHT, 4));
+    }
+
+    @Test
+    public void meteringInterval_staysBelowEnergyGapLimit() {
+        for (int setting = 0; setting < 5; setting++) {
+            long interval = SamplingScheduler.intervalFor(Device.TYPE_ELECTRICITY_SENSOR, setting);
+            assertTrue(interval < EnergyAccountingEngine.MAX_GAP_MS);
+        }
+        assertEquals(SamplingScheduler.METERING_INTERVAL_MS,
+                SamplingScheduler.intervalFor(Device.TYPE_ELECTRICITY_SENSOR, 4));
+    }
+}
@@ -0,0 +1,80 @@
+package ry.tech.mtc.views;
+
+import org.junit.Test;
+
+import ry.tech.mtc.telemetry.SampleSeries;
+
+import static org.junit.Assert.*;
+
+public class LttbDownsamplerTest {
+
+    // Сутки показаний с шагом 200 мс
+    private static final int DAY_OF_SAMPLES = 24 * 60 * 60 * 5;
+
+    @Test
+    public void downsample_keepsEndpointsOrderAndSpikes() {
+        SampleSeries series = new SampleSeries(DAY_OF_SAMPLES);
+        long base = 1_700_000_000_000L;
+        for (int i = 0; i < DAY_OF_SAMPLES; i++) {
+            float value = 22 + (float) Math.sin(i / 5000.0);
+            if (i == 123_457) value = 40; // одиночный выброс
+            if (i == 300_001) value = 5;
+            series.append(base + i * 200L, value);
+        }
+
+        int threshold = 1080;
+        long[] times = new long[threshold];
+        float[] values = new float[threshold];
+        int size = LttbDownsampler.downsample(series, series.getStart(), series.getEnd(), threshold, times, values);
+
+        assertEquals(threshold, size);
+        assertEquals(base, times[0]);
+        assertEquals(base + (DAY_OF_SAMPLES - 1) * 200L, times[size - 1]);
+        float max = -Float.MAX_VALUE;
+        float min = Float.MAX_VALUE;
+        for (int i = 0; i < size; i++) {
+            if (i > 0) assertTrue(times[i] > times[i - 1]);
+            max = Math.max(max, values[i]);
+            min = Math.min(min, values[i]);
+        }
+        assertEquals(40f, max, 0f);
+        assertEquals(5f, min, 0f);
+    }
+
+    @Test
+    public void downsample_copiesShortRangesAndHandlesTinyThresholds() {
+        SampleSeries series = new SampleSeries(16);
+        for (int i = 0; i < 10; i++) {
+            series.append(i, i * 2);
+        }
+        long[] times = new long[16];
+        float[] values = new float[16];
+
+        assertEquals(10, LttbDownsampler.downsample(series, 0, 10, 16, times, values));
+        assertEquals(18f, values[9], 0f);
+
+        assertEquals(2, LttbDownsampler.downsample(series, 2, 10, 2, times, values));
+        assertEquals(2, times[0]);
+        assertEquals(9, times[1]);
+        assertEquals(0, LttbDownsampler.downsample(series, 5, 5, 16, times, values));
+    }
+
+    @Test
+    public void series_overwritesOldestAndSearchesByTime() {
+        SampleSeries series = new SampleSeries(10);
+        assertEquals(16, series.getCapacity());
+        for (int i = 0; i < 40; i++) {
+            assertTrue(series.append(i * 10L, i));
+        }
+        assertFalse(series.append(390, 0));
+        assertFalse(series.append(100, 0));
+
+        assertEquals(24, series.getStart());
+        assertEquals(40, series.getEnd());
+        assertEquals(240, series.getTime(series.getStart()));
+        assertEquals(30, series.lowerBound(series.getStart(), series.getEnd(), 295));
+        assertEquals(40, series.lowerBound(series.getStart(), series.getEnd(), 1000));
+        assertTrue(series.isValid(24));
+        assertFalse(series.isValid(23));
+    }
+}